@@ -60,19 +60,19 @@ public class AT3x04 extends OFDM {
 			// Check the sample rate
 			if (waveData.getSampleRate()!=8000.0)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"WAV files containing\nAT3x04 recordings must have\nbeen recorded at a sample rate\nof 8 KHz.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("WAV files containing\nAT3x04 recordings must have\nbeen recorded at a sample rate\nof 8 KHz.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			// Check this is a mono recording
 			if (waveData.getChannels()!=1)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"Rivet can only process\nmono WAV files.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("Rivet can only process\nmono WAV files.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			// Check this is a 16 bit WAV file
 			if (waveData.getSampleSizeInBits()!=16)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"Rivet can only process\n16 bit WAV files.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("Rivet can only process\n16 bit WAV files.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			// sampleCount must start negative to account for the buffer gradually filling
@@ -0,0 +1,366 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// Rivet Copyright (C) 2011 Ian Wraith
+// This program comes with ABSOLUTELY NO WARRANTY
+
+package org.e2k;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import javax.swing.JOptionPane;
+
+// Archives the input but only while there is something on it
+// Audio is active while the decoder has a signal or the idle detector finds a carrier above the noise floor
+// Each active stretch (with a little audio from before it and a hang time after it) is added to the current
+// segment , a WAV file which is closed and a new one started once it holds a set amount of audio
+// Every segment has a .idx text file beside it with a line for each stretch giving
+// the sample it starts at in the segment , its UTC start time , its length in seconds and what was found
+// The audio is put into a pool of direct buffers which a thread of its own writes out so the decoder
+// never waits for the disk , if the pool runs dry the audio is dropped and counted rather than waited for
+public class ActivityRecorder {
+
+	private static final int BUFFER_SAMPLES=4096;
+	private static final int BUFFER_COUNT=64;
+	private static final double PREROLL_SECONDS=1.0;
+	private final Rivet theApp;
+	private final File directory;
+	private final int sampleRate;
+	private final long segmentSamples;
+	private final int hangSamples;
+	private final IdleDetector detector;
+	private final int detectBlock[];
+	private int detectCount=0;
+	private boolean carrier=false;
+	private boolean signal=false;
+	private String signalLabel=null;
+	private final int preroll[];
+	private int prerollPos=0;
+	private int prerollFill=0;
+	private boolean active=false;
+	private int quietCounter=0;
+	private boolean segmentOpen=false;
+	private long segmentWritten=0;
+	private long stretchOffset=0;
+	private long stretchTime=0;
+	private final Set<String> stretchFound=new TreeSet<String>();
+	private final SimpleDateFormat nameFormat=new SimpleDateFormat("yyyyMMdd_HHmmss");
+	private final SimpleDateFormat indexFormat=new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+	private final BlockingQueue<ByteBuffer> freeBuffers=new ArrayBlockingQueue<ByteBuffer>(BUFFER_COUNT);
+	private final BlockingQueue<Object> queue=new LinkedBlockingQueue<Object>();
+	private final Writer writer=new Writer();
+	private int segmentCount=0;
+	private int stretchCount=0;
+	private long droppedSamples=0;
+	private volatile String lastError=null;
+
+	// Commands for the writer besides buffers of audio
+	private static class OpenSegment	{
+		private final File wavFile;
+		private final File indexFile;
+
+		private OpenSegment (File twavFile,File tindexFile)	{
+			wavFile=twavFile;
+			indexFile=tindexFile;
+		}
+	}
+
+	private static class IndexLine	{
+		private final String line;
+
+		private IndexLine (String tline)	{
+			line=tline;
+		}
+	}
+
+	private static final Object CLOSE_SEGMENT=new Object();
+	private static final Object STOP=new Object();
+
+	// Keep recording for hangSeconds after the activity stops and start a new segment after segmentSeconds of audio
+	public ActivityRecorder (Rivet ttheApp,File tdirectory,int tsampleRate,double segmentSeconds,double hangSeconds)	{
+		theApp=ttheApp;
+		directory=tdirectory;
+		sampleRate=tsampleRate;
+		segmentSamples=Math.max(1,(long)(segmentSeconds*sampleRate));
+		hangSamples=(int)(hangSeconds*sampleRate);
+		// The hang time is counted here so the detector has none of its own
+		detector=new IdleDetector(sampleRate,0.0);
+		detector.startIdle();
+		detectBlock=new int[detector.getBlockSize()];
+		preroll=new int[Math.max(1,(int)(PREROLL_SECONDS*sampleRate))];
+		nameFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+		indexFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+		int a;
+		for (a=0;a<BUFFER_COUNT;a++)	{
+			freeBuffers.add(ByteBuffer.allocateDirect(BUFFER_SAMPLES*2).order(ByteOrder.LITTLE_ENDIAN));
+		}
+		writer.start();
+	}
+
+	// Set how the idle detector decides there is a carrier
+	public void setThresholds (double flatness,double energyRatio)	{
+		detector.setFlatnessThreshold(flatness);
+		detector.setEnergyRatio(energyRatio);
+	}
+
+	// Tell the recorder whether the decoder has a signal
+	public synchronized void setSignal (boolean found,String label)	{
+		signal=found;
+		if (found==true)	{
+			signalLabel=label;
+			if (active==true) stretchFound.add(label);
+		}
+	}
+
+	// Pass on the input audio
+	public synchronized void add (int samples[],int off,int len)	{
+		// Look for a carrier a block at a time
+		int pos=off,end=off+len;
+		while (pos<end)	{
+			int count=Math.min(end-pos,detectBlock.length-detectCount);
+			System.arraycopy(samples,pos,detectBlock,detectCount,count);
+			detectCount=detectCount+count;
+			pos=pos+count;
+			if (detectCount==detectBlock.length)	{
+				carrier=detector.isActive(detectBlock,0);
+				detectCount=0;
+			}
+		}
+		boolean busy=((carrier==true)||(signal==true));
+		if ((busy==true)&&(active==false))	{
+			long blockStart=theApp.getSampleClock().getTimeMillis()-((len*1000L)/sampleRate);
+			startStretch(blockStart-((prerollFill*1000L)/sampleRate));
+		}
+		if (active==true)	{
+			writeSamples(samples,off,len);
+			if (busy==true) quietCounter=hangSamples;
+			else quietCounter=quietCounter-len;
+			if (quietCounter<=0) endStretch();
+			// Start a new segment once this one is full
+			else if (segmentWritten>=segmentSamples)	{
+				endStretch();
+				closeSegment();
+				prerollFill=0;
+				startStretch(theApp.getSampleClock().getTimeMillis());
+			}
+		}
+		// Keep the latest audio for the start of the next stretch
+		int a;
+		for (a=off;a<end;a++)	{
+			preroll[prerollPos]=samples[a];
+			prerollPos++;
+			if (prerollPos==preroll.length) prerollPos=0;
+		}
+		prerollFill=(int)Math.min(preroll.length,(long)prerollFill+len);
+	}
+
+	private void startStretch (long startTime)	{
+		if (segmentOpen==false)	{
+			String name="Rivet_"+nameFormat.format(new Date(startTime))+"Z";
+			File wavFile=new File(directory,name+".wav");
+			int count=2;
+			while (wavFile.exists())	{
+				wavFile=new File(directory,name+"_"+Integer.toString(count)+".wav");
+				count++;
+			}
+			String path=wavFile.getPath();
+			queue.add(new OpenSegment(wavFile,new File(path.substring(0,path.length()-4)+".idx")));
+			segmentOpen=true;
+			segmentWritten=0;
+			segmentCount++;
+		}
+		active=true;
+		quietCounter=hangSamples;
+		stretchOffset=segmentWritten;
+		stretchTime=startTime;
+		stretchFound.clear();
+		if (signal==true) stretchFound.add(signalLabel);
+		stretchCount++;
+		// Start with the audio from just before the activity
+		int data[]=new int[prerollFill];
+		int start=prerollPos-prerollFill;
+		if (start<0) start=start+preroll.length;
+		int first=Math.min(prerollFill,preroll.length-start);
+		System.arraycopy(preroll,start,data,0,first);
+		System.arraycopy(preroll,0,data,first,prerollFill-first);
+		writeSamples(data,0,data.length);
+	}
+
+	private void endStretch()	{
+		active=false;
+		double seconds=(double)(segmentWritten-stretchOffset)/sampleRate;
+		String found="Carrier";
+		if (stretchFound.isEmpty()==false)	{
+			StringBuilder sb=new StringBuilder();
+			for (String label : stretchFound)	{
+				if (sb.length()>0) sb.append(",");
+				sb.append(label);
+			}
+			found=sb.toString();
+		}
+		queue.add(new IndexLine(Long.toString(stretchOffset)+"\t"+indexFormat.format(new Date(stretchTime))+"\t"+String.format("%.3f",seconds)+"\t"+found+"\n"));
+	}
+
+	private void closeSegment()	{
+		if (segmentOpen==false) return;
+		queue.add(CLOSE_SEGMENT);
+		segmentOpen=false;
+	}
+
+	// Copy the samples into free buffers for the writer
+	private void writeSamples (int samples[],int off,int len)	{
+		int end=off+len;
+		while (off<end)	{
+			ByteBuffer buffer=freeBuffers.poll();
+			if (buffer==null)	{
+				droppedSamples=droppedSamples+(end-off);
+				return;
+			}
+			buffer.clear();
+			int count=Math.min(end-off,BUFFER_SAMPLES);
+			int a;
+			for (a=0;a<count;a++)	{
+				int s=samples[off+a];
+				if (s>Short.MAX_VALUE) s=Short.MAX_VALUE;
+				else if (s<Short.MIN_VALUE) s=Short.MIN_VALUE;
+				buffer.putShort((short)s);
+			}
+			buffer.flip();
+			queue.add(buffer);
+			segmentWritten=segmentWritten+count;
+			off=off+count;
+		}
+	}
+
+	// Finish the stretch and segment being recorded and wait for everything to be written
+	public void close()	{
+		synchronized (this)	{
+			if (active==true) endStretch();
+			closeSegment();
+		}
+		queue.add(STOP);
+		try	{
+			writer.join();
+		}
+		catch (InterruptedException e)	{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public synchronized int getSegmentCount()	{
+		return segmentCount;
+	}
+
+	public synchronized int getStretchCount()	{
+		return stretchCount;
+	}
+
+	// The number of samples which were lost because the writer couldn't keep up
+	public synchronized long getDroppedSamples()	{
+		return droppedSamples;
+	}
+
+	public String getLastError()	{
+		return lastError;
+	}
+
+	public File getDirectory()	{
+		return directory;
+	}
+
+	private class Writer extends Thread	{
+
+		private WavFileWriter wav=null;
+		private FileWriter index=null;
+
+		private Writer()	{
+			setDaemon(true);
+			setName("Activity Recorder");
+		}
+
+		public void run()	{
+			while (true)	{
+				Object command;
+				try	{
+					command=queue.take();
+				}
+				catch (InterruptedException e)	{
+					break;
+				}
+				if (command==STOP) break;
+				try	{
+					if (command instanceof ByteBuffer)	{
+						ByteBuffer buffer=(ByteBuffer)command;
+						try	{
+							if (wav!=null) wav.write(buffer);
+						}
+						finally	{
+							freeBuffers.offer(buffer);
+						}
+					}
+					else if (command instanceof OpenSegment)	{
+						finish();
+						OpenSegment open=(OpenSegment)command;
+						wav=new WavFileWriter(open.wavFile,sampleRate);
+						index=new FileWriter(open.indexFile);
+					}
+					else if (command instanceof IndexLine)	{
+						if (index!=null)	{
+							index.write(((IndexLine)command).line);
+							index.flush();
+						}
+					}
+					else if (command==CLOSE_SEGMENT) finish();
+				}
+				catch (IOException e)	{
+					// Report the first problem and stop writing this segment
+					if (lastError==null) theApp.showMessage("Unable to archive audio\n"+e.toString(),JOptionPane.ERROR_MESSAGE);
+					lastError=e.toString();
+					try	{
+						finish();
+					}
+					catch (IOException ce)	{}
+				}
+			}
+			try	{
+				finish();
+			}
+			catch (IOException e)	{
+				lastError=e.toString();
+			}
+		}
+
+		private void finish() throws IOException	{
+			WavFileWriter doneWav=wav;
+			FileWriter doneIndex=index;
+			wav=null;
+			index=null;
+			try	{
+				if (doneWav!=null) doneWav.close();
+			}
+			finally	{
+				if (doneIndex!=null) doneIndex.close();
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,319 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// Rivet Copyright (C) 2011 Ian Wraith
+// This program comes with ABSOLUTELY NO WARRANTY
+
+package org.e2k;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+// Reads a Rivet archive written by ArchiveWriter (which describes the format)
+// A seek goes to the index entry before the sample wanted and then skips whole blocks
+// using their lengths so only the block holding the sample is decoded
+// If the index was never written , because the recording was cut off , it is rebuilt from the blocks
+public class ArchiveReader implements RecordingSource {
+
+	private final RandomAccessFile file;
+	private final WaveData waveData=new WaveData();
+	private int sampleRate;
+	private long totalSamples;
+	private long recordingStart;
+	private long indexSamples[];
+	private long indexOffsets[];
+	private int indexCount=0;
+	private long position=0;
+	// Reading stops at this sample
+	private long endFrame;
+	// The block which was last decoded and where the one after it starts
+	private int block[];
+	private long blockStart=-1;
+	private int blockLength=0;
+	private long nextOffset=0;
+	private byte data[]=new byte[0];
+	private final int coefficients[]=new int[ArchiveWriter.MAX_ORDER];
+	// Reads the Rice coded part of a block
+	private int bitPosition;
+	private int bitEnd;
+	private long accumulator;
+	private int accumulatorBits;
+
+	public ArchiveReader (File archiveFile) throws IOException	{
+		file=new RandomAccessFile(archiveFile,"r");
+		try	{
+			readHeader();
+		}
+		catch (IOException e)	{
+			file.close();
+			throw e;
+		}
+	}
+
+	// Open a recording as an archive if it is one and as a WAV file if it isn't
+	public static RecordingSource open (File recording) throws IOException	{
+		if (isArchive(recording)==true) return new ArchiveReader(recording);
+		return new WavFileReader(recording);
+	}
+
+	// Returns true if a file starts like an archive
+	public static boolean isArchive (File recording) throws IOException	{
+		RandomAccessFile in=new RandomAccessFile(recording,"r");
+		try	{
+			if (in.length()<4) return false;
+			byte magic[]=new byte[4];
+			in.readFully(magic);
+			return (ByteBuffer.wrap(magic).order(ByteOrder.LITTLE_ENDIAN).getInt()==ArchiveWriter.MAGIC);
+		}
+		finally	{
+			in.close();
+		}
+	}
+
+	private void readHeader() throws IOException	{
+		ByteBuffer header=readBytes(0,ArchiveWriter.HEADER_SIZE);
+		if (header.getInt(0)!=ArchiveWriter.MAGIC) throw new IOException("Not a Rivet archive");
+		if (header.getShort(4)!=ArchiveWriter.VERSION) throw new IOException("Unsupported Rivet archive version "+Integer.toString(header.getShort(4)));
+		if (header.getShort(6)!=1) throw new IOException("Only mono Rivet archives are supported");
+		sampleRate=header.getInt(8);
+		int blockSize=header.getInt(12);
+		if ((sampleRate<=0)||(blockSize<=ArchiveWriter.MAX_ORDER)||(blockSize>Short.MAX_VALUE)) throw new IOException("Bad Rivet archive header");
+		block=new int[blockSize];
+		totalSamples=header.getLong(16);
+		recordingStart=header.getLong(24);
+		long indexOffset=header.getLong(32);
+		if (indexOffset>0) readIndex(indexOffset);
+		else rebuildIndex();
+		endFrame=totalSamples;
+		// The decoders are given 16 bit mono
+		waveData.setSampleRate(sampleRate);
+		waveData.setChannels(1);
+		waveData.setSampleSizeInBits(16);
+		waveData.setBytesPerFrame(2);
+		waveData.setEndian(false);
+		waveData.setFromFile(true);
+	}
+
+	private void readIndex (long indexOffset) throws IOException	{
+		indexCount=readBytes(indexOffset,4).getInt(0);
+		if ((indexCount<0)||(indexOffset+4+(indexCount*16L)>file.length())) throw new IOException("Bad Rivet archive index");
+		ByteBuffer index=readBytes(indexOffset+4,indexCount*16);
+		indexSamples=new long[indexCount];
+		indexOffsets=new long[indexCount];
+		int a;
+		for (a=0;a<indexCount;a++)	{
+			indexSamples[a]=index.getLong(a*16);
+			indexOffsets[a]=index.getLong((a*16)+8);
+		}
+	}
+
+	// Walk through the blocks to find where each one starts and how many samples there are
+	// A block cut off by the end of the file is left out
+	private void rebuildIndex() throws IOException	{
+		indexSamples=new long[64];
+		indexOffsets=new long[64];
+		indexCount=0;
+		long offset=ArchiveWriter.HEADER_SIZE,samples=0,length=file.length();
+		while (offset+8<=length)	{
+			ByteBuffer header=readBytes(offset,6);
+			int blockBytes=header.getInt(0);
+			int count=header.getShort(4);
+			if ((blockBytes<4)||(count<=0)||(offset+4+blockBytes>length)) break;
+			if (indexCount==indexSamples.length)	{
+				indexSamples=Arrays.copyOf(indexSamples,indexCount*2);
+				indexOffsets=Arrays.copyOf(indexOffsets,indexCount*2);
+			}
+			indexSamples[indexCount]=samples;
+			indexOffsets[indexCount]=offset;
+			indexCount++;
+			samples=samples+count;
+			offset=offset+4+blockBytes;
+		}
+		totalSamples=samples;
+	}
+
+	private ByteBuffer readBytes (long offset,int length) throws IOException	{
+		byte bytes[]=new byte[length];
+		file.seek(offset);
+		file.readFully(bytes);
+		return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	public int read (int samples[],int off,int len) throws IOException	{
+		if (position>=endFrame) return -1;
+		len=(int)Math.min(len,endFrame-position);
+		int done=0;
+		while (done<len)	{
+			if ((blockStart<0)||(position<blockStart)||(position>=blockStart+blockLength)) findBlock(position);
+			int from=(int)(position-blockStart);
+			int count=Math.min(len-done,blockLength-from);
+			System.arraycopy(block,from,samples,off+done,count);
+			done=done+count;
+			position=position+count;
+		}
+		return done;
+	}
+
+	// Decode the block holding a sample
+	private void findBlock (long frame) throws IOException	{
+		long offset,start;
+		// Carry straight on from the last block if we can
+		if ((blockStart>=0)&&(frame==blockStart+blockLength))	{
+			offset=nextOffset;
+			start=frame;
+		}
+		else	{
+			// The last index entry at or before the sample
+			int low=0,high=indexCount-1;
+			while (low<high)	{
+				int middle=(low+high+1)/2;
+				if (indexSamples[middle]<=frame) low=middle;
+				else high=middle-1;
+			}
+			if (indexCount==0) throw new IOException("Rivet archive has no index");
+			offset=indexOffsets[low];
+			start=indexSamples[low];
+		}
+		// Skip whole blocks using their lengths
+		while (true)	{
+			ByteBuffer header=readBytes(offset,6);
+			int blockBytes=header.getInt(0);
+			int count=header.getShort(4);
+			if ((blockBytes<4)||(count<=0)||(count>block.length)) throw new IOException("Corrupt Rivet archive block at "+Long.toString(offset));
+			if (frame<start+count)	{
+				decodeBlock(offset,blockBytes);
+				blockStart=start;
+				nextOffset=offset+4+blockBytes;
+				return;
+			}
+			offset=offset+4+blockBytes;
+			start=start+count;
+		}
+	}
+
+	// Decode the block which starts at offset into block[]
+	private void decodeBlock (long offset,int blockBytes) throws IOException	{
+		if (data.length<blockBytes) data=new byte[blockBytes];
+		file.seek(offset+4);
+		file.readFully(data,0,blockBytes);
+		ByteBuffer in=ByteBuffer.wrap(data,0,blockBytes).order(ByteOrder.LITTLE_ENDIAN);
+		int count=in.getShort();
+		int order=in.get();
+		int shift=in.get();
+		if ((order<0)||(order>ArchiveWriter.MAX_ORDER)||(order>count)||(shift<0)||(shift>15)) throw new IOException("Corrupt Rivet archive block at "+Long.toString(offset));
+		int a;
+		for (a=0;a<order;a++) coefficients[a]=in.getShort();
+		for (a=0;a<order;a++) block[a]=in.getShort();
+		// Rebuild each sample from the prediction and the error
+		bitPosition=in.position();
+		bitEnd=blockBytes;
+		accumulator=0;
+		accumulatorBits=0;
+		int i=order;
+		while (i<count)	{
+			int end=Math.min(count,i+ArchiveWriter.PARTITION_SIZE);
+			int k=(int)readBits(5);
+			for (;i<end;i++)	{
+				long u=(readUnary()<<k);
+				if (k>0) u=u|readBits(k);
+				int error=(int)((u>>>1)^-(u&1));
+				long sum=0;
+				int j;
+				for (j=0;j<order;j++) sum=sum+((long)coefficients[j]*block[i-1-j]);
+				block[i]=error+(int)(sum>>shift);
+			}
+		}
+		blockLength=count;
+	}
+
+	// Keep at least 57 bits in the accumulator while there are bytes left
+	private void fill()	{
+		while ((accumulatorBits<=56)&&(bitPosition<bitEnd))	{
+			accumulator=(accumulator<<8)|(data[bitPosition]&0xFF);
+			bitPosition++;
+			accumulatorBits=accumulatorBits+8;
+		}
+	}
+
+	private long readBits (int count) throws IOException	{
+		if (accumulatorBits<count) fill();
+		if (accumulatorBits<count) throw new IOException("Rivet archive block ends early");
+		accumulatorBits=accumulatorBits-count;
+		return (accumulator>>>accumulatorBits)&((1L<<count)-1);
+	}
+
+	// Count the zeros before the next one
+	private long readUnary() throws IOException	{
+		long zeros=0;
+		while (true)	{
+			if (accumulatorBits==0) fill();
+			if (accumulatorBits==0) throw new IOException("Rivet archive block ends early");
+			long bits=accumulator<<(64-accumulatorBits);
+			if (bits==0)	{
+				zeros=zeros+accumulatorBits;
+				accumulatorBits=0;
+				continue;
+			}
+			int leading=Long.numberOfLeadingZeros(bits);
+			zeros=zeros+leading;
+			accumulatorBits=accumulatorBits-leading-1;
+			return zeros;
+		}
+	}
+
+	// Move straight to a sample
+	public void seek (long frame)	{
+		position=Math.max(0,Math.min(frame,totalSamples));
+	}
+
+	// Only read the samples from start up to (but not including) end
+	public void setRange (long start,long end)	{
+		endFrame=Math.max(0,Math.min(end,totalSamples));
+		seek(start);
+	}
+
+	public long getEndFrame()	{
+		return endFrame;
+	}
+
+	public long findFrame (String framePosition)	{
+		return WavFileReader.findFrame(framePosition,sampleRate);
+	}
+
+	public long getRecordingStart()	{
+		return recordingStart;
+	}
+
+	public WaveData getWaveData()	{
+		return waveData;
+	}
+
+	public long getSamplesRead()	{
+		return position;
+	}
+
+	public long getTotalSamples()	{
+		return totalSamples;
+	}
+
+	// The size of the archive in bytes
+	public long getFileSize() throws IOException	{
+		return file.length();
+	}
+
+	public void close() throws IOException	{
+		file.close();
+	}
+
+}
@@ -0,0 +1,470 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// Rivet Copyright (C) 2011 Ian Wraith
+// This program comes with ABSOLUTELY NO WARRANTY
+
+package org.e2k;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+// Writes a Rivet archive , a lossless compressed recording of 16 bit mono audio
+// The audio is cut into blocks which are each coded on their own so any block can be decoded without the ones before it
+// Each block is predicted from its previous few samples with a linear predictor worked out for that block
+// and the prediction errors , which for radio audio are far smaller than the samples , are Rice coded
+// An index of where every so many blocks start is written at the end so a reader can seek straight to them
+//
+// The file starts with a 64 byte little endian header
+//  0 "RVA1"
+//  4 the version (short) and the number of channels which is always 1 (short)
+//  8 the sample rate (int)
+// 12 the samples in a block (int)
+// 16 the total number of samples (long)
+// 24 when the recording started in milliseconds since 1970 or -1 (long)
+// 32 where the index starts or 0 if it was never written (long)
+// 40 the number of blocks between index entries (int)
+// Every block is its length in bytes not counting the length itself (int) , its number of samples (short) ,
+// the predictor order (byte) and shift (byte) , the predictor coefficients (shorts) , the first order samples (shorts)
+// and then the Rice coded errors for the rest of the samples in partitions which each start with a 5 bit Rice parameter
+// The index is its number of entries (int) followed by the first sample and file offset of each entry (longs)
+//
+// java -cp rivet.jar org.e2k.ArchiveWriter [-index <s>] [-o <dir>] file.wav ...
+// java -cp rivet.jar org.e2k.ArchiveWriter -x [-o <dir>] file.rva ...
+public class ArchiveWriter {
+
+	public static final int MAGIC=0x31415652;
+	public static final int VERSION=1;
+	public static final int HEADER_SIZE=64;
+	public static final int MAX_ORDER=8;
+	public static final int PARTITION_SIZE=256;
+	public static final int DEFAULT_BLOCK_SIZE=4096;
+	// The predictor orders which are tried on each block
+	private static final int ORDERS[]={2,4,8};
+	// Quantized coefficients have this many bits including the sign
+	private static final int COEFFICIENT_BITS=12;
+	private final RandomAccessFile file;
+	private final int sampleRate;
+	private final long recordingStart;
+	private final int indexInterval;
+	private final int block[];
+	private int blockFill=0;
+	private long samplesWritten=0;
+	private long blockCount=0;
+	private long filePosition=HEADER_SIZE;
+	private long indexSamples[]=new long[64];
+	private long indexOffsets[]=new long[64];
+	private int indexCount=0;
+	// Work space for coding a block
+	private final int residual[];
+	private final int bestResidual[];
+	private final int coefficients[]=new int[MAX_ORDER];
+	private final int bestCoefficients[]=new int[MAX_ORDER];
+	private final double window[];
+	private final BitWriter bits;
+
+	// Packs bits most significant first into a byte array which grows as needed
+	private static class BitWriter	{
+		private byte data[];
+		private int length=0;
+		private long accumulator=0;
+		private int accumulatorBits=0;
+
+		private BitWriter (int size)	{
+			data=new byte[size];
+		}
+
+		private void reset()	{
+			length=0;
+			accumulator=0;
+			accumulatorBits=0;
+		}
+
+		// Write the low count bits of value (count can be up to 32)
+		private void writeBits (long value,int count)	{
+			accumulator=(accumulator<<count)|(value&((1L<<count)-1));
+			accumulatorBits=accumulatorBits+count;
+			while (accumulatorBits>=8)	{
+				if (length==data.length) data=Arrays.copyOf(data,data.length*2);
+				data[length]=(byte)(accumulator>>>(accumulatorBits-8));
+				length++;
+				accumulatorBits=accumulatorBits-8;
+			}
+		}
+
+		// A run of zeros ended by a one
+		private void writeUnary (long zeros)	{
+			while (zeros>=32)	{
+				writeBits(0,32);
+				zeros=zeros-32;
+			}
+			writeBits(1,(int)zeros+1);
+		}
+
+		// Pad the last byte out with zeros
+		private void flush()	{
+			if (accumulatorBits>0) writeBits(0,8-accumulatorBits);
+		}
+	}
+
+	// The index gets an entry every indexSeconds
+	public ArchiveWriter (File archiveFile,int tsampleRate,long trecordingStart,double indexSeconds) throws IOException	{
+		this(archiveFile,tsampleRate,trecordingStart,indexSeconds,DEFAULT_BLOCK_SIZE);
+	}
+
+	public ArchiveWriter (File archiveFile,int tsampleRate,long trecordingStart,double indexSeconds,int blockSize) throws IOException	{
+		if ((blockSize<=MAX_ORDER)||(blockSize>Short.MAX_VALUE)) throw new IllegalArgumentException("Bad archive block size");
+		sampleRate=tsampleRate;
+		recordingStart=trecordingStart;
+		indexInterval=Math.max(1,(int)((indexSeconds*sampleRate)/blockSize));
+		block=new int[blockSize];
+		residual=new int[blockSize];
+		bestResidual=new int[blockSize];
+		bits=new BitWriter(blockSize*2);
+		window=new double[blockSize];
+		file=new RandomAccessFile(archiveFile,"rw");
+		file.setLength(0);
+		writeHeader(0);
+	}
+
+	private void writeHeader (long indexOffset) throws IOException	{
+		ByteBuffer header=ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC);
+		header.putShort((short)VERSION);
+		header.putShort((short)1);
+		header.putInt(sampleRate);
+		header.putInt(block.length);
+		header.putLong(samplesWritten);
+		header.putLong(recordingStart);
+		header.putLong(indexOffset);
+		header.putInt(indexInterval);
+		file.seek(0);
+		file.write(header.array());
+	}
+
+	// Add samples to the archive , anything outside the 16 bit range is clipped
+	public void write (int samples[],int off,int len) throws IOException	{
+		int a;
+		for (a=0;a<len;a++)	{
+			int s=samples[off+a];
+			if (s>Short.MAX_VALUE) s=Short.MAX_VALUE;
+			else if (s<Short.MIN_VALUE) s=Short.MIN_VALUE;
+			block[blockFill]=s;
+			blockFill++;
+			if (blockFill==block.length) writeBlock();
+		}
+	}
+
+	// Code the samples waiting in the block and add them to the file
+	private void writeBlock() throws IOException	{
+		int count=blockFill;
+		if (count==0) return;
+		if ((blockCount%indexInterval)==0) addIndexEntry(samplesWritten,filePosition);
+		// Start off with no prediction at all and then see if a predictor does better
+		int order=0,shift=0;
+		System.arraycopy(block,0,bestResidual,0,count);
+		long bestBits=riceBits(bestResidual,0,count);
+		double lpc[][]=findPredictors(count);
+		for (int tryOrder : ORDERS)	{
+			if ((tryOrder>=count)||(lpc[tryOrder]==null)) continue;
+			int tryShift=quantize(lpc[tryOrder],tryOrder,coefficients);
+			if (tryShift<0) continue;
+			predict(block,count,coefficients,tryOrder,tryShift,residual);
+			long tryBits=riceBits(residual,tryOrder,count)+(tryOrder*32L);
+			if (tryBits<bestBits)	{
+				bestBits=tryBits;
+				order=tryOrder;
+				shift=tryShift;
+				System.arraycopy(coefficients,0,bestCoefficients,0,order);
+				System.arraycopy(residual,0,bestResidual,0,count);
+			}
+		}
+		// Rice code the errors
+		bits.reset();
+		int start=order;
+		while (start<count)	{
+			int end=Math.min(count,start+PARTITION_SIZE);
+			int k=bestParameter(bestResidual,start,end);
+			bits.writeBits(k,5);
+			int a;
+			for (a=start;a<end;a++)	{
+				long u=zigZag(bestResidual[a]);
+				bits.writeUnary(u>>>k);
+				if (k>0) bits.writeBits(u,k);
+			}
+			start=end;
+		}
+		bits.flush();
+		// Put the block together and write it in one go
+		int length=4+(order*4)+bits.length;
+		ByteBuffer out=ByteBuffer.allocate(4+length).order(ByteOrder.LITTLE_ENDIAN);
+		out.putInt(length);
+		out.putShort((short)count);
+		out.put((byte)order);
+		out.put((byte)shift);
+		int a;
+		for (a=0;a<order;a++) out.putShort((short)bestCoefficients[a]);
+		for (a=0;a<order;a++) out.putShort((short)block[a]);
+		out.put(bits.data,0,bits.length);
+		file.seek(filePosition);
+		file.write(out.array());
+		filePosition=filePosition+out.capacity();
+		samplesWritten=samplesWritten+count;
+		blockCount++;
+		blockFill=0;
+	}
+
+	private void addIndexEntry (long sample,long offset)	{
+		if (indexCount==indexSamples.length)	{
+			indexSamples=Arrays.copyOf(indexSamples,indexCount*2);
+			indexOffsets=Arrays.copyOf(indexOffsets,indexCount*2);
+		}
+		indexSamples[indexCount]=sample;
+		indexOffsets[indexCount]=offset;
+		indexCount++;
+	}
+
+	// Work out the best linear predictor of each order up to MAX_ORDER with the Levinson-Durbin recursion
+	// lpc[p] holds the p coefficients of the order p predictor or is null if there isn't one
+	private double[][] findPredictors (int count)	{
+		double lpc[][]=new double[MAX_ORDER+1][];
+		if (count<=MAX_ORDER) return lpc;
+		int a,lag;
+		// Autocorrelation of the block with a Hann window
+		for (a=0;a<count;a++)	{
+			window[a]=block[a]*(0.5-(0.5*Math.cos((2.0*Math.PI*a)/(count-1))));
+		}
+		double autoc[]=new double[MAX_ORDER+1];
+		for (lag=0;lag<=MAX_ORDER;lag++)	{
+			double sum=0.0;
+			for (a=lag;a<count;a++) sum=sum+(window[a]*window[a-lag]);
+			autoc[lag]=sum;
+		}
+		if (autoc[0]<=0.0) return lpc;
+		double error=autoc[0];
+		double current[]=new double[MAX_ORDER];
+		int p;
+		for (p=0;p<MAX_ORDER;p++)	{
+			double r=-autoc[p+1];
+			for (a=0;a<p;a++) r=r-(current[a]*autoc[p-a]);
+			r=r/error;
+			double next[]=new double[MAX_ORDER];
+			next[p]=r;
+			for (a=0;a<p;a++) next[a]=current[a]+(r*current[p-1-a]);
+			current=next;
+			error=error*(1.0-(r*r));
+			// The prediction is of -sum(a[j]*x[i-1-j]) so the signs are turned round here
+			double coefficients[]=new double[p+1];
+			for (a=0;a<=p;a++) coefficients[a]=-current[a];
+			lpc[p+1]=coefficients;
+			if (error<=0.0) break;
+		}
+		return lpc;
+	}
+
+	// Turn predictor coefficients into integers with a shift and return the shift or -1 if they can't be
+	private static int quantize (double lpc[],int order,int out[])	{
+		double max=0.0;
+		int a;
+		for (a=0;a<order;a++) max=Math.max(max,Math.abs(lpc[a]));
+		if ((max==0.0)||(Double.isNaN(max))||(Double.isInfinite(max))) return -1;
+		int limit=(1<<(COEFFICIENT_BITS-1))-1;
+		int shift=(int)Math.floor(Math.log(limit/max)/Math.log(2.0));
+		if (shift<0) return -1;
+		if (shift>15) shift=15;
+		for (a=0;a<order;a++)	{
+			int q=(int)Math.round(lpc[a]*(1<<shift));
+			out[a]=Math.max(-limit,Math.min(limit,q));
+		}
+		return shift;
+	}
+
+	// Work out the prediction errors for the samples after the first order
+	// ArchiveReader does the reverse of this so the two must always match
+	public static void predict (int samples[],int count,int coefficients[],int order,int shift,int out[])	{
+		int i,j;
+		for (i=0;i<order;i++) out[i]=samples[i];
+		for (i=order;i<count;i++)	{
+			long sum=0;
+			for (j=0;j<order;j++) sum=sum+((long)coefficients[j]*samples[i-1-j]);
+			out[i]=samples[i]-(int)(sum>>shift);
+		}
+	}
+
+	// Fold signed errors into unsigned ones as 0 , -1 , 1 , -2 , 2 ...
+	private static long zigZag (int value)	{
+		return ((long)value<<1)^((long)value>>63);
+	}
+
+	// The Rice parameter which codes these errors in the fewest bits
+	private static int bestParameter (int values[],int start,int end)	{
+		int count=end-start;
+		long sum=0;
+		int a;
+		for (a=start;a<end;a++) sum=sum+zigZag(values[a]);
+		// Start from the parameter the mean suggests and look either side of it
+		int guess=0;
+		long mean=sum/Math.max(1,count);
+		while ((guess<30)&&((1L<<(guess+1))<=mean)) guess++;
+		int best=guess;
+		long bestBits=Long.MAX_VALUE;
+		int k;
+		for (k=Math.max(0,guess-1);k<=Math.min(30,guess+1);k++)	{
+			long total=(long)count*(k+1);
+			for (a=start;a<end;a++) total=total+(zigZag(values[a])>>>k);
+			if (total<bestBits)	{
+				bestBits=total;
+				best=k;
+			}
+		}
+		return best;
+	}
+
+	// The number of bits the Rice coded errors after the first order samples would take
+	private static long riceBits (int values[],int order,int count)	{
+		long total=order*16L;
+		int start=order;
+		while (start<count)	{
+			int end=Math.min(count,start+PARTITION_SIZE);
+			int k=bestParameter(values,start,end);
+			total=total+5+((long)(end-start)*(k+1));
+			int a;
+			for (a=start;a<end;a++) total=total+(zigZag(values[a])>>>k);
+			start=end;
+		}
+		return total;
+	}
+
+	public long getSamplesWritten()	{
+		return samplesWritten+blockFill;
+	}
+
+	// The size of the file so far in bytes
+	public long getBytesWritten()	{
+		return filePosition;
+	}
+
+	// Write out the last part block , the index and the header
+	public void close() throws IOException	{
+		try	{
+			writeBlock();
+			ByteBuffer index=ByteBuffer.allocate(4+(indexCount*16)).order(ByteOrder.LITTLE_ENDIAN);
+			index.putInt(indexCount);
+			int a;
+			for (a=0;a<indexCount;a++)	{
+				index.putLong(indexSamples[a]);
+				index.putLong(indexOffsets[a]);
+			}
+			long indexOffset=filePosition;
+			file.seek(indexOffset);
+			file.write(index.array());
+			filePosition=filePosition+index.capacity();
+			writeHeader(indexOffset);
+		}
+		finally	{
+			file.close();
+		}
+	}
+
+	public static void main(String[] args)	{
+		boolean expand=false;
+		double indexSeconds=10.0;
+		File outputDirectory=null;
+		int a,failures=0,files=0;
+		for (a=0;a<args.length;a++)	{
+			if (args[a].equals("-x")) expand=true;
+			else if ((args[a].equals("-index"))&&(a+1<args.length)) indexSeconds=Double.parseDouble(args[++a]);
+			else if ((args[a].equals("-o"))&&(a+1<args.length)) outputDirectory=new File(args[++a]);
+			else	{
+				files++;
+				File input=new File(args[a]);
+				try	{
+					if (expand==true) expand(input,outputDirectory);
+					else compress(input,outputDirectory,indexSeconds);
+				}
+				catch (Exception e)	{
+					System.err.println("Unable to convert "+input.getPath()+" : "+e.toString());
+					failures++;
+				}
+			}
+		}
+		if (files==0)	{
+			System.err.println("Usage : ArchiveWriter [-index <s>] [-o <dir>] file.wav ...");
+			System.err.println("        ArchiveWriter -x [-o <dir>] file.rva ...");
+			System.err.println("  Compresses WAV files into Rivet archives (.rva) or with -x expands archives back into WAV files");
+			System.err.println("  Audio is stored as the 16 bit mono the decoders are given so a multichannel file is mixed down");
+			System.err.println("  -index <s>  seconds between seek index entries (default 10)");
+			System.err.println("  -o <dir>    write the files to this directory rather than next to the originals");
+			System.exit(2);
+		}
+		if (failures>0) System.exit(1);
+	}
+
+	// Give a file the same name with another extension
+	private static File renamed (File input,File outputDirectory,String extension)	{
+		String name=input.getName();
+		int dot=name.lastIndexOf('.');
+		if (dot>0) name=name.substring(0,dot);
+		File directory=outputDirectory;
+		if (directory==null) directory=input.getAbsoluteFile().getParentFile();
+		return new File(directory,name+extension);
+	}
+
+	// Compress a WAV file into an archive keeping when it was recorded
+	public static void compress (File input,File outputDirectory,double indexSeconds) throws IOException	{
+		long startTime=System.nanoTime();
+		File output=renamed(input,outputDirectory,".rva");
+		WavFileReader reader=new WavFileReader(input);
+		try	{
+			ArchiveWriter writer=new ArchiveWriter(output,(int)Math.round(reader.getWaveData().getSampleRate()),SampleClock.findRecordingStart(reader,input.getName()),indexSeconds);
+			try	{
+				int samples[]=new int[DEFAULT_BLOCK_SIZE];
+				int count;
+				while ((count=reader.read(samples,0,samples.length))>0) writer.write(samples,0,count);
+			}
+			finally	{
+				writer.close();
+			}
+			double seconds=(System.nanoTime()-startTime)/1.0e9;
+			System.err.println(input.getPath()+" -> "+output.getPath()+" : "+String.format("%.2f",(reader.getDataSize()/(double)Math.max(1,writer.getBytesWritten())))+"x smaller in "+String.format("%.2f",seconds)+" s");
+		}
+		finally	{
+			reader.close();
+		}
+	}
+
+	// Expand an archive back into a 16 bit mono WAV file
+	public static void expand (File input,File outputDirectory) throws IOException	{
+		long startTime=System.nanoTime();
+		File output=renamed(input,outputDirectory,".wav");
+		ArchiveReader reader=new ArchiveReader(input);
+		try	{
+			WavFileWriter writer=new WavFileWriter(output,(int)Math.round(reader.getWaveData().getSampleRate()));
+			try	{
+				int samples[]=new int[DEFAULT_BLOCK_SIZE];
+				int count;
+				while ((count=reader.read(samples,0,samples.length))>0) writer.write(samples,0,count);
+			}
+			finally	{
+				writer.close();
+			}
+			double seconds=(System.nanoTime()-startTime)/1.0e9;
+			System.err.println(input.getPath()+" -> "+output.getPath()+" : "+Long.toString(reader.getSamplesRead())+" samples in "+String.format("%.2f",seconds)+" s");
+		}
+		finally	{
+			reader.close();
+		}
+	}
+
+}
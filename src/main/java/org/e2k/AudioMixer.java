@@ -36,6 +36,8 @@ class AudioMixer{
 	public TargetDataLine line;
 	public Line.Info lineInfo;
 	public AudioFormat format=null;
+	// The size of the line buffer in bytes or 0 to let the mixer choose
+	private int bufferBytes=0;
 	private String errorMsg;
 	private boolean debugAudio=false;
 	
@@ -133,7 +135,8 @@ class AudioMixer{
 	 */
 	public boolean openLine(){
 		try {
-			this.line.open(getFormat());
+			if (bufferBytes>0) this.line.open(getFormat(),bufferBytes);
+			else this.line.open(getFormat());
 			return true;
 		} catch (LineUnavailableException e) {
 			// Record the error
@@ -143,6 +146,14 @@ class AudioMixer{
 		}
 	}
 	
+	/**
+	 * Set the size of the line buffer used the next time the line is opened
+	 * @param bytes the buffer size in bytes or 0 for the mixer default
+	 */
+	public void setBufferSize (int bytes)	{
+		this.bufferBytes=bytes;
+	}
+	
 	/**
 	 * Change the mixer and restart the TargetDataLine
 	 * @param mixerName
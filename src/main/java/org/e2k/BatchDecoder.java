@@ -0,0 +1,632 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// Rivet Copyright (C) 2011 Ian Wraith
+// This program comes with ABSOLUTELY NO WARRANTY
+
+package org.e2k;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+// Decodes WAV files , Rivet archives or raw PCM streams from the command line without a display
+// java -cp rivet.jar org.e2k.BatchDecoder -mode <mode> [options] file.wav|file.rva|directory ...
+// java -cp rivet.jar org.e2k.BatchDecoder -mode <mode> -raw s16le -rate 8000 [options] -|pipe|tcp:port|udp:port ...
+// Files are decoded in parallel with each one getting its own Rivet session (decoders, circular buffer and output)
+public class BatchDecoder {
+
+	private String modeName=null;
+	private boolean invertSignal=false;
+	private boolean debug=false;
+	private boolean logInUTC=false;
+	private double rttyBaudRate=0;
+	private int rttyShift=0;
+	private double rttyStopBits=0;
+	private int crowd36SyncHighTone=-1;
+	private File outputDirectory=null;
+	// The format of raw PCM input or null for WAV files
+	private String rawFormat=null;
+	private int rawSampleRate=8000;
+	private int rawChannels=1;
+	private boolean udpSequenced=false;
+	// Decode each channel of a multichannel WAV file separately rather than mixing them down
+	private boolean splitChannels=false;
+	// Centre frequencies of narrow channels to pull out of a wideband input or null to decode it as it is
+	private double ddcFrequencies[]=null;
+	private double ddcBandwidth=3000.0;
+	private double ddcOffset=2000.0;
+	// Only decode part of a WAV file
+	private String startPosition=null;
+	private String endPosition=null;
+	// Skip stretches which only hold band noise
+	private boolean skipIdle=false;
+	private double idleFlatness=0.5;
+	private double idleEnergyDB=6.0;
+	// Find where there is something on each WAV file first and then only decode there
+	private boolean twoPass=false;
+	// How many windows of a file are decoded at once in a two pass decode
+	private int windowThreads=1;
+	// Save the audio around each transmission found to this directory or null not to
+	private File snippetDirectory=null;
+	private double snippetSeconds=10.0;
+	// Archive the input while there is activity on it to WAV segments in this directory or null not to
+	private File archiveDirectory=null;
+	// How fast files are replayed as a multiple of real time (0 is as fast as possible)
+	private double replaySpeed=0.0;
+	// When the recording started in milliseconds since 1970 or -1 to find it from each file
+	private long recordingStart=-1;
+	// Where each file's decoding state is saved every so often so it can be resumed or null not to
+	private File checkpointDirectory=null;
+	private double checkpointSeconds=60.0;
+	private int threads=Runtime.getRuntime().availableProcessors();
+	// Put the name of the input on each line of output
+	private boolean tagStreams=false;
+	private List<File> files=new ArrayList<File>();
+	
+	// What happened when a file was decoded
+	private static class FileResult	{
+		private boolean decoded=false;
+		private long samples=0;
+		private double seconds=0.0;
+		private String text=null;
+	}
+
+	public static void main(String[] args) {
+		// Make sure nothing tries to open a window
+		System.setProperty("java.awt.headless","true");
+		BatchDecoder batch=new BatchDecoder();
+		if (batch.readArguments(args)==false)	{
+			usage();
+			System.exit(2);
+		}
+		System.exit(batch.run());
+	}
+
+	private static void usage()	{
+		System.err.println("Usage : BatchDecoder -mode <mode> [options] file.wav|file.rva|directory ...");
+		System.err.println("  Rivet archives (.rva) are made from WAV files with org.e2k.ArchiveWriter");
+		System.err.println("Options :");
+		System.err.println("  -mode <mode>      the mode name or number (see below)");
+		System.err.println("                    several modes separated by commas are decoded at the same time");
+		System.err.println("  -out <directory>  write each file's output to <directory>/<file>.txt instead of stdout");
+		System.err.println("  -threads <n>      the number of files to decode at once (default is one per core)");
+		System.err.println("  -split            decode each channel of a multichannel WAV file separately");
+		System.err.println("  -start <time>     start decoding a WAV file at [[hh:]mm:]ss[.sss] or at sample @n");
+		System.err.println("  -end <time>       stop decoding a WAV file at [[hh:]mm:]ss[.sss] or at sample @n");
+		System.err.println("  -ddc <Hz>,<Hz>..  pull narrow channels centred on these frequencies out of a wideband input");
+		System.err.println("                    and decode each one separately");
+		System.err.println("  -ddcwidth <Hz>    the bandwidth of each narrow channel (default 3000)");
+		System.err.println("  -ddcoffset <Hz>   the audio frequency each narrow channel is moved to (default 2000)");
+		System.err.println("  -skipidle         skip stretches of WAV files which only hold band noise");
+		System.err.println("  -idleflatness <n> spectral flatness (0 to 1) below which audio is active (default 0.5)");
+		System.err.println("  -idleenergy <dB>  how far above the noise floor audio has to be to be active (default 6)");
+		System.err.println("  -twopass          find the stretches of each WAV file with something on them with the idle");
+		System.err.println("                    detector first and then decode only those , several at once");
+		System.err.println("  -snippets <dir>   save the audio around each transmission found as WAV files in <dir>");
+		System.err.println("  -snippetpre <s>   seconds of audio before each transmission to save (default 10)");
+		System.err.println("  -archive <dir>    save the input to WAV files in <dir> but only while there is a signal");
+		System.err.println("                    or a carrier on it , with an .idx file listing when and what was heard");
+		System.err.println("  -speed <n>|max    replay files at n times real time (1 is real time) rather than");
+		System.err.println("                    as fast as possible");
+		System.err.println("  -checkpoint <dir> save the state of each WAV file's decoding to <dir> every so often");
+		System.err.println("                    and carry on from there if the file is decoded again");
+		System.err.println("  -checkpointevery <s> seconds of audio between checkpoints (default 60)");
+		System.err.println("  -starttime <time> when the recording started as yyyy-mm-dd hh:mm:ss (add Z for UTC)");
+		System.err.println("                    time stamps are worked out from this and the position in the file");
+		System.err.println("                    otherwise it is taken from the WAV file's bext chunk or its name");
+		System.err.println("  -invert           invert the signal");
+		System.err.println("  -utc              time stamps in UTC");
+		System.err.println("  -debug            decoder debug output");
+		System.err.println("  -rttybaud <baud>  Baudot and FSK (Raw) baud rate");
+		System.err.println("  -rttyshift <Hz>   Baudot and FSK (Raw) shift");
+		System.err.println("  -rttystop <bits>  Baudot stop bits");
+		System.err.println("  -c36tone <n>      CROWD36 high sync tone number");
+		System.err.println("  -raw <format>     the inputs are raw PCM (u8, s16le, s16be, s24le, s24be, s32le, s32be, f32le, f32be)");
+		System.err.println("                    read from files or named pipes or - for stdin");
+		System.err.println("                    or tcp:<port> and udp:<port> to listen for a remote receiver");
+		System.err.println("                    every network input is decoded at once , on a virtual thread each");
+		System.err.println("                    with Java 21 or later , with lines to stdout tagged with the input");
+		System.err.println("  -udpseq           UDP packets start with a 4 byte big endian sequence number");
+		System.err.println("  -rate <Hz>        the sample rate of raw PCM (default 8000)");
+		System.err.println("  -channels <n>     the number of channels in raw PCM (default 1)");
+		System.err.println("Modes :");
+		String names[]=Rivet.MODENAMES;
+		int a;
+		for (a=0;a<names.length;a++)	{
+			System.err.println("  "+Integer.toString(a)+" "+names[a]);
+		}
+	}
+
+	// Read the command line and return false if there is something wrong with it
+	private boolean readArguments (String args[])	{
+		int a=0;
+		try	{
+			while (a<args.length)	{
+				String arg=args[a];
+				if (arg.equals("-mode")) modeName=args[++a];
+				else if (arg.equals("-out")) outputDirectory=new File(args[++a]);
+				else if (arg.equals("-threads")) threads=Integer.parseInt(args[++a]);
+				else if (arg.equals("-split")) splitChannels=true;
+				else if (arg.equals("-start")) startPosition=args[++a];
+				else if (arg.equals("-end")) endPosition=args[++a];
+				else if (arg.equals("-ddc")) ddcFrequencies=parseFrequencies(args[++a]);
+				else if (arg.equals("-ddcwidth")) ddcBandwidth=Double.parseDouble(args[++a]);
+				else if (arg.equals("-ddcoffset")) ddcOffset=Double.parseDouble(args[++a]);
+				else if (arg.equals("-skipidle")) skipIdle=true;
+				else if (arg.equals("-twopass")) twoPass=true;
+				else if (arg.equals("-idleflatness")) idleFlatness=Double.parseDouble(args[++a]);
+				else if (arg.equals("-idleenergy")) idleEnergyDB=Double.parseDouble(args[++a]);
+				else if (arg.equals("-snippets")) snippetDirectory=new File(args[++a]);
+				else if (arg.equals("-snippetpre")) snippetSeconds=Double.parseDouble(args[++a]);
+				else if (arg.equals("-archive")) archiveDirectory=new File(args[++a]);
+				else if (arg.equals("-speed")) replaySpeed=parseSpeed(args[++a]);
+				else if (arg.equals("-checkpoint")) checkpointDirectory=new File(args[++a]);
+				else if (arg.equals("-checkpointevery")) checkpointSeconds=Double.parseDouble(args[++a]);
+				else if (arg.equals("-starttime")) recordingStart=SampleClock.parseTime(args[++a]);
+				else if (arg.equals("-invert")) invertSignal=true;
+				else if (arg.equals("-utc")) logInUTC=true;
+				else if (arg.equals("-debug")) debug=true;
+				else if (arg.equals("-rttybaud")) rttyBaudRate=Double.parseDouble(args[++a]);
+				else if (arg.equals("-rttyshift")) rttyShift=Integer.parseInt(args[++a]);
+				else if (arg.equals("-rttystop")) rttyStopBits=Double.parseDouble(args[++a]);
+				else if (arg.equals("-c36tone")) crowd36SyncHighTone=Integer.parseInt(args[++a]);
+				else if (arg.equals("-raw")) rawFormat=args[++a];
+				else if (arg.equals("-rate")) rawSampleRate=Integer.parseInt(args[++a]);
+				else if (arg.equals("-channels")) rawChannels=Integer.parseInt(args[++a]);
+				else if (arg.equals("-udpseq")) udpSequenced=true;
+				else if (arg.equals("-")) files.add(new File(arg));
+				else if (arg.startsWith("-"))	{
+					System.err.println("Unknown option "+arg);
+					return false;
+				}
+				else addFiles(new File(arg));
+				a++;
+			}
+		}
+		catch (ArrayIndexOutOfBoundsException e)	{
+			System.err.println("Option "+args[a-1]+" needs a value");
+			return false;
+		}
+		catch (NumberFormatException e)	{
+			System.err.println("Bad number "+args[a]);
+			return false;
+		}
+		if ((modeName==null)||(files.isEmpty())||(threads<1)) return false;
+		if ((rawFormat!=null)&&((RawPCMSource.parseFormat(rawFormat,rawChannels)==null)||(rawSampleRate<=0)))	{
+			System.err.println("Bad raw PCM format");
+			return false;
+		}
+		if ((ddcFrequencies!=null)&&(splitChannels==true))	{
+			System.err.println("-ddc and -split can't be used together");
+			return false;
+		}
+		if ((checkpointDirectory!=null)&&((rawFormat!=null)||(splitChannels==true)||(ddcFrequencies!=null)||(modeName.contains(","))||(checkpointSeconds<=0.0)))	{
+			System.err.println("-checkpoint only works decoding WAV files in one mode");
+			return false;
+		}
+		if ((twoPass==true)&&((rawFormat!=null)||(splitChannels==true)||(ddcFrequencies!=null)||(checkpointDirectory!=null)||(archiveDirectory!=null)||(replaySpeed>0.0)))	{
+			System.err.println("-twopass only works decoding WAV files as fast as possible without -split , -ddc , -checkpoint or -archive");
+			return false;
+		}
+		if ((archiveDirectory!=null)&&((splitChannels==true)||(ddcFrequencies!=null)||(modeName.contains(","))))	{
+			System.err.println("-archive only works decoding one channel in one mode");
+			return false;
+		}
+		return true;
+	}
+
+	// Read a replay speed which is max or a multiple of real time such as 1 , 2.5 or 10x
+	private static double parseSpeed (String speed)	{
+		if (speed.equalsIgnoreCase("max")) return 0.0;
+		if ((speed.endsWith("x"))||(speed.endsWith("X"))) speed=speed.substring(0,speed.length()-1);
+		double value=Double.parseDouble(speed);
+		if (value<=0.0) throw new NumberFormatException("Bad speed "+speed);
+		return value;
+	}
+
+	// Read a comma separated list of frequencies
+	private static double[] parseFrequencies (String list)	{
+		String parts[]=list.split(",");
+		double freqs[]=new double[parts.length];
+		int a;
+		for (a=0;a<parts.length;a++)	{
+			freqs[a]=Double.parseDouble(parts[a].trim());
+		}
+		return freqs;
+	}
+	
+	// Add a file or every WAV file under a directory
+	private void addFiles (File file)	{
+		if (file.isDirectory())	{
+			File list[]=file.listFiles();
+			if (list==null) return;
+			Arrays.sort(list);
+			for (File f : list)	{
+				if ((f.isDirectory())||(f.getName().toLowerCase().endsWith(".wav"))||(f.getName().toLowerCase().endsWith(".rva"))) addFiles(f);
+			}
+		}
+		else files.add(file);
+	}
+
+	// Decode every file and return the exit code
+	private int run()	{
+		String modes[]=modeName.split(",");
+		final int systems[]=new int[modes.length];
+		int a;
+		for (a=0;a<modes.length;a++)	{
+			systems[a]=findMode(Rivet.MODENAMES,modes[a].trim());
+			if (systems[a]<0)	{
+				System.err.println("Unknown or ambiguous mode "+modes[a]);
+				return 2;
+			}
+		}
+		if ((outputDirectory!=null)&&(!outputDirectory.isDirectory())&&(!outputDirectory.mkdirs()))	{
+			System.err.println("Unable to create the directory "+outputDirectory.getPath());
+			return 2;
+		}
+		if ((checkpointDirectory!=null)&&(!checkpointDirectory.isDirectory())&&(!checkpointDirectory.mkdirs()))	{
+			System.err.println("Unable to create the directory "+checkpointDirectory.getPath());
+			return 2;
+		}
+		int failures=0;
+		long totalSamples=0;
+		double totalSeconds=0.0;
+		// Network streams never end so every one of them needs to be running at once
+		// They are mostly waiting on the network so each gets a virtual thread where the JVM has them
+		int liveStreams=0;
+		for (File file : files)	{
+			if (isNetworkInput(file.getPath())) liveStreams++;
+		}
+		final int workers;
+		if (liveStreams>0) workers=Math.min(Math.max(threads,files.size()),DecodeService.MAX_PLATFORM_THREADS);
+		else workers=Math.min(threads,files.size());
+		// Any threads not needed for whole files go to the windows of a two pass decode
+		windowThreads=Math.max(1,threads/workers);
+		// Lines from several streams going to stdout are tagged with where they came from
+		tagStreams=((liveStreams>1)&&(outputDirectory==null));
+		DecodeService pool=new DecodeService(workers,liveStreams>0);
+		if (liveStreams>0)	{
+			System.err.println(pool.describe());
+			if ((pool.isVirtual()==false)&&(files.size()>pool.getThreadLimit())) System.err.println("Only "+Integer.toString(pool.getThreadLimit())+" of the "+Integer.toString(files.size())+" inputs can be decoded at once");
+		}
+		long startTime=System.nanoTime();
+		try	{
+			List<Future<FileResult>> results=new ArrayList<Future<FileResult>>();
+			for (final File file : files)	{
+				results.add(pool.submit(new Callable<FileResult>(){public FileResult call(){return decodeFile(file,systems,(workers>1)&&(rawFormat==null));}}));
+			}
+			// Collect the results in the order the files were given so the output is the same every run
+			for (Future<FileResult> future : results)	{
+				FileResult result=future.get();
+				if (result.text!=null) System.out.print(result.text);
+				if (result.decoded==false) failures++;
+				totalSamples=totalSamples+result.samples;
+				totalSeconds=totalSeconds+result.seconds;
+			}
+		}
+		catch (InterruptedException|ExecutionException e)	{
+			System.err.println("Batch decoding failed : "+e.toString());
+			return 1;
+		}
+		finally	{
+			pool.shutdownNow();
+		}
+		double elapsed=(System.nanoTime()-startTime)/1.0e9;
+		System.out.flush();
+		System.err.println(summary(files.size(),failures,totalSamples,totalSeconds,elapsed,workers));
+		if (failures>0) return 1;
+		return 0;
+	}
+	
+	// The throughput summary printed once all files are done
+	private static String summary (int fileCount,int failures,long samples,double audioSeconds,double elapsed,int workers)	{
+		if (elapsed<=0.0) elapsed=1.0e-9;
+		StringBuilder sb=new StringBuilder();
+		sb.append(Integer.toString(fileCount)+" files ("+Integer.toString(failures)+" failed) decoded in ");
+		sb.append(String.format("%.2f",elapsed)+" s using "+Integer.toString(workers)+" threads\n");
+		sb.append(String.format("%.2f",fileCount/elapsed)+" files/s , ");
+		sb.append(String.format("%.0f",samples/elapsed)+" samples/s , ");
+		sb.append(String.format("%.1f",audioSeconds/elapsed)+"x real time");
+		return sb.toString();
+	}
+
+	// Decode one file in its own Rivet session or with several modes one session per mode
+	// When several files are being decoded at once stdout output is held back until the file is done
+	private FileResult decodeFile (File file,int systems[],boolean holdOutput)	{
+		FileResult result=new FileResult();
+		PrintStream stream=null;
+		ByteArrayOutputStream heldText=null;
+		SampleSource reader=null;
+		try	{
+			String name=file.getName();
+			if (name.equals("-")) name="stdin";
+			if ((rawFormat!=null)&&(isNetworkInput(file.getPath()))) reader=openNetworkSource(file.getPath());
+			else if (rawFormat!=null) reader=RawPCMSource.open(file.getPath(),rawSampleRate,RawPCMSource.parseFormat(rawFormat,rawChannels));
+			else reader=ArchiveReader.open(file);
+			// Pick up from an earlier checkpoint if there is one
+			Checkpoint checkpoint=null;
+			if (checkpointDirectory!=null)	{
+				checkpoint=new Checkpoint(new File(checkpointDirectory,name+".checkpoint"),(RecordingSource)reader,checkpointSeconds);
+				if (checkpoint.load()==true) System.err.println("Resuming "+file.getPath()+" from sample "+Long.toString(checkpoint.getPosition()));
+			}
+			if (outputDirectory!=null)	{
+				File outputFile=new File(outputDirectory,name+".txt");
+				// When resuming anything written after the checkpoint was saved is written again so it is cut off
+				boolean append=((checkpoint!=null)&&(checkpoint.isLoaded()==true)&&(outputFile.exists()));
+				if (append==true)	{
+					RandomAccessFile cut=new RandomAccessFile(outputFile,"rw");
+					try	{
+						cut.setLength(Math.min(cut.length(),checkpoint.getOutputLength()));
+					}
+					finally	{
+						cut.close();
+					}
+				}
+				FileOutputStream outputStream=new FileOutputStream(outputFile,append);
+				stream=new PrintStream(outputStream,false,"UTF-8");
+				if (checkpoint!=null) checkpoint.setOutput(stream,outputStream);
+			}
+			else if (holdOutput==true)	{
+				heldText=new ByteArrayOutputStream();
+				stream=new PrintStream(heldText,false,"UTF-8");
+			}
+			else stream=System.out;
+			if (outputDirectory==null) stream.println("Decoding "+file.getPath());
+			// Each channel and mode gets its own session and the lines are tagged with the channel and mode name
+			int channels=1;
+			Channelizer channelizer=null;
+			if ((splitChannels==true)&&(reader instanceof WavFileReader)) channels=((WavFileReader)reader).getChannels();
+			else if (ddcFrequencies!=null)	{
+				channelizer=new Channelizer((int)reader.getWaveData().getSampleRate());
+				for (double freq : ddcFrequencies)	{
+					channelizer.addChannel(freq,ddcBandwidth,ddcOffset);
+				}
+				channels=channelizer.getChannelCount();
+				if (outputDirectory==null) stream.println("Channelizing "+Integer.toString(channels)+" channels at "+Integer.toString(channelizer.getOutputRate())+" Hz");
+			}
+			// Time stamps follow the recording so work out when it started
+			// Network input is live so its clock starts now
+			long recordingStarted=-1;
+			if (!isNetworkInput(file.getPath()))	{
+				recordingStarted=recordingStart;
+				if ((recordingStarted<0)&&(reader instanceof RecordingSource)) recordingStarted=SampleClock.findRecordingStart((RecordingSource)reader,name);
+				else if (recordingStarted<0) recordingStarted=SampleClock.parseFileName(name);
+			}
+			Rivet sessions[][]=new Rivet[channels][systems.length];
+			TextOutput outputs[]=new TextOutput[channels*systems.length];
+			int a,c;
+			for (c=0;c<channels;c++)	{
+				for (a=0;a<systems.length;a++)	{
+					TextOutput output=new TextOutput(stream,false);
+					sessions[c][a]=createSession(output,systems[a]);
+					sessions[c][a].setRecordingStart(recordingStarted);
+					String tag=null;
+					if (channelizer!=null) tag=ChannelDecoder.channelName(channelizer,c);
+					else if (channels>1) tag=ChannelDecoder.channelName(c,channels);
+					if (tagStreams==true)	{
+						if (tag==null) tag=name;
+						else tag=name+" "+tag;
+					}
+					if (systems.length>1)	{
+						if (tag==null) tag=Rivet.MODENAMES[systems[a]];
+						else tag=tag+" "+Rivet.MODENAMES[systems[a]];
+					}
+					output.setTag(tag);
+					outputs[(c*systems.length)+a]=output;
+				}
+			}
+			// Seek to the part of the file wanted
+			long firstFrame=0,primeLength=0;
+			if ((startPosition!=null)||(endPosition!=null))	{
+				if (!(reader instanceof RecordingSource)) throw new IOException("-start and -end only work with WAV files and archives");
+				RecordingSource wavReader=(RecordingSource)reader;
+				long start=0,end=wavReader.getTotalSamples();
+				if (startPosition!=null) start=wavReader.findFrame(startPosition);
+				if (endPosition!=null) end=Math.min(end,wavReader.findFrame(endPosition));
+				if (start>=end) throw new IOException("There is nothing to decode between "+Long.toString(start)+" and "+Long.toString(end));
+				// Start early enough to fill the decoders' history with what came before
+				double rate=reader.getWaveData().getSampleRate();
+				long history=0;
+				for (a=0;a<systems.length;a++)	{
+					if (channelizer==null) history=Math.max(history,sessions[0][a].getHistoryLength(rate));
+					else history=Math.max(history,(long)sessions[0][a].getHistoryLength(channelizer.getOutputRate())*(long)(rate/channelizer.getOutputRate()));
+				}
+				primeLength=Math.min(start,history);
+				firstFrame=start-primeLength;
+				wavReader.setRange(firstFrame,end);
+				if (outputDirectory==null) stream.println("Decoding samples "+Long.toString(start)+" to "+Long.toString(end));
+			}
+			// Replay at the speed asked for unless the input is already live
+			double speed=replaySpeed;
+			if (isNetworkInput(file.getPath())) speed=0.0;
+			ReplayPacer pacer=new ReplayPacer(reader.getWaveData().getSampleRate(),speed);
+			SampleSource input=pacer.pacedSource(reader);
+			if (twoPass==true) result.decoded=decodeTwoPass(file,(RecordingSource)reader,systems,stream,recordingStarted,firstFrame+primeLength);
+			else if (channelizer!=null)	{
+				ChannelDecoder channelDecoder=new ChannelDecoder(sessions);
+				channelDecoder.setPrimeLength((long)(primeLength*channelizer.getOutputRate()/reader.getWaveData().getSampleRate()));
+				result.decoded=(channelDecoder.decodeChannelized(input,channelizer)>0);
+			}
+			else if (channels>1)	{
+				ChannelDecoder channelDecoder=new ChannelDecoder(sessions);
+				channelDecoder.setPrimeLength(primeLength);
+				if (pacer.isMaxSpeed()==false) channelDecoder.setPacer(pacer);
+				result.decoded=(channelDecoder.decodeSource((WavFileReader)reader)>0);
+			}
+			else if (systems.length==1) result.decoded=sessions[0][0].decodeSource(input,primeLength,checkpoint);
+			else	{
+				MultiModeDecoder multiModeDecoder=new MultiModeDecoder(sessions[0]);
+				multiModeDecoder.setPrimeLength(primeLength);
+				// A remote receiver can't be held up by the slowest mode
+				multiModeDecoder.setLiveInput(isNetworkInput(file.getPath()));
+				result.decoded=(multiModeDecoder.decodeSource(input)>0);
+				for (a=0;a<systems.length;a++)	{
+					long dropped=multiModeDecoder.getDroppedSamples(a);
+					if (dropped>0) System.err.println(Rivet.MODENAMES[systems[a]]+" fell behind "+file.getPath()+" and lost "+Long.toString(dropped)+" samples");
+				}
+			}
+			if (pacer.getLateCount()>0) System.err.println("Replay of "+file.getPath()+" fell behind "+ReplayPacer.describe(speed)+" "+Long.toString(pacer.getLateCount())+" times");
+			for (TextOutput output : outputs)	{
+				output.flush();
+			}
+			// Only what was decoded this time counts towards the speed
+			if ((checkpoint!=null)&&(checkpoint.isLoaded()==true)) firstFrame=Math.max(firstFrame,checkpoint.getPosition());
+			result.samples=reader.getSamplesRead()-firstFrame;
+			WaveData waveData=reader.getWaveData();
+			if (waveData.getSampleRate()>0) result.seconds=(double)result.samples/(waveData.getSampleRate()*waveData.getChannels());
+			if (result.decoded==false) System.err.println("Unable to decode "+file.getPath());
+		}
+		catch (IOException e)	{
+			System.err.println("Error reading "+file.getPath()+" : "+e.getMessage());
+		}
+		catch (InterruptedException e)	{
+			System.err.println("Interrupted decoding "+file.getPath());
+		}
+		catch (IllegalArgumentException e)	{
+			System.err.println("Unable to decode "+file.getPath()+" : "+e.getMessage());
+		}
+		// A decoder going wrong on one input mustn't stop the others
+		catch (RuntimeException e)	{
+			System.err.println("Error decoding "+file.getPath()+" : "+e.toString());
+		}
+		finally	{
+			if (stream!=null)	{
+				if (stream!=System.out) stream.close();
+				else stream.flush();
+			}
+			try	{
+				if (reader!=null) reader.close();
+			}
+			catch (IOException e)	{}
+		}
+		if (heldText!=null)	{
+			try	{
+				result.text=heldText.toString("UTF-8");
+			}
+			catch (UnsupportedEncodingException e)	{}
+		}
+		return result;
+	}
+
+	// Decode the active windows of a WAV file or archive from start up to the end of the reader's range
+	// The reader itself is only moved to the end so the speed is worked out over the whole range
+	private boolean decodeTwoPass (File file,RecordingSource reader,int systems[],PrintStream stream,long recordingStarted,long start) throws IOException,InterruptedException	{
+		TwoPassDecoder twoPassDecoder=new TwoPassDecoder(new TwoPassDecoder.SessionFactory(){public Rivet createSession(TextOutput output,int system){return BatchDecoder.this.createSession(output,system);}},systems,windowThreads);
+		twoPassDecoder.setThresholds(idleFlatness,Math.pow(10.0,idleEnergyDB/10.0));
+		twoPassDecoder.setRecordingStart(recordingStarted);
+		long end=reader.getEndFrame();
+		boolean decoded=twoPassDecoder.decode(file,start,end,stream);
+		reader.seek(end);
+		double rate=reader.getWaveData().getSampleRate();
+		System.err.println(file.getPath()+" : "+Integer.toString(twoPassDecoder.getWindowCount())+" windows holding "+String.format("%.1f",twoPassDecoder.getWindowSamples()/rate)+" s of "+String.format("%.1f",(end-start)/rate)+" s decoded");
+		return decoded;
+	}
+
+	private static boolean isNetworkInput (String path)	{
+		return ((path.startsWith("tcp:"))||(path.startsWith("udp:")));
+	}
+	
+	// Listen on a port for a remote receiver
+	// A network source never ends so its counters are shown when the decoder is stopped
+	private SampleSource openNetworkSource (String path) throws IOException	{
+		int protocol=NetworkPCMSource.TCP;
+		if (path.startsWith("udp:")) protocol=NetworkPCMSource.UDP;
+		int port;
+		try	{
+			port=Integer.parseInt(path.substring(4));
+		}
+		catch (NumberFormatException e)	{
+			throw new IOException("Bad port number");
+		}
+		final NetworkPCMSource source=new NetworkPCMSource(protocol,port,rawSampleRate,RawPCMSource.parseFormat(rawFormat,rawChannels),udpSequenced);
+		source.open();
+		Runtime.getRuntime().addShutdownHook(new Thread(){public void run(){System.err.println(source.getStatistics());}});
+		return source;
+	}
+	
+	// Set up a Rivet session the same way the user would from the menus
+	private Rivet createSession (TextOutput output,int system)	{
+		Rivet session=new Rivet(output);
+		session.setSystem(system);
+		session.setInvertSignal(invertSignal);
+		session.setDebug(debug);
+		session.setLogInUTC(logInUTC);
+		session.setSkipIdle(skipIdle);
+		session.setIdleThresholds(idleFlatness,Math.pow(10.0,idleEnergyDB/10.0));
+		session.setSnippetRecording(snippetDirectory,snippetSeconds);
+		session.setArchiveDirectory(archiveDirectory);
+		if (rttyBaudRate>0)	{
+			session.rttyHandler.setBaudRate(rttyBaudRate);
+			session.fskHandler.setBaudRate(rttyBaudRate);
+		}
+		if (rttyShift>0)	{
+			session.rttyHandler.setShift(rttyShift);
+			session.fskHandler.setShift(rttyShift);
+		}
+		if (rttyStopBits>0) session.rttyHandler.setStopBits(rttyStopBits);
+		if (crowd36SyncHighTone>=0) session.crowd36Handler.setSyncHighTone(crowd36SyncHighTone);
+		return session;
+	}
+
+	// Find a mode from its number, its name or the start of its name
+	// Case, spaces and punctuation are ignored so "f06" , "gwfsk" and "ccir493" all work
+	// Returns -1 if nothing or more than one mode matches
+	public static int findMode (String names[],String mode)	{
+		int a,found=-1;
+		try	{
+			a=Integer.parseInt(mode);
+			if ((a>=0)&&(a<names.length)) return a;
+			return -1;
+		}
+		catch (NumberFormatException e)	{}
+		String want=simplifyName(mode);
+		if (want.length()==0) return -1;
+		// An exact match on the whole name or its first word wins
+		for (a=0;a<names.length;a++)	{
+			if (simplifyName(names[a]).equals(want)) return a;
+		}
+		for (a=0;a<names.length;a++)	{
+			if (simplifyName(names[a].split(" ")[0]).equals(want))	{
+				if (found>=0) return -1;
+				found=a;
+			}
+		}
+		if (found>=0) return found;
+		for (a=0;a<names.length;a++)	{
+			if (simplifyName(names[a]).startsWith(want))	{
+				if (found>=0) return -1;
+				found=a;
+			}
+		}
+		return found;
+	}
+
+	private static String simplifyName (String name)	{
+		StringBuilder sb=new StringBuilder();
+		int a;
+		for (a=0;a<name.length();a++)	{
+			char c=name.charAt(a);
+			if (Character.isLetterOrDigit(c)) sb.append(Character.toLowerCase(c));
+		}
+		return sb.toString();
+	}
+
+}
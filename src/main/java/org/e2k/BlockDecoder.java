@@ -0,0 +1,27 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// Rivet Copyright (C) 2011 Ian Wraith
+// This program comes with ABSOLUTELY NO WARRANTY
+
+package org.e2k;
+
+// A mode decoder which can be passed blocks of samples
+// Most samples only need adding to the circular buffer and counting so the decoder says how many of
+// the coming samples it has no real work for and SampleDecoderAdapter adds those in one go
+public interface BlockDecoder extends ModeDecoder {
+	
+	// Return how many of the coming samples decode() will do nothing with apart from counting them
+	public long idleSamples ();
+	
+	// Count samples which were only added to the circular buffer
+	public void skipSamples (int count);
+
+}
@@ -15,9 +15,12 @@ package org.e2k;
 
 import java.awt.Color;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import javax.swing.JOptionPane;
 
-public class CCIR493 extends FSK {
+public class CCIR493 extends FSK implements BlockDecoder {
 	
 	private int state=0;
 	private double samplesPerSymbol;
@@ -62,19 +65,19 @@ public class CCIR493 extends FSK {
 			// Check the sample rate
 			if (waveData.getSampleRate()!=8000.0)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"WAV files containing\nCCIR493-4 recordings must have\nbeen recorded at a sample rate\nof 8 KHz.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("WAV files containing\nCCIR493-4 recordings must have\nbeen recorded at a sample rate\nof 8 KHz.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			// Check this is a mono recording
 			if (waveData.getChannels()!=1)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"Rivet can only process\nmono WAV files.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("Rivet can only process\nmono WAV files.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			// Check this is a 16 bit WAV file
 			if (waveData.getSampleSizeInBits()!=16)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"Rivet can only process\n16 bit WAV files.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("Rivet can only process\n16 bit WAV files.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			// sampleCount must start negative to account for the buffer gradually filling
@@ -128,11 +131,78 @@ public class CCIR493 extends FSK {
 	public void setState(int state) {
 		this.state = state;
 	}
+	
+	// Count samples which were only added to the circular buffer
+	public void skipSamples (int count)	{
+		sampleCount=sampleCount+count;
+		// In state 1 decode() only counts samples and not symbols
+		if (state!=1) symbolCounter=symbolCounter+count;
+	}
+	
+	// Return how many of the coming samples decode() will do nothing with apart from counting them
+	public long idleSamples()	{
+		// While the buffer is filling the sync hunt only counts samples
+		if (state==1)	{
+			if (sampleCount<-1) return -1-sampleCount;
+			else return 0;
+		}
+		// Bits are only decoded at the start of each symbol
+		else if (state==2) return Math.max(0,(long)samplesPerSymbol-symbolCounter);
+		// Decoding has failed
+		else if (state<0) return Long.MAX_VALUE;
+		else return 0;
+	}
 
 	public int getState() {
 		return state;
 	}
 	
+	public void writeState (DataOutputStream out) throws IOException	{
+		writeFSKState(out);
+		out.writeInt(state);
+		out.writeDouble(samplesPerSymbol);
+		out.writeLong(sampleCount);
+		out.writeLong(symbolCounter);
+		Checkpoint.writeString(out,lineBuffer.toString());
+		out.writeInt(highTone);
+		out.writeInt(lowTone);
+		out.writeInt(messageState);
+		out.writeInt(highBin);
+		out.writeInt(lowBin);
+		out.writeInt(buffer10);
+		out.writeInt(buffer20);
+		out.writeInt(dx);
+		out.writeInt(rx);
+		out.writeInt(formatSpecifier);
+		out.writeInt(bitCount);
+		Checkpoint.writeInts(out,messageBuffer);
+		out.writeInt(invertedPDXCounter);
+		out.writeInt(unCorrectedInput);
+	}
+	
+	public void readState (DataInputStream in) throws IOException	{
+		readFSKState(in);
+		state=in.readInt();
+		samplesPerSymbol=in.readDouble();
+		sampleCount=in.readLong();
+		symbolCounter=in.readLong();
+		Checkpoint.readString(in,lineBuffer);
+		highTone=in.readInt();
+		lowTone=in.readInt();
+		messageState=in.readInt();
+		highBin=in.readInt();
+		lowBin=in.readInt();
+		buffer10=in.readInt();
+		buffer20=in.readInt();
+		dx=in.readInt();
+		rx=in.readInt();
+		formatSpecifier=in.readInt();
+		bitCount=in.readInt();
+		Checkpoint.readInts(in,messageBuffer);
+		invertedPDXCounter=in.readInt();
+		unCorrectedInput=in.readInt();
+	}
+	
 	// See if the buffer holds a alternating sequence
 	private boolean detectSync(CircularDataBuffer circBuf,WaveData waveData)	{
 		int pos=0,b0,b1;
@@ -15,6 +15,9 @@ package org.e2k;
 
 import java.awt.Color;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import javax.swing.JOptionPane;
 
 // From info received (which I'm very grateful for) it appears CIS36-50 (BEE) messages have the following format
@@ -24,7 +27,7 @@ import javax.swing.JOptionPane;
 // followed by the message which is made up of encrypted ITA-3 characters (so again 3 bits true and 4 false)
 // the end of the message is signalled with the binary sequence 1110111 1110111 1110111
 
-public class CIS3650 extends FSK {
+public class CIS3650 extends FSK implements ModeDecoder {
 
 	private int state=0;
 	private int shift=200;
@@ -61,19 +64,19 @@ public class CIS3650 extends FSK {
 			// Check the sample rate
 			if (waveData.getSampleRate()!=8000.0)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"WAV files containing\nCIS 36-50 recordings must have\nbeen recorded at a sample rate\nof 8 KHz.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("WAV files containing\nCIS 36-50 recordings must have\nbeen recorded at a sample rate\nof 8 KHz.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			// Check this is a mono recording
 			if (waveData.getChannels()!=1)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"Rivet can only process\nmono WAV files.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("Rivet can only process\nmono WAV files.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			// Check this is a 16 bit WAV file
 			if (waveData.getSampleSizeInBits()!=16)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"Rivet can only process\n16 bit WAV files.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("Rivet can only process\n16 bit WAV files.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			// sampleCount must start negative to account for the buffer gradually filling
@@ -270,6 +273,50 @@ public class CIS3650 extends FSK {
 		return state;
 	}
 	
+	public void writeState (DataOutputStream out) throws IOException	{
+		writeFSKState(out);
+		out.writeInt(state);
+		out.writeDouble(samplesPerSymbol50);
+		out.writeLong(sampleCount);
+		out.writeLong(symbolCounter);
+		out.writeInt(highTone);
+		out.writeInt(lowTone);
+		out.writeInt(syncState);
+		out.writeInt(buffer7);
+		out.writeInt(buffer21);
+		out.writeInt(characterCount);
+		out.writeInt(startCount);
+		out.writeInt(totalCharacterCount);
+		out.writeInt(totalErrorCount);
+		out.writeInt(highBin);
+		out.writeInt(lowBin);
+		out.writeInt(b7Count);
+		out.writeInt(countSinceSync);
+		Checkpoint.writeBooleans(out,startBuffer);
+	}
+	
+	public void readState (DataInputStream in) throws IOException	{
+		readFSKState(in);
+		state=in.readInt();
+		samplesPerSymbol50=in.readDouble();
+		sampleCount=in.readLong();
+		symbolCounter=in.readLong();
+		highTone=in.readInt();
+		lowTone=in.readInt();
+		syncState=in.readInt();
+		buffer7=in.readInt();
+		buffer21=in.readInt();
+		characterCount=in.readInt();
+		startCount=in.readInt();
+		totalCharacterCount=in.readInt();
+		totalErrorCount=in.readInt();
+		highBin=in.readInt();
+		lowBin=in.readInt();
+		b7Count=in.readInt();
+		countSinceSync=in.readInt();
+		Checkpoint.readBooleans(in,startBuffer);
+	}
+	
 
 	// Get the frequency at a certain symbol
 	private int getSymbolFreq (CircularDataBuffer circBuf,WaveData waveData,int start)	{
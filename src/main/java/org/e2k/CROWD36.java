@@ -14,9 +14,12 @@
 package org.e2k;
 
 import java.awt.Color;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import javax.swing.JOptionPane;
 
-public class CROWD36 extends MFSK {
+public class CROWD36 extends MFSK implements BlockDecoder {
 	
 	private int baudRate=40;
 	private int state=0;
@@ -25,7 +28,7 @@ public class CROWD36 extends MFSK {
 	public long sampleCount=0;
 	private long symbolCounter=0;
 	private long energyStartPoint;
-	private CircularDataBuffer energyBuffer=new CircularDataBuffer();
+	private CircularDataBuffer energyBuffer;
 	private boolean figureShift=false; 
 	private int lineCount=0;
 	private int correctionValue=0;
@@ -41,6 +44,7 @@ public class CROWD36 extends MFSK {
 	public CROWD36 (Rivet tapp,int baud)	{
 		baudRate=baud;
 		theApp=tapp;
+		energyBuffer=new CircularDataBuffer(theApp);
 	}
 	
 	public void setBaudRate(int baudRate) {
@@ -58,6 +62,42 @@ public class CROWD36 extends MFSK {
 	public int getState() {
 		return state;
 	}
+	
+	public void writeState (DataOutputStream out) throws IOException	{
+		writeFSKState(out);
+		out.writeInt(state);
+		out.writeDouble(samplesPerSymbol);
+		out.writeLong(sampleCount);
+		out.writeLong(symbolCounter);
+		out.writeLong(energyStartPoint);
+		energyBuffer.writeState(out);
+		out.writeBoolean(figureShift);
+		out.writeInt(lineCount);
+		out.writeInt(correctionValue);
+		out.writeInt(highFreq);
+		out.writeInt(lowFreq);
+		Checkpoint.writeInts(out,toneCount);
+		out.writeInt(toneLowCount);
+		out.writeInt(toneHighCount);
+	}
+	
+	public void readState (DataInputStream in) throws IOException	{
+		readFSKState(in);
+		state=in.readInt();
+		samplesPerSymbol=in.readDouble();
+		sampleCount=in.readLong();
+		symbolCounter=in.readLong();
+		energyStartPoint=in.readLong();
+		energyBuffer.readState(in);
+		figureShift=in.readBoolean();
+		lineCount=in.readInt();
+		correctionValue=in.readInt();
+		highFreq=in.readInt();
+		lowFreq=in.readInt();
+		Checkpoint.readInts(in,toneCount);
+		toneLowCount=in.readInt();
+		toneHighCount=in.readInt();
+	}
 		
 	public boolean decode (CircularDataBuffer circBuf,WaveData waveData)	{
 		// Just starting
@@ -65,19 +105,19 @@ public class CROWD36 extends MFSK {
 			// Check the sample rate
 			if (waveData.getSampleRate()>11025)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"WAV files containing\nCROWD36 recordings must have\nbeen recorded at a sample rate\nof 11.025 KHz or less.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("WAV files containing\nCROWD36 recordings must have\nbeen recorded at a sample rate\nof 11.025 KHz or less.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			// Check this is a mono recording
 			if (waveData.getChannels()!=1)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"Rivet can only process\nmono WAV files.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("Rivet can only process\nmono WAV files.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			// Check this is a 16 bit WAV file
 			if (waveData.getSampleSizeInBits()!=16)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"Rivet can only process\n16 bit WAV files.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("Rivet can only process\n16 bit WAV files.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			samplesPerSymbol=samplesPerSymbol(baudRate,waveData.getSampleRate());
@@ -146,6 +186,24 @@ public class CROWD36 extends MFSK {
 		return true;				
 	}
 	
+	// Count samples which were only added to the circular buffer
+	public void skipSamples (int count)	{
+		sampleCount=sampleCount+count;
+		symbolCounter=symbolCounter+count;
+	}
+	
+	// Return how many of the coming samples decode() will do nothing with apart from counting them
+	public long idleSamples()	{
+		// Characters are only decoded at the start of each symbol
+		if (state==3)	{
+			if (symbolCounter>=samplesPerSymbol) return 0;
+			else return (long)Math.ceil(samplesPerSymbol-symbolCounter);
+		}
+		// Decoding has failed
+		else if (state<0) return Long.MAX_VALUE;
+		else return 0;
+	}
+	
 	private int crowd36Freq (CircularDataBuffer circBuf,WaveData waveData,int pos)	{
 		
 		// 8 KHz sampling
@@ -232,7 +290,7 @@ public class CROWD36 extends MFSK {
 			
 		}
 		catch (Exception e)	{
-			JOptionPane.showMessageDialog(null,e.toString(),"Rivet", JOptionPane.INFORMATION_MESSAGE);
+			theApp.showMessage(e.toString(),JOptionPane.INFORMATION_MESSAGE);
 			return "";
 		}
 		
@@ -0,0 +1,123 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// Rivet Copyright (C) 2011 Ian Wraith
+// This program comes with ABSOLUTELY NO WARRANTY
+
+package org.e2k;
+
+import java.io.IOException;
+
+// Decodes every channel of a multichannel WAV file separately
+// The file is read once and de-interleaved into a sample stream per channel
+// Each channel has its own set of Rivet sessions (one per mode) running on their own threads
+// The channels can also be narrow channels pulled out of a wideband input by a Channelizer
+public class ChannelDecoder {
+
+	private static final int BLOCK_SIZE=4096;
+	private MultiModeDecoder channels[];
+	private ReplayPacer pacer=null;
+
+	// sessions[channel][mode] must already have their mode and output set up
+	public ChannelDecoder (Rivet sessions[][])	{
+		channels=new MultiModeDecoder[sessions.length];
+		int a;
+		for (a=0;a<sessions.length;a++)	{
+			channels[a]=new MultiModeDecoder(sessions[a]);
+		}
+	}
+
+	// Use the first primeLength samples of every channel only to fill the decoders' history
+	public void setPrimeLength (long length)	{
+		for (MultiModeDecoder channel : channels)	{
+			channel.setPrimeLength(length);
+		}
+	}
+
+	// Replay the file no faster than the pacer allows
+	public void setPacer (ReplayPacer tpacer)	{
+		pacer=tpacer;
+	}
+
+	// Return a label for a channel , left and right for stereo
+	public static String channelName (int channel,int channelCount)	{
+		if (channelCount==2)	{
+			if (channel==0) return "Left";
+			else return "Right";
+		}
+		return "Channel "+Integer.toString(channel+1);
+	}
+
+	// Decode the whole file and return the number of sessions which were able to decode their channel
+	public int decodeSource (WavFileReader reader) throws IOException,InterruptedException	{
+		if (reader.getChannels()!=channels.length) throw new IOException("The file has "+Integer.toString(reader.getChannels())+" channels not "+Integer.toString(channels.length));
+		int a;
+		for (a=0;a<channels.length;a++)	{
+			channels[a].start(reader.getWaveData(),reader.getSamplesRead());
+		}
+		int samples[][]=new int[channels.length][BLOCK_SIZE];
+		int blockSize=BLOCK_SIZE;
+		if (pacer!=null) blockSize=Math.min(BLOCK_SIZE,pacer.getBlockSize());
+		int count;
+		while ((count=reader.readChannels(samples,0,blockSize))>0)	{
+			if (pacer!=null) pacer.pace(count);
+			boolean running=false;
+			for (a=0;a<channels.length;a++)	{
+				if (channels[a].isRunning()==false) continue;
+				channels[a].feed(samples[a],0,count);
+				running=true;
+			}
+			// Every channel has given up
+			if (running==false) break;
+		}
+		int decoded=0;
+		for (a=0;a<channels.length;a++)	{
+			decoded=decoded+channels[a].finish();
+		}
+		return decoded;
+	}
+
+	// Split a wideband mono source into the channelizer's channels and decode each one
+	// The sessions see the channels at the channelizer's output rate and resample them if they need to
+	public int decodeChannelized (SampleSource source,Channelizer channelizer) throws IOException,InterruptedException	{
+		if (channelizer.getChannelCount()!=channels.length) throw new IOException("There are "+Integer.toString(channelizer.getChannelCount())+" channels not "+Integer.toString(channels.length));
+		if (source.getWaveData().getSampleRate()!=channelizer.getInputRate()) throw new IOException("The input isn't at "+Integer.toString(channelizer.getInputRate())+" Hz");
+		WaveData waveData=channelizer.getOutputWaveData(source.getWaveData().isFromFile());
+		// The channels' clocks count at the output rate
+		long position=(long)((double)source.getSamplesRead()*channelizer.getOutputRate()/channelizer.getInputRate());
+		int a;
+		for (a=0;a<channels.length;a++)	{
+			channels[a].start(waveData,position);
+		}
+		int samples[]=new int[BLOCK_SIZE];
+		int count;
+		while ((count=source.read(samples,0,BLOCK_SIZE))>0)	{
+			channelizer.process(samples,0,count);
+			boolean running=false;
+			for (a=0;a<channels.length;a++)	{
+				if (channels[a].isRunning()==false) continue;
+				channels[a].feed(channelizer.getOutput(a),0,channelizer.getOutputCount(a));
+				running=true;
+			}
+			if (running==false) break;
+		}
+		int decoded=0;
+		for (a=0;a<channels.length;a++)	{
+			decoded=decoded+channels[a].finish();
+		}
+		return decoded;
+	}
+
+	// Return a label for a narrow channel from its centre frequency
+	public static String channelName (Channelizer channelizer,int channel)	{
+		return Long.toString(Math.round(channelizer.getCentre(channel)))+" Hz";
+	}
+
+}
@@ -0,0 +1,206 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// Rivet Copyright (C) 2011 Ian Wraith
+// This program comes with ABSOLUTELY NO WARRANTY
+
+package org.e2k;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// A bank of digital down converters which pull narrow channels out of wideband audio
+// Each channel mixes its centre frequency down to zero with an NCO , low pass filters and decimates
+// the complex result , then mixes it back up to an audio offset the decoders can work with
+// The filter is only worked out at the decimated output instants so most input samples just get mixed
+public class Channelizer {
+
+	// Stop band attenuation in dB
+	private static final double ATTENUATION=70.0;
+	// The lowest output rate wanted , the decimation is the biggest whole number which keeps above this
+	private static final int MIN_OUTPUT_RATE=8000;
+	private final int inputRate;
+	private final int decimation;
+	private final int outputRate;
+	private List<Channel> channels=new ArrayList<Channel>();
+
+	// One narrowband channel
+	private class Channel	{
+
+		private final double centre;
+		private final double bandwidth;
+		private final float taps[];
+		// Complex history of mixed samples (twice the taps so a block can be filtered without wrapping)
+		private float historyI[];
+		private float historyQ[];
+		private int historyLength;
+		// Input samples to go before the next output
+		private int skip=0;
+		// The NCO is a complex rotator which is normalised after every block
+		private double ncoI=1.0,ncoQ=0.0;
+		private final double stepI,stepQ;
+		// The rotator which moves the channel back up to the audio offset at the output rate
+		private double upI=1.0,upQ=0.0;
+		private final double upStepI,upStepQ;
+		private int output[]=new int[0];
+		private int outputCount=0;
+
+		private Channel (double tcentre,double tbandwidth,double audioOffset)	{
+			centre=tcentre;
+			bandwidth=tbandwidth;
+			// Pass half the bandwidth either side of the centre with the transition band
+			// ending before anything can alias into the channel
+			double pass=bandwidth/2.0;
+			double stop=Math.max(pass+100.0,outputRate-pass);
+			int length=FilterDesign.kaiserLength((stop-pass)/inputRate,ATTENUATION);
+			double proto[]=FilterDesign.lowPass(length,((pass+stop)/2.0)/inputRate,ATTENUATION);
+			taps=new float[length];
+			int a;
+			for (a=0;a<length;a++)	{
+				taps[a]=(float)proto[a];
+			}
+			historyI=new float[length*2];
+			historyQ=new float[length*2];
+			historyLength=length-1;
+			double w=-2.0*Math.PI*centre/inputRate;
+			stepI=Math.cos(w);
+			stepQ=Math.sin(w);
+			double wu=2.0*Math.PI*audioOffset/outputRate;
+			upStepI=Math.cos(wu);
+			upStepQ=Math.sin(wu);
+		}
+
+		private void process (int in[],int off,int len)	{
+			int length=taps.length;
+			if (historyLength+len>historyI.length)	{
+				float biggerI[]=new float[historyLength+len+length];
+				float biggerQ[]=new float[historyLength+len+length];
+				System.arraycopy(historyI,0,biggerI,0,historyLength);
+				System.arraycopy(historyQ,0,biggerQ,0,historyLength);
+				historyI=biggerI;
+				historyQ=biggerQ;
+			}
+			int maxOut=(len/decimation)+2;
+			if (output.length<maxOut) output=new int[maxOut];
+			// Mix the block down to baseband
+			float hI[]=historyI;
+			float hQ[]=historyQ;
+			double nI=ncoI,nQ=ncoQ;
+			int a;
+			for (a=0;a<len;a++)	{
+				double x=in[off+a];
+				hI[historyLength+a]=(float)(x*nI);
+				hQ[historyLength+a]=(float)(x*nQ);
+				double t=(nI*stepI)-(nQ*stepQ);
+				nQ=(nI*stepQ)+(nQ*stepI);
+				nI=t;
+			}
+			// Keep the NCO on the unit circle
+			double mag=Math.sqrt((nI*nI)+(nQ*nQ));
+			ncoI=nI/mag;
+			ncoQ=nQ/mag;
+			int end=historyLength+len;
+			// Filter at the output instants then mix back up to the audio offset
+			// Mixing a real signal down leaves half its amplitude in the complex channel so double it
+			int pos=historyLength+skip;
+			int count=0;
+			double uI=upI,uQ=upQ;
+			while (pos<end)	{
+				int start=pos-(length-1);
+				float sumI=0.0f,sumQ=0.0f;
+				int k;
+				for (k=0;k<length;k++)	{
+					sumI+=taps[k]*hI[start+k];
+					sumQ+=taps[k]*hQ[start+k];
+				}
+				output[count]=(int)Math.round(2.0*((sumI*uI)-(sumQ*uQ)));
+				count++;
+				double t=(uI*upStepI)-(uQ*upStepQ);
+				uQ=(uI*upStepQ)+(uQ*upStepI);
+				uI=t;
+				pos=pos+decimation;
+			}
+			mag=Math.sqrt((uI*uI)+(uQ*uQ));
+			upI=uI/mag;
+			upQ=uQ/mag;
+			skip=pos-end;
+			outputCount=count;
+			// Keep what the filter needs for the next block
+			int keep=length-1;
+			System.arraycopy(hI,end-keep,hI,0,keep);
+			System.arraycopy(hQ,end-keep,hQ,0,keep);
+			historyLength=keep;
+		}
+
+	}
+
+	public Channelizer (int tinputRate)	{
+		inputRate=tinputRate;
+		decimation=Math.max(1,inputRate/MIN_OUTPUT_RATE);
+		outputRate=inputRate/decimation;
+	}
+
+	// Add a channel centred on a frequency in the input with the given bandwidth
+	// The channel comes out centred on audioOffset
+	// Returns the channel number
+	public int addChannel (double centre,double bandwidth,double audioOffset)	{
+		if ((centre<0.0)||(centre>inputRate/2.0)) throw new IllegalArgumentException("Channel centre "+Double.toString(centre)+" Hz is outside the input");
+		if ((bandwidth<=0.0)||(bandwidth>outputRate)) throw new IllegalArgumentException("Bad channel bandwidth");
+		if ((audioOffset-(bandwidth/2.0)<0.0)||(audioOffset+(bandwidth/2.0)>outputRate/2.0)) throw new IllegalArgumentException("The channel doesn't fit around an audio offset of "+Double.toString(audioOffset)+" Hz");
+		channels.add(new Channel(centre,bandwidth,audioOffset));
+		return channels.size()-1;
+	}
+
+	// Run a block of input through every channel
+	public void process (int in[],int off,int len)	{
+		for (Channel channel : channels)	{
+			channel.process(in,off,len);
+		}
+	}
+
+	// Return the output of a channel from the last call to process()
+	public int[] getOutput (int channel)	{
+		return channels.get(channel).output;
+	}
+
+	// Return the number of output samples each channel produced in the last call to process()
+	public int getOutputCount (int channel)	{
+		return channels.get(channel).outputCount;
+	}
+
+	public int getChannelCount()	{
+		return channels.size();
+	}
+
+	public double getCentre (int channel)	{
+		return channels.get(channel).centre;
+	}
+
+	public int getInputRate()	{
+		return inputRate;
+	}
+
+	public int getOutputRate()	{
+		return outputRate;
+	}
+
+	// A WaveData describing the channel outputs
+	public WaveData getOutputWaveData (boolean fromFile)	{
+		WaveData waveData=new WaveData();
+		waveData.setSampleRate(outputRate);
+		waveData.setChannels(1);
+		waveData.setSampleSizeInBits(16);
+		waveData.setBytesPerFrame(2);
+		waveData.setEndian(false);
+		waveData.setFromFile(fromFile);
+		return waveData;
+	}
+
+}
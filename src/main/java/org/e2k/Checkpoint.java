@@ -0,0 +1,252 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// Rivet Copyright (C) 2011 Ian Wraith
+// This program comes with ABSOLUTELY NO WARRANTY
+
+package org.e2k;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Saves the state of a decoding session every so often so a long WAV file can be picked up
+// where it was left if the program is stopped
+// The file holds where the input and output had got to followed by the session state
+// which Rivet.writeState() writes and each part of the session (the decoder , the circular buffer and so on)
+// writes its own state with a writeState() method which readState() reads back in the same order
+// VERSION must be raised whenever any of those methods changes what it writes so an old checkpoint isn't misread
+public class Checkpoint {
+
+	private static final int MAGIC=0x52564350;
+	private static final int VERSION=2;
+	private final File file;
+	private final RecordingSource reader;
+	private final long interval;
+	private long lastSave;
+	private PrintStream outputStream=null;
+	private FileOutputStream outputFile=null;
+	// What was loaded from an earlier checkpoint
+	private boolean loaded=false;
+	private long position=0;
+	private long outputLength=0;
+	private byte state[]=null;
+
+	// Save the state of a session decoding reader to file every intervalSeconds of audio
+	public Checkpoint (File tfile,RecordingSource treader,double intervalSeconds)	{
+		file=tfile;
+		reader=treader;
+		interval=Math.max(1,(long)(intervalSeconds*reader.getWaveData().getSampleRate()));
+	}
+
+	public File getFile()	{
+		return file;
+	}
+
+	// If the output is going to a file then its length is saved so it can be cut back
+	// to what had been written at the checkpoint when decoding is resumed
+	public void setOutput (PrintStream stream,FileOutputStream tfile)	{
+		outputStream=stream;
+		outputFile=tfile;
+	}
+
+	// Read an earlier checkpoint if there is one and return true if there was
+	public boolean load() throws IOException	{
+		if (!file.exists()) return false;
+		DataInputStream in=new DataInputStream(new GZIPInputStream(new FileInputStream(file)));
+		try	{
+			if ((in.readInt()!=MAGIC)||(in.readInt()!=VERSION)) throw new IOException(file.getPath()+" isn't a checkpoint this version can read");
+			if (in.readLong()!=reader.getTotalSamples()) throw new IOException(file.getPath()+" was made for a different file");
+			position=in.readLong();
+			outputLength=in.readLong();
+			state=new byte[in.readInt()];
+			in.readFully(state);
+		}
+		finally	{
+			in.close();
+		}
+		loaded=true;
+		return true;
+	}
+
+	public boolean isLoaded()	{
+		return loaded;
+	}
+
+	// The sample decoding had got to when the checkpoint was saved
+	public long getPosition()	{
+		return position;
+	}
+
+	// The length of the output file when the checkpoint was saved
+	public long getOutputLength()	{
+		return outputLength;
+	}
+
+	// Put a session back into the state it was in and move the reader to where it was
+	// The session has to have been started on the reader first
+	public void restore (Rivet session) throws IOException	{
+		if (loaded==false) return;
+		DataInputStream in=new DataInputStream(new ByteArrayInputStream(state));
+		session.readState(in);
+		reader.seek(position);
+		lastSave=position;
+		state=null;
+	}
+
+	// Called after each block is decoded and saves the session once enough audio has gone by
+	public void update (Rivet session) throws IOException	{
+		if (reader.getSamplesRead()-lastSave<interval) return;
+		save(session);
+	}
+
+	// Save the session now
+	// It is written to a temporary file first so a stop part way through leaves the last checkpoint as it was
+	public void save (Rivet session) throws IOException	{
+		ByteArrayOutputStream bytes=new ByteArrayOutputStream();
+		DataOutputStream stateOut=new DataOutputStream(bytes);
+		session.writeState(stateOut);
+		stateOut.flush();
+		long length=0;
+		if (outputFile!=null)	{
+			synchronized (outputStream)	{
+				outputStream.flush();
+			}
+			length=outputFile.getChannel().position();
+		}
+		File temp=new File(file.getPath()+".tmp");
+		DataOutputStream out=new DataOutputStream(new GZIPOutputStream(new FileOutputStream(temp)));
+		try	{
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(reader.getTotalSamples());
+			out.writeLong(reader.getSamplesRead());
+			out.writeLong(length);
+			out.writeInt(bytes.size());
+			bytes.writeTo(out);
+		}
+		finally	{
+			out.close();
+		}
+		try	{
+			Files.move(temp.toPath(),file.toPath(),StandardCopyOption.REPLACE_EXISTING,StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (AtomicMoveNotSupportedException e)	{
+			Files.move(temp.toPath(),file.toPath(),StandardCopyOption.REPLACE_EXISTING);
+		}
+		lastSave=reader.getSamplesRead();
+	}
+
+	// The whole input has been decoded so the checkpoint isn't needed any more
+	public void finished()	{
+		file.delete();
+	}
+
+	// The helpers below are used by the writeState() and readState() methods
+	// An array is read back into the one the session already has so it must be the same length
+	
+	public static void writeInts (DataOutputStream out,int data[]) throws IOException	{
+		out.writeInt(data.length);
+		for (int i : data)	{
+			out.writeInt(i);
+		}
+	}
+	
+	public static void readInts (DataInputStream in,int data[]) throws IOException	{
+		if (in.readInt()!=data.length) throw new IOException("The checkpoint was made with different settings");
+		int a;
+		for (a=0;a<data.length;a++)	{
+			data[a]=in.readInt();
+		}
+	}
+	
+	public static void writeDoubles (DataOutputStream out,double data[]) throws IOException	{
+		out.writeInt(data.length);
+		for (double d : data)	{
+			out.writeDouble(d);
+		}
+	}
+	
+	public static void readDoubles (DataInputStream in,double data[]) throws IOException	{
+		if (in.readInt()!=data.length) throw new IOException("The checkpoint was made with different settings");
+		int a;
+		for (a=0;a<data.length;a++)	{
+			data[a]=in.readDouble();
+		}
+	}
+	
+	public static void writeBooleans (DataOutputStream out,boolean data[]) throws IOException	{
+		out.writeInt(data.length);
+		for (boolean b : data)	{
+			out.writeBoolean(b);
+		}
+	}
+	
+	public static void readBooleans (DataInputStream in,boolean data[]) throws IOException	{
+		if (in.readInt()!=data.length) throw new IOException("The checkpoint was made with different settings");
+		int a;
+		for (a=0;a<data.length;a++)	{
+			data[a]=in.readBoolean();
+		}
+	}
+	
+	// A string which may be null
+	// Strings are read back interned as some decoders compare them with ==
+	public static void writeString (DataOutputStream out,String s) throws IOException	{
+		out.writeBoolean(s!=null);
+		if (s==null) return;
+		byte data[]=s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(data.length);
+		out.write(data);
+	}
+	
+	public static String readString (DataInputStream in) throws IOException	{
+		if (in.readBoolean()==false) return null;
+		byte data[]=new byte[in.readInt()];
+		in.readFully(data);
+		return new String(data,StandardCharsets.UTF_8).intern();
+	}
+	
+	// Replace what is in a StringBuilder with a string from the checkpoint
+	public static void readString (DataInputStream in,StringBuilder sb) throws IOException	{
+		String s=readString(in);
+		sb.setLength(0);
+		if (s!=null) sb.append(s);
+	}
+	
+	public static void writeLongs (DataOutputStream out,long data[]) throws IOException	{
+		out.writeInt(data.length);
+		for (long l : data)	{
+			out.writeLong(l);
+		}
+	}
+
+	public static long[] readLongs (DataInputStream in) throws IOException	{
+		long data[]=new long[in.readInt()];
+		int a;
+		for (a=0;a<data.length;a++)	{
+			data[a]=in.readLong();
+		}
+		return data;
+	}
+
+}
@@ -13,6 +13,9 @@
 
 package org.e2k;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.List;
@@ -156,4 +159,19 @@ public class CircularBitSet extends BitSet {
 		return total;
 	}
 	
+	// Save the bits and where the next one goes for a checkpoint
+	public void writeState (DataOutputStream out) throws IOException	{
+		out.writeInt(counter);
+		out.writeInt(totalLength);
+		Checkpoint.writeLongs(out,this.toLongArray());
+	}
+	
+	// Put back what writeState() saved
+	public void readState (DataInputStream in) throws IOException	{
+		counter=in.readInt();
+		totalLength=in.readInt();
+		this.clear();
+		this.or(BitSet.valueOf(Checkpoint.readLongs(in)));
+	}
+
 }
@@ -13,6 +13,9 @@
 
 package org.e2k;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import javax.swing.JOptionPane;
 
 public class CircularDataBuffer {
@@ -20,6 +23,16 @@ public class CircularDataBuffer {
 	private final int MAXCIRC=1024*10;
 	private int circBufferCounter=0;
 	private int[] circDataBuffer=new int[MAXCIRC];
+	// Errors are reported through the app so they go to stderr when there is no display
+	private final Rivet theApp;
+	
+	public CircularDataBuffer ()	{
+		this(null);
+	}
+	
+	public CircularDataBuffer (Rivet tapp)	{
+		theApp=tapp;
+	}
 	
 	// Add data to the incoming data circular buffer
 	public void addToCircBuffer (int i)	{
@@ -29,8 +42,23 @@ public class CircularDataBuffer {
 			if (circBufferCounter==MAXCIRC)	circBufferCounter=0;
 		}
 		catch (Exception e)	{
-			JOptionPane.showMessageDialog(null,"Error in addToCircBuffer() "+e.toString(),"Rivet", JOptionPane.ERROR_MESSAGE);
+			showError("Error in addToCircBuffer() "+e.toString());
+		}
+	}
+	
+	// Add a block of data to the incoming data circular buffer
+	public void addToCircBuffer (int data[],int off,int len)	{
+		// If the block is bigger than the buffer only the end of it will be kept
+		if (len>MAXCIRC)	{
+			circBufferCounter=(int)((circBufferCounter+(long)(len-MAXCIRC))%MAXCIRC);
+			off=off+(len-MAXCIRC);
+			len=MAXCIRC;
 		}
+		int first=Math.min(len,MAXCIRC-circBufferCounter);
+		System.arraycopy(data,off,circDataBuffer,circBufferCounter,first);
+		if (first<len) System.arraycopy(data,off+first,circDataBuffer,0,len-first);
+		circBufferCounter=circBufferCounter+len;
+		if (circBufferCounter>=MAXCIRC) circBufferCounter=circBufferCounter-MAXCIRC;
 	}
 	
 	// Return a user defined section of the circular buffer
@@ -47,7 +75,7 @@ public class CircularDataBuffer {
 			return outData;
 		}
 		catch (Exception e)	{
-			JOptionPane.showMessageDialog(null,"Error in extractData() "+e.toString(),"Rivet", JOptionPane.ERROR_MESSAGE);
+			showError("Error in extractData() "+e.toString());
 			return null;
 		}
 	}
@@ -66,7 +94,7 @@ public class CircularDataBuffer {
 			return outData;
 		}
 		catch (Exception e)	{
-			JOptionPane.showMessageDialog(null,"Error in extractDataDouble() "+e.toString(),"Rivet", JOptionPane.ERROR_MESSAGE);
+			showError("Error in extractDataDouble() "+e.toString());
 			return null;
 		}
 	}
@@ -100,7 +128,7 @@ public class CircularDataBuffer {
 			return highBin;
 		}
 		catch (Exception e)	{
-			JOptionPane.showMessageDialog(null,"Error in returnHighestBin() "+e.toString(),"Rivet", JOptionPane.ERROR_MESSAGE);
+			showError("Error in returnHighestBin() "+e.toString());
 			return 0;
 		}
 	}
@@ -119,11 +147,17 @@ public class CircularDataBuffer {
 			return lowBin;
 		}
 		catch (Exception e)	{
-			JOptionPane.showMessageDialog(null,"Error in returnLowestBin() "+e.toString(),"Rivet", JOptionPane.ERROR_MESSAGE);
+			showError("Error in returnLowestBin() "+e.toString());
 			return 0;
 		}
 	}
 	
+	// Tell the user about an error
+	private void showError (String msg)	{
+		if (theApp!=null) theApp.showMessage(msg,JOptionPane.ERROR_MESSAGE);
+		else System.err.println("Rivet : "+msg);
+	}
+	
 	// Directly access the data buffer
 	public int directAccess (int i)	{
 		return this.circDataBuffer[i];
@@ -146,4 +180,16 @@ public class CircularDataBuffer {
 		return this.circDataBuffer[circBufferCounter];
 	}
 	
+	// Save the buffer for a checkpoint
+	public void writeState (DataOutputStream out) throws IOException	{
+		out.writeInt(circBufferCounter);
+		Checkpoint.writeInts(out,circDataBuffer);
+	}
+	
+	// Put back the buffer saved by writeState()
+	public void readState (DataInputStream in) throws IOException	{
+		circBufferCounter=in.readInt();
+		Checkpoint.readInts(in,circDataBuffer);
+	}
+
 }
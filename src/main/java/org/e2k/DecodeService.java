@@ -0,0 +1,136 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// Rivet Copyright (C) 2011 Ian Wraith
+// This program comes with ABSOLUTELY NO WARRANTY
+
+package org.e2k;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs many decode sessions at once with every stream being a task of its own
+// A live stream spends nearly all its time waiting for the network so on Java 21 and later each task
+// gets a virtual thread , which costs little more than the task itself , and hundreds of streams can be
+// decoded in one JVM
+// Older Javas have no virtual threads so the tasks share a pool of at most maxThreads platform threads
+// and any streams beyond that wait for one to finish
+// Virtual threads are looked up by reflection so Rivet still builds and runs on Java 8
+public class DecodeService {
+
+	// The most platform threads the fallback pool is allowed whatever is asked for
+	public static final int MAX_PLATFORM_THREADS=1024;
+	private final ExecutorService executor;
+	private final boolean virtualThreads;
+	private final int threadLimit;
+	private final AtomicInteger running=new AtomicInteger();
+	private final AtomicInteger started=new AtomicInteger();
+
+	// Daemon platform threads named after the service so they are easy to find in a thread dump
+	private static class StreamThreadFactory implements ThreadFactory	{
+		private final AtomicInteger count=new AtomicInteger();
+
+		public Thread newThread (Runnable task)	{
+			Thread thread=new Thread(task,"Rivet stream "+Integer.toString(count.incrementAndGet()));
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	public DecodeService (int maxThreads)	{
+		this(maxThreads,true);
+	}
+
+	// Virtual threads are only used if allowVirtual is true and the JVM has them
+	public DecodeService (int maxThreads,boolean allowVirtual)	{
+		ExecutorService virtualExecutor=null;
+		if (allowVirtual==true) virtualExecutor=newVirtualExecutor();
+		if (virtualExecutor!=null)	{
+			executor=virtualExecutor;
+			virtualThreads=true;
+			threadLimit=Integer.MAX_VALUE;
+		}
+		else	{
+			threadLimit=Math.max(1,Math.min(maxThreads,MAX_PLATFORM_THREADS));
+			executor=Executors.newFixedThreadPool(threadLimit,new StreamThreadFactory());
+			virtualThreads=false;
+		}
+	}
+
+	// Returns Executors.newVirtualThreadPerTaskExecutor() or null if this JVM doesn't have it
+	// Java 19 and 20 have the method but it throws unless preview features are turned on
+	private static ExecutorService newVirtualExecutor()	{
+		try	{
+			Object executor=Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			return (ExecutorService)executor;
+		}
+		catch (Exception|LinkageError e)	{
+			return null;
+		}
+	}
+
+	// Run a stream's decoding as a task of its own
+	public <T> Future<T> submit (final Callable<T> task)	{
+		return executor.submit(new Callable<T>()	{
+			public T call() throws Exception	{
+				started.incrementAndGet();
+				running.incrementAndGet();
+				try	{
+					return task.call();
+				}
+				finally	{
+					running.decrementAndGet();
+				}
+			}
+		});
+	}
+
+	// True if each task gets a virtual thread
+	public boolean isVirtual()	{
+		return virtualThreads;
+	}
+
+	// How many tasks can run at once
+	public int getThreadLimit()	{
+		return threadLimit;
+	}
+
+	// The number of tasks running now
+	public int getRunningCount()	{
+		return running.get();
+	}
+
+	// The number of tasks which have started
+	public int getStartedCount()	{
+		return started.get();
+	}
+
+	// A line for the start of a run
+	public String describe()	{
+		if (virtualThreads==true) return "Decoding each stream on a virtual thread";
+		return "Decoding streams on up to "+Integer.toString(threadLimit)+" threads";
+	}
+
+	// Stop taking tasks and interrupt any which are running
+	public void shutdownNow()	{
+		executor.shutdownNow();
+	}
+
+	// Wait for the tasks to finish after a shutdown
+	public boolean awaitTermination (long timeout,TimeUnit unit) throws InterruptedException	{
+		return executor.awaitTermination(timeout,unit);
+	}
+
+}
@@ -33,11 +33,11 @@ public class DisplayFrame extends JFrame implements ActionListener {
 	private JStatusBar statusBar=new JStatusBar();
 	public JScrollBar vscrollbar=new JScrollBar(JScrollBar.VERTICAL,0,1,0,6000);
 	private JMenu triggersMenu=new JMenu("Triggers");
-	private JMenuItem exit_item,wavLoad_item,save_to_file,about_item,help_item,debug_item,soundcard_item,reset_item,copy_item,bitstream_item;
+	private JMenuItem skipIdle_item,replaySpeed_item,snippet_item,archive_item,exit_item,wavLoad_item,wavLoadRange_item,save_to_file,about_item,help_item,debug_item,soundcard_item,network_item,reset_item,copy_item,bitstream_item;
 	private JMenuItem XPA_10_item,XPA_20_item,XPA2_item,CROWD36_item,experimental_item,CIS3650_item,FSK200500_item,CCIR493_item,GW_item,RTTY_item;
 	private JMenuItem FSK2001000_item,CROWD36_sync_item,invert_item,save_settings_item,sample_item,e2k_item,twitter_item;
 	private JMenuItem freeChannelMarkerGW_item,RTTYOptions_item,FSK_item,AddEditTrigger_item,credits_item,system_info_item;
-	private JMenuItem ClearDisplay_item,DisplayBad_item,DisplayUTC_item,UDXF_item,CIS360Options_item;
+	private JMenuItem ClearDisplay_item,DisplayBad_item,DisplayUTC_item,UDXF_item,CIS360Options_item,CaptureOptions_item;
 	private JMenuItem F06a_item, F06aEncoding_item, priyom_item;
 	private List<JMenuItem> trigger_items=new ArrayList<JMenuItem>();
 	private JMenu audioDevicesMenu;
@@ -78,6 +78,8 @@ public class DisplayFrame extends JFrame implements ActionListener {
 		copy_item.addActionListener(this);
 		mainMenu.add(wavLoad_item=new JMenuItem("Load a WAV File"));		
 		wavLoad_item.addActionListener(this);
+		mainMenu.add(wavLoadRange_item=new JMenuItem("Decode Part of a WAV File"));
+		wavLoadRange_item.addActionListener(this);
 		mainMenu.add(reset_item=new JMenuItem("Reset Decoding State"));
 		reset_item.addActionListener(this);
 		mainMenu.add(save_settings_item=new JMenuItem("Save the Current Settings"));
@@ -88,6 +90,8 @@ public class DisplayFrame extends JFrame implements ActionListener {
 		bitstream_item.addActionListener(this);		
 		mainMenu.add(soundcard_item=new JRadioButtonMenuItem("Soundcard Input",theApp.isSoundCardInput()));
 		soundcard_item.addActionListener(this);
+		mainMenu.add(network_item=new JRadioButtonMenuItem("Network Input",theApp.isNetworkInput()));
+		network_item.addActionListener(this);
 		mainMenu.add(exit_item=new JMenuItem("Exit"));		
 		exit_item.addActionListener(this);
 		menuBar.add(mainMenu);
@@ -99,32 +103,32 @@ public class DisplayFrame extends JFrame implements ActionListener {
 		menuBar.add(audioMenu);
 		// Modes
 		JMenu modeMenu=new JMenu("Modes");
-		modeMenu.add(RTTY_item=new JRadioButtonMenuItem(theApp.MODENAMES[10],theApp.isRTTY()));
+		modeMenu.add(RTTY_item=new JRadioButtonMenuItem(Rivet.MODENAMES[10],theApp.isRTTY()));
 		RTTY_item.addActionListener(this);
-		modeMenu.add(CCIR493_item=new JRadioButtonMenuItem(theApp.MODENAMES[7],theApp.isCCIR493()));
+		modeMenu.add(CCIR493_item=new JRadioButtonMenuItem(Rivet.MODENAMES[7],theApp.isCCIR493()));
 		CCIR493_item.addActionListener(this);
-		modeMenu.add(CIS3650_item=new JRadioButtonMenuItem(theApp.MODENAMES[5],theApp.isCIS3650()));
+		modeMenu.add(CIS3650_item=new JRadioButtonMenuItem(Rivet.MODENAMES[5],theApp.isCIS3650()));
 		CIS3650_item.addActionListener(this);
-		modeMenu.add(CROWD36_item=new JRadioButtonMenuItem(theApp.MODENAMES[0],theApp.isCROWD36()));
+		modeMenu.add(CROWD36_item=new JRadioButtonMenuItem(Rivet.MODENAMES[0],theApp.isCROWD36()));
 		CROWD36_item.addActionListener(this);
-		modeMenu.add(FSK200500_item=new JRadioButtonMenuItem(theApp.MODENAMES[6],theApp.isFSK200500()));
+		modeMenu.add(FSK200500_item=new JRadioButtonMenuItem(Rivet.MODENAMES[6],theApp.isFSK200500()));
 		FSK200500_item.addActionListener(this);
-		modeMenu.add(FSK2001000_item=new JRadioButtonMenuItem(theApp.MODENAMES[8],theApp.isFSK2001000()));
+		modeMenu.add(FSK2001000_item=new JRadioButtonMenuItem(Rivet.MODENAMES[8],theApp.isFSK2001000()));
 		FSK2001000_item.addActionListener(this);
-		modeMenu.add(F06a_item=new JRadioButtonMenuItem(theApp.MODENAMES[12],theApp.isF06a()));
+		modeMenu.add(F06a_item=new JRadioButtonMenuItem(Rivet.MODENAMES[12],theApp.isF06a()));
 		F06a_item.addActionListener(this);
-		modeMenu.add(FSK_item=new JRadioButtonMenuItem(theApp.MODENAMES[11],theApp.isFSK()));
+		modeMenu.add(FSK_item=new JRadioButtonMenuItem(Rivet.MODENAMES[11],theApp.isFSK()));
 		FSK_item.addActionListener(this);	
-		modeMenu.add(GW_item=new JRadioButtonMenuItem(theApp.MODENAMES[9],theApp.isGW()));
+		modeMenu.add(GW_item=new JRadioButtonMenuItem(Rivet.MODENAMES[9],theApp.isGW()));
 		GW_item.addActionListener(this);
-		modeMenu.add(XPA_10_item=new JRadioButtonMenuItem(theApp.MODENAMES[1],theApp.isXPA_10()));
+		modeMenu.add(XPA_10_item=new JRadioButtonMenuItem(Rivet.MODENAMES[1],theApp.isXPA_10()));
 		XPA_10_item.addActionListener(this);
-		modeMenu.add(XPA_20_item=new JRadioButtonMenuItem(theApp.MODENAMES[3],theApp.isXPA_20()));
+		modeMenu.add(XPA_20_item=new JRadioButtonMenuItem(Rivet.MODENAMES[3],theApp.isXPA_20()));
 		XPA_20_item.addActionListener(this);
-		modeMenu.add(XPA2_item=new JRadioButtonMenuItem(theApp.MODENAMES[2],theApp.isXPA2()));
+		modeMenu.add(XPA2_item=new JRadioButtonMenuItem(Rivet.MODENAMES[2],theApp.isXPA2()));
 		XPA2_item.addActionListener(this);
 		modeMenu.addSeparator();
-		modeMenu.add(experimental_item=new JRadioButtonMenuItem(theApp.MODENAMES[4],theApp.isExperimental()));
+		modeMenu.add(experimental_item=new JRadioButtonMenuItem(Rivet.MODENAMES[4],theApp.isExperimental()));
 		experimental_item.addActionListener(this);
 		menuBar.add(modeMenu);
 		// Options
@@ -133,6 +137,16 @@ public class DisplayFrame extends JFrame implements ActionListener {
 		RTTYOptions_item.addActionListener(this);
 		optionsMenu.add(CIS360Options_item=new JMenuItem("CIS36-50 Options"));		
 		CIS360Options_item.addActionListener(this);
+		optionsMenu.add(CaptureOptions_item=new JMenuItem("Soundcard Buffer Options"));
+		CaptureOptions_item.addActionListener(this);
+		optionsMenu.add(replaySpeed_item=new JMenuItem("Replay Speed"));
+		replaySpeed_item.addActionListener(this);
+		optionsMenu.add(skipIdle_item=new JRadioButtonMenuItem("Skip Idle Audio in WAV Files",theApp.isSkipIdle()));
+		skipIdle_item.addActionListener(this);
+		optionsMenu.add(snippet_item=new JMenuItem("Save Audio Snippets of Traffic"));
+		snippet_item.addActionListener(this);
+		optionsMenu.add(archive_item=new JMenuItem("Archive Live Audio While Active"));
+		archive_item.addActionListener(this);
 		optionsMenu.add(debug_item=new JRadioButtonMenuItem("Debug Mode",theApp.isDebug()));		
 		debug_item.addActionListener(this);
 		optionsMenu.add(invert_item=new JRadioButtonMenuItem("Invert",theApp.isInvertSignal()));
@@ -287,14 +301,19 @@ public class DisplayFrame extends JFrame implements ActionListener {
 			else theApp.setDebug(true);
 		}
 		// Run through all the mode names
-		for (int a=0;a<theApp.MODENAMES.length;a++)	{
-			if (event_name==theApp.MODENAMES[a]) theApp.setSystem(a);
+		for (int a=0;a<Rivet.MODENAMES.length;a++)	{
+			if (event_name==Rivet.MODENAMES[a]) theApp.setSystem(a);
 		}
 		// Load a WAV file
 		if (event_name=="Load a WAV File")	{
 			String fileName=loadDialogBox();
 			if (fileName!=null) theApp.loadWAVfile(fileName);
 		}
+		// Decode part of a WAV file
+		if (event_name=="Decode Part of a WAV File")	{
+			String fileName=loadDialogBox();
+			if (fileName!=null) theApp.loadWAVfileRange(fileName);
+		}
 		// Save to File
 		if (event_name=="Save to File")	{		
 			if (theApp.getLogging()==false)	{
@@ -330,6 +349,11 @@ public class DisplayFrame extends JFrame implements ActionListener {
 			if (theApp.isSoundCardInput()==true) theApp.setSoundCardInput(false);
 			else theApp.setSoundCardInput(true);
 		}
+		// Network Input
+		if (event_name=="Network Input")	{
+			if (theApp.isNetworkInput()==true) theApp.stopNetworkInput();
+			else theApp.setNetworkOptions();
+		}
 		// Reset the decoder state
 		if (event_name=="Reset Decoding State")	{
 			theApp.resetDecoderState();
@@ -342,6 +366,26 @@ public class DisplayFrame extends JFrame implements ActionListener {
 		if (event_name=="Baudot & FSK Options")	{
 			theApp.setRTTYOptions();
 		}
+		// Replay speed
+		if (event_name=="Replay Speed")	{
+			theApp.setReplaySpeedOptions();
+		}
+		// Audio snippets
+		if (event_name=="Save Audio Snippets of Traffic")	{
+			theApp.setSnippetOptions();
+		}
+		// Archiving live audio while active
+		if (event_name=="Archive Live Audio While Active")	{
+			theApp.setArchiveOptions();
+		}
+		// Skip idle audio
+		if (event_name=="Skip Idle Audio in WAV Files")	{
+			theApp.setSkipIdle(!theApp.isSkipIdle());
+		}
+		// Soundcard buffer options
+		if (event_name=="Soundcard Buffer Options")	{
+			theApp.setCaptureOptions();
+		}
 		// CIS36-50 Options
 		if (event_name=="CIS36-50 Options")	{
 			theApp.setBEEOptions();
@@ -439,6 +483,8 @@ public class DisplayFrame extends JFrame implements ActionListener {
 		F06a_item.setSelected(theApp.isF06a());
 		debug_item.setSelected(theApp.isDebug());
 		soundcard_item.setSelected(theApp.isSoundCardInput());
+		skipIdle_item.setSelected(theApp.isSkipIdle());
+		network_item.setSelected(theApp.isNetworkInput());
 		invert_item.setSelected(theApp.isInvertSignal());
 		bitstream_item.setSelected(theApp.isBitStreamOut());
 		freeChannelMarkerGW_item.setSelected(theApp.isViewGWChannelMarkers());
@@ -489,7 +535,7 @@ public class DisplayFrame extends JFrame implements ActionListener {
 	}
 	
 	private void statusBarUpdate()	{
-		statusBar.setModeLabel(theApp.MODENAMES[theApp.getSystem()]);
+		statusBar.setModeLabel(Rivet.MODENAMES[theApp.getSystem()]);
 		// Update the soundcard input slider
 		statusBar.setSoundCardInput(theApp.getSoundCardLevel());
 		theApp.setSoundCardLevel(theApp.getSoundCardLevel());
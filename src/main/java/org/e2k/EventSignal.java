@@ -0,0 +1,58 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// Rivet Copyright (C) 2011 Ian Wraith
+// This program comes with ABSOLUTELY NO WARRANTY
+
+package org.e2k;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Lets a thread sleep until another thread tells it something has happened rather than polling
+// The waiting thread takes a ticket before it checks whatever it is waiting for and then only
+// sleeps if nothing has been signalled since it took the ticket so a signal can never be missed
+// Signalling only takes the lock when a thread is actually waiting
+public class EventSignal {
+
+	private final AtomicLong count=new AtomicLong();
+	private volatile int waiters=0;
+
+	// Take a ticket before checking the condition being waited for
+	public long ticket()	{
+		return count.get();
+	}
+
+	// Tell any waiting thread something has happened
+	public void signal()	{
+		count.incrementAndGet();
+		if (waiters>0)	{
+			synchronized (this)	{
+				notifyAll();
+			}
+		}
+	}
+
+	// Wait until there has been a signal since the ticket was taken or timeout milliseconds have passed (0 waits for ever)
+	// Returns true if there has been a signal
+	public boolean await (long ticket,long timeout) throws InterruptedException	{
+		if (count.get()!=ticket) return true;
+		synchronized (this)	{
+			waiters++;
+			try	{
+				if (count.get()==ticket) wait(timeout);
+			}
+			finally	{
+				waiters--;
+			}
+		}
+		return (count.get()!=ticket);
+	}
+
+}
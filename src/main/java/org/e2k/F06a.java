@@ -16,6 +16,9 @@
 package org.e2k;
 
 import java.awt.Color;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import javax.swing.JOptionPane;
 
 public class F06a extends FSK2001000 {
@@ -26,6 +29,18 @@ public class F06a extends FSK2001000 {
 		super(tapp, baud);
 		encodingType = 0;
 	}
+	
+	public void writeState (DataOutputStream out) throws IOException	{
+		super.writeState(out);
+		out.writeInt(encodingType);
+		Checkpoint.writeInts(out,msgStartPos);
+	}
+	
+	public void readState (DataInputStream in) throws IOException	{
+		super.readState(in);
+		encodingType=in.readInt();
+		Checkpoint.readInts(in,msgStartPos);
+	}
 
 	public void setState(int state) {
 		this.state=state;
@@ -51,19 +66,19 @@ public class F06a extends FSK2001000 {
 			// Check the sample rate
 			if (waveData.getSampleRate()!=8000.0)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"WAV files containing\nFSK200/1000 recordings must have\nbeen recorded at a sample rate\nof 8 KHz.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("WAV files containing\nFSK200/1000 recordings must have\nbeen recorded at a sample rate\nof 8 KHz.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			// Check this is a mono recording
 			if (waveData.getChannels()!=1)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"Rivet can only process\nmono WAV files.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("Rivet can only process\nmono WAV files.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			// Check this is a 16 bit WAV file
 			if (waveData.getSampleSizeInBits()!=16)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"Rivet can only process\n16 bit WAV files.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("Rivet can only process\n16 bit WAV files.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			samplesPerSymbol=samplesPerSymbol(baudRate,waveData.getSampleRate());
@@ -187,7 +202,7 @@ public class F06a extends FSK2001000 {
             // Check this is standard F06
             theApp.writeLine(String.format("[INFO] Standard F06 header block detected. Switching to F06 decoding..."), Color.BLUE, theApp.boldFont);
             theApp.setSystem(8);
-			theApp.setModeLabel(theApp.MODENAMES[8]);
+			theApp.setModeLabel(Rivet.MODENAMES[8]);
 			txType=2;
 		}
 
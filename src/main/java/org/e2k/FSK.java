@@ -13,6 +13,9 @@
 
 package org.e2k;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import javax.swing.JOptionPane;
 
 public class FSK extends FFT {
@@ -26,6 +29,20 @@ public class FSK extends FFT {
 	public boolean lettersMode=true;
 	public double kalmanNew=0.0;
 	public double kalmanOld=0.0; 
+	
+	// Save the shift and filter state every FSK and MFSK decoder has
+	protected void writeFSKState (DataOutputStream out) throws IOException	{
+		out.writeBoolean(lettersMode);
+		out.writeDouble(kalmanNew);
+		out.writeDouble(kalmanOld);
+	}
+	
+	// Put back what writeFSKState() saved
+	protected void readFSKState (DataInputStream in) throws IOException	{
+		lettersMode=in.readBoolean();
+		kalmanNew=in.readDouble();
+		kalmanOld=in.readDouble();
+	}
 			
 	// Runs a 64 point FFT on a FSK200/500 sample recorded at 8 KHz 
 	public int doFSK200500_8000FFT (CircularDataBuffer circBuf,WaveData waveData,int start,int ss)	{
@@ -251,7 +268,7 @@ public class FSK extends FFT {
 		}	
 	
 	// Calculates the half symbol bin values for the RTTY code
-	public double[] doRTTYHalfSymbolBinRequest (double baud,CircularDataBuffer circBuf,int start,int bin0,int bin1)	{
+	public double[] doRTTYHalfSymbolBinRequest (Rivet rTheApp,double baud,CircularDataBuffer circBuf,int start,int bin0,int bin1)	{
 		int a;
 		double vals[]=new double[2];
 		// 45.45 baud
@@ -319,7 +336,7 @@ public class FSK extends FFT {
 		else if (baud==600) return (do600baudFSKHalfSymbolBinRequest (circBuf,start,bin0,bin1));
 		else	{
 			// We have a problem here !
-			JOptionPane.showMessageDialog(null,"Unsupported Baud Rate","Rivet", JOptionPane.ERROR_MESSAGE);
+			rTheApp.showMessage("Unsupported Baud Rate",JOptionPane.ERROR_MESSAGE);
 			return null;
 		}
 	}
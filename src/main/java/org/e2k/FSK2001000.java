@@ -15,9 +15,12 @@
 package org.e2k;
 
 import java.awt.Color;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import javax.swing.JOptionPane;
 
-public class FSK2001000 extends FSK {
+public class FSK2001000 extends FSK implements BlockDecoder {
 
 	protected int baudRate=200;
 	protected int state=0;
@@ -25,7 +28,7 @@ public class FSK2001000 extends FSK {
 	protected Rivet theApp;
 	public long sampleCount=0;
 	protected long symbolCounter=0;
-	protected CircularDataBuffer energyBuffer=new CircularDataBuffer();
+	protected CircularDataBuffer energyBuffer;
 	protected int characterCount=0;
 	protected int highBin;
 	protected int lowBin;
@@ -44,6 +47,7 @@ public class FSK2001000 extends FSK {
 	public FSK2001000 (Rivet tapp,int baud)	{
 		baudRate=baud;
 		theApp=tapp;
+		energyBuffer=new CircularDataBuffer(theApp);
 		circularBitSet.setTotalLength(288);
 		crcCalculator = new CRC(16, 0x1021, 0xffff, 0xffff, true, true);
 	}
@@ -66,6 +70,48 @@ public class FSK2001000 extends FSK {
 	public int getState() {
 		return state;
 	}
+	
+	public void writeState (DataOutputStream out) throws IOException	{
+		writeFSKState(out);
+		out.writeInt(state);
+		out.writeDouble(samplesPerSymbol);
+		out.writeLong(sampleCount);
+		out.writeLong(symbolCounter);
+		energyBuffer.writeState(out);
+		out.writeInt(characterCount);
+		out.writeInt(highBin);
+		out.writeInt(lowBin);
+		Checkpoint.writeDoubles(out,adjBuffer);
+		out.writeInt(adjCounter);
+		circularBitSet.writeState(out);
+		out.writeInt(bitCount);
+		out.writeInt(blockCount);
+		out.writeInt(missingBlockCount);
+		out.writeInt(bitsSinceLastBlockHeader);
+		out.writeInt(messageTotalBlockCount);
+		out.writeInt(txType);
+	}
+	
+	public void readState (DataInputStream in) throws IOException	{
+		readFSKState(in);
+		state=in.readInt();
+		samplesPerSymbol=in.readDouble();
+		sampleCount=in.readLong();
+		symbolCounter=in.readLong();
+		energyBuffer.readState(in);
+		characterCount=in.readInt();
+		highBin=in.readInt();
+		lowBin=in.readInt();
+		Checkpoint.readDoubles(in,adjBuffer);
+		adjCounter=in.readInt();
+		circularBitSet.readState(in);
+		bitCount=in.readInt();
+		blockCount=in.readInt();
+		missingBlockCount=in.readInt();
+		bitsSinceLastBlockHeader=in.readInt();
+		messageTotalBlockCount=in.readInt();
+		txType=in.readInt();
+	}
 
 	public boolean decode (CircularDataBuffer circBuf,WaveData waveData)	{
 		// Just starting
@@ -73,19 +119,19 @@ public class FSK2001000 extends FSK {
 			// Check the sample rate
 			if (waveData.getSampleRate()!=8000.0)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"WAV files containing\nFSK200/1000 recordings must have\nbeen recorded at a sample rate\nof 8 KHz.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("WAV files containing\nFSK200/1000 recordings must have\nbeen recorded at a sample rate\nof 8 KHz.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			// Check this is a mono recording
 			if (waveData.getChannels()!=1)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"Rivet can only process\nmono WAV files.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("Rivet can only process\nmono WAV files.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			// Check this is a 16 bit WAV file
 			if (waveData.getSampleSizeInBits()!=16)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"Rivet can only process\n16 bit WAV files.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("Rivet can only process\n16 bit WAV files.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			samplesPerSymbol=samplesPerSymbol(baudRate,waveData.getSampleRate());
@@ -152,6 +198,29 @@ public class FSK2001000 extends FSK {
 		symbolCounter++;
 		return true;
 	}
+	
+	// Count samples which were only added to the circular buffer
+	public void skipSamples (int count)	{
+		sampleCount=sampleCount+count;
+		symbolCounter=symbolCounter+count;
+	}
+	
+	// Return how many of the coming samples decode() will do nothing with apart from counting them
+	public long idleSamples()	{
+		// The sync hunt only starts once the buffer is full
+		if (state==1)	{
+			if (sampleCount<=0) return 1-sampleCount;
+			else return 0;
+		}
+		// Bits are only decoded at the start of each symbol
+		else if ((state==2)||(state==3))	{
+			if (symbolCounter>=samplesPerSymbol) return 0;
+			else return (long)Math.ceil(samplesPerSymbol-symbolCounter);
+		}
+		// Decoding has failed
+		else if (state<0) return Long.MAX_VALUE;
+		else return 0;
+	}
 
 	// Look for a sequence of 4 alternating tones with 1000 Hz difference
 	protected String syncSequenceHunt (CircularDataBuffer circBuf,WaveData waveData)	{
@@ -364,7 +433,7 @@ public class FSK2001000 extends FSK {
 			// Check whether this is F06a.
 			theApp.writeLine(String.format("[INFO] F06a block detected. Switching to F06a decoding..."), Color.BLUE, theApp.boldFont);
 			theApp.setSystem(12);
-			theApp.setModeLabel(theApp.MODENAMES[12]);
+			theApp.setModeLabel(Rivet.MODENAMES[12]);
 			return;
 		} else if (frameIndex == 1 && data[0] == 0x1b) {
 			txType = 0;
@@ -15,9 +15,12 @@ package org.e2k;
 
 import java.awt.Color;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import javax.swing.JOptionPane;
 
-public class FSK200500 extends FSK {
+public class FSK200500 extends FSK implements BlockDecoder {
 	
 	private int baudRate=200;
 	private int state=0;
@@ -26,7 +29,7 @@ public class FSK200500 extends FSK {
 	public long sampleCount=0;
 	private long symbolCounter=0;
 	private StringBuilder lineBuffer=new StringBuilder();
-	private CircularDataBuffer energyBuffer=new CircularDataBuffer();
+	private CircularDataBuffer energyBuffer;
 	private int characterCount=0;
 	private int highBin;
 	private int lowBin;
@@ -42,6 +45,7 @@ public class FSK200500 extends FSK {
 	public FSK200500 (Rivet tapp,int baud)	{
 		baudRate=baud;
 		theApp=tapp;
+		energyBuffer=new CircularDataBuffer(theApp);
 	}
 	
 	public void setBaudRate(int baudRate) {
@@ -62,6 +66,46 @@ public class FSK200500 extends FSK {
 	public int getState() {
 		return state;
 	}
+	
+	public void writeState (DataOutputStream out) throws IOException	{
+		writeFSKState(out);
+		out.writeInt(state);
+		out.writeDouble(samplesPerSymbol);
+		out.writeLong(sampleCount);
+		out.writeLong(symbolCounter);
+		Checkpoint.writeString(out,lineBuffer.toString());
+		energyBuffer.writeState(out);
+		out.writeInt(characterCount);
+		out.writeInt(highBin);
+		out.writeInt(lowBin);
+		Checkpoint.writeBooleans(out,inChar);
+		out.writeInt(bcount);
+		out.writeLong(missingCharCounter);
+		out.writeLong(totalCharCounter);
+		Checkpoint.writeDoubles(out,adjBuffer);
+		out.writeInt(adjCounter);
+		out.writeDouble(errorPercentage);
+	}
+	
+	public void readState (DataInputStream in) throws IOException	{
+		readFSKState(in);
+		state=in.readInt();
+		samplesPerSymbol=in.readDouble();
+		sampleCount=in.readLong();
+		symbolCounter=in.readLong();
+		Checkpoint.readString(in,lineBuffer);
+		energyBuffer.readState(in);
+		characterCount=in.readInt();
+		highBin=in.readInt();
+		lowBin=in.readInt();
+		Checkpoint.readBooleans(in,inChar);
+		bcount=in.readInt();
+		missingCharCounter=in.readLong();
+		totalCharCounter=in.readLong();
+		Checkpoint.readDoubles(in,adjBuffer);
+		adjCounter=in.readInt();
+		errorPercentage=in.readDouble();
+	}
 		
 	public boolean decode (CircularDataBuffer circBuf,WaveData waveData)	{
 		// Just starting
@@ -69,19 +113,19 @@ public class FSK200500 extends FSK {
 			// Check the sample rate
 			if (waveData.getSampleRate()!=8000.0)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"WAV files containing\nFSK200/500 recordings must have\nbeen recorded at a sample rate\nof 8 KHz.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("WAV files containing\nFSK200/500 recordings must have\nbeen recorded at a sample rate\nof 8 KHz.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			// Check this is a mono recording
 			if (waveData.getChannels()!=1)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"Rivet can only process\nmono WAV files.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("Rivet can only process\nmono WAV files.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			// Check this is a 16 bit WAV file
 			if (waveData.getSampleSizeInBits()!=16)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"Rivet can only process\n16 bit WAV files.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("Rivet can only process\n16 bit WAV files.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			samplesPerSymbol=samplesPerSymbol(baudRate,waveData.getSampleRate());
@@ -187,6 +231,29 @@ public class FSK200500 extends FSK {
 		return true;				
 	}
 	
+	// Count samples which were only added to the circular buffer
+	public void skipSamples (int count)	{
+		sampleCount=sampleCount+count;
+		symbolCounter=symbolCounter+count;
+	}
+	
+	// Return how many of the coming samples decode() will do nothing with apart from counting them
+	public long idleSamples()	{
+		// The sync hunt only starts once the buffer is full
+		if (state==1)	{
+			if (sampleCount<=0) return 1-sampleCount;
+			else return 0;
+		}
+		// Bits are only decoded at the start of each symbol
+		else if (state==2)	{
+			if (symbolCounter>=samplesPerSymbol) return 0;
+			else return (long)Math.ceil(samplesPerSymbol-symbolCounter);
+		}
+		// Decoding has failed
+		else if (state<0) return Long.MAX_VALUE;
+		else return 0;
+	}
+	
 	// Look for a sequence of 4 alternating tones with 500 Hz difference
 	private String syncSequenceHunt (CircularDataBuffer circBuf,WaveData waveData)	{
 		int difference;
@@ -14,10 +14,13 @@
 package org.e2k;
 
 import java.awt.Color;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.List;
 import javax.swing.JOptionPane;
 
-public class FSKraw extends FSK {
+public class FSKraw extends FSK implements ModeDecoder {
 	
 	private final boolean NOISY=false;
 	private double baudRate=50;
@@ -68,25 +71,65 @@ public class FSKraw extends FSK {
 		return state;
 	}
 	
+	public void writeState (DataOutputStream out) throws IOException	{
+		writeFSKState(out);
+		out.writeInt(state);
+		out.writeDouble(samplesPerSymbol);
+		out.writeLong(sampleCount);
+		out.writeLong(symbolCounter);
+		out.writeInt(highBin);
+		out.writeInt(lowBin);
+		out.writeInt(characterCounter);
+		Checkpoint.writeDoubles(out,adjBuffer);
+		out.writeInt(adjCounter);
+		circularBitSet.writeState(out);
+		out.writeBoolean(display);
+		out.writeInt(charactersRemaining);
+		out.writeBoolean(activeTrigger);
+		out.writeLong(bitsReceived);
+		out.writeBoolean(sBit0);
+		out.writeBoolean(sBit1);
+	}
+	
+	public void readState (DataInputStream in) throws IOException	{
+		readFSKState(in);
+		state=in.readInt();
+		samplesPerSymbol=in.readDouble();
+		sampleCount=in.readLong();
+		symbolCounter=in.readLong();
+		highBin=in.readInt();
+		lowBin=in.readInt();
+		characterCounter=in.readInt();
+		Checkpoint.readDoubles(in,adjBuffer);
+		adjCounter=in.readInt();
+		circularBitSet.readState(in);
+		display=in.readBoolean();
+		charactersRemaining=in.readInt();
+		activeTrigger=in.readBoolean();
+		bitsReceived=in.readLong();
+		sBit0=in.readBoolean();
+		sBit1=in.readBoolean();
+	}
+	
 	public boolean decode (CircularDataBuffer circBuf,WaveData waveData)	{
 		// Just starting
 		if (state==0)	{
 			// Check the sample rate
 			if (waveData.getSampleRate()!=8000.0)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"WAV files containing\nFSK recordings must have\nbeen recorded at a sample rate\nof 8 KHz.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("WAV files containing\nFSK recordings must have\nbeen recorded at a sample rate\nof 8 KHz.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			// Check this is a mono recording
 			if (waveData.getChannels()!=1)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"Rivet can only process\nmono WAV files.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("Rivet can only process\nmono WAV files.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			// Check this is a 16 bit WAV file
 			if (waveData.getSampleSizeInBits()!=16)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"Rivet can only process\n16 bit WAV files.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("Rivet can only process\n16 bit WAV files.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			setState(1);
@@ -301,9 +344,9 @@ public class FSKraw extends FSK {
 		boolean out;
 		int sp=(int)samplesPerSymbol/2;
 		// First half
-		double early[]=doRTTYHalfSymbolBinRequest(baudRate,circBuf,pos,lowBin,highBin);
+		double early[]=doRTTYHalfSymbolBinRequest(theApp,baudRate,circBuf,pos,lowBin,highBin);
 		// Last half
-		double late[]=doRTTYHalfSymbolBinRequest(baudRate,circBuf,(pos+sp),lowBin,highBin);
+		double late[]=doRTTYHalfSymbolBinRequest(theApp,baudRate,circBuf,(pos+sp),lowBin,highBin);
 		// Feed the early late difference into a buffer
 		if ((early[0]+late[0])>(early[1]+late[1])) addToAdjBuffer(getPercentageDifference(early[0],late[0]));
 		else addToAdjBuffer(getPercentageDifference(early[1],late[1]));
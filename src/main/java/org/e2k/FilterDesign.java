@@ -0,0 +1,63 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// Rivet Copyright (C) 2011 Ian Wraith
+// This program comes with ABSOLUTELY NO WARRANTY
+
+package org.e2k;
+
+// Kaiser windowed sinc low pass filter design shared by the resampler and channelizer
+public class FilterDesign {
+
+	// Kaiser's estimate of the number of taps needed
+	// transition is the width of the transition band as a fraction of the sample rate
+	public static int kaiserLength (double transition,double attenuation)	{
+		return (int)Math.ceil((attenuation-7.95)/(14.36*transition))+1;
+	}
+
+	// The Kaiser window beta for a stop band attenuation in dB
+	public static double kaiserBeta (double attenuation)	{
+		if (attenuation>50.0) return 0.1102*(attenuation-8.7);
+		else if (attenuation>21.0) return (0.5842*Math.pow(attenuation-21.0,0.4))+(0.07886*(attenuation-21.0));
+		return 0.0;
+	}
+
+	// A low pass filter with a cutoff of fc (as a fraction of the sample rate) and a gain of one
+	public static double[] lowPass (int length,double fc,double attenuation)	{
+		double taps[]=new double[length];
+		double beta=kaiserBeta(attenuation);
+		double centre=(length-1)/2.0;
+		double i0beta=besselI0(beta);
+		int n;
+		for (n=0;n<length;n++)	{
+			double t=n-centre;
+			double sinc;
+			if (t==0.0) sinc=2.0*fc;
+			else sinc=Math.sin(2.0*Math.PI*fc*t)/(Math.PI*t);
+			double r=0.0;
+			if (centre>0.0) r=t/centre;
+			taps[n]=sinc*besselI0(beta*Math.sqrt(Math.max(0.0,1.0-(r*r))))/i0beta;
+		}
+		return taps;
+	}
+
+	// The zeroth order modified Bessel function of the first kind
+	public static double besselI0 (double x)	{
+		double sum=1.0,term=1.0,q=x*x/4.0;
+		int k;
+		for (k=1;k<50;k++)	{
+			term=term*q/(k*k);
+			sum=sum+term;
+			if (term<sum*1.0e-12) break;
+		}
+		return sum;
+	}
+
+}
@@ -14,10 +14,13 @@
 package org.e2k;
 
 import java.awt.Color;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.List;
 import javax.swing.JOptionPane;
 
-public class GW extends FSK {
+public class GW extends FSK implements BlockDecoder {
 	
 	private int state=0;
 	private double samplesPerSymbol100;
@@ -52,19 +55,19 @@ public class GW extends FSK {
 			// Check the sample rate
 			if (waveData.getSampleRate()!=8000.0)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"WAV files containing\nGW FSK recordings must have\nbeen recorded at a sample rate\nof 8 KHz.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("WAV files containing\nGW FSK recordings must have\nbeen recorded at a sample rate\nof 8 KHz.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			// Check this is a mono recording
 			if (waveData.getChannels()!=1)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"Rivet can only process\nmono WAV files.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("Rivet can only process\nmono WAV files.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			// Check this is a 16 bit WAV file
 			if (waveData.getSampleSizeInBits()!=16)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"Rivet can only process\n16 bit WAV files.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("Rivet can only process\n16 bit WAV files.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			// sampleCount must start negative to account for the buffer gradually filling
@@ -112,10 +115,79 @@ public class GW extends FSK {
 		symbolCounter++;
 		return true;
 	}	
+	
+	// Count samples which were only added to the circular buffer
+	public void skipSamples (int count)	{
+		sampleCount=sampleCount+count;
+		symbolCounter=symbolCounter+count;
+	}
+	
+	// Return how many of the coming samples decode() will do nothing with apart from counting them
+	public long idleSamples()	{
+		// The sync hunt only starts once the buffer is full
+		if (state==1)	{
+			if (sampleCount<=0) return 1-sampleCount;
+			else return 0;
+		}
+		// Bits are only decoded at the start of each symbol
+		else if (state==2)	{
+			if (symbolCounter>=samplesPerSymbol100) return 0;
+			else return (long)Math.ceil(samplesPerSymbol100-symbolCounter);
+		}
+		// Decoding has failed
+		else if (state<0) return Long.MAX_VALUE;
+		else return 0;
+	}
 
 	public int getState() {
 		return state;
 	}
+	
+	public void writeState (DataOutputStream out) throws IOException	{
+		writeFSKState(out);
+		out.writeInt(state);
+		out.writeDouble(samplesPerSymbol100);
+		out.writeLong(sampleCount);
+		out.writeLong(symbolCounter);
+		out.writeInt(highTone);
+		out.writeInt(lowTone);
+		out.writeInt(highBin);
+		out.writeInt(lowBin);
+		Checkpoint.writeDoubles(out,adjBuffer);
+		out.writeInt(adjCounter);
+		dataBitSet.writeState(out);
+		out.writeInt(characterCount);
+		out.writeInt(bitCount);
+		Checkpoint.writeString(out,positionReport.toString());
+		out.writeBoolean(receivingPositionReport);
+		Checkpoint.writeString(out,lastPositionFragment);
+		out.writeInt(positionFragmentCounter);
+		out.writeLong(fragmentStartTime);
+		out.writeBoolean(shoreSide);
+	}
+	
+	public void readState (DataInputStream in) throws IOException	{
+		readFSKState(in);
+		state=in.readInt();
+		samplesPerSymbol100=in.readDouble();
+		sampleCount=in.readLong();
+		symbolCounter=in.readLong();
+		highTone=in.readInt();
+		lowTone=in.readInt();
+		highBin=in.readInt();
+		lowBin=in.readInt();
+		Checkpoint.readDoubles(in,adjBuffer);
+		adjCounter=in.readInt();
+		dataBitSet.readState(in);
+		characterCount=in.readInt();
+		bitCount=in.readInt();
+		Checkpoint.readString(in,positionReport);
+		receivingPositionReport=in.readBoolean();
+		lastPositionFragment=Checkpoint.readString(in);
+		positionFragmentCounter=in.readInt();
+		fragmentStartTime=in.readLong();
+		shoreSide=in.readBoolean();
+	}
 
 	public void setState(int state) {
 		this.state=state;
@@ -320,9 +392,9 @@ public class GW extends FSK {
 			lo.append(dataBitSet.extractSectionFromStart(0,14));
 			lo.append(") ("+displayGWAsHex(0)+")");
 			
-			// If we have been in receiving position report for over 60 seconds it is never going to come so reset
+			// If we have been in receiving position report for over 60 seconds (of audio) it is never going to come so reset
 			if (receivingPositionReport==true)	{
-				long difTime=(System.currentTimeMillis()/1000)-fragmentStartTime;
+				long difTime=theApp.getSampleClock().getTimeSeconds()-fragmentStartTime;
 				// Only do this if positionFragmentCounter>0 to preven this appearing when monitoring
 				// shore side GW broadcasts
 				if ((difTime>60)&&(positionFragmentCounter>0))	{
@@ -340,7 +412,7 @@ public class GW extends FSK {
 				receivingPositionReport=true;
 				positionFragmentCounter=0;
 				// Record the fragment starting time
-				fragmentStartTime=System.currentTimeMillis()/1000;
+				fragmentStartTime=theApp.getSampleClock().getTimeSeconds();
 				//positionReport.append(theApp.getTimeStamp()+" "+displayGWAsAscii(0));
 				// Display the packet details
 				theApp.writeLine(lo.toString(),Color.BLACK,theApp.boldFont);
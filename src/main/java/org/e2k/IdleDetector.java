@@ -0,0 +1,198 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// Rivet Copyright (C) 2011 Ian Wraith
+// This program comes with ABSOLUTELY NO WARRANTY
+
+package org.e2k;
+
+import edu.emory.mathcs.jtransforms.fft.DoubleFFT_1D;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+// Decides whether a stretch of audio is just band noise or might hold a signal
+// The input is split into short blocks and each block is looked at two ways
+// Energy : a block well above the noise floor (which is tracked slowly) is active
+// Spectral flatness : noise has a flat spectrum while FSK and MFSK tones stand out so a block with
+// a spectrum which is far from flat is active even when it is no louder than the noise
+// A single tone hardly changes the flatness so the biggest bin is also compared with the average (the crest)
+// Once a block is active the audio stays active for a hang time so the decoders can finish off
+public class IdleDetector {
+
+	// The audio band which is looked at
+	private static final double LOW_FREQUENCY=300.0;
+	private static final double HIGH_FREQUENCY=3400.0;
+	// How quickly the averaged spectrum follows the signal
+	private static final double SPECTRUM_ALPHA=0.25;
+	// How quickly the noise floor can rise (per second) , it falls straight away
+	// It rises even through active audio so a change in band conditions is soon followed
+	private static final double FLOOR_RISE=1.2;
+	private static final double MIN_FLOOR=1.0;
+	private final int blockSize;
+	private final DoubleFFT_1D fft;
+	private final double window[];
+	private final double data[];
+	private final double spectrum[];
+	private final int lowBin;
+	private final int highBin;
+	private final double floorRise;
+	private final int hangBlocks;
+	private double energyRatio=4.0;
+	private double flatnessThreshold=0.5;
+	private double crestThreshold=8.0;
+	private double noiseFloor=-1.0;
+	private int hangCounter=0;
+	private double lastFlatness=1.0;
+	private double lastCrest=1.0;
+	private double lastEnergy=0.0;
+
+	public IdleDetector (double sampleRate,double hangSeconds)	{
+		// Blocks of about 32 ms rounded to a power of two
+		int size=64;
+		while (size<sampleRate*0.032) size=size*2;
+		blockSize=size;
+		fft=new DoubleFFT_1D(blockSize);
+		data=new double[blockSize];
+		spectrum=new double[(blockSize/2)+1];
+		window=new double[blockSize];
+		int a;
+		for (a=0;a<blockSize;a++)	{
+			window[a]=0.5-(0.5*Math.cos((2.0*Math.PI*a)/(blockSize-1)));
+		}
+		lowBin=Math.max(1,(int)Math.ceil(LOW_FREQUENCY*blockSize/sampleRate));
+		highBin=Math.min(blockSize/2,(int)Math.floor(Math.min(HIGH_FREQUENCY,sampleRate/2.0)*blockSize/sampleRate));
+		floorRise=Math.pow(FLOOR_RISE,blockSize/sampleRate);
+		hangBlocks=(int)Math.ceil((hangSeconds*sampleRate)/blockSize);
+		// Start off active so the start of the input is always decoded
+		hangCounter=hangBlocks;
+	}
+
+	// The number of samples which should be passed to isActive() at a time
+	public int getBlockSize()	{
+		return blockSize;
+	}
+
+	// A block this many times the noise floor energy is active
+	public void setEnergyRatio (double ratio)	{
+		energyRatio=ratio;
+	}
+
+	// A block with a spectral flatness (0 to 1) below this is active
+	public void setFlatnessThreshold (double threshold)	{
+		flatnessThreshold=threshold;
+	}
+
+	// A block where the biggest part of the spectrum is this many times the average is active
+	public void setCrestThreshold (double threshold)	{
+		crestThreshold=threshold;
+	}
+
+	// Look at a block of getBlockSize() samples and return false if it and the hang time before it are idle
+	public boolean isActive (int samples[],int off)	{
+		int a;
+		double energy=0.0;
+		for (a=0;a<blockSize;a++)	{
+			double s=samples[off+a];
+			energy=energy+(s*s);
+			data[a]=s*window[a];
+		}
+		energy=energy/blockSize;
+		fft.realForward(data);
+		// Average the power spectrum over a few blocks so the noise looks flat
+		for (a=lowBin;a<=highBin;a++)	{
+			double power;
+			if (a==blockSize/2) power=data[1]*data[1];
+			else power=(data[a*2]*data[a*2])+(data[(a*2)+1]*data[(a*2)+1]);
+			spectrum[a]=spectrum[a]+(SPECTRUM_ALPHA*(power-spectrum[a]));
+		}
+		// Flatness is the geometric mean of the spectrum over the arithmetic mean
+		double logSum=0.0,sum=0.0,max=0.0;
+		int bins=0;
+		for (a=lowBin;a<=highBin;a++)	{
+			double p=spectrum[a]+1.0e-9;
+			logSum=logSum+Math.log(p);
+			sum=sum+p;
+			if (p>max) max=p;
+			bins++;
+		}
+		double flatness=1.0,crest=1.0;
+		if ((bins>0)&&(sum>0.0))	{
+			flatness=Math.exp(logSum/bins)/(sum/bins);
+			crest=max/(sum/bins);
+		}
+		lastFlatness=flatness;
+		lastCrest=crest;
+		lastEnergy=energy;
+		boolean active=false;
+		if ((noiseFloor>0.0)&&(energy>noiseFloor*energyRatio)) active=true;
+		if ((energy>0.0)&&((flatness<flatnessThreshold)||(crest>crestThreshold))) active=true;
+		// Track the noise floor
+		if ((noiseFloor<0.0)||(energy<noiseFloor)) noiseFloor=energy;
+		else noiseFloor=noiseFloor*floorRise;
+		// Digital silence mustn't leave the floor stuck at zero
+		if (noiseFloor<MIN_FLOOR) noiseFloor=MIN_FLOOR;
+		if (active==true) hangCounter=hangBlocks;
+		else if (hangCounter>0) hangCounter--;
+		return (active==true)||(hangCounter>0);
+	}
+
+	public double getLastFlatness()	{
+		return lastFlatness;
+	}
+
+	public double getLastCrest()	{
+		return lastCrest;
+	}
+
+	public double getLastEnergy()	{
+		return lastEnergy;
+	}
+
+	public double getNoiseFloor()	{
+		return noiseFloor;
+	}
+
+	// Start off idle instead so nothing is active until the detector has heard it
+	public void startIdle()	{
+		hangCounter=0;
+	}
+
+	// Go back to the state the detector started in
+	public void reset()	{
+		int a;
+		for (a=0;a<spectrum.length;a++)	{
+			spectrum[a]=0.0;
+		}
+		noiseFloor=-1.0;
+		hangCounter=hangBlocks;
+	}
+	
+	// Save the smoothed spectrum , noise floor and hang time for a checkpoint
+	public void writeState (DataOutputStream out) throws IOException	{
+		Checkpoint.writeDoubles(out,spectrum);
+		out.writeDouble(noiseFloor);
+		out.writeInt(hangCounter);
+		out.writeDouble(lastFlatness);
+		out.writeDouble(lastCrest);
+		out.writeDouble(lastEnergy);
+	}
+	
+	// Put back what writeState() saved
+	public void readState (DataInputStream in) throws IOException	{
+		Checkpoint.readDoubles(in,spectrum);
+		noiseFloor=in.readDouble();
+		hangCounter=in.readInt();
+		lastFlatness=in.readDouble();
+		lastCrest=in.readDouble();
+		lastEnergy=in.readDouble();
+	}
+
+}
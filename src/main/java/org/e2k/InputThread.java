@@ -14,34 +14,70 @@
 package org.e2k;
 
 import javax.sound.sampled.AudioFormat;
-import javax.sound.sampled.AudioInputStream;
-import javax.sound.sampled.AudioSystem;
 import javax.swing.JOptionPane;
-import java.io.DataOutputStream;
 import java.io.File;
-import java.io.PipedOutputStream;
+import java.io.IOException;
 
 public class InputThread extends Thread {
-	private boolean audioReady;
-	private boolean gettingAudio;
-	private boolean loadingFile;
-	private PipedOutputStream ps=new PipedOutputStream();
-	private DataOutputStream outPipe=new DataOutputStream(ps);
+	private volatile boolean audioReady;
+	private volatile boolean gettingAudio;
+	private volatile boolean loadingFile;
+	private static final int RING_SIZE=1<<17;
+	private SampleRingBuffer sampleBuffer=new SampleRingBuffer(RING_SIZE);
 	private File wavFile;
 	private long fileSize;
-	public final int CHUNK_SIZE=32768;
+	public final int CHUNK_SIZE=16384;
     private long fileCounter;
     private String errorCause="None";
     private long sampleCounter=0;
-    private static int VOLUMEBUFFERSIZE=100;
-	private int volumeBuffer[]=new int[VOLUMEBUFFERSIZE];
-	private int volumeBufferCounter=0;
+    // The display is updated with the input level this many times a second
+    private static final int LEVEL_SNAPSHOT_RATE=10;
+	private LevelMeter levelMeter=new LevelMeter(8000.0,LEVEL_SNAPSHOT_RATE);
 	private static int ISIZE=4096;
-	private byte buffer[]=new byte[ISIZE+1];
+	private int sampleBlock[]=new int[CHUNK_SIZE];
+	// Sound card capture
+	// The line buffer holds what the sound card has captured until it is read
+	// and the period is how much is read from it at a time
+	private int captureBufferMillis=200;
+	private int capturePeriodMillis=20;
+	private byte captureBuffer[]=new byte[0];
+	private PCMConverter captureConverter;
+	private double captureRate=8000.0;
+	private int lineBufferBytes=0;
+	// The number of times the line buffer was found full (so the sound card was throwing samples away)
+	// and the number of times it was found empty and then nothing came for longer than the line buffer holds
+	// (so the sound card had stopped delivering samples)
+	private volatile long captureOverruns=0;
+	private volatile long captureUnderruns=0;
+	// Capture to decode latency
+	// Each block put in the sample buffer is marked with its position and the time its last sample was captured
+	// and the decode loop reports back as it uses them
+	private static final int MARKS=64;
+	private long markPosition[]=new long[MARKS];
+	private long markTime[]=new long[MARKS];
+	private int markHead=0;
+	private int markTail=0;
+	private long bufferedPosition=0;
+	private long decodedPosition=0;
+	private double lastLatency=0.0;
+	private double averageLatency=0.0;
+	private double maxLatency=0.0;
 	private int inputLevel=0;
 	private Rivet theApp; 
 	private AudioMixer audioMixer;
-	private AudioInputStream audioInputStream;
+	private SampleSource fileSource;
+	// The number of samples at the start of a file load which only fill the decoders' history
+	private long primeLength=0;
+	// When the file being loaded was recorded (-1 if it isn't known) and the sample loading starts at
+	private long recordingStart=-1;
+	private long startFrame=0;
+	// How fast files are replayed (0 is as fast as possible)
+	private double replaySpeed=0.0;
+	private ReplayPacer pacer=new ReplayPacer(8000.0,0.0);
+	// A live source such as the network input which is read instead of the sound card
+	private volatile SampleSource liveSource=null;
+	// Signalled whenever there is something new for this thread to do
+	private final EventSignal stateSignal=new EventSignal();
 	
  
 	public InputThread (Rivet TtheApp) {
@@ -59,35 +95,64 @@ public class InputThread extends Thread {
     public void run()	{
     	// Run continuously
     	for (;;)	{
+    		long ticket=stateSignal.ticket();
     		// If the audio device is ready , the program wants to and we aren't already then
     		// get data from the audio device.
     		if ((audioReady==true)&&(loadingFile==false)&&(gettingAudio==false)) getSample();
     		else if (loadingFile==true) getFileData();
-    		// Add the following so the thread doesn't eat all of the CPU time
+    		else if (liveSource!=null) getLiveData();
+    		// Sleep until there is a file , the sound card or a live source to read
     		else	{
-    			try	{sleep(1);}
+    			try	{stateSignal.await(ticket,0);}
     			catch (Exception e)	{JOptionPane.showMessageDialog(null,"Error in run()\n"+e.toString(),"Rivet", JOptionPane.ERROR_MESSAGE);}
     			}
     		}
     }
     
     public WaveData startFileLoad (String fileName)	{
-    	WaveData waveData=new WaveData();
+    	return startFileLoad(fileName,null,null);
+    }
+    
+    // Load part of a WAV file or Rivet archive between two positions (either can be null for the start or end of the file)
+    // Loading starts early enough for the decoders' history to be filled with what came before the start
+    public WaveData startFileLoad (String fileName,String startPosition,String endPosition)	{
+    	WaveData waveData;
+    	RecordingSource wavReader=null;
     	try	{
     		wavFile=new File(fileName);
-    		fileSize=wavFile.length();
+    		wavReader=ArchiveReader.open(wavFile);
+    		primeLength=0;
+    		if ((startPosition!=null)||(endPosition!=null))	{
+    			long start=0,end=wavReader.getTotalSamples();
+    			if (startPosition!=null) start=wavReader.findFrame(startPosition);
+    			if (endPosition!=null) end=Math.min(end,wavReader.findFrame(endPosition));
+    			if (start>=end) throw new IOException("There is nothing to decode between samples "+Long.toString(start)+" and "+Long.toString(end));
+    			primeLength=Math.min(start,theApp.getHistoryLength(wavReader.getWaveData().getSampleRate()));
+    			wavReader.setRange(start-primeLength,end);
+    			fileSize=end-(start-primeLength);
+    		}
+    		// Only count the samples in the data chunk
+    		else fileSize=wavReader.getTotalSamples();
+    		startFrame=wavReader.getSamplesRead();
+    		recordingStart=SampleClock.findRecordingStart(wavReader,wavFile.getName());
     		fileCounter=0;
     		sampleCounter=0;
-			audioInputStream=AudioSystem.getAudioInputStream(wavFile);  
-			waveData.setBytesPerFrame(audioInputStream.getFormat().getFrameSize());
-	    	waveData.setSampleRate(audioInputStream.getFormat().getSampleRate());
-	    	waveData.setSampleSizeInBits(audioInputStream.getFormat().getSampleSizeInBits());
-	    	waveData.setChannels(audioInputStream.getFormat().getChannels());
-	    	waveData.setEndian(audioInputStream.getFormat().isBigEndian());
+    		fileSource=wavReader;
+    		waveData=wavReader.getWaveData();
+    		pacer=new ReplayPacer(waveData.getSampleRate(),replaySpeed);
 	    	theApp.setSoundCardInputOnly(false);
+	    	// Throw away anything left over from a previous load
+	    	sampleBuffer.clear();
+	    	levelMeter.setSampleRate(waveData.getSampleRate(),LEVEL_SNAPSHOT_RATE);
+	    	levelMeter.reset();
     		loadingFile=true;
+    		stateSignal.signal();
     	}
     	catch (Exception e)	{
+    		try	{
+    			if (wavReader!=null) wavReader.close();
+    		}
+    		catch (IOException ce)	{}
     		JOptionPane.showMessageDialog(null,"Error in startFileLoad()\n"+e.toString(),"Rivet", JOptionPane.ERROR_MESSAGE);
     		return null;
     	}
@@ -96,12 +161,14 @@ public class InputThread extends Thread {
     
     private boolean getFileData ()	{
     	// Load the .WAV file until it has all been read
-    	if (grabWavBlock()==false)	{
+    	if (grabFileBlock()==false)	{
     		try	{
-    			// Close the audio stream
-    			audioInputStream.close();
+    			// Close the file
+    			fileSource.close();
     			// Make sure the program knows the WAV file load operation is over
     			loadingFile=false;
+    			// Wake the decode loop so it can finish off the file
+    			sampleBuffer.getDataSignal().signal();
     		}
     		catch (Exception e)	{
     			errorCause=e.toString();
@@ -112,80 +179,80 @@ public class InputThread extends Thread {
     	return true;
     }
     
-    // Read in an int from a wav file
-	private boolean grabWavBlock () {
-	    // Decide how to handle the WAV data
-	    // 16 bit LE
-		if ((audioInputStream.getFormat().isBigEndian()==false)&&(audioInputStream.getFormat().getSampleSizeInBits()==16))	{
-			return grabWavBlock16LE (audioInputStream); 
-		}
-	    // 8 bit LE
-	    else if ((audioInputStream.getFormat().isBigEndian()==false)&&(audioInputStream.getFormat().getSampleSizeInBits()==8))	{
-	    	return grabWavBlock8LE (audioInputStream); 
-	    }
-	    else return false;
-	  }
-	
-	// Handle 16 bit little endian WAV files
-	private boolean grabWavBlock16LE (AudioInputStream audioStream)	{
-		int a,countLoad;
-		byte inBlock[]=new byte[CHUNK_SIZE];
-		try	{
-		    countLoad=audioStream.read(inBlock);
-		    for (a=0;a<countLoad;a=a+2)	{
-		    	outPipe.writeInt(LEconv16(inBlock[a],inBlock[a+1]));
-		    	fileCounter=fileCounter+2;
-		    	sampleCounter++;
-		    }
-		   }
-		   catch (Exception e)	{
-			JOptionPane.showMessageDialog(null,"Error in grabWavBlock16LE()\n"+e.toString(),"Rivet", JOptionPane.ERROR_MESSAGE);
-		    return false;
-		   } 
-		 if (countLoad<CHUNK_SIZE) return false;
-		 else return true;
-		 }
-
-	// Convert a 16 bit value from being little endian
-	private int LEconv16 (Byte a,Byte b)	{
-		return (a&0xFF|b<<8);
-	  }
-	
-	// Convert an 8 bit Java Byte to an Integer
-	private int LEconv8 (Byte a)	{
-	    return ((a&0xff)-128);
-	  }
-	
-	// Handle 8 bit LE WAV files
-	private boolean grabWavBlock8LE (AudioInputStream audioStream)	{
-		byte inBlock[]=new byte[CHUNK_SIZE];
-		int a,countLoad;
+    // Read a block of samples from the file and pass them to the decode loop
+    // Returns false once the end of the file has been reached
+	private boolean grabFileBlock () {
 		try	{
-			countLoad=audioStream.read(inBlock);
-			for (a=0;a<countLoad;a++)	{
-				outPipe.writeInt(LEconv8(inBlock[a]));
-				fileCounter++;
-				sampleCounter++;
-			}
+			int count=fileSource.read(sampleBlock,0,Math.min(sampleBlock.length,pacer.getBlockSize()));
+			if (count<=0) return false;
+			levelMeter.process(sampleBlock,0,count);
+			// Hold the samples back until they are due if the file is being replayed at a set speed
+			pacer.pace(count);
+			putSamples(count);
+			fileCounter=fileCounter+count;
+			sampleCounter=sampleCounter+count;
+			return true;
 		}
 		catch (Exception e)	{
-			JOptionPane.showMessageDialog(null,"Error in grabWavBlock8LE()\n"+e.toString(),"Rivet", JOptionPane.ERROR_MESSAGE);
+			JOptionPane.showMessageDialog(null,"Error in grabFileBlock()\n"+e.toString(),"Rivet", JOptionPane.ERROR_MESSAGE);
 			return false;
 		}
-		if (countLoad<CHUNK_SIZE) return false;
-		 else return true;
-	  }
+	}
+	
+	// Pass a block of file samples to the decode loop waiting for space in the ring if we need to
+	// Give up if the file load is stopped while waiting
+	private void putSamples (int count) throws InterruptedException	{
+		int done=0;
+		while ((done<count)&&(loadingFile==true))	{
+			long ticket=sampleBuffer.getSpaceSignal().ticket();
+			int written=sampleBuffer.write(sampleBlock,done,count-done);
+			done=done+written;
+			// Sleep until the decode loop reads some samples or the load is stopped
+			if (written==0) sampleBuffer.getSpaceSignal().await(ticket,0);
+		}
+	}
 	
-	// Return the PipedOutputSteam object so it can be connected to
-    public PipedOutputStream getPipedWriter() {
-        return this.ps;
+	// Return the ring buffer which the decode loop reads samples from
+    public SampleRingBuffer getSampleBuffer() {
+        return this.sampleBuffer;
       }
     
+    // Set how fast files are replayed as a multiple of real time or 0 for as fast as possible
+    // This is used the next time a file is loaded
+    public void setReplaySpeed (double speed)	{
+    	if (speed<0.0) throw new IllegalArgumentException("The replay speed can't be negative");
+    	replaySpeed=speed;
+    }
+    
+    public double getReplaySpeed()	{
+    	return replaySpeed;
+    }
+    
+    // Return the number of times replay couldn't keep up with the speed asked for
+    public long getReplayLateCount()	{
+    	return pacer.getLateCount();
+    }
+    
+    public long getPrimeLength()	{
+    	return primeLength;
+    }
+    
+    // When the file being loaded was recorded in milliseconds since 1970 or -1 if it isn't known
+    public long getRecordingStart()	{
+    	return recordingStart;
+    }
+    
+    // The sample in the file loading starts from
+    public long getStartFrame()	{
+    	return startFrame;
+    }
+    
     public boolean getLoadingFileState()	{
     	return this.loadingFile;
     }
     
     public int returnFileLoadPercentage()	{
+    	if (fileSize<=0) return 0;
     	double percentage=((double)fileCounter/(double)fileSize)*100.0;
     	return (int)percentage;
     }
@@ -197,9 +264,11 @@ public class InputThread extends Thread {
     // Allow the main thread to stop the file reading
     public boolean stopReadingFile ()	{
     	loadingFile=false;
+    	// Wake this thread if it is waiting for space in the ring
+    	sampleBuffer.getSpaceSignal().signal();
 		try	{
-			// Close the audio stream
-			audioInputStream.close();
+			// Close the file
+			fileSource.close();
 		}
 		catch (Exception e)	{
 			JOptionPane.showMessageDialog(null,"Error in stopReadingFile()\n"+e.toString(),"Rivet", JOptionPane.ERROR_MESSAGE);
@@ -232,6 +301,15 @@ public class InputThread extends Thread {
 			  // Sample according to the the WaveData objects parameters
 			  AudioFormat format=new AudioFormat((int)waveData.getSampleRate(),waveData.getSampleSizeInBits(),waveData.getChannels(),true,waveData.isEndian());
 			  audioMixer.setAudioFormat(format);
+			  // Size the line buffer and the period in whole frames
+			  captureConverter=new PCMConverter(PCMConverter.findEncoding(waveData.getSampleSizeInBits(),false),waveData.isEndian(),waveData.getChannels());
+			  int frameSize=captureConverter.getFrameSize();
+			  int periodFrames=Math.max(1,Math.min(CHUNK_SIZE,(int)(waveData.getSampleRate()*capturePeriodMillis/1000.0)));
+			  int bufferFrames=Math.max(periodFrames*2,(int)(waveData.getSampleRate()*captureBufferMillis/1000.0));
+			  captureBuffer=new byte[periodFrames*frameSize];
+			  audioMixer.setBufferSize(bufferFrames*frameSize);
+			  sampleBuffer.clear();
+			  resetCaptureCounters(waveData.getSampleRate());
 			  //audioMixer.setDefaultLine();
 			  // Handle any errors changing the mixer
 			  if (audioMixer.openLine()==false)	{
@@ -239,9 +317,12 @@ public class InputThread extends Thread {
 				  JOptionPane.showMessageDialog(null,err,"Rivet",JOptionPane.ERROR_MESSAGE);
 				  return;
 			  }
+			  // The mixer may not give us the buffer size we asked for
+			  lineBufferBytes=audioMixer.line.getBufferSize();
 			  audioMixer.line.start();
 			  audioReady=true;
 			  loadingFile=false;
+			  stateSignal.signal();
 		  } catch (Exception e) {
 			  String err="Fatal error in setupAudio()\n"+e.getMessage();
 			  JOptionPane.showMessageDialog(null,err,"Rivet",JOptionPane.ERROR_MESSAGE);
@@ -263,62 +344,214 @@ public class InputThread extends Thread {
     	}
     }
     
-    // Add this sample to the circular volume buffer
-    private void addToVolumeBuffer (int tsample)	{
-    	volumeBuffer[volumeBufferCounter]=tsample;
-    	volumeBufferCounter++;
-    	if (volumeBufferCounter==VOLUMEBUFFERSIZE) volumeBufferCounter=0;
-    }
-    
-    // Return the average volume over the last VOLUMEBUFFERSIZE samples
-    public int returnVolumeAverage ()	{
-    	long va=0;
-    	int a,volumeAverage=0;
-    	for (a=0;a<VOLUMEBUFFERSIZE;a++)	{
-    		va=va+Math.abs(volumeBuffer[a]);
-    	}
-    	volumeAverage=(int)va/VOLUMEBUFFERSIZE;	
-    	return volumeAverage;
-    }
-    
-    // Read in 2 bytes from the audio source combine them together into a single integer
-    // then write that into the sound buffer
+    // Read a period of audio from the sound card convert it in one go and pass it to the decode loop
+    // The read blocks until the sound card has captured a whole period
     private void getSample ()	{
     	// Tell the main thread we getting audio
     	gettingAudio=true;
-    	int a,sample,count,total=0;
-    	// READ in ISIZE bytes and convert them into ISIZE/2 integers
-    	// Doing it this way reduces CPU loading
+    	int count,total=0;
 		try	{
-				while (total<ISIZE)	{
-					count=audioMixer.line.read(buffer,0,ISIZE);				
-					total=total+count;
-			  		}
-			  	} catch (Exception e)	{
-			  		String err=e.getMessage();
-			  		JOptionPane.showMessageDialog(null,err,"Rivet", JOptionPane.ERROR_MESSAGE);
-			  	}
-		// Get the required number of samples
-		for (a=0;a<ISIZE;a=a+2)	{
-			sample=(buffer[a]<<8)+buffer[a+1];
+			// If the line buffer is already full the sound card has had to throw samples away
+			int waiting=audioMixer.line.available();
+			if ((lineBufferBytes>0)&&(waiting>=lineBufferBytes)) captureOverruns++;
+			long readStart=System.nanoTime();
+			while (total<captureBuffer.length)	{
+				count=audioMixer.line.read(captureBuffer,total,captureBuffer.length-total);
+				// The line has been stopped or closed
+				if (count<=0) break;
+				total=total+count;
+			}
+			// Starting with nothing waiting a read should be done within a period so one which took longer
+			// than the whole line buffer holds means the sound card was starving us of samples
+			if ((waiting==0)&&(total>0)&&(lineBufferBytes>0))	{
+				double bufferNanos=((lineBufferBytes/captureConverter.getFrameSize())/captureRate)*1.0e9;
+				if ((System.nanoTime()-readStart)>bufferNanos) captureUnderruns++;
+			}
+		} catch (Exception e)	{
+			String err=e.getMessage();
+			JOptionPane.showMessageDialog(null,err,"Rivet", JOptionPane.ERROR_MESSAGE);
+		}
+		// Whatever is still in the line buffer was captured after this block
+		long captureTime=System.nanoTime();
+		int frames=total/captureConverter.getFrameSize();
+		if (frames>0)	{
+			try	{
+				captureTime=captureTime-(long)(((audioMixer.line.available()/captureConverter.getFrameSize())/captureRate)*1.0e9);
+			}
+			catch (Exception e)	{}
+			captureConverter.convert(captureBuffer,0,frames,sampleBlock,0);
+			applyInputLevel(frames);
+			// Pass the block to the decode loop which counts an overrun if it has fallen behind
+			markBlock(sampleBuffer.offer(sampleBlock,0,frames),captureTime);
+			sampleCounter=sampleCounter+frames;
+		}
+		// The the main thread we have stopped fetching audio
+		gettingAudio=false;	
+    }
+    
+    // Apply the input level to a block of live samples and meter them
+    private void applyInputLevel (int count)	{
+    	int a;
+    	for (a=0;a<count;a++)	{
+    		int sample=sampleBlock[a];
 			// If inputLevel is positive then multiply the sample with it
 			// If it is negative then divide the sample by it
 			if (inputLevel>0) sample=sample*inputLevel;
 			else if (inputLevel<0) sample=sample/Math.abs(inputLevel);
-			// Add this sample to the circular volume buffer
-			addToVolumeBuffer(sample);
-			try		{
-				// Put the sample into the output pipe
-				outPipe.writeInt(sample);
-				sampleCounter++;
-				}
-				catch (Exception e)	{
-					String err=e.getMessage();
-					JOptionPane.showMessageDialog(null,err,"Rivet", JOptionPane.ERROR_MESSAGE);
-				}
-		}
-		// The the main thread we have stopped fetching audio
-		gettingAudio=false;	
+			sampleBlock[a]=sample;
+    	}
+    	levelMeter.process(sampleBlock,0,count);
+    }
+    
+    // Start reading samples from a live source instead of the sound card
+    public void startLiveSource (SampleSource source)	{
+    	sampleCounter=0;
+    	sampleBuffer.clear();
+    	resetCaptureCounters(source.getWaveData().getSampleRate());
+    	liveSource=source;
+    	stateSignal.signal();
+    }
+    
+    // Stop reading from the live source and close it which wakes up a read that is waiting
+    public void stopLiveSource ()	{
+    	SampleSource source=liveSource;
+    	liveSource=null;
+    	if (source==null) return;
+    	try	{
+    		source.close();
+    	}
+    	catch (Exception e)	{
+    		errorCause=e.toString();
+    	}
+    }
+    
+    public boolean isLiveSourceRunning()	{
+    	return (liveSource!=null);
+    }
+    
+    // Read a block from the live source and pass it to the decode loop
+    // This blocks until the source has some samples
+    private void getLiveData ()	{
+    	SampleSource source=liveSource;
+    	try	{
+    		int count=source.read(sampleBlock,0,ISIZE/2);
+    		if (count<0)	{
+    			liveSource=null;
+    			return;
+    		}
+    		applyInputLevel(count);
+    		markBlock(sampleBuffer.offer(sampleBlock,0,count),System.nanoTime());
+    		sampleCounter=sampleCounter+count;
+    	}
+    	catch (Exception e)	{
+    		// Only complain if the source wasn't stopped on purpose
+    		if (liveSource!=null)	{
+    			liveSource=null;
+    			errorCause=e.toString();
+    			JOptionPane.showMessageDialog(null,"Error in getLiveData()\n"+e.toString(),"Rivet", JOptionPane.ERROR_MESSAGE);
+    		}
+    	}
+    }
+    
+    // Record where a block of live samples ends in the sample buffer and when its last sample was captured
+    private void markBlock (int count,long captureTime)	{
+    	if (count<=0) return;
+    	synchronized (markPosition)	{
+    		bufferedPosition=bufferedPosition+count;
+    		markPosition[markHead]=bufferedPosition;
+    		markTime[markHead]=captureTime;
+    		markHead=(markHead+1)%MARKS;
+    		// Forget the oldest mark if the decode loop has fallen a long way behind
+    		if (markHead==markTail) markTail=(markTail+1)%MARKS;
+    	}
+    }
+    
+    // Called by the decode loop once it has dealt with a block of live samples
+    // Works out how long ago the last of them was captured
+    public void blockDecoded (int count)	{
+    	long now=System.nanoTime();
+    	synchronized (markPosition)	{
+    		decodedPosition=decodedPosition+count;
+    		long time=-1;
+    		long position=0;
+    		// Find the first block which hasn't been completely decoded yet
+    		while (markTail!=markHead)	{
+    			time=markTime[markTail];
+    			position=markPosition[markTail];
+    			if (position>decodedPosition) break;
+    			markTail=(markTail+1)%MARKS;
+    		}
+    		if (time<0) return;
+    		// Allow for the samples in this block after the last one that was decoded
+    		double latency=((now-time)/1.0e6)+(((position-decodedPosition)/captureRate)*1000.0);
+    		if (latency<0.0) latency=0.0;
+    		lastLatency=latency;
+    		if (averageLatency==0.0) averageLatency=latency;
+    		else averageLatency=(averageLatency*0.99)+(latency*0.01);
+    		if (latency>maxLatency) maxLatency=latency;
+    	}
+    }
+    
+    // Clear the capture counters and the latency marks
+    private void resetCaptureCounters (double rate)	{
+    	synchronized (markPosition)	{
+    		captureRate=rate;
+    		levelMeter.setSampleRate(rate,LEVEL_SNAPSHOT_RATE);
+    		levelMeter.reset();
+    		captureOverruns=0;
+    		captureUnderruns=0;
+    		markHead=0;
+    		markTail=0;
+    		bufferedPosition=0;
+    		decodedPosition=0;
+    		lastLatency=0.0;
+    		averageLatency=0.0;
+    		maxLatency=0.0;
+    	}
+    	sampleBuffer.resetCounters();
+    }
+    
+    // Set the size of the sound card line buffer and the read period in milliseconds
+    // This is used the next time the sound card is set up
+    public void setCaptureTiming (int bufferMillis,int periodMillis)	{
+    	if ((bufferMillis<=0)||(periodMillis<=0)) throw new IllegalArgumentException("Buffer and period sizes must be positive");
+    	captureBufferMillis=bufferMillis;
+    	capturePeriodMillis=periodMillis;
+    }
+    
+    public int getCaptureBufferMillis()	{
+    	return captureBufferMillis;
+    }
+    
+    public int getCapturePeriodMillis()	{
+    	return capturePeriodMillis;
+    }
+    
+    public long getCaptureOverruns()	{
+    	return captureOverruns;
+    }
+    
+    public long getCaptureUnderruns()	{
+    	return captureUnderruns;
+    }
+    
+    // Return a line describing the live capture counters and latency
+    public String getCaptureStatistics()	{
+    	StringBuilder sb=new StringBuilder();
+    	if (audioReady==true)	{
+    		sb.append("line buffer "+String.format("%.0f",(lineBufferBytes/captureConverter.getFrameSize())*1000.0/captureRate)+" ms ");
+    		sb.append("period "+String.format("%.0f",(captureBuffer.length/captureConverter.getFrameSize())*1000.0/captureRate)+" ms : ");
+    	}
+    	sb.append(Long.toString(captureOverruns)+" line overruns , "+Long.toString(captureUnderruns)+" underruns : ");
+    	synchronized (markPosition)	{
+    		sb.append("latency "+String.format("%.1f",lastLatency)+" ms (average "+String.format("%.1f",averageLatency)+" ms , max "+String.format("%.1f",maxLatency)+" ms)");
+    	}
+    	return sb.toString();
+    }
+    
+    // The input level is metered here so the decode loop doesn't have to
+    public LevelMeter getLevelMeter()	{
+    	return levelMeter;
     }
     
     // Tell the main program if the audio interface is setup
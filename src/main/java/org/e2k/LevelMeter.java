@@ -0,0 +1,146 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// Rivet Copyright (C) 2011 Ian Wraith
+// This program comes with ABSOLUTELY NO WARRANTY
+
+package org.e2k;
+
+// Keeps track of the input level
+// Each block is scanned once for its energy , peak and clipped samples and the running RMS level
+// is then updated once per block with an exponential average
+// A snapshot of the levels is published a fixed number of times a second of audio which the display
+// and the decoders (for AGC or squelch) can pick up from any thread
+public class LevelMeter {
+
+	// Anything this big is taken as clipped
+	public static final int CLIP_LEVEL=32767;
+	private static final double FULL_SCALE=32768.0;
+	// How quickly the RMS level follows the signal
+	private static final double TIME_CONSTANT=0.3;
+	private double sampleRate=8000.0;
+	private int snapshotInterval;
+	private int snapshotCounter=0;
+	private double meanSquare=0.0;
+	private int peak=0;
+	private long clipCount=0;
+	private long sampleCount=0;
+	private volatile Level level=new Level(0.0,0,0,0);
+
+	// The levels at one moment
+	public static class Level	{
+
+		private final double rms;
+		private final int peak;
+		private final long clipCount;
+		private final long sampleCount;
+
+		private Level (double trms,int tpeak,long tclipCount,long tsampleCount)	{
+			rms=trms;
+			peak=tpeak;
+			clipCount=tclipCount;
+			sampleCount=tsampleCount;
+		}
+
+		// The running RMS level in 16 bit sample units
+		public double getRMS()	{
+			return rms;
+		}
+
+		// The biggest sample since the last snapshot
+		public int getPeak()	{
+			return peak;
+		}
+
+		// The number of clipped samples since the meter was reset
+		public long getClipCount()	{
+			return clipCount;
+		}
+
+		// The number of samples metered when this snapshot was taken
+		public long getSampleCount()	{
+			return sampleCount;
+		}
+
+		public double getRMSdBFS()	{
+			return toDB(rms);
+		}
+
+		public double getPeakdBFS()	{
+			return toDB(peak);
+		}
+
+		// Returns true if the RMS level is above a squelch threshold in dBFS
+		public boolean isAbove (double thresholdDB)	{
+			return (getRMSdBFS()>thresholdDB);
+		}
+
+		private static double toDB (double value)	{
+			if (value<=0.0) return -120.0;
+			return 20.0*Math.log10(value/FULL_SCALE);
+		}
+
+	}
+
+	// Publish snapshotRate snapshots every second of audio
+	public LevelMeter (double tsampleRate,int snapshotRate)	{
+		if (snapshotRate<=0) throw new IllegalArgumentException("The snapshot rate must be positive");
+		setSampleRate(tsampleRate,snapshotRate);
+	}
+
+	public void setSampleRate (double tsampleRate,int snapshotRate)	{
+		if (tsampleRate>0.0) sampleRate=tsampleRate;
+		snapshotInterval=Math.max(1,(int)(sampleRate/snapshotRate));
+	}
+
+	// Meter a block of samples
+	// Returns true if a new snapshot was published
+	public boolean process (int samples[],int off,int len)	{
+		if (len<=0) return false;
+		double sum=0.0;
+		int blockPeak=peak;
+		long clips=0;
+		int a;
+		for (a=off;a<off+len;a++)	{
+			int s=samples[a];
+			sum=sum+((double)s*s);
+			if (s<0) s=-s;
+			if (s>blockPeak) blockPeak=s;
+			if (s>=CLIP_LEVEL) clips++;
+		}
+		// Weight the block by its length so the time constant doesn't depend on the block size
+		double alpha=1.0-Math.exp(-len/(TIME_CONSTANT*sampleRate));
+		meanSquare=meanSquare+(alpha*((sum/len)-meanSquare));
+		peak=blockPeak;
+		clipCount=clipCount+clips;
+		sampleCount=sampleCount+len;
+		snapshotCounter=snapshotCounter+len;
+		if (snapshotCounter<snapshotInterval) return false;
+		snapshotCounter=snapshotCounter%snapshotInterval;
+		level=new Level(Math.sqrt(meanSquare),peak,clipCount,sampleCount);
+		peak=0;
+		return true;
+	}
+
+	// Return the latest snapshot
+	public Level getLevel()	{
+		return level;
+	}
+
+	public void reset()	{
+		meanSquare=0.0;
+		peak=0;
+		clipCount=0;
+		sampleCount=0;
+		snapshotCounter=0;
+		level=new Level(0.0,0,0,0);
+	}
+
+}
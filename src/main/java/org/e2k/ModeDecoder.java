@@ -0,0 +1,38 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// Rivet Copyright (C) 2011 Ian Wraith
+// This program comes with ABSOLUTELY NO WARRANTY
+
+package org.e2k;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+// The per sample interface which every mode decoder implements
+public interface ModeDecoder {
+	
+	// Decode the sample which has just been added to the circular buffer
+	// Returns false if the input can't be decoded by this mode
+	public boolean decode (CircularDataBuffer circBuf,WaveData waveData);
+	
+	public void setState (int state);
+	
+	public int getState ();
+	
+	// Save everything needed to carry on decoding from where the decoder is for a checkpoint
+	// Settings which come from the command line (baud rates , shifts and so on) aren't saved
+	public void writeState (DataOutputStream out) throws IOException;
+	
+	// Put back the state saved by writeState()
+	public void readState (DataInputStream in) throws IOException;
+
+}
@@ -0,0 +1,216 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// Rivet Copyright (C) 2011 Ian Wraith
+// This program comes with ABSOLUTELY NO WARRANTY
+
+package org.e2k;
+
+import java.io.IOException;
+
+// Decodes one input with several modes at the same time
+// Each mode has its own Rivet session running on its own thread
+// Normally every mode reads the input through its own cursor on a shared sample buffer and the input
+// waits for the slowest mode
+// A live input can't wait so then every mode gets a ring of its own and a mode which falls behind
+// only loses samples from its own ring
+public class MultiModeDecoder {
+
+	private static final int BUFFER_SIZE=1<<17;
+	private static final int BLOCK_SIZE=4096;
+	private SharedSampleBuffer buffer=new SharedSampleBuffer(BUFFER_SIZE);
+	private ModeWorker workers[];
+	private boolean liveInput=false;
+	private volatile boolean inputEnded=false;
+	// The number of samples at the start which only fill the decoders' history
+	private long primeLength=0;
+
+	// Runs one mode
+	private class ModeWorker extends Thread	{
+
+		private Rivet session;
+		// Where the samples come from , the shared buffer or with live input a ring of this mode's own
+		private SharedSampleBuffer.Reader reader=null;
+		private SampleRingBuffer liveBuffer=null;
+		private int samples[]=new int[BLOCK_SIZE];
+		// Only set once the whole input has been decoded
+		private volatile boolean decoded=false;
+		private volatile boolean closed=false;
+		private long primeLeft;
+
+		private ModeWorker (Rivet tsession)	{
+			session=tsession;
+			setName("Rivet "+Rivet.MODENAMES[session.getSystem()]);
+			setDaemon(true);
+		}
+
+		private EventSignal getDataSignal()	{
+			if (liveBuffer!=null) return liveBuffer.getDataSignal();
+			return buffer.getDataSignal();
+		}
+
+		private int readSamples()	{
+			if (liveBuffer!=null) return liveBuffer.read(samples,0,BLOCK_SIZE);
+			return reader.read(samples,0,BLOCK_SIZE);
+		}
+
+		// Check the input has ended before checking the ring is empty so the last block isn't missed
+		private boolean isEnded()	{
+			if (liveBuffer!=null) return ((inputEnded==true)&&(liveBuffer.isEmpty()==true));
+			return reader.isEnded();
+		}
+
+		public void run()	{
+			try	{
+				primeLeft=primeLength;
+				boolean rejected=false;
+				while (true)	{
+					long ticket=getDataSignal().ticket();
+					int count=readSamples();
+					if (count>0)	{
+						int primed=0;
+						if (primeLeft>0)	{
+							primed=(int)Math.min(count,primeLeft);
+							session.primeBlock(samples,0,primed);
+							primeLeft=primeLeft-primed;
+						}
+						if ((count>primed)&&(session.decodeBlock(samples,primed,count-primed)==false))	{
+							rejected=true;
+							break;
+						}
+					}
+					else if (isEnded()) break;
+					// Sleep until the feeder writes some more or ends the input
+					else getDataSignal().await(ticket,0);
+				}
+				if (rejected==false)	{
+					session.endSource();
+					decoded=true;
+				}
+			}
+			catch (InterruptedException e)	{}
+			finally	{
+				// Don't hold up the other modes
+				closed=true;
+				if (reader!=null) reader.close();
+			}
+		}
+
+	}
+
+	// The sessions must already have their mode and output set up
+	// They are given to this object and shouldn't be used by anything else until finish() returns
+	public MultiModeDecoder (Rivet sessions[])	{
+		workers=new ModeWorker[sessions.length];
+		int a;
+		for (a=0;a<sessions.length;a++)	{
+			workers[a]=new ModeWorker(sessions[a]);
+		}
+	}
+
+	// Live input doesn't wait for slow modes and a mode which falls behind drops samples instead
+	// This must be set before start()
+	public void setLiveInput (boolean live)	{
+		liveInput=live;
+	}
+
+	// Use the first primeLength samples only to fill each mode's history
+	// This must be set before start()
+	public void setPrimeLength (long length)	{
+		primeLength=length;
+	}
+	
+	// Start every mode off with the format of the input
+	public void start (WaveData waveData)	{
+		start(waveData,0);
+	}
+	
+	// Start every mode off with the first sample position samples into the recording
+	public void start (WaveData waveData,long position)	{
+		for (ModeWorker worker : workers)	{
+			if (liveInput==true) worker.liveBuffer=new SampleRingBuffer(BUFFER_SIZE);
+			else worker.reader=buffer.addReader();
+		}
+		for (ModeWorker worker : workers)	{
+			worker.session.startSource(waveData,position);
+			worker.start();
+		}
+	}
+
+	// Pass a block of samples to every mode
+	// Unless the input is live this waits until the slowest mode has room for them
+	public void feed (int data[],int off,int len) throws InterruptedException	{
+		if (liveInput==true)	{
+			for (ModeWorker worker : workers)	{
+				if (worker.closed==false) worker.liveBuffer.offer(data,off,len);
+			}
+			return;
+		}
+		while ((len>0)&&(buffer.hasReaders()))	{
+			long ticket=buffer.getSpaceSignal().ticket();
+			int count=buffer.write(data,off,len);
+			off=off+count;
+			len=len-count;
+			// Sleep until a mode reads some samples or gives up
+			if (len>0) buffer.getSpaceSignal().await(ticket,0);
+		}
+	}
+
+	// Tell the modes the input has ended and wait for them to finish
+	// Returns the number of modes which were able to decode the input
+	public int finish() throws InterruptedException	{
+		inputEnded=true;
+		buffer.finish();
+		for (ModeWorker worker : workers)	{
+			if (worker.liveBuffer!=null) worker.liveBuffer.getDataSignal().signal();
+		}
+		int decoded=0;
+		for (ModeWorker worker : workers)	{
+			worker.join();
+			if (worker.decoded==true) decoded++;
+		}
+		return decoded;
+	}
+
+	// Stop every mode without waiting for the rest of the input
+	public void stop()	{
+		for (ModeWorker worker : workers)	{
+			worker.interrupt();
+		}
+	}
+
+	// Decode a whole sample source with every mode
+	public int decodeSource (SampleSource source) throws IOException,InterruptedException	{
+		start(source.getWaveData(),source.getSamplesRead());
+		int samples[]=new int[BLOCK_SIZE];
+		int count;
+		while ((count=source.read(samples,0,BLOCK_SIZE))>0)	{
+			feed(samples,0,count);
+			// Every mode has given up
+			if (isRunning()==false) break;
+		}
+		return finish();
+	}
+
+	// Returns false once every mode has given up
+	public boolean isRunning()	{
+		for (ModeWorker worker : workers)	{
+			if (worker.closed==false) return true;
+		}
+		return false;
+	}
+
+	// Return the number of samples a mode had to drop because it fell behind live input
+	public long getDroppedSamples (int index)	{
+		if (workers[index].liveBuffer==null) return 0;
+		return workers[index].liveBuffer.getOverrunSamples();
+	}
+
+}
@@ -0,0 +1,275 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// Rivet Copyright (C) 2011 Ian Wraith
+// This program comes with ABSOLUTELY NO WARRANTY
+
+package org.e2k;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+// Receives PCM samples pushed over the network by a remote receiver
+// TCP : Rivet listens on a port and reads a plain PCM stream from whoever connects , if they
+// disconnect it waits for the next connection
+// UDP : each datagram holds whole frames of PCM , if sequencing is on every datagram starts with a
+// 4 byte big endian sequence number which goes up by one each time so lost packets can be
+// detected and replaced with silence to keep the timing right
+public class NetworkPCMSource implements SampleSource {
+
+	public static final int TCP=0;
+	public static final int UDP=1;
+	// The largest gap which is filled with silence when UDP packets go missing
+	private static final int MAX_FILL_SECONDS=1;
+	private final int protocol;
+	private final int port;
+	private final boolean sequenced;
+	private final PCMConverter converter;
+	private final int sampleRate;
+	private WaveData waveData=new WaveData();
+	private ServerSocketChannel serverChannel;
+	private SocketChannel socketChannel;
+	private DatagramChannel datagramChannel;
+	// The network reads straight into a direct buffer
+	private ByteBuffer netBuffer=ByteBuffer.allocateDirect(1<<16);
+	private byte byteBlock[]=new byte[1<<16];
+	private volatile boolean closed=false;
+	private long samplesRead=0;
+	// Frames of silence still to be given out for lost packets
+	private long fillFrames=0;
+	private long lastSequence=-1;
+	// Counters
+	private volatile long packetsReceived=0;
+	private volatile long packetsLost=0;
+	private volatile long packetsLate=0;
+	private volatile long bytesReceived=0;
+	private volatile long connections=0;
+	private volatile double jitter=0.0;
+	private volatile double maxJitter=0.0;
+	private long lastArrival=-1;
+	private long lastFrames=0;
+
+	public NetworkPCMSource (int tprotocol,int tport,int tsampleRate,PCMConverter tconverter,boolean tsequenced)	{
+		protocol=tprotocol;
+		port=tport;
+		sampleRate=tsampleRate;
+		converter=tconverter;
+		sequenced=tsequenced;
+		// The decoders are given 16 bit mono
+		waveData.setSampleRate(sampleRate);
+		waveData.setChannels(1);
+		waveData.setSampleSizeInBits(16);
+		waveData.setBytesPerFrame(2);
+		waveData.setEndian(false);
+		waveData.setFromFile(false);
+	}
+
+	// Start listening
+	public void open () throws IOException	{
+		if (protocol==TCP)	{
+			serverChannel=ServerSocketChannel.open();
+			serverChannel.socket().setReuseAddress(true);
+			serverChannel.socket().bind(new InetSocketAddress(port));
+		}
+		else	{
+			datagramChannel=DatagramChannel.open();
+			datagramChannel.socket().setReuseAddress(true);
+			datagramChannel.socket().setReceiveBufferSize(1<<20);
+			datagramChannel.socket().bind(new InetSocketAddress(port));
+		}
+		netBuffer.clear();
+		netBuffer.flip();
+	}
+
+	public WaveData getWaveData()	{
+		return waveData;
+	}
+
+	// Blocks until there is something to return
+	// Returns -1 once the source has been closed
+	public int read (int samples[],int off,int len) throws IOException	{
+		try	{
+			// Silence standing in for lost packets comes first
+			if (fillFrames>0)	{
+				int count=(int)Math.min(len,fillFrames);
+				int a;
+				for (a=0;a<count;a++)	{
+					samples[off+a]=0;
+				}
+				fillFrames=fillFrames-count;
+				samplesRead=samplesRead+count;
+				return count;
+			}
+			int frameSize=converter.getFrameSize();
+			while (netBuffer.remaining()<frameSize)	{
+				if (closed==true) return -1;
+				if (protocol==TCP) readStream();
+				else	{
+					receiveDatagram();
+					if (fillFrames>0) return read(samples,off,len);
+				}
+			}
+			int frames=Math.min(len,netBuffer.remaining()/frameSize);
+			int bytes=frames*frameSize;
+			netBuffer.get(byteBlock,0,bytes);
+			converter.convert(byteBlock,0,frames,samples,off);
+			samplesRead=samplesRead+frames;
+			return frames;
+		}
+		catch (ClosedChannelException e)	{
+			// close() was called while we were waiting
+			if (closed==true) return -1;
+			throw e;
+		}
+	}
+
+	// Read more of a TCP stream keeping any partial frame
+	private void readStream () throws IOException	{
+		if (socketChannel==null)	{
+			socketChannel=serverChannel.accept();
+			connections++;
+			lastArrival=-1;
+		}
+		netBuffer.compact();
+		int count=socketChannel.read(netBuffer);
+		netBuffer.flip();
+		if (count<0)	{
+			// The sender has gone so wait for the next one
+			// A part frame it left behind is thrown away as the next sender starts on a frame of its own
+			netBuffer.clear();
+			netBuffer.flip();
+			socketChannel.close();
+			socketChannel=null;
+			return;
+		}
+		if (count>0)	{
+			bytesReceived=bytesReceived+count;
+			packetsReceived++;
+			arrived(count/converter.getFrameSize());
+		}
+	}
+
+	// Receive one datagram and check its sequence number
+	private void receiveDatagram () throws IOException	{
+		netBuffer.clear();
+		datagramChannel.receive(netBuffer);
+		netBuffer.flip();
+		bytesReceived=bytesReceived+netBuffer.remaining();
+		packetsReceived++;
+		if (sequenced==true)	{
+			if (netBuffer.remaining()<4)	{
+				netBuffer.limit(0);
+				return;
+			}
+			long sequence=netBuffer.order(ByteOrder.BIG_ENDIAN).getInt()&0xFFFFFFFFL;
+			if (lastSequence>=0)	{
+				long gap=(sequence-lastSequence)&0xFFFFFFFFL;
+				// Anything from before the last packet is too late to use
+				if ((gap==0)||(gap>0x80000000L))	{
+					packetsLate++;
+					netBuffer.limit(netBuffer.position());
+					return;
+				}
+				if (gap>1)	{
+					packetsLost=packetsLost+(gap-1);
+					// Assume the missing packets were the same size as this one
+					long frames=(gap-1)*(netBuffer.remaining()/converter.getFrameSize());
+					fillFrames=Math.min(frames,(long)sampleRate*MAX_FILL_SECONDS);
+				}
+			}
+			lastSequence=sequence;
+		}
+		// Drop any partial frame on the end
+		int frameSize=converter.getFrameSize();
+		int frames=netBuffer.remaining()/frameSize;
+		netBuffer.limit(netBuffer.position()+(frames*frameSize));
+		arrived(frames);
+	}
+
+	// Work out the jitter the same way as RTP (RFC 3550)
+	// The difference between when a packet arrived and when it should have arrived judging by
+	// the number of samples in the one before it is smoothed over 16 packets
+	private void arrived (int frames)	{
+		long now=System.nanoTime();
+		if (lastArrival>=0)	{
+			double expected=(double)lastFrames/sampleRate;
+			double actual=(now-lastArrival)/1.0e9;
+			double d=Math.abs(actual-expected);
+			jitter=jitter+((d-jitter)/16.0);
+			if (jitter>maxJitter) maxJitter=jitter;
+		}
+		lastArrival=now;
+		lastFrames=frames;
+	}
+
+	public long getSamplesRead()	{
+		return samplesRead;
+	}
+
+	// A stream has no known length
+	public long getTotalSamples()	{
+		return -1;
+	}
+
+	// Closing unblocks a read which is waiting
+	public void close() throws IOException	{
+		closed=true;
+		if (socketChannel!=null) socketChannel.close();
+		if (serverChannel!=null) serverChannel.close();
+		if (datagramChannel!=null) datagramChannel.close();
+	}
+
+	public long getPacketsReceived()	{
+		return packetsReceived;
+	}
+
+	public long getPacketsLost()	{
+		return packetsLost;
+	}
+
+	public long getPacketsLate()	{
+		return packetsLate;
+	}
+
+	public long getBytesReceived()	{
+		return bytesReceived;
+	}
+
+	public long getConnections()	{
+		return connections;
+	}
+
+	// Return the smoothed jitter in milliseconds
+	public double getJitter()	{
+		return jitter*1000.0;
+	}
+
+	public double getMaxJitter()	{
+		return maxJitter*1000.0;
+	}
+
+	// A line for the system info display and the end of a batch run
+	public String getStatistics()	{
+		StringBuilder sb=new StringBuilder();
+		if (protocol==TCP) sb.append("TCP port "+Integer.toString(port)+" : "+Long.toString(connections)+" connections , ");
+		else sb.append("UDP port "+Integer.toString(port)+" : ");
+		sb.append(Long.toString(packetsReceived)+" packets , "+Long.toString(bytesReceived)+" bytes");
+		if (sequenced==true) sb.append(" , "+Long.toString(packetsLost)+" lost , "+Long.toString(packetsLate)+" late");
+		sb.append(" , jitter "+String.format("%.2f",getJitter())+" ms (max "+String.format("%.2f",getMaxJitter())+" ms)");
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,200 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// Rivet Copyright (C) 2011 Ian Wraith
+// This program comes with ABSOLUTELY NO WARRANTY
+
+package org.e2k;
+
+// Converts blocks of raw PCM bytes into the 16 bit mono samples the decoders work with
+// Each format has its own loop so nothing is called per sample
+// Multichannel data is either mixed down to mono , a single channel is picked out or every channel is split out
+public class PCMConverter {
+
+	public static final int UNSIGNED_8=0;
+	public static final int SIGNED_16=1;
+	public static final int SIGNED_24=2;
+	public static final int SIGNED_32=3;
+	public static final int FLOAT_32=4;
+	public static final int FLOAT_64=5;
+	private static final int BYTES[]={1,2,3,4,4,8};
+	private static final String NAMES[]={"8 bit unsigned","16 bit","24 bit","32 bit","32 bit float","64 bit float"};
+	private final int encoding;
+	private final boolean bigEndian;
+	private final int channels;
+	private final int bytesPerSample;
+	private final int frameSize;
+	// -1 means mix all the channels down to mono
+	private int channel=-1;
+	private int mixBlock[]=new int[0];
+
+	public PCMConverter (int tencoding,boolean tbigEndian,int tchannels)	{
+		if ((tencoding<UNSIGNED_8)||(tencoding>FLOAT_64)) throw new IllegalArgumentException("Unknown PCM encoding");
+		if (tchannels<1) throw new IllegalArgumentException("There must be at least one channel");
+		encoding=tencoding;
+		bigEndian=tbigEndian;
+		channels=tchannels;
+		bytesPerSample=BYTES[encoding];
+		frameSize=bytesPerSample*channels;
+	}
+
+	// Return the encoding which matches a sample size and type or -1 if there isn't one
+	public static int findEncoding (int bits,boolean floatingPoint)	{
+		if (floatingPoint==true)	{
+			if (bits==32) return FLOAT_32;
+			else if (bits==64) return FLOAT_64;
+		}
+		else if (bits==8) return UNSIGNED_8;
+		else if (bits==16) return SIGNED_16;
+		else if (bits==24) return SIGNED_24;
+		else if (bits==32) return SIGNED_32;
+		return -1;
+	}
+
+	// Pick out a single channel (counting from 0) or -1 to mix them all down
+	public void setChannel (int tchannel)	{
+		if ((tchannel<-1)||(tchannel>=channels)) throw new IllegalArgumentException("No channel "+Integer.toString(tchannel));
+		channel=tchannel;
+	}
+
+	public int getChannel()	{
+		return channel;
+	}
+
+	public int getChannels()	{
+		return channels;
+	}
+
+	public int getEncoding()	{
+		return encoding;
+	}
+
+	public boolean isBigEndian()	{
+		return bigEndian;
+	}
+
+	// Return the number of bytes in one frame (one sample from every channel)
+	public int getFrameSize()	{
+		return frameSize;
+	}
+
+	public String getDescription()	{
+		String desc=NAMES[encoding];
+		if ((bytesPerSample>1)&&(bigEndian==true)) desc=desc+" big endian";
+		if (channels==1) desc=desc+" mono";
+		else if (channels==2) desc=desc+" stereo";
+		else desc=desc+" "+Integer.toString(channels)+" channels";
+		return desc;
+	}
+
+	// Convert a number of whole frames starting at data[pos] into 16 bit mono samples
+	public void convert (byte data[],int pos,int frames,int samples[],int off)	{
+		if (channel>=0) convertChannel(data,pos+(channel*bytesPerSample),frameSize,frames,samples,off);
+		else if (channels==1) convertChannel(data,pos,bytesPerSample,frames,samples,off);
+		else	{
+			// Add up the channels then divide
+			if (mixBlock.length<frames) mixBlock=new int[frames];
+			convertChannel(data,pos,frameSize,frames,samples,off);
+			int a,c;
+			for (c=1;c<channels;c++)	{
+				convertChannel(data,pos+(c*bytesPerSample),frameSize,frames,mixBlock,0);
+				for (a=0;a<frames;a++)	{
+					samples[off+a]+=mixBlock[a];
+				}
+			}
+			for (a=0;a<frames;a++)	{
+				samples[off+a]=samples[off+a]/channels;
+			}
+		}
+	}
+
+	// Convert a number of whole frames into a separate array for each channel
+	public void deinterleave (byte data[],int pos,int frames,int samples[][],int off)	{
+		int c;
+		for (c=0;c<channels;c++)	{
+			convertChannel(data,pos+(c*bytesPerSample),frameSize,frames,samples[c],off);
+		}
+	}
+
+	// Convert count samples which are stride bytes apart
+	// Wider samples keep their top 16 bits and floats are scaled so 1.0 is full scale
+	private void convertChannel (byte data[],int pos,int stride,int count,int samples[],int off)	{
+		int a,p=pos;
+		if (encoding==UNSIGNED_8)	{
+			for (a=0;a<count;a++,p+=stride)	{
+				samples[off+a]=((data[p]&0xFF)-128)<<8;
+			}
+		}
+		else if (encoding==SIGNED_16)	{
+			if (bigEndian==false)	{
+				for (a=0;a<count;a++,p+=stride)	{
+					samples[off+a]=(data[p+1]<<8)|(data[p]&0xFF);
+				}
+			}
+			else	{
+				for (a=0;a<count;a++,p+=stride)	{
+					samples[off+a]=(data[p]<<8)|(data[p+1]&0xFF);
+				}
+			}
+		}
+		else if (encoding==SIGNED_24)	{
+			if (bigEndian==false)	{
+				for (a=0;a<count;a++,p+=stride)	{
+					samples[off+a]=(data[p+2]<<8)|(data[p+1]&0xFF);
+				}
+			}
+			else	{
+				for (a=0;a<count;a++,p+=stride)	{
+					samples[off+a]=(data[p]<<8)|(data[p+1]&0xFF);
+				}
+			}
+		}
+		else if (encoding==SIGNED_32)	{
+			if (bigEndian==false)	{
+				for (a=0;a<count;a++,p+=stride)	{
+					samples[off+a]=(data[p+3]<<8)|(data[p+2]&0xFF);
+				}
+			}
+			else	{
+				for (a=0;a<count;a++,p+=stride)	{
+					samples[off+a]=(data[p]<<8)|(data[p+1]&0xFF);
+				}
+			}
+		}
+		else if (encoding==FLOAT_32)	{
+			for (a=0;a<count;a++,p+=stride)	{
+				int bits;
+				if (bigEndian==false) bits=(data[p]&0xFF)|((data[p+1]&0xFF)<<8)|((data[p+2]&0xFF)<<16)|(data[p+3]<<24);
+				else bits=(data[p+3]&0xFF)|((data[p+2]&0xFF)<<8)|((data[p+1]&0xFF)<<16)|(data[p]<<24);
+				float f=Float.intBitsToFloat(bits)*32768.0f;
+				if (f>32767.0f) f=32767.0f;
+				else if (f<-32768.0f) f=-32768.0f;
+				samples[off+a]=(int)f;
+			}
+		}
+		else if (encoding==FLOAT_64)	{
+			for (a=0;a<count;a++,p+=stride)	{
+				long bits=0;
+				int b;
+				if (bigEndian==false)	{
+					for (b=7;b>=0;b--) bits=(bits<<8)|(data[p+b]&0xFF);
+				}
+				else	{
+					for (b=0;b<8;b++) bits=(bits<<8)|(data[p+b]&0xFF);
+				}
+				double d=Double.longBitsToDouble(bits)*32768.0;
+				if (d>32767.0) d=32767.0;
+				else if (d<-32768.0) d=-32768.0;
+				samples[off+a]=(int)d;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,104 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// Rivet Copyright (C) 2011 Ian Wraith
+// This program comes with ABSOLUTELY NO WARRANTY
+
+package org.e2k;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.locks.LockSupport;
+
+// Sends a WAV file over TCP or UDP in real time the way a remote receiver would
+// This is for testing the network input
+// java -cp rivet.jar org.e2k.PCMSender tcp|udp host port file.wav [-f32] [-seq] [-fast]
+public class PCMSender {
+
+	// Samples per packet
+	private static final int PACKET_SAMPLES=400;
+
+	public static void main(String[] args) {
+		if (args.length<4)	{
+			System.err.println("Usage : PCMSender tcp|udp host port file.wav [-f32] [-seq] [-fast]");
+			System.err.println("  -f32   send 32 bit float samples instead of 16 bit");
+			System.err.println("  -seq   start each UDP packet with a sequence number");
+			System.err.println("  -fast  send as fast as possible rather than in real time");
+			System.exit(2);
+		}
+		boolean udp=args[0].equalsIgnoreCase("udp");
+		boolean floatSamples=false,sequenced=false,fast=false;
+		int a;
+		for (a=4;a<args.length;a++)	{
+			if (args[a].equals("-f32")) floatSamples=true;
+			else if (args[a].equals("-seq")) sequenced=true;
+			else if (args[a].equals("-fast")) fast=true;
+		}
+		try	{
+			send(udp,new InetSocketAddress(args[1],Integer.parseInt(args[2])),new File(args[3]),floatSamples,sequenced,fast);
+		}
+		catch (Exception e)	{
+			System.err.println("PCMSender : "+e.toString());
+			System.exit(1);
+		}
+	}
+
+	public static void send (boolean udp,InetSocketAddress address,File file,boolean floatSamples,boolean sequenced,boolean fast) throws IOException	{
+		WavFileReader reader=new WavFileReader(file);
+		SocketChannel socket=null;
+		DatagramChannel datagram=null;
+		try	{
+			if (udp==true) datagram=DatagramChannel.open();
+			else socket=SocketChannel.open(address);
+			int bytesPerSample=2;
+			if (floatSamples==true) bytesPerSample=4;
+			ByteBuffer packet=ByteBuffer.allocateDirect(4+(PACKET_SAMPLES*bytesPerSample));
+			int samples[]=new int[PACKET_SAMPLES];
+			double rate=reader.getWaveData().getSampleRate();
+			long start=System.nanoTime();
+			long sent=0;
+			int sequence=0;
+			int count;
+			while ((count=reader.read(samples,0,PACKET_SAMPLES))>0)	{
+				packet.clear();
+				if ((udp==true)&&(sequenced==true)) packet.order(ByteOrder.BIG_ENDIAN).putInt(sequence++);
+				packet.order(ByteOrder.LITTLE_ENDIAN);
+				int b;
+				for (b=0;b<count;b++)	{
+					if (floatSamples==true) packet.putFloat(samples[b]/32768.0f);
+					else packet.putShort((short)samples[b]);
+				}
+				packet.flip();
+				// Wait until this packet is due
+				if (fast==false)	{
+					long due=start+(long)((sent/rate)*1.0e9);
+					long wait;
+					while ((wait=due-System.nanoTime())>0) LockSupport.parkNanos(wait);
+				}
+				if (udp==true) datagram.send(packet,address);
+				else	{
+					while (packet.hasRemaining()) socket.write(packet);
+				}
+				sent=sent+count;
+			}
+		}
+		finally	{
+			reader.close();
+			if (socket!=null) socket.close();
+			if (datagram!=null) datagram.close();
+		}
+	}
+
+}
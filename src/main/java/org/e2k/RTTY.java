@@ -14,9 +14,12 @@
 package org.e2k;
 
 import java.awt.Color;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import javax.swing.JOptionPane;
 
-public class RTTY extends FSK {
+public class RTTY extends FSK implements ModeDecoder {
 	
 	private double baudRate=50;
 	private int state=0;
@@ -24,7 +27,7 @@ public class RTTY extends FSK {
 	private Rivet theApp;
 	public long sampleCount=0;
 	private long symbolCounter=0;
-	private CircularDataBuffer energyBuffer=new CircularDataBuffer();
+	private CircularDataBuffer energyBuffer;
 	private int characterCount=0;
 	private int highBin;
 	private int lowBin;
@@ -44,6 +47,7 @@ public class RTTY extends FSK {
 	
 	public RTTY (Rivet tapp)	{
 		theApp=tapp;
+		energyBuffer=new CircularDataBuffer(theApp);
 		samplesPerSymbol=samplesPerSymbol(baudRate,8000);
 	}
 	
@@ -68,6 +72,50 @@ public class RTTY extends FSK {
 		return state;
 	}
 	
+	public void writeState (DataOutputStream out) throws IOException	{
+		writeFSKState(out);
+		out.writeInt(state);
+		out.writeDouble(samplesPerSymbol);
+		out.writeLong(sampleCount);
+		out.writeLong(symbolCounter);
+		energyBuffer.writeState(out);
+		out.writeInt(characterCount);
+		out.writeInt(highBin);
+		out.writeInt(lowBin);
+		Checkpoint.writeBooleans(out,inChar7);
+		Checkpoint.writeBooleans(out,inChar8);
+		out.writeInt(bcount);
+		out.writeLong(missingCharCounter);
+		Checkpoint.writeDoubles(out,adjBuffer);
+		out.writeInt(adjCounter);
+		out.writeInt(previousbcount);
+		out.writeDouble(symbolTotal);
+		out.writeDouble(previousSymbolTotal);
+		Checkpoint.writeDoubles(out,oldSymbolPercentage);
+	}
+	
+	public void readState (DataInputStream in) throws IOException	{
+		readFSKState(in);
+		state=in.readInt();
+		samplesPerSymbol=in.readDouble();
+		sampleCount=in.readLong();
+		symbolCounter=in.readLong();
+		energyBuffer.readState(in);
+		characterCount=in.readInt();
+		highBin=in.readInt();
+		lowBin=in.readInt();
+		Checkpoint.readBooleans(in,inChar7);
+		Checkpoint.readBooleans(in,inChar8);
+		bcount=in.readInt();
+		missingCharCounter=in.readLong();
+		Checkpoint.readDoubles(in,adjBuffer);
+		adjCounter=in.readInt();
+		previousbcount=in.readInt();
+		symbolTotal=in.readDouble();
+		previousSymbolTotal=in.readDouble();
+		Checkpoint.readDoubles(in,oldSymbolPercentage);
+	}
+	
 	public boolean decode (CircularDataBuffer circBuf,WaveData waveData)	{
 
 		// Just starting
@@ -75,19 +123,19 @@ public class RTTY extends FSK {
 			// Check the sample rate
 			if (waveData.getSampleRate()!=8000.0)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"WAV files containing\nRTTY recordings must have\nbeen recorded at a sample rate\nof 8 KHz.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("WAV files containing\nRTTY recordings must have\nbeen recorded at a sample rate\nof 8 KHz.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			// Check this is a mono recording
 			if (waveData.getChannels()!=1)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"Rivet can only process\nmono WAV files.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("Rivet can only process\nmono WAV files.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			// Check this is a 16 bit WAV file
 			if (waveData.getSampleSizeInBits()!=16)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"Rivet can only process\n16 bit WAV files.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("Rivet can only process\n16 bit WAV files.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			setState(1);
@@ -390,9 +438,9 @@ public class RTTY extends FSK {
 		int v=0;
 		int sp=(int)samplesPerSymbol/2;
 		// First half
-		double early[]=doRTTYHalfSymbolBinRequest(baudRate,circBuf,pos,lowBin,highBin);
+		double early[]=doRTTYHalfSymbolBinRequest(theApp,baudRate,circBuf,pos,lowBin,highBin);
 		// Last half
-		double late[]=doRTTYHalfSymbolBinRequest(baudRate,circBuf,(pos+sp),lowBin,highBin);
+		double late[]=doRTTYHalfSymbolBinRequest(theApp,baudRate,circBuf,(pos+sp),lowBin,highBin);
 		// Store the previous symbol energy total
 		previousSymbolTotal=symbolTotal;
 		symbolTotal=early[0]+late[0]+early[1]+late[1];
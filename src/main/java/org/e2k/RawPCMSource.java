@@ -0,0 +1,125 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// Rivet Copyright (C) 2011 Ian Wraith
+// This program comes with ABSOLUTELY NO WARRANTY
+
+package org.e2k;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+// Reads headerless PCM from a stream such as stdin or a named pipe
+// The sample rate and format have to be given as there is no header to read them from
+// Reads return as soon as there is at least one whole frame so live audio is decoded with little delay
+public class RawPCMSource implements SampleSource {
+
+	private static final int READ_SIZE=1<<16;
+	private InputStream in;
+	private boolean closeStream;
+	private PCMConverter converter;
+	private WaveData waveData=new WaveData();
+	private byte byteBlock[]=new byte[READ_SIZE];
+	// Bytes of a partly read frame left over from the last read
+	private int leftOver=0;
+	private long samplesRead=0;
+	private boolean ended=false;
+
+	// Read from an open stream which is closed along with this object if closeStream is true
+	public RawPCMSource (InputStream tin,boolean tcloseStream,int sampleRate,PCMConverter tconverter)	{
+		in=tin;
+		closeStream=tcloseStream;
+		converter=tconverter;
+		// Leave room for at least one whole frame
+		if (byteBlock.length<converter.getFrameSize()*2) byteBlock=new byte[converter.getFrameSize()*2];
+		// The decoders are given 16 bit mono
+		waveData.setSampleRate(sampleRate);
+		waveData.setChannels(1);
+		waveData.setSampleSizeInBits(16);
+		waveData.setBytesPerFrame(2);
+		waveData.setEndian(false);
+		waveData.setFromFile(false);
+	}
+
+	// Read from stdin if the path is "-" otherwise a file or named pipe
+	public static RawPCMSource open (String path,int sampleRate,PCMConverter converter) throws IOException	{
+		if (path.equals("-")) return new RawPCMSource(System.in,false,sampleRate,converter);
+		return new RawPCMSource(new FileInputStream(path),true,sampleRate,converter);
+	}
+
+	// Turn a format name such as s16le , s24be , f32le or u8 into a converter
+	// Returns null if the name isn't recognised
+	public static PCMConverter parseFormat (String format,int channels)	{
+		String f=format.toLowerCase();
+		boolean bigEndian=false;
+		if (f.endsWith("le")) f=f.substring(0,f.length()-2);
+		else if (f.endsWith("be"))	{
+			f=f.substring(0,f.length()-2);
+			bigEndian=true;
+		}
+		int encoding;
+		if (f.equals("u8")) encoding=PCMConverter.UNSIGNED_8;
+		else if (f.equals("s16")) encoding=PCMConverter.SIGNED_16;
+		else if (f.equals("s24")) encoding=PCMConverter.SIGNED_24;
+		else if (f.equals("s32")) encoding=PCMConverter.SIGNED_32;
+		else if (f.equals("f32")) encoding=PCMConverter.FLOAT_32;
+		else if (f.equals("f64")) encoding=PCMConverter.FLOAT_64;
+		else return null;
+		if (channels<1) return null;
+		return new PCMConverter(encoding,bigEndian,channels);
+	}
+
+	public WaveData getWaveData()	{
+		return waveData;
+	}
+
+	// Blocks until at least one frame is available then converts every whole frame read
+	public int read (int samples[],int off,int len) throws IOException	{
+		if (ended==true) return -1;
+		int frameSize=converter.getFrameSize();
+		int want=Math.min(len*frameSize,byteBlock.length);
+		while (leftOver<frameSize)	{
+			int count=in.read(byteBlock,leftOver,want-leftOver);
+			if (count<0)	{
+				// Anything left is a partial frame which is thrown away
+				ended=true;
+				return -1;
+			}
+			leftOver=leftOver+count;
+		}
+		int frames=leftOver/frameSize;
+		converter.convert(byteBlock,0,frames,samples,off);
+		int used=frames*frameSize;
+		leftOver=leftOver-used;
+		if (leftOver>0) System.arraycopy(byteBlock,used,byteBlock,0,leftOver);
+		samplesRead=samplesRead+frames;
+		return frames;
+	}
+
+	public long getSamplesRead()	{
+		return samplesRead;
+	}
+
+	// A stream has no known length
+	public long getTotalSamples()	{
+		return -1;
+	}
+
+	public void close() throws IOException	{
+		ended=true;
+		if (closeStream==true) in.close();
+	}
+
+	public PCMConverter getConverter()	{
+		return converter;
+	}
+
+}
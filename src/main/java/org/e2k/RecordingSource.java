@@ -0,0 +1,38 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// Rivet Copyright (C) 2011 Ian Wraith
+// This program comes with ABSOLUTELY NO WARRANTY
+
+package org.e2k;
+
+// A recording on disk , a WAV file or a Rivet archive , which can be read from any point
+// Positions are in samples from the start of the recording
+public interface RecordingSource extends SampleSource {
+
+	// Move straight to a sample
+	public void seek (long frame);
+
+	// Only read the samples from start up to (but not including) end
+	public void setRange (long start,long end);
+
+	// The number of samples in the whole recording
+	public long getTotalSamples ();
+
+	// Reading stops at this sample
+	public long getEndFrame ();
+
+	// Turn a time from the start as [[hh:]mm:]ss[.sss] or a sample number starting with @ into a sample
+	public long findFrame (String position);
+
+	// When the recording was made in milliseconds since 1970 or -1 if it doesn't say
+	public long getRecordingStart ();
+
+}
@@ -0,0 +1,121 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// Rivet Copyright (C) 2011 Ian Wraith
+// This program comes with ABSOLUTELY NO WARRANTY
+
+package org.e2k;
+
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+// Replays a recording at real time or a multiple of it
+// Every sample has a due time worked out from the number of samples since the start so
+// the pacing doesn't drift however long the recording is or however late a wait wakes up
+// A speed of 0 means as fast as possible
+public class ReplayPacer {
+
+	// How much audio is let through at a time
+	private static final double BLOCK_SECONDS=0.01;
+	private final double speed;
+	private final double sampleRate;
+	private final int blockSize;
+	private long startTime=-1;
+	private long samples=0;
+	private long lateCount=0;
+
+	public ReplayPacer (double tsampleRate,double tspeed)	{
+		if (tspeed<0.0) throw new IllegalArgumentException("The replay speed can't be negative");
+		sampleRate=tsampleRate;
+		speed=tspeed;
+		if ((speed>0.0)&&(sampleRate>0.0)) blockSize=Math.max(1,(int)(sampleRate*speed*BLOCK_SECONDS));
+		else blockSize=Integer.MAX_VALUE;
+	}
+
+	// Returns true if this replays as fast as possible
+	public boolean isMaxSpeed()	{
+		return ((speed<=0.0)||(sampleRate<=0.0));
+	}
+
+	public double getSpeed()	{
+		return speed;
+	}
+
+	// The most samples which should be passed on at a time to keep the replay smooth
+	public int getBlockSize()	{
+		return blockSize;
+	}
+
+	// Wait until the next count samples are due
+	public void pace (int count) throws InterruptedException	{
+		if (isMaxSpeed()==true) return;
+		if (startTime<0) startTime=System.nanoTime();
+		samples=samples+count;
+		long due=startTime+(long)((samples/(sampleRate*speed))*1.0e9);
+		long wait=due-System.nanoTime();
+		// Count the times we couldn't keep up
+		if (wait<-(long)(BLOCK_SECONDS*1.0e9)) lateCount++;
+		while (wait>0)	{
+			LockSupport.parkNanos(wait);
+			if (Thread.interrupted()) throw new InterruptedException();
+			wait=due-System.nanoTime();
+		}
+	}
+
+	// The number of blocks which were more than a block late
+	public long getLateCount()	{
+		return lateCount;
+	}
+
+	// Start the timing again from the next block
+	public void restart()	{
+		startTime=-1;
+		samples=0;
+	}
+
+	// Return a sample source which gives up the samples of another no faster than they are due
+	public SampleSource pacedSource (final SampleSource source)	{
+		if (isMaxSpeed()==true) return source;
+		return new SampleSource()	{
+			public WaveData getWaveData()	{
+				return source.getWaveData();
+			}
+			public int read (int data[],int off,int len) throws IOException	{
+				int count=source.read(data,off,Math.min(len,blockSize));
+				if (count<=0) return count;
+				try	{
+					pace(count);
+				}
+				catch (InterruptedException e)	{
+					Thread.currentThread().interrupt();
+					throw new IOException("Replay interrupted");
+				}
+				return count;
+			}
+			public long getSamplesRead()	{
+				return source.getSamplesRead();
+			}
+			public long getTotalSamples()	{
+				return source.getTotalSamples();
+			}
+			public void close() throws IOException	{
+				source.close();
+			}
+		};
+	}
+
+	// Describe the speed for the user
+	public static String describe (double speed)	{
+		if (speed<=0.0) return "maximum speed";
+		if (speed==1.0) return "real time";
+		return String.format("%.3g",speed)+" times real time";
+	}
+
+}
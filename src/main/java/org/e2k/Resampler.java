@@ -0,0 +1,202 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// Rivet Copyright (C) 2011 Ian Wraith
+// This program comes with ABSOLUTELY NO WARRANTY
+
+package org.e2k;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+// A streaming rational polyphase resampler
+// The input rate is multiplied by L and divided by M using a Kaiser windowed sinc low pass filter
+// which is split into L phases so only the taps that are needed for each output sample are used
+// The filter banks are worked out once for each pair of rates and shared
+public class Resampler {
+
+	// Stop band attenuation in dB
+	private static final double ATTENUATION=80.0;
+	// Where the pass band ends as a fraction of the lower Nyquist frequency
+	private static final double PASSBAND=0.9;
+	private static final Map<String,float[][]> bankCache=new HashMap<String,float[][]>();
+	private final int inputRate;
+	private final int outputRate;
+	private final int interpolation;
+	private final int decimation;
+	private final int taps;
+	// bank[phase][tap] with the taps in reverse order so they line up with the input history
+	private final float bank[][];
+	private float history[];
+	// The number of samples in history and the position of the next input sample to be used
+	private int historyLength;
+	private int position;
+	private int phase;
+
+	public Resampler (int tinputRate,int toutputRate)	{
+		if ((tinputRate<=0)||(toutputRate<=0)) throw new IllegalArgumentException("Sample rates must be positive");
+		inputRate=tinputRate;
+		outputRate=toutputRate;
+		int g=gcd(inputRate,outputRate);
+		interpolation=outputRate/g;
+		decimation=inputRate/g;
+		bank=getBank(inputRate,outputRate,interpolation);
+		taps=bank[0].length;
+		history=new float[taps*2];
+		reset();
+	}
+
+	private static int gcd (int a,int b)	{
+		while (b!=0)	{
+			int t=a%b;
+			a=b;
+			b=t;
+		}
+		return a;
+	}
+
+	// Return the filter bank for a pair of rates working it out if this is the first time it has been asked for
+	private static float[][] getBank (int inputRate,int outputRate,int interpolation)	{
+		String key=Integer.toString(inputRate)+":"+Integer.toString(outputRate);
+		synchronized (bankCache)	{
+			float b[][]=bankCache.get(key);
+			if (b==null)	{
+				b=designBank(inputRate,outputRate,interpolation);
+				bankCache.put(key,b);
+			}
+			return b;
+		}
+	}
+
+	// Design the prototype low pass filter at L times the input rate and split it into L phases
+	private static float[][] designBank (int inputRate,int outputRate,int interpolation)	{
+		double nyquist=Math.min(inputRate,outputRate)/2.0;
+		// The transition band runs from the end of the pass band to just past the lower Nyquist frequency
+		// Anything which aliases into it stays above the pass band
+		double pass=nyquist*PASSBAND;
+		double stop=nyquist*(2.0-PASSBAND);
+		double cutoff=(pass+stop)/2.0;
+		double transition=(stop-pass)/inputRate;
+		int tapsPerPhase=FilterDesign.kaiserLength(transition,ATTENUATION);
+		int length=tapsPerPhase*interpolation;
+		double prototype[]=FilterDesign.lowPass(length,cutoff/((double)inputRate*interpolation),ATTENUATION);
+		float b[][]=new float[interpolation][tapsPerPhase];
+		int n;
+		for (n=0;n<length;n++)	{
+			// Scale by L to make up for the zeros put in between the input samples
+			int p=n%interpolation;
+			int k=n/interpolation;
+			b[p][tapsPerPhase-1-k]=(float)(prototype[n]*interpolation);
+		}
+		return b;
+	}
+
+	// Forget everything and start again with a silent history
+	public void reset()	{
+		int a;
+		for (a=0;a<history.length;a++)	{
+			history[a]=0.0f;
+		}
+		historyLength=taps-1;
+		position=taps-1;
+		phase=0;
+	}
+
+	// Return the most output samples process() can give for len input samples
+	public int getMaxOutput (int len)	{
+		return (int)(((long)(len+1)*interpolation)/decimation)+1;
+	}
+
+	// Resample a block of samples
+	// The output array must have room for getMaxOutput(len) samples
+	// Returns the number of samples written to the output
+	public int process (int in[],int off,int len,int out[],int outOff)	{
+		// Add the new samples to the history
+		if (historyLength+len>history.length)	{
+			float bigger[]=new float[historyLength+len+taps];
+			System.arraycopy(history,0,bigger,0,historyLength);
+			history=bigger;
+		}
+		float h[]=history;
+		int a;
+		for (a=0;a<len;a++)	{
+			h[historyLength+a]=in[off+a];
+		}
+		historyLength=historyLength+len;
+		int count=0;
+		int pos=position;
+		int ph=phase;
+		while (pos<historyLength)	{
+			float coeffs[]=bank[ph];
+			int start=pos-(taps-1);
+			float sum=0.0f;
+			int k;
+			for (k=0;k<taps;k++)	{
+				sum+=coeffs[k]*h[start+k];
+			}
+			out[outOff+count]=Math.round(sum);
+			count++;
+			ph=ph+decimation;
+			pos=pos+(ph/interpolation);
+			ph=ph%interpolation;
+		}
+		// Keep the last taps-1 samples needed for the next block
+		int keep=taps-1;
+		int drop=Math.min(pos,historyLength)-keep;
+		if (drop>0)	{
+			System.arraycopy(h,drop,h,0,historyLength-drop);
+			historyLength=historyLength-drop;
+			pos=pos-drop;
+		}
+		position=pos;
+		phase=ph;
+		return count;
+	}
+
+	public int getInputRate()	{
+		return inputRate;
+	}
+
+	public int getOutputRate()	{
+		return outputRate;
+	}
+
+	public int getTapsPerPhase()	{
+		return taps;
+	}
+	
+	// Save the input history and where the filter has got to for a checkpoint
+	public void writeState (DataOutputStream out) throws IOException	{
+		out.writeInt(historyLength);
+		out.writeInt(position);
+		out.writeInt(phase);
+		int a;
+		for (a=0;a<historyLength;a++)	{
+			out.writeFloat(history[a]);
+		}
+	}
+	
+	// Put back what writeState() saved
+	public void readState (DataInputStream in) throws IOException	{
+		historyLength=in.readInt();
+		position=in.readInt();
+		phase=in.readInt();
+		if ((historyLength<0)||(position<0)) throw new IOException("Bad resampler state in the checkpoint");
+		if (historyLength>history.length) history=new float[historyLength];
+		int a;
+		for (a=0;a<historyLength;a++)	{
+			history[a]=in.readFloat();
+		}
+	}
+
+}
@@ -17,17 +17,14 @@ import java.awt.*;
 import java.awt.event.WindowEvent;
 import java.awt.event.WindowAdapter;
 import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PipedInputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
-import java.text.DateFormat;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
-import java.util.TimeZone;
 import javax.swing.JComboBox;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
@@ -47,11 +44,11 @@ public class Rivet {
 	private DisplayModel display_model;
 	private DisplayView display_view;
 	private static Rivet theApp;
-	private static DisplayFrame window;
+	private DisplayFrame window;
 	public final String program_version="Rivet (Build 91)";
 	public int vertical_scrollbar_value=0;
 	public int horizontal_scrollbar_value=0;
-	public boolean pReady=false;
+	public volatile boolean pReady=false;
 	private int system=1;
 	public final Font plainFont=new Font("SanSerif",Font.PLAIN,12);
 	public final Font boldFont=new Font("SanSerif",Font.BOLD,12);
@@ -71,17 +68,63 @@ public class Rivet {
     public FSKraw fskHandler=new FSKraw(this);
     //public RDFT rdftHandler=new RDFT(this);
     //public AT3x04 at3x04Handler=new AT3x04(this);
-    public InputThread inputThread=new InputThread(this);
-    private DataInputStream inPipeData;
-	private PipedInputStream inPipe;
-	private CircularDataBuffer circBuffer=new CircularDataBuffer();
+    public InputThread inputThread;
+    private TextOutput textOutput;
+    private static final int SAMPLE_BLOCK_SIZE=4096;
+    private int sampleBlock[]=new int[SAMPLE_BLOCK_SIZE];
+	private CircularDataBuffer circBuffer=new CircularDataBuffer(this);
 	private WaveData waveData=new WaveData();
+	// The format of the input before any resampling
+	private WaveData sourceWaveData=null;
+	private Resampler resampler=null;
+	private int resampleBlock[]=new int[0];
+	private NetworkPCMSource networkSource=null;
+	// The number of samples still to come from a file load which only fill the history
+	private long primeRemaining=0;
+	// Skipping idle stretches of files
+	// Decoding carries on for IDLE_HANG_SECONDS after the last active block and when it starts again
+	// the last IDLE_PREROLL_SECONDS of idle audio are decoded as well
+	private static final double IDLE_HANG_SECONDS=3.0;
+	private static final double IDLE_PREROLL_SECONDS=1.0;
+	private boolean skipIdle=false;
+	private double idleFlatness=0.5;
+	private double idleEnergyRatio=4.0;
+	private IdleDetector idleDetector=null;
+	private int idleBlock[]=new int[0];
+	private int idleBlockCount=0;
+	private boolean skippingIdle=false;
+	// The idle audio most recently skipped
+	private int idleHistory[]=new int[0];
+	private int idleHistoryPos=0;
+	private long idleHistoryFill=0;
+	private int idlePreroll=0;
+	private long idleSkippedSamples=0;
+	private int idleStretches=0;
+	// Meters sources fed in with decodeBlock() , the input thread meters its own input
+	private static final int LEVEL_SNAPSHOT_RATE=10;
+	private LevelMeter levelMeter=new LevelMeter(8000.0,LEVEL_SNAPSHOT_RATE);
+	// The level last shown on the volume bar
+	private LevelMeter.Level shownLevel=null;
+	// Time stamps and timeouts follow the audio rather than the computer's clock
+	private SampleClock sampleClock=new SampleClock();
+	private long recordingStart=-1;
+	// Save the audio around each transmission found to WAV files in this directory (null if not)
+	private static final double SNIPPET_POST_SECONDS=2.0;
+	private static final double SNIPPET_MAX_SECONDS=600.0;
+	private File snippetDirectory=null;
+	private double snippetSeconds=10.0;
+	private SnippetRecorder snippetRecorder=null;
+	// Archive live audio to WAV segments in this directory but only while there is activity (null if not)
+	private static final double ARCHIVE_SEGMENT_SECONDS=3600.0;
+	private static final double ARCHIVE_HANG_SECONDS=5.0;
+	private File archiveDirectory=null;
+	private ActivityRecorder activityRecorder=null;
 	private boolean logging=false;
 	public FileWriter file;
 	public FileWriter bitStreamFile;
 	private boolean debug=false;
 	private boolean soundCardInput=false;
-	private boolean wavFileLoadOngoing=false;
+	private volatile boolean wavFileLoadOngoing=false;
 	private boolean invertSignal=false;
 	private boolean f06aASCII=false;
 	private int soundCardInputLevel=0;
@@ -100,7 +143,7 @@ public class Rivet {
 	private List<Ship> listLoggedShips=new ArrayList<Ship>();
 	
 	// Mode names
-	public final String MODENAMES[]={
+	public static final String MODENAMES[]={
 			"CROWD36",
 			"XPA (10 Baud)",
 			"XPA2",
@@ -115,28 +158,33 @@ public class Rivet {
 			"FSK (Raw)",
 			"F06a"
 			};
+	// The decoder for each mode in the same order as MODENAMES
+	private SampleDecoderAdapter decoders[]=createDecoderList();
     
+	public Rivet()	{
+	}
+	
+	// Create a Rivet which isn't attached to the display or the input thread
+	// and which writes all of its output as text
+	public Rivet (TextOutput output)	{
+		textOutput=output;
+	}
+	
 	public static void main(String[] args) {
 		theApp=new Rivet();
+		theApp.inputThread=new InputThread(theApp);
 		SwingUtilities.invokeLater(new Runnable(){public void run(){theApp.createGUI();}});
-		// Get data from the sound card thread
-		try	{
-			// Connected a piped input stream to the piped output stream in the thread
-			theApp.inPipe=new PipedInputStream(theApp.inputThread.getPipedWriter());
-			// Now connect a data input stream to the piped input stream
-			theApp.inPipeData=new DataInputStream(theApp.inPipe);
-			}
-		catch (Exception e)	{
-			JOptionPane.showMessageDialog(null,"Error in main()","Rivet", JOptionPane.ERROR_MESSAGE);
-			System.exit(0);
-			}
 		// The main loop
+		EventSignal dataSignal=theApp.inputThread.getSampleBuffer().getDataSignal();
 		while (RUNNING)	{
-			if ((theApp.wavFileLoadOngoing==true)&&(theApp.pReady==true)) theApp.getWavData();
-			else if ((theApp.inputThread.getAudioReady()==true)&&(theApp.pReady==true)) theApp.getAudioData();
-			else	{
-				// Add the following so the thread doesn't eat all of the CPU time
-				try	{Thread.sleep(1);}
+			long ticket=dataSignal.ticket();
+			boolean busy=false;
+			if ((theApp.wavFileLoadOngoing==true)&&(theApp.pReady==true)) busy=theApp.getWavData();
+			else if (((theApp.inputThread.getAudioReady()==true)||(theApp.inputThread.isLiveSourceRunning()==true))&&(theApp.pReady==true)) busy=theApp.getAudioData();
+			// If there was nothing waiting in the sample buffer then sleep until the input thread
+			// passes on some more or something else changes
+			if (busy==false)	{
+				try	{dataSignal.await(ticket,0);}
 				catch (Exception e)	{JOptionPane.showMessageDialog(null,"Error in main2()\n"+e.toString(),"Rivet", JOptionPane.ERROR_MESSAGE);}
 			}
 		}
@@ -165,6 +213,7 @@ public class Rivet {
 		if (width<600) window.setSmallScreen();		
 		// Make certain the program knows the GUI is ready
 		pReady=true;
+		wakeDecodeLoop();
 		}
 
 	class WindowHandler extends WindowAdapter {
@@ -190,6 +239,45 @@ public class Rivet {
 		if (system==1) xpaHandler.setBaudRate(10);
 		// 20 Baud XPA
 		else if (system==3) xpaHandler.setBaudRate(20);
+		// The new mode may need the input at a different sample rate
+		if (sourceWaveData!=null) setupResampler(sourceWaveData);
+	}
+	
+	// Return the sample rate the current mode wants given the rate of the input
+	private int decoderSampleRate (int inputRate)	{
+		// CROWD36 , XPA and XPA2 work at 8 KHz or 11.025 KHz
+		if ((system==0)||(system==1)||(system==2)||(system==3))	{
+			if ((inputRate==8000)||(inputRate==11025)) return inputRate;
+			if ((inputRate%11025)==0) return 11025;
+			return 8000;
+		}
+		// Experimental has no decoder
+		else if (system==4) return inputRate;
+		// Everything else is 8 KHz only
+		return 8000;
+	}
+	
+	// If the input isn't at a sample rate the current mode can handle then resample it
+	// The decoders are given a WaveData with the new rate
+	private void setupResampler (WaveData source)	{
+		sourceWaveData=source;
+		int inputRate=(int)Math.round(source.getSampleRate());
+		int outputRate=decoderSampleRate(inputRate);
+		if ((inputRate<=0)||(inputRate==outputRate))	{
+			resampler=null;
+			waveData=source;
+			return;
+		}
+		if ((resampler==null)||(resampler.getInputRate()!=inputRate)||(resampler.getOutputRate()!=outputRate)) resampler=new Resampler(inputRate,outputRate);
+		else resampler.reset();
+		waveData=new WaveData();
+		waveData.setSampleRate(outputRate);
+		waveData.setChannels(source.getChannels());
+		waveData.setSampleSizeInBits(source.getSampleSizeInBits());
+		waveData.setBytesPerFrame(source.getBytesPerFrame());
+		waveData.setEndian(source.isEndian());
+		waveData.setFromFile(source.isFromFile());
+		writeLine("Resampling from "+Integer.toString(inputRate)+" Hz to "+Integer.toString(outputRate)+" Hz",Color.BLACK,italicFont);
 	}
 
 	public int getSystem() {
@@ -263,79 +351,76 @@ public class Rivet {
 		
 	// Tell the input thread to start to load a .WAV file
 	public void loadWAVfile(String fileName)	{
+		loadWAVfile(fileName,null,null);
+	}
+	
+	// Load part of a WAV file between two positions which are either times or sample numbers
+	public void loadWAVfile(String fileName,String startPosition,String endPosition)	{
 		String disp;
+		// Until the file starts the time is now
+		sampleClock.stop();
 		disp=getTimeStamp()+" Loading file "+fileName;
+		if (startPosition!=null) disp=disp+" from "+startPosition;
+		if (endPosition!=null) disp=disp+" to "+endPosition;
 		writeLine(disp,Color.BLACK,italicFont);
-		waveData=inputThread.startFileLoad(fileName);
+		WaveData fileWaveData=inputThread.startFileLoad(fileName,startPosition,endPosition);
+		if (fileWaveData==null) return;
+		// The first samples only fill the history
+		primeRemaining=inputThread.getPrimeLength();
 		// Make sure the program knows this data is coming from a file
-		waveData.setFromFile(true);
+		fileWaveData.setFromFile(true);
+		setupResampler(fileWaveData);
+		sampleClock.start(fileWaveData.getSampleRate(),inputThread.getRecordingStart(),inputThread.getStartFrame());
 		// Clear the data buffer
 		circBuffer.setBufferCounter(0);
 		// Reset the system objects
-		// CROWD36
-		if (system==0) crowd36Handler.setState(0);
-		// XPA
-		else if ((system==1)||(system==3)) xpaHandler.setState(0);
-		// XPA2
-		else if (system==2) xpa2Handler.setState(0);
-		// Experimental
-		//else if (system==4)
-		// CIS36-50
-		else if (system==5) cis3650Handler.setState(0);
-		// FSK200/500
-		else if (system==6) fsk200500Handler.setState(0);
-		// CCIR493-4
-		else if (system==7) ccir493Handler.setState(0);
-		// FSK200/1000
-		else if (system==8) fsk2001000Handler.setState(0);	
-		// GW
-		else if (system==9) gwHandler.setState(0);
-		// RTTY
-		else if (system==10) rttyHandler.setState(0);
-		// FSK (raw)
-		else if (system==11) fskHandler.setState(0);
-		//F06a
-		else if (system==12) f06aHandler.setState(0);
+		if (decoders[system]!=null) decoders[system].setState(0);
+		setupIdleDetector(fileWaveData);
+		setupSnippetRecorder(fileWaveData);
+		// Only live input is archived
+		closeActivityRecorder();
 		// Ensure the program knows we have a WAV file load ongoing
 		wavFileLoadOngoing=true;
+		wakeDecodeLoop();
+	}
+	
+	// The decode loop sleeps until the input thread passes it samples so wake it up
+	// whenever something else changes what it should be doing
+	private void wakeDecodeLoop()	{
+		if (inputThread!=null) inputThread.getSampleBuffer().getDataSignal().signal();
 	}
 	
 	// This is called when the input thread is busy getting data from a WAV file
-	private void getWavData()	{
-		// Get the sample from the input thread
+	// Returns false if there were no samples waiting
+	private boolean getWavData()	{
+		// Get the samples from the input thread
 		try	{
-			// Add the data from the thread pipe to the circular buffer
-			circBuffer.addToCircBuffer(inPipeData.readInt());
-			// Process this data
-			processData();
-    		// Update the progress bar
-    		updateProgressBar();
-			// Check if the file has now all been read but we need to process all the data in the buffer
-			if (inputThread.getLoadingFileState()==false)	{
-				int a;
-				for (a=0;a<circBuffer.retMax();a++)	{
-					processData();
-					// Keep adding null data to the circular buffer to move it along
-					circBuffer.addToCircBuffer(0);
+			// Check this before reading so we don't miss the last block of the file
+			boolean fileLoaded=!inputThread.getLoadingFileState();
+			int count=inputThread.getSampleBuffer().read(sampleBlock,0,SAMPLE_BLOCK_SIZE);
+			if (count>0)	{
+				// Fill the history with anything from before the part of the file being decoded
+				int primed=0;
+				if (primeRemaining>0)	{
+					primed=(int)Math.min(count,primeRemaining);
+					primeBlock(sampleBlock,0,primed);
+					primeRemaining=primeRemaining-primed;
 				}
+				// Process this data
+				if (count>primed) processInput(sampleBlock,primed,count-primed);
+				// Stop if processData() has ended the file load
+				if (wavFileLoadOngoing==false) return true;
+	    		// Update the progress bar
+	    		updateProgressBar();
+	    		return true;
+			}
+			// Check if the file has now all been read but we need to process all the data in the buffer
+			if (fileLoaded==true)	{
+				flushDecoder();
 				// Check if there is anything left to display
-				if (system==0)	{
-					//if (crowd36Handler.getLineCount()>0) writeLine(crowd36Handler.getLineBuffer(),Color.BLACK,plainFont);
-					writeLine(crowd36Handler.lowHighFreqs(),Color.BLACK,plainFont);
-					crowd36Handler.toneResults();
-				}
-				else if (system==5)	{
-					//writeLine(cis3650Handler.lineBuffer.toString(),Color.BLACK,plainFont);
-				}
-				else if (system==6)	{
-					writeLine(fsk200500Handler.getQuailty(),Color.BLACK,plainFont);
-				}
-				else if (system==8)	{
-					writeLine(fsk2001000Handler.getQuailty(),Color.BLACK,plainFont);
-				}
-				else if (system==12) {
-					writeLine(f06aHandler.getQuailty(), Color.BLACK,plainFont);
-				}
+				endOfFileReport();
+				idleReport();
+				closeSnippetRecorder();
 				
 				// Once the buffer data has been read we are done
 				if (wavFileLoadOngoing==true)	{
@@ -343,66 +428,93 @@ public class Rivet {
 					writeLine(disp,Color.BLACK,italicFont);		
 					wavFileLoadOngoing=false;
 					}
+				return true;
 				}
 			}
 		catch (Exception e)	{
 			e.printStackTrace();
 			JOptionPane.showMessageDialog(null,"Error in getWavData()","Rivet", JOptionPane.ERROR_MESSAGE);
 			}	
+		return false;
 	}
 	
 	// This is called when the input thread is busy getting data from the sound card
-	private void getAudioData()	{
-			// Get the sample from the input thread
+	// Returns false if there were no samples waiting
+	private boolean getAudioData()	{
+			// Get the samples from the input thread
 			try	{
-				// Add the data from the thread pipe to the circular buffer
-				circBuffer.addToCircBuffer(inPipeData.readInt());
+				int count=inputThread.getSampleBuffer().read(sampleBlock,0,SAMPLE_BLOCK_SIZE);
+				if (count==0) return false;
 				// Process this data
-				processData();
-	    		// Update the volume bar every 50 samples
-	    		if (inputThread.getSampleCounter()%50==0) updateVolumeBar();
+				sampleClock.advance(count);
+				if (snippetRecorder!=null) snippetRecorder.add(sampleBlock,0,count);
+				if (activityRecorder!=null) activityRecorder.add(sampleBlock,0,count);
+				processData(sampleBlock,0,count);
+				// Let the input thread work out how far behind the capture we are
+				inputThread.blockDecoded(count);
+	    		// Update the volume bar if there is a new level
+	    		updateVolumeBar();
 				}
 			catch (Exception e)	{
 				e.printStackTrace();
 				JOptionPane.showMessageDialog(null,"Error in getAudioData()","Rivet", JOptionPane.ERROR_MESSAGE);
-				}	
+				}
+			return true;
 		}
 	
 			
-	// A central data processing class
-	private void processData ()	{		
+	// Build the list of decoders in the same order as MODENAMES
+	// Each one is wrapped in an adapter which passes it blocks of samples
+	private SampleDecoderAdapter[] createDecoderList()	{
+		ModeDecoder handlers[]=new ModeDecoder[MODENAMES.length];
+		handlers[0]=crowd36Handler;
+		handlers[1]=xpaHandler;
+		handlers[2]=xpa2Handler;
+		handlers[3]=xpaHandler;
+		// Experimental (4) has no decoder
+		handlers[5]=cis3650Handler;
+		handlers[6]=fsk200500Handler;
+		handlers[7]=ccir493Handler;
+		handlers[8]=fsk2001000Handler;
+		handlers[9]=gwHandler;
+		handlers[10]=rttyHandler;
+		handlers[11]=fskHandler;
+		handlers[12]=f06aHandler;
+		SampleDecoderAdapter list[]=new SampleDecoderAdapter[MODENAMES.length];
+		int a;
+		for (a=0;a<handlers.length;a++)	{
+			if (handlers[a]!=null) list[a]=new SampleDecoderAdapter(handlers[a]);
+		}
+		return list;
+	}
+	
+	// A central data processing class which passes a block of samples to the current decoder
+	// Returns false if the current mode is unable to decode this data
+	private boolean processData (int samples[],int off,int len)	{		
+		boolean res=true;
 		try	{
-			boolean res=false;
-			// CROWD36
-			if (system==0) res=crowd36Handler.decode(circBuffer,waveData);
-			// XPA
-			else if ((system==1)||(system==3)) res=xpaHandler.decode(circBuffer,waveData);
-			// XPA2
-			else if (system==2)	res=xpa2Handler.decode(circBuffer,waveData);
-			// Experimental
-			//else if (system==4)	res=
-			// CIS36-50
-			else if (system==5)	res=cis3650Handler.decode(circBuffer,waveData);
-			// FSK200/500
-			else if (system==6)	res=fsk200500Handler.decode(circBuffer,waveData);
-			// CCIR493-4
-			else if (system==7)	res=ccir493Handler.decode(circBuffer,waveData);
-			// FSK200/1000
-			else if (system==8)	res=fsk2001000Handler.decode(circBuffer,waveData);
-			// GW
-			else if (system==9) res=gwHandler.decode(circBuffer,waveData);
-			// RTTY
-			else if (system==10) res=rttyHandler.decode(circBuffer,waveData);
-			// FSK (raw)
-			else if (system==11) res=fskHandler.decode(circBuffer,waveData);
-			//F06a
-			else if (system==12) res=f06aHandler.decode(circBuffer,waveData);
+			SampleDecoderAdapter decoder=decoders[system];
+			// Convert the samples to the rate the decoder wants first
+			if (resampler!=null)	{
+				int max=resampler.getMaxOutput(len);
+				if (resampleBlock.length<max) resampleBlock=new int[max];
+				len=resampler.process(samples,off,len,resampleBlock,0);
+				samples=resampleBlock;
+				off=0;
+			}
+			if (decoder!=null) res=decoder.decode(circBuffer,waveData,samples,off,len);
+			else	{
+				circBuffer.addToCircBuffer(samples,off,len);
+				res=false;
+			}
+			if (snippetRecorder!=null) snippetRecorder.setSignal(isSignalFound(),snippetLabel());
+			if (activityRecorder!=null) activityRecorder.setSignal(isSignalFound(),snippetLabel());
 			// Tell the user there has been an error and stop the WAV file from loading
 			if (res==false)	{
-				if (soundCardInput==false)	{
-					inputThread.stopReadingFile();
+				if ((soundCardInput==false)&&(networkSource==null))	{
+					if (inputThread!=null) inputThread.stopReadingFile();
 					wavFileLoadOngoing=false;
-					writeLine("Error Loading WAV File",Color.RED,theApp.boldFont);
+					writeLine("Error Loading WAV File",Color.RED,boldFont);
 				}
 				
 			}
@@ -412,8 +524,425 @@ public class Rivet {
 			StringWriter sw=new StringWriter();
 			e.printStackTrace(new PrintWriter(sw));
 			String str=sw.toString();
-			JOptionPane.showMessageDialog(null,"Error in processData()\n"+str,"Rivet", JOptionPane.ERROR_MESSAGE);
+			showMessage("Error in processData()\n"+str,JOptionPane.ERROR_MESSAGE);
+		}
+		return res;
+	}
+	
+	// Decode everything from a sample source in this thread without using the input thread
+	// This is what the command line batch decoder uses
+	// Returns false if the current mode is unable to decode this data
+	public boolean decodeSource (SampleSource source) throws IOException	{
+		return decodeSource(source,0);
+	}
+	
+	// Decode a whole sample source using the first primeLength samples only to fill the history
+	public boolean decodeSource (SampleSource source,long primeLength) throws IOException	{
+		return decodeSource(source,primeLength,null);
+	}
+	
+	// Decode a whole sample source saving the session to a checkpoint every so often
+	// If the checkpoint was loaded from an earlier run then decoding carries on from where that left off
+	public boolean decodeSource (SampleSource source,long primeLength,Checkpoint checkpoint) throws IOException	{
+		startSource(source.getWaveData(),source.getSamplesRead());
+		if ((checkpoint!=null)&&(checkpoint.isLoaded()==true))	{
+			checkpoint.restore(this);
+			primeLength=0;
+		}
+		int count;
+		while ((count=source.read(sampleBlock,0,SAMPLE_BLOCK_SIZE))>0)	{
+			int primed=0;
+			if (primeLength>0)	{
+				primed=(int)Math.min(count,primeLength);
+				primeBlock(sampleBlock,0,primed);
+				primeLength=primeLength-primed;
+			}
+			if ((count>primed)&&(decodeBlock(sampleBlock,primed,count-primed)==false)) return false;
+			if (checkpoint!=null) checkpoint.update(this);
+		}
+		endSource();
+		if (checkpoint!=null) checkpoint.finished();
+		return true;
+	}
+	
+	// Save everything the current mode needs to carry on decoding from where it is
+	// This is the clock , the circular buffer , the resampler , the decoder , any part line of output and the idle skipping
+	public void writeState (DataOutputStream out) throws IOException	{
+		out.writeInt(system);
+		sampleClock.writeState(out);
+		circBuffer.writeState(out);
+		out.writeBoolean(resampler!=null);
+		if (resampler!=null) resampler.writeState(out);
+		if (decoders[system]!=null) decoders[system].getDecoder().writeState(out);
+		out.writeBoolean(textOutput!=null);
+		if (textOutput!=null) textOutput.writeState(out);
+		out.writeBoolean(idleDetector!=null);
+		if (idleDetector!=null)	{
+			idleDetector.writeState(out);
+			out.writeInt(idleBlockCount);
+			out.writeBoolean(skippingIdle);
+			out.writeInt(idleHistoryPos);
+			out.writeLong(idleHistoryFill);
+			out.writeLong(idleSkippedSamples);
+			out.writeInt(idleStretches);
+			Checkpoint.writeInts(out,idleBlock);
+			Checkpoint.writeInts(out,idleHistory);
+		}
+	}
+	
+	// Put back the state saved by writeState()
+	// The session must already have been started on the same kind of source in the same mode
+	public void readState (DataInputStream in) throws IOException	{
+		if (in.readInt()!=system) throw new IOException("The checkpoint was made decoding "+MODENAMES[system]+" in a different mode");
+		sampleClock.readState(in);
+		circBuffer.readState(in);
+		if (in.readBoolean()!=(resampler!=null)) throw new IOException("The checkpoint was made at a different sample rate");
+		if (resampler!=null) resampler.readState(in);
+		if (decoders[system]!=null) decoders[system].getDecoder().readState(in);
+		if (in.readBoolean()!=(textOutput!=null)) throw new IOException("The checkpoint was made with different output");
+		if (textOutput!=null) textOutput.readState(in);
+		if (in.readBoolean()!=(idleDetector!=null)) throw new IOException("The checkpoint was made with different idle skipping");
+		if (idleDetector!=null)	{
+			idleDetector.readState(in);
+			idleBlockCount=in.readInt();
+			skippingIdle=in.readBoolean();
+			idleHistoryPos=in.readInt();
+			idleHistoryFill=in.readLong();
+			idleSkippedSamples=in.readLong();
+			idleStretches=in.readInt();
+			Checkpoint.readInts(in,idleBlock);
+			Checkpoint.readInts(in,idleHistory);
+		}
+	}
+	
+	// Get ready to decode samples which are fed in by something other than the input thread
+	public void startSource (WaveData source)	{
+		startSource(source,0);
+	}
+	
+	// Start a source whose first sample is position samples into the recording
+	public void startSource (WaveData source,long position)	{
+		sampleClock.start(source.getSampleRate(),recordingStart,position);
+		setupResampler(source);
+		circBuffer.setBufferCounter(0);
+		resetDecoderState();
+		levelMeter.setSampleRate(source.getSampleRate(),LEVEL_SNAPSHOT_RATE);
+		levelMeter.reset();
+		setupIdleDetector(source);
+		setupSnippetRecorder(source);
+		setupActivityRecorder(source);
+		wavFileLoadOngoing=true;
+	}
+	
+	// Decode a block of samples from a source started with startSource()
+	// Returns false if the current mode is unable to decode this data
+	public boolean decodeBlock (int samples[],int off,int len)	{
+		levelMeter.process(samples,off,len);
+		return processInput(samples,off,len);
+	}
+	
+	// If skipping idle audio has been asked for set up a detector for a new source
+	private void setupIdleDetector (WaveData source)	{
+		idleBlockCount=0;
+		skippingIdle=false;
+		idleSkippedSamples=0;
+		idleStretches=0;
+		idleHistoryPos=0;
+		idleHistoryFill=0;
+		if ((skipIdle==false)||(source.getSampleRate()<=0.0))	{
+			idleDetector=null;
+			return;
+		}
+		idleDetector=new IdleDetector(source.getSampleRate(),IDLE_HANG_SECONDS);
+		idleDetector.setFlatnessThreshold(idleFlatness);
+		idleDetector.setEnergyRatio(idleEnergyRatio);
+		idleBlock=new int[idleDetector.getBlockSize()];
+		idlePreroll=(int)(source.getSampleRate()*IDLE_PREROLL_SECONDS);
+		idleHistory=new int[getHistoryLength(source.getSampleRate())+idlePreroll];
+	}
+	
+	// Pass input to the decoder skipping any idle stretches if that has been asked for
+	// The input is checked a block at a time so a part block is held until the rest of it arrives
+	// Returns false if the current mode is unable to decode this data
+	private boolean processInput (int samples[],int off,int len)	{
+		if (idleDetector==null)	{
+			sampleClock.advance(len);
+			if (snippetRecorder!=null) snippetRecorder.add(samples,off,len);
+			if (activityRecorder!=null) activityRecorder.add(samples,off,len);
+			return processData(samples,off,len);
+		}
+		// The recorders are given the input as it arrives so the clock is moved on to its end for them
+		// and then put back so it only counts the blocks which have been decoded or skipped
+		long pending=idleBlockCount+len;
+		sampleClock.advance(pending);
+		if (snippetRecorder!=null) snippetRecorder.add(samples,off,len);
+		if (activityRecorder!=null) activityRecorder.add(samples,off,len);
+		sampleClock.advance(-pending);
+		boolean res=true;
+		int blockSize=idleBlock.length;
+		while (len>0)	{
+			int count=Math.min(len,blockSize-idleBlockCount);
+			System.arraycopy(samples,off,idleBlock,idleBlockCount,count);
+			idleBlockCount=idleBlockCount+count;
+			off=off+count;
+			len=len-count;
+			if (idleBlockCount<blockSize) break;
+			idleBlockCount=0;
+			if (idleDetector.isActive(idleBlock,0)==true)	{
+				if ((skippingIdle==true)&&(resumeFromIdle()==false)) res=false;
+				sampleClock.advance(blockSize);
+				if (processData(idleBlock,0,blockSize)==false) res=false;
+			}
+			else	{
+				sampleClock.advance(blockSize);
+				if (skippingIdle==false)	{
+					skippingIdle=true;
+					idleStretches++;
+					idleHistoryPos=0;
+					idleHistoryFill=0;
+				}
+				// Keep the idle audio in case it is needed when decoding starts again
+				int a;
+				for (a=0;a<blockSize;a++)	{
+					idleHistory[idleHistoryPos]=idleBlock[a];
+					idleHistoryPos++;
+					if (idleHistoryPos==idleHistory.length) idleHistoryPos=0;
+				}
+				idleHistoryFill=idleHistoryFill+blockSize;
+				idleSkippedSamples=idleSkippedSamples+blockSize;
+			}
+		}
+		return res;
+	}
+	
+	// Activity has been found after an idle stretch
+	// The decoder starts again from scratch with its history filled from the idle audio
+	// and the last part of the idle audio is decoded so it has a lead in to sync up on
+	// The clock is wound back to the start of that part and moved on a block at a time as it is decoded
+	private boolean resumeFromIdle()	{
+		skippingIdle=false;
+		if (resampler!=null) resampler.reset();
+		circBuffer.setBufferCounter(0);
+		resetDecoderState();
+		int held=(int)Math.min(idleHistoryFill,idleHistory.length);
+		int start=idleHistoryPos-held;
+		if (start<0) start=start+idleHistory.length;
+		int ordered[]=new int[held];
+		int first=Math.min(held,idleHistory.length-start);
+		System.arraycopy(idleHistory,start,ordered,0,first);
+		System.arraycopy(idleHistory,0,ordered,first,held-first);
+		int decode=Math.min(held,idlePreroll);
+		if (held>decode) addToHistory(ordered,0,held-decode);
+		idleSkippedSamples=idleSkippedSamples-decode;
+		sampleClock.advance(-decode);
+		boolean res=true;
+		int off=held-decode;
+		while (off<held)	{
+			int count=Math.min(held-off,idleBlock.length);
+			sampleClock.advance(count);
+			if (processData(ordered,off,count)==false) res=false;
+			off=off+count;
+		}
+		return res;
+	}
+	
+	// Say how much idle audio was skipped
+	private void idleReport()	{
+		if ((idleDetector==null)||(idleStretches==0)) return;
+		double rate=waveData.getSampleRate();
+		if (sourceWaveData!=null) rate=sourceWaveData.getSampleRate();
+		String line="Skipped "+String.format("%.1f",idleSkippedSamples/rate)+" seconds of idle audio in "+Integer.toString(idleStretches)+" stretches";
+		writeLine(line,Color.BLACK,italicFont);
+	}
+	
+	// Returns true if the current decoder has found a signal
+	// Every decoder starts in state 0 and hunts for a signal in state 1 and anything after that means
+	// it has found one (XPA and XPA2 go on to state 5 once a message is complete)
+	private boolean isSignalFound()	{
+		SampleDecoderAdapter decoder=decoders[system];
+		if (decoder==null) return false;
+		int state=decoder.getState();
+		if ((system==1)||(system==2)||(system==3)) return ((state>1)&&(state<5));
+		return (state>1);
+	}
+	
+	// Snippets are named after the mode and the channel if there is more than one
+	private String snippetLabel()	{
+		if ((textOutput==null)||(textOutput.getTag()==null)) return MODENAMES[system];
+		if (textOutput.getTag().endsWith(MODENAMES[system])) return textOutput.getTag();
+		return textOutput.getTag()+" "+MODENAMES[system];
+	}
+	
+	// If saving snippets has been asked for set up a recorder for a new source
+	private void setupSnippetRecorder (WaveData source)	{
+		closeSnippetRecorder();
+		if ((snippetDirectory==null)||(source.getSampleRate()<=0.0)) return;
+		if ((!snippetDirectory.isDirectory())&&(!snippetDirectory.mkdirs()))	{
+			showMessage("Unable to create the directory "+snippetDirectory.getPath(),JOptionPane.ERROR_MESSAGE);
+			return;
+		}
+		snippetRecorder=new SnippetRecorder(this,snippetDirectory,(int)Math.round(source.getSampleRate()),snippetSeconds,SNIPPET_POST_SECONDS,SNIPPET_MAX_SECONDS);
+	}
+	
+	// Finish off any snippet being recorded and say how many were saved
+	private void closeSnippetRecorder()	{
+		if (snippetRecorder==null) return;
+		SnippetRecorder recorder=snippetRecorder;
+		snippetRecorder=null;
+		recorder.close();
+		if (recorder.getSavedCount()==0) return;
+		String line="Saved "+Integer.toString(recorder.getSavedCount())+" audio snippets to "+recorder.getDirectory().getPath();
+		if (recorder.getShortenedCount()>0) line=line+" ("+Integer.toString(recorder.getShortenedCount())+" cut short as they couldn't be written quickly enough)";
+		writeLine(line,Color.BLACK,italicFont);
+	}
+	
+	// If archiving has been asked for set up a recorder for a new live source
+	private void setupActivityRecorder (WaveData source)	{
+		closeActivityRecorder();
+		if ((archiveDirectory==null)||(source.getSampleRate()<=0.0)) return;
+		if ((!archiveDirectory.isDirectory())&&(!archiveDirectory.mkdirs()))	{
+			showMessage("Unable to create the directory "+archiveDirectory.getPath(),JOptionPane.ERROR_MESSAGE);
+			return;
 		}
+		activityRecorder=new ActivityRecorder(this,archiveDirectory,(int)Math.round(source.getSampleRate()),ARCHIVE_SEGMENT_SECONDS,ARCHIVE_HANG_SECONDS);
+		activityRecorder.setThresholds(idleFlatness,idleEnergyRatio);
+	}
+	
+	// Finish off the archive segment being written and say how much was archived
+	private void closeActivityRecorder()	{
+		if (activityRecorder==null) return;
+		ActivityRecorder recorder=activityRecorder;
+		activityRecorder=null;
+		recorder.close();
+		if (recorder.getStretchCount()==0) return;
+		String line="Archived "+Integer.toString(recorder.getStretchCount())+" stretches of activity in "+Integer.toString(recorder.getSegmentCount())+" segments to "+recorder.getDirectory().getPath();
+		if (recorder.getDroppedSamples()>0) line=line+" ("+Long.toString(recorder.getDroppedSamples())+" samples lost as they couldn't be written quickly enough)";
+		writeLine(line,Color.BLACK,italicFont);
+	}
+	
+	// Archive live audio while there is activity on it to WAV segments in a directory or stop if it is null
+	public void setArchiveDirectory (File directory)	{
+		archiveDirectory=directory;
+	}
+	
+	public File getArchiveDirectory()	{
+		return archiveDirectory;
+	}
+	
+	// Save the audio around each transmission found to WAV files in a directory or stop if it is null
+	// seconds is how much audio from before the signal is found is saved
+	public void setSnippetRecording (File directory,double seconds)	{
+		snippetDirectory=directory;
+		if (seconds>0.0) snippetSeconds=seconds;
+	}
+	
+	public File getSnippetDirectory()	{
+		return snippetDirectory;
+	}
+	
+	public double getSnippetSeconds()	{
+		return snippetSeconds;
+	}
+	
+	// Skip stretches of WAV files which only hold band noise
+	public void setSkipIdle (boolean skip)	{
+		skipIdle=skip;
+	}
+	
+	public boolean isSkipIdle()	{
+		return skipIdle;
+	}
+	
+	// Set how the idle detector decides a block is active
+	// flatness is the spectral flatness (0 to 1) below which a block holds a signal
+	// energyRatio is how many times the noise floor energy a block has to be to hold a signal
+	public void setIdleThresholds (double flatness,double energyRatio)	{
+		idleFlatness=flatness;
+		idleEnergyRatio=energyRatio;
+	}
+	
+	// Add samples from before the part of a source being decoded to the history without decoding them
+	// This lets the decoders look back past the start as they would have done if they had seen the whole source
+	public void primeBlock (int samples[],int off,int len)	{
+		sampleClock.advance(len);
+		addToHistory(samples,off,len);
+	}
+	
+	// Resample a block if need be and add it to the circular buffer
+	private void addToHistory (int samples[],int off,int len)	{
+		if (resampler!=null)	{
+			int max=resampler.getMaxOutput(len);
+			if (resampleBlock.length<max) resampleBlock=new int[max];
+			len=resampler.process(samples,off,len,resampleBlock,0);
+			samples=resampleBlock;
+			off=0;
+		}
+		circBuffer.addToCircBuffer(samples,off,len);
+	}
+	
+	// Return the number of samples at an input rate which fill the history the decoders look back over
+	public int getHistoryLength (double inputRate)	{
+		int outputRate=decoderSampleRate((int)Math.round(inputRate));
+		if ((outputRate<=0)||(inputRate<=0.0)) return circBuffer.retMax();
+		return (int)Math.ceil((circBuffer.retMax()*inputRate)/outputRate);
+	}
+	
+	// Return the latest input level which decoders can use for AGC or squelch
+	public LevelMeter.Level getInputLevel()	{
+		if (inputThread!=null) return inputThread.getLevelMeter().getLevel();
+		return levelMeter.getLevel();
+	}
+	
+	// The source has ended so flush the decoder and display anything it has left
+	public void endSource()	{
+		flushDecoder();
+		endOfFileReport();
+		idleReport();
+		closeSnippetRecorder();
+		closeActivityRecorder();
+		wavFileLoadOngoing=false;
+	}
+	
+	// Keep adding null data to the circular buffer to move it along
+	// If the input is being resampled enough extra is added to get a full buffer out of the resampler
+	private void flushDecoder()	{
+		// Anything still waiting to be checked for activity is decoded
+		if ((idleDetector!=null)&&(idleBlockCount>0))	{
+			sampleClock.advance(idleBlockCount);
+			if (skippingIdle==false) processData(idleBlock,0,idleBlockCount);
+		}
+		idleBlockCount=0;
+		int length=circBuffer.retMax();
+		if (resampler!=null) length=(int)(((long)length*resampler.getInputRate())/resampler.getOutputRate())+resampler.getTapsPerPhase();
+		int flush[]=new int[length];
+		processData(flush,0,flush.length);
+	}
+	
+	// Once a file has been read display anything the current decoder has left
+	private void endOfFileReport()	{
+		if (system==0)	{
+			writeLine(crowd36Handler.lowHighFreqs(),Color.BLACK,plainFont);
+			crowd36Handler.toneResults();
+		}
+		else if (system==6)	{
+			writeLine(fsk200500Handler.getQuailty(),Color.BLACK,plainFont);
+		}
+		else if (system==8)	{
+			writeLine(fsk2001000Handler.getQuailty(),Color.BLACK,plainFont);
+		}
+		else if (system==12) {
+			writeLine(f06aHandler.getQuailty(), Color.BLACK,plainFont);
+		}
+	}
+	
+	// Tell the user about a problem
+	// Without a display this goes to stderr
+	public void showMessage (String msg,int messageType)	{
+		if ((textOutput!=null)||(GraphicsEnvironment.isHeadless()==true))	{
+			if (textOutput!=null) textOutput.flush();
+			System.err.println("Rivet : "+msg.replace('\n',' '));
+		}
+		else JOptionPane.showMessageDialog(null,msg,"Rivet",messageType);
 	}
 	
 	// Write a line to the debug file
@@ -430,34 +959,47 @@ public class Rivet {
 		}
 	
 	// Return a time stamp
+	// This is the time of the audio being decoded rather than the time now so it is right
+	// however fast a file is being decoded
+	// If we are logging in UTC time then this is in UTC otherwise it is in local time
 	public String getTimeStamp() {
-		Date now=new Date();
-		DateFormat df=DateFormat.getTimeInstance();
-		// If we are logging in UTC time then set the time zone to that
-		// Other wise logs will be in local time
-		if (logInUTC==true) df.setTimeZone(TimeZone.getTimeZone("UTC"));
-		return df.format(now);
+		return sampleClock.getTimeStamp();
+	}
+	
+	// The clock which follows the audio that the decoders use for time stamps and timeouts
+	public SampleClock getSampleClock()	{
+		return sampleClock;
+	}
+	
+	// Set when the next source to be decoded started in milliseconds since 1970 (-1 if it isn't known)
+	public void setRecordingStart (long start)	{
+		recordingStart=start;
 	}
 	
 	private void updateProgressBar ()	{
+		if (window==null) return;
 		window.progressBarUpdate(inputThread.returnFileLoadPercentage());
 	}
 	
-	// Get the average current volume and modify this so it is a number between 0 and 100
+	// Get the RMS input level and modify this so it is a number between 0 and 100
 	// which is then passed to the progress indicator on the status bar
+	// This is only done when the input thread has published a new level
 	private void updateVolumeBar ()	{
-		// Calculate as a percentage of 18000 (the max value)
-		// Reduce this to 3500 to give a more useful display
-		int pval=(int)(((float)inputThread.returnVolumeAverage()/(float)3000.0)*(float)100);
+		if (window==null) return;
+		LevelMeter.Level level=inputThread.getLevelMeter().getLevel();
+		if (level==shownLevel) return;
+		shownLevel=level;
+		// Calculate as a percentage of 3000 to give a more useful display
+		int pval=(int)((level.getRMS()/3000.0)*100.0);
 		window.progressBarUpdate(pval);
 	}
 	
 	public void setStatusLabel (String st)	{
-		window.setStatusLabel(st);
+		if (window!=null) window.setStatusLabel(st);
 	}
 
 	public void setModeLabel (String st) {
-		window.setModeLabel(st);
+		if (window!=null) window.setModeLabel(st);
 	}
 
 	public void setLogging(boolean logging) {
@@ -542,11 +1084,14 @@ public class Rivet {
 
 	// Change the sound source
 	public void setSoundCardInput(boolean s) {
+		if (s==true) stopNetworkInput();
 		// Try to close the audio device if it is already in operation
 		if (this.soundCardInput==true) inputThread.closeAudio();
 		// If the soundcard is already running we need to close it
 		if (s==false)	{
 			this.soundCardInput=false;
+			closeSnippetRecorder();
+			closeActivityRecorder();
 		}
 		else	{
 			// CROWD36 , XPA , XPA2 , CIS36-50 , FSK200/500 , FSK200/1000 , CCIR493-4 , GW , RTTY , RDFT , Experimental, F06a
@@ -559,45 +1104,225 @@ public class Rivet {
 				waveSetting.setSampleRate(8000.0);
 				waveSetting.setBytesPerFrame(2);
 				inputThread.setupAudio(waveSetting);
-				waveData=waveSetting;
+				setupResampler(waveSetting);
+				sampleClock.start(waveSetting.getSampleRate(),-1,0);
+				setupSnippetRecorder(waveSetting);
+				setupActivityRecorder(waveSetting);
 				this.soundCardInput=true;	
 			}
 			
 		}
 	}
 	
+	// Start listening for PCM pushed over the network by a remote receiver
+	public boolean startNetworkInput (int protocol,int port,int sampleRate,String format,boolean sequenced)	{
+		if (soundCardInput==true) setSoundCardInput(false);
+		stopNetworkInput();
+		PCMConverter converter=RawPCMSource.parseFormat(format,1);
+		NetworkPCMSource source=new NetworkPCMSource(protocol,port,sampleRate,converter,sequenced);
+		try	{
+			source.open();
+		}
+		catch (IOException e)	{
+			showMessage("Unable to listen on port "+Integer.toString(port)+"\n"+e.toString(),JOptionPane.ERROR_MESSAGE);
+			return false;
+		}
+		networkSource=source;
+		setupResampler(source.getWaveData());
+		sampleClock.start(source.getWaveData().getSampleRate(),-1,0);
+		setupSnippetRecorder(source.getWaveData());
+		setupActivityRecorder(source.getWaveData());
+		circBuffer.setBufferCounter(0);
+		resetDecoderState();
+		inputThread.startLiveSource(source);
+		String proto="TCP";
+		if (protocol==NetworkPCMSource.UDP) proto="UDP";
+		writeLine(getTimeStamp()+" Listening for "+format+" at "+Integer.toString(sampleRate)+" Hz on "+proto+" port "+Integer.toString(port),Color.BLACK,italicFont);
+		return true;
+	}
+	
+	public void stopNetworkInput ()	{
+		if (networkSource==null) return;
+		inputThread.stopLiveSource();
+		writeLine(networkSource.getStatistics(),Color.BLACK,italicFont);
+		networkSource=null;
+		closeSnippetRecorder();
+		closeActivityRecorder();
+	}
+	
+	public boolean isNetworkInput()	{
+		return (networkSource!=null);
+	}
+	
+	// A dialog box to allow the user to set up the network input
+	public void setNetworkOptions()	{
+		 JPanel panel=new JPanel();
+		 panel.setLayout(new GridLayout(4,2));
+		 // Protocol
+		 JLabel labelProtocol=new JLabel("Protocol : ");
+		 final String PROTOCOLS[]={"TCP","UDP","UDP with sequence numbers"};
+		 JComboBox<String> protocolList=new JComboBox <String>(PROTOCOLS);
+		 panel.add(labelProtocol);
+		 panel.add(protocolList);
+		 // Port
+		 JLabel labelPort=new JLabel("Port : ");
+		 JTextField portField=new JTextField(5);
+		 portField.setText("7355");
+		 panel.add(labelPort);
+		 panel.add(portField);
+		 // Sample format
+		 JLabel labelFormat=new JLabel("Format : ");
+		 final String FORMATS[]={"s16le","f32le"};
+		 JComboBox<String> formatList=new JComboBox <String>(FORMATS);
+		 panel.add(labelFormat);
+		 panel.add(formatList);
+		 // Sample rate
+		 JLabel labelRate=new JLabel("Sample Rate : ");
+		 final String RATES[]={"8000","11025","22050","44100","48000","96000"};
+		 JComboBox<String> rateList=new JComboBox <String>(RATES);
+		 panel.add(labelRate);
+		 panel.add(rateList);
+		 int resp=JOptionPane.showConfirmDialog(window,panel,"Network Input",JOptionPane.OK_CANCEL_OPTION,JOptionPane.QUESTION_MESSAGE);
+		 if (resp==JOptionPane.OK_OPTION)	{
+			 int port;
+			 try	{
+				 port=Integer.parseInt(portField.getText().trim());
+			 }
+			 catch (NumberFormatException e)	{
+				 showMessage("Invalid port number",JOptionPane.ERROR_MESSAGE);
+				 return;
+			 }
+			 int protocol=NetworkPCMSource.TCP;
+			 if (protocolList.getSelectedIndex()>0) protocol=NetworkPCMSource.UDP;
+			 startNetworkInput(protocol,port,Integer.parseInt(RATES[rateList.getSelectedIndex()]),FORMATS[formatList.getSelectedIndex()],(protocolList.getSelectedIndex()==2));
+		 }
+	}
+	
+	// Allows the user to set how fast WAV files are replayed
+	// Real time replay behaves like live input while maximum speed is for getting through recordings
+	public void setReplaySpeedOptions()	{
+		 final String SPEEDS[]={"Maximum","1x (Real Time)","2x","5x","10x","50x"};
+		 final double VALUES[]={0.0,1.0,2.0,5.0,10.0,50.0};
+		 JComboBox<String> speedList=new JComboBox <String>(SPEEDS);
+		 int a;
+		 for (a=0;a<VALUES.length;a++)	{
+			 if (VALUES[a]==inputThread.getReplaySpeed()) speedList.setSelectedIndex(a);
+		 }
+		 JPanel panel=new JPanel();
+		 panel.setLayout(new GridLayout(1,2));
+		 panel.add(new JLabel("WAV File Replay Speed : "));
+		 panel.add(speedList);
+		 int resp=JOptionPane.showConfirmDialog(window,panel,"Replay Speed",JOptionPane.OK_CANCEL_OPTION,JOptionPane.QUESTION_MESSAGE);
+		 if (resp==JOptionPane.OK_OPTION) inputThread.setReplaySpeed(VALUES[speedList.getSelectedIndex()]);
+	}
+	
+	// Allows the user to turn on saving the audio around each transmission found
+	// An empty directory turns it off
+	public void setSnippetOptions()	{
+		 JPanel panel=new JPanel();
+		 panel.setLayout(new GridLayout(2,2));
+		 JTextField directoryField=new JTextField(20);
+		 if (snippetDirectory!=null) directoryField.setText(snippetDirectory.getPath());
+		 JTextField secondsField=new JTextField(4);
+		 secondsField.setText(Double.toString(snippetSeconds));
+		 panel.add(new JLabel("Save Snippets To Directory : "));
+		 panel.add(directoryField);
+		 panel.add(new JLabel("Seconds Before Each Signal : "));
+		 panel.add(secondsField);
+		 int resp=JOptionPane.showConfirmDialog(window,panel,"Audio Snippets",JOptionPane.OK_CANCEL_OPTION,JOptionPane.QUESTION_MESSAGE);
+		 if (resp!=JOptionPane.OK_OPTION) return;
+		 double seconds;
+		 try	{
+			 seconds=Double.parseDouble(secondsField.getText().trim());
+		 }
+		 catch (NumberFormatException e)	{
+			 showMessage("Invalid number of seconds",JOptionPane.ERROR_MESSAGE);
+			 return;
+		 }
+		 String directory=directoryField.getText().trim();
+		 if (directory.length()==0) setSnippetRecording(null,seconds);
+		 else setSnippetRecording(new File(directory),seconds);
+		 // Anything being decoded now carries on as it was
+		 if (snippetDirectory==null) writeLine("Audio snippets won't be saved",Color.BLACK,italicFont);
+		 else writeLine("Audio snippets will be saved to "+snippetDirectory.getPath()+" from the next file or input started",Color.BLACK,italicFont);
+	}
+	
+	// Allows the user to turn on archiving live audio while there is activity on it
+	// An empty directory turns it off
+	public void setArchiveOptions()	{
+		 String current="";
+		 if (archiveDirectory!=null) current=archiveDirectory.getPath();
+		 Object resp=JOptionPane.showInputDialog(window,"Archive Live Audio To Directory : ","Activity Archive",JOptionPane.QUESTION_MESSAGE,null,null,current);
+		 if (resp==null) return;
+		 String directory=resp.toString().trim();
+		 if (directory.length()==0) setArchiveDirectory(null);
+		 else setArchiveDirectory(new File(directory));
+		 if (archiveDirectory==null) writeLine("Live audio won't be archived",Color.BLACK,italicFont);
+		 else writeLine("Live audio will be archived to "+archiveDirectory.getPath()+" while there is activity from the next input started",Color.BLACK,italicFont);
+	}
+	
+	// Allows the user to set the size of the sound card buffer and how often it is read
+	// A smaller period cuts the latency but a bigger buffer is needed to ride out a busy machine
+	public void setCaptureOptions()	{
+		 JPanel panel=new JPanel();
+		 panel.setLayout(new GridLayout(2,2));
+		 JLabel labelBuffer=new JLabel("Line Buffer (ms) : ");
+		 JTextField bufferField=new JTextField(5);
+		 bufferField.setText(Integer.toString(inputThread.getCaptureBufferMillis()));
+		 panel.add(labelBuffer);
+		 panel.add(bufferField);
+		 JLabel labelPeriod=new JLabel("Read Period (ms) : ");
+		 JTextField periodField=new JTextField(5);
+		 periodField.setText(Integer.toString(inputThread.getCapturePeriodMillis()));
+		 panel.add(labelPeriod);
+		 panel.add(periodField);
+		 int resp=JOptionPane.showConfirmDialog(window,panel,"Soundcard Buffer Options",JOptionPane.OK_CANCEL_OPTION,JOptionPane.QUESTION_MESSAGE);
+		 if (resp==JOptionPane.OK_OPTION)	{
+			 int bufferMillis,periodMillis;
+			 try	{
+				 bufferMillis=Integer.parseInt(bufferField.getText().trim());
+				 periodMillis=Integer.parseInt(periodField.getText().trim());
+				 inputThread.setCaptureTiming(bufferMillis,periodMillis);
+			 }
+			 catch (Exception e)	{
+				 showMessage("Invalid buffer or period size",JOptionPane.ERROR_MESSAGE);
+				 return;
+			 }
+			 // Restart the sound card so the new sizes are used
+			 if (soundCardInput==true) setSoundCardInput(true);
+		 }
+	}
+	
+	// Ask the user which part of a WAV file to decode then load it
+	public void loadWAVfileRange (String fileName)	{
+		 JPanel panel=new JPanel();
+		 panel.setLayout(new GridLayout(3,2));
+		 JLabel labelStart=new JLabel("Start : ");
+		 JTextField startField=new JTextField(10);
+		 panel.add(labelStart);
+		 panel.add(startField);
+		 JLabel labelEnd=new JLabel("End : ");
+		 JTextField endField=new JTextField(10);
+		 panel.add(labelEnd);
+		 panel.add(endField);
+		 panel.add(new JLabel("[[hh:]mm:]ss or @sample"));
+		 panel.add(new JLabel("blank for the start or end"));
+		 int resp=JOptionPane.showConfirmDialog(window,panel,"Decode Part of a WAV File",JOptionPane.OK_CANCEL_OPTION,JOptionPane.QUESTION_MESSAGE);
+		 if (resp!=JOptionPane.OK_OPTION) return;
+		 String start=startField.getText().trim();
+		 String end=endField.getText().trim();
+		 if (start.length()==0) start=null;
+		 if (end.length()==0) end=null;
+		 loadWAVfile(fileName,start,end);
+	}
+	
 	public void setSoundCardInputOnly(boolean s)	{
 		this.soundCardInput=s;
 	}
 	
 	// Reset the decoder state
 	public void resetDecoderState()	{
-		// CROWD36
-		if (system==0) crowd36Handler.setState(0);
-		// XPA
-		else if ((system==1)||(system==3)) xpaHandler.setState(0);
-		// XPA2
-		else if (system==2)	xpa2Handler.setState(0);
-		// Experimental
-		//else if (system==4)	
-		// CIS36-50
-		else if (system==5)	cis3650Handler.setState(0);
-		// FSK200/500
-		else if (system==6)	fsk200500Handler.setState(0);
-		// CCIR493-4
-		else if (system==7)	ccir493Handler.setState(0);
-		// FSK200/1000
-		else if (system==8)	fsk2001000Handler.setState(0);
-		// GW
-		else if (system==9) gwHandler.setState(0);
-		// RTTY
-		else if (system==10) rttyHandler.setState(0);
-		// FSK (raw)
-		else if (system==11) fskHandler.setState(0);
-		//F06a
-		else if (system==12) f06aHandler.setState(0);
-		// RDFT
-		//else if (system==12) rdftHandler.setState(0);
+		if (decoders[system]!=null) decoders[system].setState(0);
 	}
 	
 	// Gets all the text on the screen and returns it as a string
@@ -835,7 +1560,7 @@ public class Rivet {
 		this.f06aASCII=ascii;
 		if (ascii) f06aHandler.setEncoding(1);
 		else f06aHandler.setEncoding(0);
-		window.menuItemUpdate();
+		if (window!=null) window.menuItemUpdate();
 	}
 	
 	// Save the programs settings in the rivet_settings.xml file
@@ -869,6 +1594,30 @@ public class Rivet {
 			// Soundcard Input Level
 			line="<soundcard_level val='"+Integer.toString(soundCardInputLevel)+"'/>\n";
 			xmlfile.write(line);
+			// WAV file replay speed
+			line="<replay_speed val='"+Double.toString(inputThread.getReplaySpeed())+"'/>\n";
+			xmlfile.write(line);
+			// Skip idle audio in WAV files
+			if (skipIdle==true) line="<skip_idle val='1'/>\n";
+			else line="<skip_idle val='0'/>\n";
+			xmlfile.write(line);
+			// Audio snippets of traffic
+			if (snippetDirectory!=null)	{
+				line="<snippet_dir val='"+snippetDirectory.getPath()+"'/>\n";
+				xmlfile.write(line);
+			}
+			line="<snippet_seconds val='"+Double.toString(snippetSeconds)+"'/>\n";
+			xmlfile.write(line);
+			// Archiving live audio while there is activity
+			if (archiveDirectory!=null)	{
+				line="<archive_dir val='"+archiveDirectory.getPath()+"'/>\n";
+				xmlfile.write(line);
+			}
+			// Soundcard line buffer and read period
+			line="<soundcard_buffer val='"+Integer.toString(inputThread.getCaptureBufferMillis())+"'/>\n";
+			xmlfile.write(line);
+			line="<soundcard_period val='"+Integer.toString(inputThread.getCapturePeriodMillis())+"'/>\n";
+			xmlfile.write(line);
 			// Soundcard Input
 			if (soundCardInput==true) line="<soundcard_input val='1'/>\n";
 			else line="<soundcard_input val='0'/>\n";
@@ -977,6 +1726,37 @@ public class Rivet {
 						if (soundCardInputLevel<-10) soundCardInputLevel=-10;
 						else if (soundCardInputLevel>10) soundCardInputLevel=10;
 					}
+					// WAV file replay speed
+					else if (qName.equals("replay_speed"))	{
+						double speed=Double.parseDouble(aval);
+						if (speed>=0.0) inputThread.setReplaySpeed(speed);
+					}
+					// Skip idle audio in WAV files
+					else if (qName.equals("skip_idle"))	{
+						if (Integer.parseInt(aval)==1) skipIdle=true;
+						else skipIdle=false;
+					}
+					// Audio snippets of traffic
+					else if (qName.equals("snippet_dir"))	{
+						snippetDirectory=new File(aval);
+					}
+					else if (qName.equals("snippet_seconds"))	{
+						double seconds=Double.parseDouble(aval);
+						if (seconds>0.0) snippetSeconds=seconds;
+					}
+					// Archiving live audio while there is activity
+					else if (qName.equals("archive_dir"))	{
+						archiveDirectory=new File(aval);
+					}
+					// Soundcard line buffer and read period
+					else if (qName.equals("soundcard_buffer"))	{
+						int ms=Integer.parseInt(aval);
+						if (ms>0) inputThread.setCaptureTiming(ms,inputThread.getCapturePeriodMillis());
+					}
+					else if (qName.equals("soundcard_period"))	{
+						int ms=Integer.parseInt(aval);
+						if (ms>0) inputThread.setCaptureTiming(inputThread.getCaptureBufferMillis(),ms);
+					}
 					// Soundcard input
 					else if (qName.equals("soundcard_input"))	{
 						if (Integer.parseInt(aval)==1) soundCardInputTemp=true;
@@ -1015,8 +1795,8 @@ public class Rivet {
 					}
 					// Show UTC time
 					else if (qName.equals("UTC"))	{
-						if (Integer.parseInt(aval)==1) logInUTC=true;
-						else logInUTC=false;
+						if (Integer.parseInt(aval)==1) setLogInUTC(true);
+						else setLogInUTC(false);
 					}
 					// CIS36-50 Shift
 					else if (qName.equals("cis3650shift"))	{
@@ -1080,14 +1860,16 @@ public class Rivet {
 	public void writeLine(String line,Color col,Font font) {
 		if (line!=null)	{
 			if (logging==true) fileWriteLine(line);
-			if (pauseDisplay==false) display_view.addLine(line,col,font);
+			if (textOutput!=null) textOutput.writeLine(line);
+			else if (pauseDisplay==false) display_view.addLine(line,col,font);
 		}
 	}
 	
 	// Adds a single char to the current line on the display
 	public void writeChar (String ct,Color col,Font font)	{
 		if (ct!=null)	{
-			if (pauseDisplay==false) display_view.addChar(ct,col,font);
+			if (textOutput!=null) textOutput.writeChar(ct);
+			else if (pauseDisplay==false) display_view.addChar(ct,col,font);
 			if (logging==true) fileWriteChar(ct);
 		}
 	}
@@ -1099,7 +1881,8 @@ public class Rivet {
 	
 	// Writes a new line to the screen
 	public void newLineWrite()	{
-		if (pauseDisplay==false) display_view.newLine();
+		if (textOutput!=null) textOutput.newLine();
+		else if (pauseDisplay==false) display_view.newLine();
 		if (logging==true) fileWriteNewline();
 	}
 
@@ -1297,30 +2080,43 @@ public class Rivet {
 		// First clear the screen
 		clearScreen();
 		// Version
-		writeLine(program_version,Color.BLACK,theApp.boldFont);
+		writeLine(program_version,Color.BLACK,boldFont);
 		// Cores
 		String cores="Available processors (cores): "+Runtime.getRuntime().availableProcessors();
-		writeLine(cores,Color.BLACK,theApp.boldFont);
+		writeLine(cores,Color.BLACK,boldFont);
 		// Memory available to the JVM
 		String jmem="JVM Free memory (bytes): "+Runtime.getRuntime().freeMemory();
-		writeLine(jmem,Color.BLACK,theApp.boldFont);
+		writeLine(jmem,Color.BLACK,boldFont);
 		// OS
 		String os="OS : "+System.getProperty("os.name")+" ("+System.getProperty("os.version")+")";
-		writeLine(os,Color.BLACK,theApp.boldFont);
+		writeLine(os,Color.BLACK,boldFont);
 		// Screen info
 		Toolkit theKit=window.getToolkit();
 		Dimension wndsize=theKit.getScreenSize();
 		String res="Screen Resolution - Width "+Integer.toString(wndsize.width)+" : Height "+Integer.toString(wndsize.height);
-		writeLine(res,Color.BLACK,theApp.boldFont);
+		writeLine(res,Color.BLACK,boldFont);
 		// Java version
 		String jver="Java : "+System.getProperty("java.vendor")+" ("+System.getProperty("java.version")+")";
-		writeLine(jver,Color.BLACK,theApp.boldFont);
+		writeLine(jver,Color.BLACK,boldFont);
 		// Folder
 		String folder="Working directory : "+System.getProperty("user.dir");
-		writeLine(folder,Color.BLACK,theApp.boldFont);
+		writeLine(folder,Color.BLACK,boldFont);
 		// Current Time
-		String time="Current Time : "+getTimeStamp();
-		writeLine(time,Color.BLACK,theApp.boldFont);
+		String time="Current Time : "+sampleClock.format(System.currentTimeMillis());
+		writeLine(time,Color.BLACK,boldFont);
+		// Input sample buffer
+		SampleRingBuffer sbuf=inputThread.getSampleBuffer();
+		String ibuf="Input buffer : depth "+Integer.toString(sbuf.getDepth())+" max depth "+Integer.toString(sbuf.getMaxDepth())+" of "+Integer.toString(sbuf.getSize())+" samples : "+Long.toString(sbuf.getOverrunCount())+" overruns ("+Long.toString(sbuf.getOverrunSamples())+" samples lost)";
+		writeLine(ibuf,Color.BLACK,boldFont);
+		// Input level
+		LevelMeter.Level level=getInputLevel();
+		writeLine("Input level : RMS "+String.format("%.1f",level.getRMSdBFS())+" dBFS peak "+String.format("%.1f",level.getPeakdBFS())+" dBFS : "+Long.toString(level.getClipCount())+" clipped samples",Color.BLACK,boldFont);
+		// WAV file replay
+		writeLine("WAV file replay : "+ReplayPacer.describe(inputThread.getReplaySpeed())+" : fell behind "+Long.toString(inputThread.getReplayLateCount())+" times",Color.BLACK,boldFont);
+		// Sound card or network capture
+		if ((soundCardInput==true)||(networkSource!=null)) writeLine("Capture : "+inputThread.getCaptureStatistics(),Color.BLACK,boldFont);
+		// Network input
+		if (networkSource!=null) writeLine("Network input : "+networkSource.getStatistics(),Color.BLACK,boldFont);
 		// Write all of this to clipboard
 		String contents=getAllText();
 		window.setClipboard(contents);
@@ -1348,6 +2144,7 @@ public class Rivet {
 
 	public void setLogInUTC(boolean logInUTC) {
 		this.logInUTC = logInUTC;
+		sampleClock.setUTC(logInUTC);
 	}
 	
 	// Clear the list of logged ships
@@ -0,0 +1,182 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// Rivet Copyright (C) 2011 Ian Wraith
+// This program comes with ABSOLUTELY NO WARRANTY
+
+package org.e2k;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// The time according to the audio rather than the computer's clock
+// This is the time the input started plus the number of samples since then divided by the sample rate
+// so a file decoded many times faster than real time gets the same time stamps and timeouts as it would have live
+// The start time comes from the recording (WAV metadata or the file name) , the user or for live input the time it started
+public class SampleClock {
+
+	// Date and time in a file name such as SDRSharp_20161012_123456Z_7800000Hz_AF.wav or 2016-10-12_12-34-56.wav
+	// A Z after the time means it is UTC otherwise it is local time
+	private static final Pattern FILE_NAME_TIME=Pattern.compile("(\\d{4})-?(\\d{2})-?(\\d{2})[_T -](\\d{2})[-:]?(\\d{2})[-:]?(\\d{2})(Z?)");
+	private double sampleRate=0.0;
+	private long startMillis=0;
+	private long samples=0;
+	private boolean running=false;
+	private boolean utc=false;
+	private DateFormat timeFormat=null;
+	// The last second formatted so every message in the same second doesn't format it again
+	private long cachedSecond=Long.MIN_VALUE;
+	private String cachedStamp=null;
+
+	// Start the clock with position samples already gone by
+	// A startMillis of less than 0 means the start of the recording isn't known so the clock
+	// runs from now as it would if the audio was live
+	public synchronized void start (double rate,long tstartMillis,long position)	{
+		sampleRate=rate;
+		samples=position;
+		if (tstartMillis>=0) startMillis=tstartMillis;
+		else if (rate>0.0) startMillis=System.currentTimeMillis()-(long)((position*1000.0)/rate);
+		else startMillis=System.currentTimeMillis();
+		running=(rate>0.0);
+	}
+
+	// Go back to the computer's clock until the clock is started again
+	public synchronized void stop()	{
+		running=false;
+	}
+
+	public synchronized boolean isRunning()	{
+		return running;
+	}
+
+	// Save where the clock has got to for a checkpoint
+	public synchronized void writeState (DataOutputStream out) throws IOException	{
+		out.writeBoolean(running);
+		out.writeDouble(sampleRate);
+		out.writeLong(startMillis);
+		out.writeLong(samples);
+	}
+
+	// Put back what writeState() saved
+	public synchronized void readState (DataInputStream in) throws IOException	{
+		running=in.readBoolean();
+		sampleRate=in.readDouble();
+		startMillis=in.readLong();
+		samples=in.readLong();
+		cachedStamp=null;
+		cachedSecond=Long.MIN_VALUE;
+	}
+
+	// Move the clock on by a number of samples
+	public synchronized void advance (long count)	{
+		samples=samples+count;
+	}
+
+	// The number of samples since the start of the recording
+	public synchronized long getPosition()	{
+		return samples;
+	}
+
+	// The time of the latest sample in milliseconds since 1970
+	public synchronized long getTimeMillis()	{
+		if (running==false) return System.currentTimeMillis();
+		return startMillis+(long)Math.floor((samples*1000.0)/sampleRate);
+	}
+
+	// The time of the latest sample in whole seconds since 1970 which is what protocol timeouts use
+	public long getTimeSeconds()	{
+		return Math.floorDiv(getTimeMillis(),1000L);
+	}
+
+	// Show times in UTC rather than local time
+	public synchronized void setUTC (boolean tutc)	{
+		if (tutc==utc) return;
+		utc=tutc;
+		timeFormat=null;
+		cachedStamp=null;
+		cachedSecond=Long.MIN_VALUE;
+	}
+
+	// The time of the latest sample for putting in front of messages
+	public String getTimeStamp()	{
+		return format(getTimeMillis());
+	}
+
+	// Format a time the same way as the time stamps
+	public synchronized String format (long millis)	{
+		long second=Math.floorDiv(millis,1000L);
+		if ((second==cachedSecond)&&(cachedStamp!=null)) return cachedStamp;
+		if (timeFormat==null)	{
+			timeFormat=DateFormat.getTimeInstance();
+			if (utc==true) timeFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+		}
+		cachedStamp=timeFormat.format(new Date(second*1000L));
+		cachedSecond=second;
+		return cachedStamp;
+	}
+
+	// Work out when a WAV file or archive was recorded from its metadata or failing that its name
+	// Returns -1 if neither says
+	public static long findRecordingStart (RecordingSource reader,String fileName)	{
+		long start=-1;
+		if (reader!=null) start=reader.getRecordingStart();
+		if ((start<0)&&(fileName!=null)) start=parseFileName(fileName);
+		return start;
+	}
+
+	// Find a date and time in a file name and return it in milliseconds since 1970 or -1 if there isn't one
+	public static long parseFileName (String fileName)	{
+		// Only look at the name not the directories
+		int slash=Math.max(fileName.lastIndexOf('/'),fileName.lastIndexOf('\\'));
+		Matcher matcher=FILE_NAME_TIME.matcher(fileName.substring(slash+1));
+		while (matcher.find())	{
+			String text=matcher.group(1)+"-"+matcher.group(2)+"-"+matcher.group(3)+" "+matcher.group(4)+":"+matcher.group(5)+":"+matcher.group(6);
+			try	{
+				return parse(text,matcher.group(7).length()>0);
+			}
+			catch (ParseException e)	{}
+		}
+		return -1;
+	}
+
+	// Read a start time given by the user as yyyy-mm-dd hh:mm:ss with a T allowed between the
+	// date and time and a Z on the end for UTC
+	public static long parseTime (String text)	{
+		text=text.trim();
+		boolean isUTC=false;
+		if ((text.endsWith("Z"))||(text.endsWith("z")))	{
+			isUTC=true;
+			text=text.substring(0,text.length()-1);
+		}
+		text=text.replace('T',' ');
+		try	{
+			return parse(text,isUTC);
+		}
+		catch (ParseException e)	{
+			throw new NumberFormatException("Bad time "+text);
+		}
+	}
+
+	private static long parse (String text,boolean isUTC) throws ParseException	{
+		SimpleDateFormat format=new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+		format.setLenient(false);
+		if (isUTC==true) format.setTimeZone(TimeZone.getTimeZone("UTC"));
+		return format.parse(text).getTime();
+	}
+
+}
@@ -0,0 +1,65 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// Rivet Copyright (C) 2011 Ian Wraith
+// This program comes with ABSOLUTELY NO WARRANTY
+
+package org.e2k;
+
+// Passes a block of samples to a mode decoder
+// A BlockDecoder only has decode() called for the samples it has work to do on and the rest are added to
+// the circular buffer in one go , any other decoder has decode() called for every sample
+public class SampleDecoderAdapter {
+	
+	private final ModeDecoder decoder;
+	private final BlockDecoder blockDecoder;
+	
+	public SampleDecoderAdapter (ModeDecoder tdecoder)	{
+		decoder=tdecoder;
+		if (tdecoder instanceof BlockDecoder) blockDecoder=(BlockDecoder)tdecoder;
+		else blockDecoder=null;
+	}
+	
+	// Add len samples starting at off to the circular buffer and decode them
+	// Returns false if the input can't be decoded by this mode
+	public boolean decode (CircularDataBuffer circBuf,WaveData waveData,int samples[],int off,int len)	{
+		int end=off+len;
+		while (off<end)	{
+			int idle=0;
+			if (blockDecoder!=null) idle=(int)Math.min(blockDecoder.idleSamples(),(long)(end-off));
+			if (idle>0)	{
+				// These samples only need adding to the buffer and counting
+				circBuf.addToCircBuffer(samples,off,idle);
+				blockDecoder.skipSamples(idle);
+				off=off+idle;
+			}
+			else	{
+				circBuf.addToCircBuffer(samples[off]);
+				off++;
+				if (decoder.decode(circBuf,waveData)==false) return false;
+			}
+		}
+		return true;
+	}
+	
+	public void setState (int state)	{
+		decoder.setState(state);
+	}
+	
+	public int getState ()	{
+		return decoder.getState();
+	}
+	
+	// Return the decoder this adapter wraps
+	public ModeDecoder getDecoder()	{
+		return decoder;
+	}
+
+}
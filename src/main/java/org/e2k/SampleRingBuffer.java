@@ -0,0 +1,151 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// Rivet Copyright (C) 2011 Ian Wraith
+// This program comes with ABSOLUTELY NO WARRANTY
+
+package org.e2k;
+
+// A lock free single producer / single consumer ring of samples
+// This is used to pass blocks of samples from the input thread to the decode loop
+// Either side can sleep on the data or space signal until the other side has done something
+public class SampleRingBuffer {
+
+	private final int size;
+	private final int mask;
+	private final int[] ring;
+	// These only ever increase and are the total number of samples written and read
+	// writePosition is only changed by the producer and readPosition only by the consumer
+	private volatile long writePosition=0;
+	private volatile long readPosition=0;
+	// Everything before this was thrown away by clear() and the consumer skips it on its next read
+	private volatile long discardPosition=0;
+	private volatile long overrunCount=0;
+	private volatile long overrunSamples=0;
+	private volatile int maxDepth=0;
+	// Signalled when samples are written and when samples are read
+	private final EventSignal dataSignal=new EventSignal();
+	private final EventSignal spaceSignal=new EventSignal();
+
+	// The size must be a power of two
+	public SampleRingBuffer (int tsize)	{
+		if ((tsize<2)||((tsize&(tsize-1))!=0)) throw new IllegalArgumentException("SampleRingBuffer size must be a power of two");
+		size=tsize;
+		mask=tsize-1;
+		ring=new int[tsize];
+	}
+
+	// Producer side : write as many samples as there is space for and return how many were written
+	public int write (int data[],int off,int len)	{
+		long wp=writePosition;
+		int free=size-(int)(wp-readPosition);
+		if (len>free) len=free;
+		if (len<=0) return 0;
+		int start=(int)(wp&mask);
+		int first=Math.min(len,size-start);
+		System.arraycopy(data,off,ring,start,first);
+		if (first<len) System.arraycopy(data,off+first,ring,0,len-first);
+		// Publish the new samples to the consumer
+		writePosition=wp+len;
+		int depth=(int)(wp+len-readPosition);
+		if (depth>maxDepth) maxDepth=depth;
+		dataSignal.signal();
+		return len;
+	}
+
+	// Producer side : write a block of samples and if there isn't room for all of them
+	// drop the rest and count this as an overrun
+	// This is for live sources which can't wait for the consumer
+	public int offer (int data[],int off,int len)	{
+		int count=write(data,off,len);
+		if (count<len)	{
+			overrunCount++;
+			overrunSamples=overrunSamples+(len-count);
+		}
+		return count;
+	}
+
+	// Consumer side : read up to len samples and return how many were read
+	public int read (int data[],int off,int len)	{
+		long rp=readPosition;
+		long discard=discardPosition;
+		if (rp<discard)	{
+			rp=discard;
+			readPosition=rp;
+			spaceSignal.signal();
+		}
+		int available=(int)(writePosition-rp);
+		if (len>available) len=available;
+		if (len<=0) return 0;
+		int start=(int)(rp&mask);
+		int first=Math.min(len,size-start);
+		System.arraycopy(ring,start,data,off,first);
+		if (first<len) System.arraycopy(ring,0,data,off+first,len-first);
+		// Release the space back to the producer
+		readPosition=rp+len;
+		spaceSignal.signal();
+		return len;
+	}
+
+	// Discard everything in the buffer
+	// This only marks where the new samples start , the consumer skips up to there itself so readPosition
+	// is never changed by two threads and the space is freed once the consumer has caught up
+	public void clear()	{
+		discardPosition=writePosition;
+		// Wake the consumer so it frees the space
+		dataSignal.signal();
+	}
+
+	// The consumer waits on this for samples , signal it to wake the consumer for any other reason
+	public EventSignal getDataSignal()	{
+		return dataSignal;
+	}
+
+	// The producer waits on this for space , signal it to wake the producer for any other reason
+	public EventSignal getSpaceSignal()	{
+		return spaceSignal;
+	}
+
+	// Return the number of samples waiting to be read
+	public int getDepth()	{
+		return (int)(writePosition-Math.max(readPosition,discardPosition));
+	}
+
+	public boolean isEmpty()	{
+		return (getDepth()==0);
+	}
+
+	// Return the highest number of samples that have been waiting in the buffer
+	public int getMaxDepth()	{
+		return maxDepth;
+	}
+
+	// Return the number of times a live source had to drop samples
+	public long getOverrunCount()	{
+		return overrunCount;
+	}
+
+	// Return the total number of samples dropped because of overruns
+	public long getOverrunSamples()	{
+		return overrunSamples;
+	}
+
+	public int getSize()	{
+		return size;
+	}
+
+	// Reset the overrun and depth counters
+	public void resetCounters()	{
+		overrunCount=0;
+		overrunSamples=0;
+		maxDepth=getDepth();
+	}
+
+}
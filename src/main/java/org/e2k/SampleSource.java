@@ -0,0 +1,36 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// Rivet Copyright (C) 2011 Ian Wraith
+// This program comes with ABSOLUTELY NO WARRANTY
+
+package org.e2k;
+
+import java.io.IOException;
+
+// Something which the input thread or a batch decoder can read blocks of samples from
+public interface SampleSource {
+	
+	// Describes the samples returned by read()
+	public WaveData getWaveData ();
+	
+	// Read up to len samples into samples[] starting at off
+	// Returns the number of samples read or -1 once there are no more
+	public int read (int samples[],int off,int len) throws IOException;
+	
+	// The number of samples read so far
+	public long getSamplesRead ();
+	
+	// The total number of samples this source holds or -1 if this isn't known (a live source)
+	public long getTotalSamples ();
+	
+	public void close () throws IOException;
+
+}
@@ -0,0 +1,151 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// Rivet Copyright (C) 2011 Ian Wraith
+// This program comes with ABSOLUTELY NO WARRANTY
+
+package org.e2k;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// A lock free ring of samples with one producer and any number of readers
+// Every reader has its own cursor and sees every sample so one input can feed several decoders
+// The producer can only overwrite samples once the slowest open reader has passed them
+// Readers can sleep on the data signal and the producer on the space signal rather than polling
+public class SharedSampleBuffer {
+
+	private final int size;
+	private final int mask;
+	private final int[] ring;
+	private volatile long writePosition=0;
+	private volatile boolean finished=false;
+	private final CopyOnWriteArrayList<Reader> readers=new CopyOnWriteArrayList<Reader>();
+	// Signalled when samples are written or the input ends and when a reader moves on or closes
+	private final EventSignal dataSignal=new EventSignal();
+	private final EventSignal spaceSignal=new EventSignal();
+
+	// One reader's view of the buffer
+	public class Reader	{
+
+		private volatile long readPosition;
+		private volatile boolean closed=false;
+
+		private Reader (long start)	{
+			readPosition=start;
+		}
+
+		// Read up to len samples and return how many were read
+		public int read (int data[],int off,int len)	{
+			long rp=readPosition;
+			int available=(int)(writePosition-rp);
+			if (len>available) len=available;
+			if (len<=0) return 0;
+			int start=(int)(rp&mask);
+			int first=Math.min(len,size-start);
+			System.arraycopy(ring,start,data,off,first);
+			if (first<len) System.arraycopy(ring,0,data,off+first,len-first);
+			readPosition=rp+len;
+			spaceSignal.signal();
+			return len;
+		}
+
+		// Return the number of samples waiting for this reader
+		public int getDepth()	{
+			return (int)(writePosition-readPosition);
+		}
+
+		// Returns true once the producer has finished and everything has been read
+		public boolean isEnded()	{
+			return ((finished==true)&&(readPosition==writePosition));
+		}
+
+		// A closed reader no longer holds the producer back
+		public void close()	{
+			closed=true;
+			readers.remove(this);
+			spaceSignal.signal();
+		}
+
+		public boolean isClosed()	{
+			return closed;
+		}
+
+	}
+
+	// The size must be a power of two
+	public SharedSampleBuffer (int tsize)	{
+		if ((tsize<2)||((tsize&(tsize-1))!=0)) throw new IllegalArgumentException("SharedSampleBuffer size must be a power of two");
+		size=tsize;
+		mask=tsize-1;
+		ring=new int[tsize];
+	}
+
+	// Add a reader which starts with the next sample written
+	public Reader addReader()	{
+		Reader reader=new Reader(writePosition);
+		readers.add(reader);
+		return reader;
+	}
+
+	// The read position of the slowest open reader
+	private long slowestReader (long wp)	{
+		long slowest=wp;
+		for (Reader reader : readers)	{
+			long rp=reader.readPosition;
+			if (rp<slowest) slowest=rp;
+		}
+		return slowest;
+	}
+
+	// Producer side : write as many samples as every reader has space for and return how many were written
+	public int write (int data[],int off,int len)	{
+		long wp=writePosition;
+		int free=size-(int)(wp-slowestReader(wp));
+		if (len>free) len=free;
+		if (len<=0) return 0;
+		int start=(int)(wp&mask);
+		int first=Math.min(len,size-start);
+		System.arraycopy(data,off,ring,start,first);
+		if (first<len) System.arraycopy(data,off+first,ring,0,len-first);
+		writePosition=wp+len;
+		dataSignal.signal();
+		return len;
+	}
+
+	// Tell the readers there are no more samples coming
+	public void finish()	{
+		finished=true;
+		dataSignal.signal();
+	}
+
+	// Readers wait on this for samples or the end of the input
+	public EventSignal getDataSignal()	{
+		return dataSignal;
+	}
+
+	// The producer waits on this for a reader to make space or close
+	public EventSignal getSpaceSignal()	{
+		return spaceSignal;
+	}
+
+	public boolean isFinished()	{
+		return finished;
+	}
+
+	// Returns true if there is nobody left reading
+	public boolean hasReaders()	{
+		return !readers.isEmpty();
+	}
+
+	public int getSize()	{
+		return size;
+	}
+
+}
@@ -0,0 +1,255 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// Rivet Copyright (C) 2011 Ian Wraith
+// This program comes with ABSOLUTELY NO WARRANTY
+
+package org.e2k;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import javax.swing.JOptionPane;
+
+// Saves the audio around each transmission a decoder finds as a WAV file
+// The last few seconds of input are always kept in a ring buffer so when a decoder finds a signal
+// the snippet starts before it and so includes the lead in the decoder needed
+// Recording carries on until a little after the decoder loses the signal
+// Files are written by a thread of their own so the decoder never waits for the disk
+// If that thread falls too far behind the snippet being recorded is cut short rather than holding up decoding
+public class SnippetRecorder {
+
+	// How many blocks can be waiting to be written before a snippet is cut short
+	private static final int QUEUE_LENGTH=512;
+	private final Rivet theApp;
+	private final File directory;
+	private final int sampleRate;
+	private final int history[];
+	private int historyPos=0;
+	private int historyFill=0;
+	private final int postSamples;
+	private final long maxSamples;
+	private boolean recording=false;
+	private boolean signal=false;
+	private int postCounter=0;
+	private long snippetSamples=0;
+	private boolean overflowed=false;
+	private String modeName="";
+	private String lastName=null;
+	private int nameCount=0;
+	private final BlockingQueue<Chunk> queue=new ArrayBlockingQueue<Chunk>(QUEUE_LENGTH);
+	private final Writer writer=new Writer();
+	private volatile int savedCount=0;
+	private volatile int shortenedCount=0;
+	private volatile String lastError=null;
+
+	// A block of audio for the writer , a file means start a new snippet
+	private static class Chunk	{
+		private final File file;
+		private final int data[];
+		private final boolean last;
+
+		private Chunk (File tfile,int tdata[],boolean tlast)	{
+			file=tfile;
+			data=tdata;
+			last=tlast;
+		}
+	}
+
+	private static final Chunk STOP=new Chunk(null,null,true);
+
+	// Keep preSeconds of audio from before a signal is found and postSeconds after it is lost
+	// No snippet is longer than maxSeconds , a longer transmission is split into several
+	public SnippetRecorder (Rivet ttheApp,File tdirectory,int tsampleRate,double preSeconds,double postSeconds,double maxSeconds)	{
+		theApp=ttheApp;
+		directory=tdirectory;
+		sampleRate=tsampleRate;
+		history=new int[Math.max(1,(int)(preSeconds*sampleRate))];
+		postSamples=(int)(postSeconds*sampleRate);
+		maxSamples=Math.max(1,(long)(maxSeconds*sampleRate));
+		writer.start();
+	}
+
+	// Pass on the input audio
+	public synchronized void add (int samples[],int off,int len)	{
+		if (recording==true)	{
+			send(new Chunk(null,Arrays.copyOfRange(samples,off,off+len),false));
+			snippetSamples=snippetSamples+len;
+			if (signal==false)	{
+				postCounter=postCounter-len;
+				if (postCounter<=0) endSnippet();
+			}
+			// Carry on in a new file without the history as that is in this one
+			else if (snippetSamples>=maxSamples)	{
+				endSnippet();
+				historyFill=0;
+				startSnippet();
+			}
+		}
+		// Keep the latest audio for the start of the next snippet
+		int a;
+		for (a=0;a<len;a++)	{
+			history[historyPos]=samples[off+a];
+			historyPos++;
+			if (historyPos==history.length) historyPos=0;
+		}
+		historyFill=(int)Math.min(history.length,(long)historyFill+len);
+	}
+
+	// Tell the recorder whether the decoder has a signal
+	public synchronized void setSignal (boolean found,String mode)	{
+		if (found==signal) return;
+		signal=found;
+		if (found==true)	{
+			modeName=mode;
+			if (recording==false) startSnippet();
+		}
+		else postCounter=postSamples;
+	}
+
+	// Start a snippet with the history before it
+	private void startSnippet()	{
+		recording=true;
+		overflowed=false;
+		snippetSamples=historyFill;
+		int data[]=new int[historyFill];
+		int start=historyPos-historyFill;
+		if (start<0) start=start+history.length;
+		int first=Math.min(historyFill,history.length-start);
+		System.arraycopy(history,start,data,0,first);
+		System.arraycopy(history,0,data,first,historyFill-first);
+		long startTime=theApp.getSampleClock().getTimeMillis()-((historyFill*1000L)/sampleRate);
+		send(new Chunk(snippetFile(startTime),data,false));
+	}
+
+	private void endSnippet()	{
+		recording=false;
+		send(new Chunk(null,null,true));
+	}
+
+	// Hand a block to the writer without ever waiting for it
+	private void send (Chunk chunk)	{
+		if (overflowed==true) return;
+		if (queue.offer(chunk)==false)	{
+			overflowed=true;
+			shortenedCount++;
+		}
+	}
+
+	// Name a snippet after the UTC time it starts and the mode
+	private File snippetFile (long startTime)	{
+		SimpleDateFormat format=new SimpleDateFormat("yyyyMMdd_HHmmss");
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+		String name="Rivet_"+format.format(new Date(startTime))+"Z_"+modeName.replaceAll("[^A-Za-z0-9]+","-").replaceAll("^-|-$","");
+		// The writer may not have made the last file yet so that has to be checked as well as the directory
+		if (name.equals(lastName)) nameCount++;
+		else nameCount=1;
+		lastName=name;
+		File file=new File(directory,name+".wav");
+		if (nameCount>1) file=new File(directory,name+"_"+Integer.toString(nameCount)+".wav");
+		while (file.exists())	{
+			nameCount++;
+			file=new File(directory,name+"_"+Integer.toString(nameCount)+".wav");
+		}
+		return file;
+	}
+
+	// Finish any snippet being recorded and wait for everything to be written
+	public void close()	{
+		synchronized (this)	{
+			if (recording==true) endSnippet();
+		}
+		try	{
+			queue.put(STOP);
+			writer.join();
+		}
+		catch (InterruptedException e)	{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// The number of snippets which have been written
+	public int getSavedCount()	{
+		return savedCount;
+	}
+
+	// The number of snippets cut short because they couldn't be written quickly enough
+	public int getShortenedCount()	{
+		return shortenedCount;
+	}
+
+	// The last thing which went wrong writing a snippet or null if nothing has
+	public String getLastError()	{
+		return lastError;
+	}
+
+	public File getDirectory()	{
+		return directory;
+	}
+
+	private class Writer extends Thread	{
+
+		private WavFileWriter wav=null;
+
+		private Writer()	{
+			setDaemon(true);
+			setName("Snippet Writer");
+		}
+
+		public void run()	{
+			try	{
+				while (true)	{
+					Chunk chunk=queue.take();
+					if (chunk==STOP) break;
+					try	{
+						if (chunk.file!=null)	{
+							finish();
+							wav=new WavFileWriter(chunk.file,sampleRate);
+						}
+						if ((wav!=null)&&(chunk.data!=null)) wav.write(chunk.data,0,chunk.data.length);
+						if (chunk.last==true) finish();
+					}
+					catch (IOException e)	{
+						// Give up on this snippet but carry on with the next one
+						if (lastError==null) theApp.showMessage("Unable to save an audio snippet\n"+e.toString(),JOptionPane.ERROR_MESSAGE);
+						lastError=e.toString();
+						try	{
+							if (wav!=null) wav.close();
+						}
+						catch (IOException ce)	{}
+						wav=null;
+					}
+				}
+			}
+			catch (InterruptedException e)	{}
+			try	{
+				finish();
+			}
+			catch (IOException e)	{
+				lastError=e.toString();
+			}
+		}
+
+		private void finish() throws IOException	{
+			if (wav==null) return;
+			WavFileWriter done=wav;
+			wav=null;
+			done.close();
+			savedCount++;
+		}
+
+	}
+
+}
@@ -0,0 +1,99 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// Rivet Copyright (C) 2011 Ian Wraith
+// This program comes with ABSOLUTELY NO WARRANTY
+
+package org.e2k;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+// Where decoded text goes when Rivet is running without a display
+// Lines follow the same rules as the display : writeLine() starts a new line, writeChar() adds to the current one
+// Each line is written in one go so several decoders can share a stream without mixing up their lines
+public class TextOutput {
+	
+	private PrintStream out;
+	private String tag;
+	private StringBuilder currentLine=new StringBuilder();
+	private boolean closeStream;
+	
+	// If closeStream is true the stream is closed along with this object
+	public TextOutput (PrintStream tout,boolean tcloseStream)	{
+		out=tout;
+		closeStream=tcloseStream;
+	}
+	
+	// Set a tag which is put in front of every line (for example the mode name)
+	public void setTag (String ttag)	{
+		tag=ttag;
+	}
+	
+	public String getTag()	{
+		return tag;
+	}
+	
+	public void writeLine (String line)	{
+		endCurrentLine();
+		emit(line);
+	}
+	
+	public void writeChar (String ch)	{
+		currentLine.append(ch);
+	}
+	
+	public void newLine ()	{
+		endCurrentLine();
+	}
+	
+	// Write out anything left on the current line
+	public void flush ()	{
+		endCurrentLine();
+		synchronized (out)	{
+			out.flush();
+		}
+	}
+	
+	public void close ()	{
+		flush();
+		if (closeStream==true) out.close();
+	}
+	
+	private void endCurrentLine ()	{
+		if (currentLine.length()==0) return;
+		emit(currentLine.toString());
+		currentLine.setLength(0);
+	}
+	
+	private void emit (String line)	{
+		synchronized (out)	{
+			if (tag!=null)	{
+				out.print("[");
+				out.print(tag);
+				out.print("] ");
+			}
+			out.println(line);
+		}
+	}
+	
+	// Save any part line for a checkpoint so it is finished off when decoding carries on
+	public void writeState (DataOutputStream out) throws IOException	{
+		Checkpoint.writeString(out,currentLine.toString());
+	}
+	
+	// Put back the part line saved by writeState()
+	public void readState (DataInputStream in) throws IOException	{
+		Checkpoint.readString(in,currentLine);
+	}
+
+}
@@ -0,0 +1,254 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// Rivet Copyright (C) 2011 Ian Wraith
+// This program comes with ABSOLUTELY NO WARRANTY
+
+package org.e2k;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Decodes a WAV file or Rivet archive in two passes
+// The first pass only runs the idle detector over the file , which is far cheaper than any decoder ,
+// and makes a list of the windows where there is something on it
+// The second pass runs the decoders over just those windows , each one started early enough for
+// the decoder's history to be full and for it to have time to find the sync
+// Every window and mode is decoded by a session of its own so they can be decoded in parallel
+// and their output is put back together in the order of the file
+public class TwoPassDecoder {
+
+	// Audio before a window the decoder gets to hunt for the sync in on top of its history
+	private static final double LEAD_SECONDS=2.0;
+	// Audio after a window in case the detector lost the signal before the decoder did
+	private static final double TAIL_SECONDS=2.0;
+	private static final int BLOCK_SIZE=4096;
+	private final SessionFactory factory;
+	private final int systems[];
+	private final int threads;
+	private double flatness=0.5;
+	private double energyRatio=4.0;
+	private double hangSeconds=5.0;
+	private long recordingStart=-1;
+	private int windowCount=0;
+	private long windowSamples=0;
+
+	// Makes a session set up the way the user asked for
+	public interface SessionFactory	{
+		public Rivet createSession (TextOutput output,int system);
+	}
+
+	// One stretch of the file to decode
+	public static class Window	{
+		private final long start;
+		private final long end;
+
+		public Window (long tstart,long tend)	{
+			start=tstart;
+			end=tend;
+		}
+
+		public long getStart()	{
+			return start;
+		}
+
+		public long getEnd()	{
+			return end;
+		}
+	}
+
+	// The results of decoding one window with one mode
+	private static class Part	{
+		private String text;
+		private boolean decoded;
+	}
+
+	public TwoPassDecoder (SessionFactory tfactory,int tsystems[],int tthreads)	{
+		factory=tfactory;
+		systems=tsystems;
+		threads=Math.max(1,tthreads);
+	}
+
+	// Set how the detector decides audio is active
+	public void setThresholds (double tflatness,double tenergyRatio)	{
+		flatness=tflatness;
+		energyRatio=tenergyRatio;
+	}
+
+	// How long the detector carries on calling audio active after it stops hearing anything
+	public void setHangSeconds (double seconds)	{
+		hangSeconds=seconds;
+	}
+
+	// When the recording started in milliseconds since 1970 or -1 if it isn't known
+	public void setRecordingStart (long start)	{
+		recordingStart=start;
+	}
+
+	// First pass : read from the reader's position to the end of its range and return the active windows
+	// Windows closer together than the lead in are joined as the second would have to go back over the first anyway
+	public List<Window> findWindows (RecordingSource reader,long leadSamples,long tailSamples) throws IOException	{
+		List<Window> windows=new ArrayList<Window>();
+		IdleDetector detector=new IdleDetector(reader.getWaveData().getSampleRate(),hangSeconds);
+		detector.setFlatnessThreshold(flatness);
+		detector.setEnergyRatio(energyRatio);
+		detector.startIdle();
+		long first=reader.getSamplesRead();
+		long last=reader.getEndFrame();
+		int block[]=new int[detector.getBlockSize()];
+		int samples[]=new int[BLOCK_SIZE];
+		int blockCount=0;
+		long blockStart=first;
+		long pos=first;
+		long activeStart=-1,activeEnd=-1;
+		int count;
+		while ((count=reader.read(samples,0,BLOCK_SIZE))>0)	{
+			int off=0;
+			while (off<count)	{
+				int len=Math.min(count-off,block.length-blockCount);
+				System.arraycopy(samples,off,block,blockCount,len);
+				blockCount=blockCount+len;
+				off=off+len;
+				if (blockCount==block.length)	{
+					if (detector.isActive(block,0)==true)	{
+						if (activeStart<0) activeStart=blockStart;
+						activeEnd=blockStart+block.length;
+					}
+					else if (activeStart>=0)	{
+						addWindow(windows,activeStart-leadSamples,activeEnd+tailSamples,first,last,leadSamples);
+						activeStart=-1;
+					}
+					blockCount=0;
+					blockStart=blockStart+block.length;
+				}
+			}
+			pos=pos+count;
+		}
+		if (activeStart>=0) addWindow(windows,activeStart-leadSamples,pos,first,last,leadSamples);
+		return windows;
+	}
+
+	private static void addWindow (List<Window> windows,long start,long end,long first,long last,long leadSamples)	{
+		start=Math.max(start,first);
+		end=Math.min(end,last);
+		if (end<=start) return;
+		if (windows.isEmpty()==false)	{
+			Window previous=windows.get(windows.size()-1);
+			if (start-previous.end<leadSamples)	{
+				windows.set(windows.size()-1,new Window(previous.start,Math.max(end,previous.end)));
+				return;
+			}
+		}
+		windows.add(new Window(start,end));
+	}
+
+	// Decode the frames from start up to end of a file writing the output to a stream
+	// Returns false if none of the modes could decode it
+	public boolean decode (final File file,long start,long end,PrintStream stream) throws IOException,InterruptedException	{
+		final RecordingSource scanner=ArchiveReader.open(file);
+		final double rate;
+		final List<Window> windows;
+		long history=0;
+		try	{
+			rate=scanner.getWaveData().getSampleRate();
+			for (int system : systems)	{
+				history=Math.max(history,factory.createSession(null,system).getHistoryLength(rate));
+			}
+			scanner.setRange(start,end);
+			windows=findWindows(scanner,(long)(LEAD_SECONDS*rate),(long)(TAIL_SECONDS*rate));
+		}
+		finally	{
+			scanner.close();
+		}
+		windowCount=windows.size();
+		windowSamples=0;
+		for (Window window : windows)	{
+			windowSamples=windowSamples+(window.end-window.start);
+		}
+		// Second pass
+		final long historyLength=history;
+		ExecutorService pool=Executors.newFixedThreadPool(threads);
+		boolean decoded[]=new boolean[systems.length];
+		try	{
+			List<Future<Part>> parts=new ArrayList<Future<Part>>();
+			for (final Window window : windows)	{
+				for (int a=0;a<systems.length;a++)	{
+					final int system=systems[a];
+					parts.add(pool.submit(new Callable<Part>(){public Part call() throws IOException{return decodeWindow(file,window,system,historyLength);}}));
+				}
+			}
+			int index=0;
+			for (Future<Part> future : parts)	{
+				Part part=future.get();
+				stream.print(part.text);
+				if (part.decoded==true) decoded[index%systems.length]=true;
+				index++;
+			}
+		}
+		catch (ExecutionException e)	{
+			if (e.getCause() instanceof IOException) throw (IOException)e.getCause();
+			throw new IOException(e.getCause().toString());
+		}
+		finally	{
+			pool.shutdownNow();
+		}
+		// With nothing on the file there is nothing a mode could fail to decode
+		if (windows.isEmpty()) return true;
+		for (boolean modeDecoded : decoded)	{
+			if (modeDecoded==true) return true;
+		}
+		return false;
+	}
+
+	// Decode one window with one mode in a session of its own
+	private Part decodeWindow (File file,Window window,int system,long historyLength) throws IOException	{
+		Part part=new Part();
+		ByteArrayOutputStream text=new ByteArrayOutputStream();
+		PrintStream stream=new PrintStream(text,false,"UTF-8");
+		TextOutput output=new TextOutput(stream,false);
+		Rivet session=factory.createSession(output,system);
+		if (systems.length>1) output.setTag(Rivet.MODENAMES[system]);
+		session.setRecordingStart(recordingStart);
+		RecordingSource reader=ArchiveReader.open(file);
+		try	{
+			// Fill the history with what came before the window
+			long primeLength=Math.min(window.start,historyLength);
+			reader.setRange(window.start-primeLength,window.end);
+			part.decoded=session.decodeSource(reader,primeLength);
+			output.flush();
+		}
+		finally	{
+			reader.close();
+			stream.close();
+		}
+		part.text=text.toString("UTF-8");
+		return part;
+	}
+
+	// The number of windows found by the last decode
+	public int getWindowCount()	{
+		return windowCount;
+	}
+
+	// The number of samples in those windows
+	public long getWindowSamples()	{
+		return windowSamples;
+	}
+
+}
@@ -22,8 +22,9 @@ public class WAVfileFilter extends javax.swing.filechooser.FileFilter {
 		if (f.isDirectory()) return true;
 		// get the extension of the file
 		String extension=getExtension(f);
-		// check to see if the extension is equal to "wav"
+		// check to see if the extension is equal to "wav" or is a Rivet archive
 		if (extension.equals("wav")) return true;
+		if (extension.equals("rva")) return true;
 		// default -- fall through. False is return on all
 		// occasions except:
 		// a) the file is a directory
@@ -32,7 +33,7 @@ public class WAVfileFilter extends javax.swing.filechooser.FileFilter {
 	}
 
 	public String getDescription() {
-		return "WAV files";
+		return "WAV files and Rivet archives";
 	}
 
 	/**
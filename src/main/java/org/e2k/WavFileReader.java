@@ -0,0 +1,318 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// Rivet Copyright (C) 2011 Ian Wraith
+// This program comes with ABSOLUTELY NO WARRANTY
+
+package org.e2k;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+
+// Reads PCM samples from a WAV file by memory mapping its data chunk
+// The RIFF header is parsed here rather than going through javax.sound
+// 8/16/24/32 bit integer and 32/64 bit float data in either byte order is converted
+// into the 16 bit mono samples the decoders expect
+public class WavFileReader implements RecordingSource {
+	
+	// How much of the data chunk is mapped at a time
+	private static final int MAP_WINDOW=1<<26;
+	private static final int WAVE_FORMAT_PCM=1;
+	private static final int WAVE_FORMAT_IEEE_FLOAT=3;
+	private static final int WAVE_FORMAT_EXTENSIBLE=0xFFFE;
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private WaveData waveData=new WaveData();
+	private PCMConverter converter;
+	private boolean bigEndian=false;
+	private int formatTag;
+	private int channels;
+	private int sampleRate;
+	private int bitsPerSample;
+	private int blockAlign;
+	private long dataOffset;
+	private long dataSize;
+	private long totalFrames;
+	private long framesRead=0;
+	// Reading stops at this frame
+	private long endFrame;
+	// The currently mapped part of the data chunk
+	private MappedByteBuffer window;
+	private long windowStart=-1;
+	private byte byteBlock[]=new byte[0];
+	// When the recording started from a Broadcast WAV bext chunk or -1 if there isn't one
+	private long recordingStart=-1;
+	
+	public WavFileReader (File wavFile) throws IOException	{
+		file=new RandomAccessFile(wavFile,"r");
+		channel=file.getChannel();
+		try	{
+			readHeader();
+		}
+		catch (IOException e)	{
+			close();
+			throw e;
+		}
+	}
+	
+	// Run through the RIFF chunks picking out the fmt and data chunks
+	// RIFX files are the same but big endian
+	private void readHeader () throws IOException	{
+		ByteBuffer header=ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+		readFully(header,0);
+		if (header.getInt(0)==fourCC("RIFX")) bigEndian=true;
+		else if (header.getInt(0)!=fourCC("RIFF")) throw new IOException("Not a RIFF WAVE file");
+		if (header.getInt(8)!=fourCC("WAVE")) throw new IOException("Not a RIFF WAVE file");
+		ByteOrder order=ByteOrder.LITTLE_ENDIAN;
+		if (bigEndian==true) order=ByteOrder.BIG_ENDIAN;
+		long pos=12;
+		boolean haveFormat=false;
+		ByteBuffer bext=null;
+		ByteBuffer chunk=ByteBuffer.allocate(8).order(order);
+		while (pos+8<=channel.size())	{
+			chunk.clear();
+			readFully(chunk,pos);
+			// Chunk IDs are always in file order
+			int id=chunk.order(ByteOrder.LITTLE_ENDIAN).getInt(0);
+			long size=chunk.order(order).getInt(4)&0xFFFFFFFFL;
+			pos=pos+8;
+			if (id==fourCC("fmt "))	{
+				// Anything shorter doesn't hold the sample size
+				if (size<16) throw new IOException("Bad WAV fmt chunk");
+				ByteBuffer fmt=ByteBuffer.allocate((int)Math.min(size,40)).order(order);
+				readFully(fmt,pos);
+				formatTag=fmt.getShort(0)&0xFFFF;
+				channels=fmt.getShort(2)&0xFFFF;
+				sampleRate=fmt.getInt(4);
+				blockAlign=fmt.getShort(12)&0xFFFF;
+				bitsPerSample=fmt.getShort(14)&0xFFFF;
+				// The real format of a WAVE_FORMAT_EXTENSIBLE file is at the start of its sub format GUID
+				if ((formatTag==WAVE_FORMAT_EXTENSIBLE)&&(fmt.capacity()>=26)) formatTag=fmt.getShort(24)&0xFFFF;
+				haveFormat=true;
+			}
+			else if ((id==fourCC("bext"))&&(size>=346))	{
+				bext=ByteBuffer.allocate(26).order(ByteOrder.LITTLE_ENDIAN);
+				readFully(bext,pos+320);
+			}
+			else if (id==fourCC("data"))	{
+				dataOffset=pos;
+				// Recorders which are stopped early can leave the size unset or too big
+				long available=channel.size()-pos;
+				if ((size==0)||(size>available)) size=available;
+				dataSize=size;
+				break;
+			}
+			// Chunks are padded to an even length
+			pos=pos+size+(size&1);
+		}
+		if (haveFormat==false) throw new IOException("No fmt chunk found");
+		if (dataOffset==0) throw new IOException("No data chunk found");
+		if ((formatTag!=WAVE_FORMAT_PCM)&&(formatTag!=WAVE_FORMAT_IEEE_FLOAT)) throw new IOException("Unsupported WAV format type "+Integer.toString(formatTag));
+		// Samples are stored in whole bytes so 20 bit audio is held in 24 bits
+		int containerBits=((bitsPerSample+7)/8)*8;
+		int encoding=PCMConverter.findEncoding(containerBits,(formatTag==WAVE_FORMAT_IEEE_FLOAT));
+		if (encoding<0) throw new IOException("Unsupported WAV sample size of "+Integer.toString(bitsPerSample)+" bits");
+		if ((channels<1)||(blockAlign!=channels*(containerBits/8))) throw new IOException("Bad WAV fmt chunk");
+		converter=new PCMConverter(encoding,bigEndian,channels);
+		// This needs the sample rate so is left until the fmt chunk has been read
+		if (bext!=null) recordingStart=readOrigination(bext);
+		// Make sure the data chunk holds a whole number of frames
+		dataSize=dataSize-(dataSize%blockAlign);
+		totalFrames=dataSize/blockAlign;
+		endFrame=totalFrames;
+		// The decoders are given 16 bit mono
+		waveData.setSampleRate(sampleRate);
+		waveData.setChannels(1);
+		waveData.setSampleSizeInBits(16);
+		waveData.setBytesPerFrame(2);
+		waveData.setEndian(false);
+		waveData.setFromFile(true);
+	}
+	
+	// A bext chunk has the local date and time the recording was made as text (yyyy-mm-dd and hh:mm:ss)
+	// followed by the number of samples since midnight which is more exact than the time if it is set
+	// Returns -1 if these haven't been filled in
+	private long readOrigination (ByteBuffer bext)	{
+		byte text[]=new byte[18];
+		bext.rewind();
+		bext.get(text);
+		String date=new String(text,0,10,StandardCharsets.US_ASCII).trim();
+		String time=new String(text,10,8,StandardCharsets.US_ASCII).trim();
+		long timeReference=bext.getLong(18);
+		if (date.length()<10) return -1;
+		SimpleDateFormat format=new SimpleDateFormat("yyyy MM dd HH mm ss");
+		format.setLenient(false);
+		try	{
+			// Any separator is allowed in the date and time
+			String day=date.substring(0,4)+" "+date.substring(5,7)+" "+date.substring(8,10);
+			if ((timeReference>0)&&(sampleRate>0)) return format.parse(day+" 00 00 00").getTime()+((timeReference*1000L)/sampleRate);
+			if (time.length()<8) return -1;
+			return format.parse(day+" "+time.substring(0,2)+" "+time.substring(3,5)+" "+time.substring(6,8)).getTime();
+		}
+		catch (ParseException e)	{
+			return -1;
+		}
+	}
+	
+	private void readFully (ByteBuffer buf,long pos) throws IOException	{
+		while (buf.hasRemaining())	{
+			if (channel.read(buf,pos+buf.position())<0) throw new IOException("Unexpected end of WAV file");
+		}
+	}
+	
+	// Return a RIFF chunk ID as a little endian int
+	private static int fourCC (String id)	{
+		return (id.charAt(0))|(id.charAt(1)<<8)|(id.charAt(2)<<16)|(id.charAt(3)<<24);
+	}
+	
+	// Make sure the window covering the frame is mapped
+	// Windows always hold a whole number of frames
+	private void mapWindow (long frame) throws IOException	{
+		long offset=frame*blockAlign;
+		if ((windowStart>=0)&&(offset>=windowStart)&&(offset<windowStart+window.capacity())) return;
+		long length=Math.min(MAP_WINDOW-(MAP_WINDOW%blockAlign),dataSize-offset);
+		window=channel.map(FileChannel.MapMode.READ_ONLY,dataOffset+offset,length);
+		windowStart=offset;
+	}
+	
+	// Pick out one channel (counting from 0) of a multichannel file or -1 to mix them all to mono
+	public void setChannel (int tchannel)	{
+		converter.setChannel(tchannel);
+	}
+	
+	// Copy up to maxFrames whole frames from the mapped window into byteBlock and return how many
+	// This stops at the end of a window so a read may need more than one call
+	private int nextFrames (int maxFrames) throws IOException	{
+		mapWindow(framesRead);
+		int pos=(int)(framesRead*blockAlign-windowStart);
+		int count=Math.min(maxFrames,(window.capacity()-pos)/blockAlign);
+		int bytes=count*blockAlign;
+		if (byteBlock.length<bytes) byteBlock=new byte[bytes];
+		window.position(pos);
+		window.get(byteBlock,0,bytes);
+		framesRead=framesRead+count;
+		return count;
+	}
+	
+	public int read (int samples[],int off,int len) throws IOException	{
+		if (framesRead>=endFrame) return -1;
+		len=(int)Math.min(len,endFrame-framesRead);
+		int done=0;
+		while (done<len)	{
+			int count=nextFrames(len-done);
+			converter.convert(byteBlock,0,count,samples,off+done);
+			done=done+count;
+		}
+		return done;
+	}
+	
+	// Read every channel into its own array (samples[channel][])
+	// Returns the number of samples read into each channel or -1 at the end of the file
+	public int readChannels (int samples[][],int off,int len) throws IOException	{
+		if (framesRead>=endFrame) return -1;
+		len=(int)Math.min(len,endFrame-framesRead);
+		int done=0;
+		while (done<len)	{
+			int count=nextFrames(len-done);
+			converter.deinterleave(byteBlock,0,count,samples,off+done);
+			done=done+count;
+		}
+		return done;
+	}
+	
+	// Move straight to a frame in the data chunk
+	public void seek (long frame)	{
+		framesRead=Math.max(0,Math.min(frame,totalFrames));
+	}
+	
+	// Only read the frames from start up to (but not including) end
+	public void setRange (long start,long end)	{
+		endFrame=Math.max(0,Math.min(end,totalFrames));
+		seek(start);
+	}
+	
+	public long getEndFrame ()	{
+		return endFrame;
+	}
+	
+	// Turn a position in the file into a frame number
+	// This can be a time from the start of the file as [[hh:]mm:]ss[.sss] or a frame number starting with @
+	public long findFrame (String position)	{
+		return findFrame(position,sampleRate);
+	}
+	
+	// Turn a position into a frame number for a recording at a sample rate
+	public static long findFrame (String position,double sampleRate)	{
+		position=position.trim();
+		if (position.startsWith("@")) return Long.parseLong(position.substring(1));
+		String parts[]=position.split(":");
+		if (parts.length>3) throw new NumberFormatException("Bad time "+position);
+		double seconds=0.0;
+		for (String part : parts)	{
+			double value=Double.parseDouble(part);
+			if (value<0.0) throw new NumberFormatException("Bad time "+position);
+			seconds=(seconds*60.0)+value;
+		}
+		return Math.round(seconds*sampleRate);
+	}
+	
+	public WaveData getWaveData ()	{
+		return waveData;
+	}
+	
+	// Samples here are mono so this is the same as the number of frames
+	public long getSamplesRead ()	{
+		return framesRead;
+	}
+	
+	public long getTotalSamples ()	{
+		return totalFrames;
+	}
+	
+	// Return the format of the file as it is stored
+	public String getFormatDescription ()	{
+		return Integer.toString(sampleRate)+" Hz "+converter.getDescription();
+	}
+	
+	// When the recording was made according to the file in milliseconds since 1970 or -1 if it doesn't say
+	public long getRecordingStart ()	{
+		return recordingStart;
+	}
+	
+	public int getChannels ()	{
+		return channels;
+	}
+	
+	// Return the size in bytes of the data chunk
+	public long getDataSize ()	{
+		return dataSize;
+	}
+	
+	// Return the number of bytes of the data chunk read so far
+	public long getBytesRead ()	{
+		return framesRead*blockAlign;
+	}
+	
+	public void close () throws IOException	{
+		window=null;
+		windowStart=-1;
+		channel.close();
+		file.close();
+	}
+
+}
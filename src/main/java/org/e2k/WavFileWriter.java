@@ -0,0 +1,124 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// Rivet Copyright (C) 2011 Ian Wraith
+// This program comes with ABSOLUTELY NO WARRANTY
+
+package org.e2k;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+// Writes 16 bit mono PCM WAV files
+// The sizes in the header are filled in when the file is closed so a file which is never closed
+// still has its audio but with sizes of zero (which WavFileReader copes with)
+public class WavFileWriter {
+
+	private static final int HEADER_SIZE=44;
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final int sampleRate;
+	// Samples are converted into this before being written
+	private final ByteBuffer buffer;
+	private long samplesWritten=0;
+
+	public WavFileWriter (File wavFile,int tsampleRate) throws IOException	{
+		this(wavFile,tsampleRate,8192);
+	}
+
+	// bufferSamples is how many samples are converted and written at a time
+	public WavFileWriter (File wavFile,int tsampleRate,int bufferSamples) throws IOException	{
+		sampleRate=tsampleRate;
+		buffer=ByteBuffer.allocateDirect(Math.max(HEADER_SIZE,bufferSamples*2)).order(ByteOrder.LITTLE_ENDIAN);
+		file=new RandomAccessFile(wavFile,"rw");
+		file.setLength(0);
+		channel=file.getChannel();
+		writeHeader();
+	}
+
+	private void writeHeader () throws IOException	{
+		long dataSize=samplesWritten*2;
+		buffer.clear();
+		buffer.put(new byte[]{'R','I','F','F'});
+		buffer.putInt((int)Math.min(0xFFFFFFFFL,dataSize+36));
+		buffer.put(new byte[]{'W','A','V','E','f','m','t',' '});
+		buffer.putInt(16);
+		buffer.putShort((short)1);
+		buffer.putShort((short)1);
+		buffer.putInt(sampleRate);
+		buffer.putInt(sampleRate*2);
+		buffer.putShort((short)2);
+		buffer.putShort((short)16);
+		buffer.put(new byte[]{'d','a','t','a'});
+		buffer.putInt((int)Math.min(0xFFFFFFFFL,dataSize));
+		buffer.flip();
+		long pos=0;
+		while (buffer.hasRemaining())	{
+			pos=pos+channel.write(buffer,pos);
+		}
+	}
+
+	// Add samples to the end of the file , anything outside the 16 bit range is clipped
+	public void write (int samples[],int off,int len) throws IOException	{
+		int end=off+len;
+		while (off<end)	{
+			buffer.clear();
+			int count=Math.min(end-off,buffer.capacity()/2);
+			int a;
+			for (a=0;a<count;a++)	{
+				int s=samples[off+a];
+				if (s>Short.MAX_VALUE) s=Short.MAX_VALUE;
+				else if (s<Short.MIN_VALUE) s=Short.MIN_VALUE;
+				buffer.putShort((short)s);
+			}
+			buffer.flip();
+			long pos=HEADER_SIZE+(samplesWritten*2);
+			while (buffer.hasRemaining())	{
+				pos=pos+channel.write(buffer,pos);
+			}
+			samplesWritten=samplesWritten+count;
+			off=off+count;
+		}
+	}
+
+	// Add 16 bit little endian samples which are already in a buffer (from its position to its limit)
+	public void write (ByteBuffer data) throws IOException	{
+		int count=data.remaining()/2;
+		data.limit(data.position()+(count*2));
+		long pos=HEADER_SIZE+(samplesWritten*2);
+		while (data.hasRemaining())	{
+			pos=pos+channel.write(data,pos);
+		}
+		samplesWritten=samplesWritten+count;
+	}
+
+	public long getSamplesWritten()	{
+		return samplesWritten;
+	}
+
+	public int getSampleRate()	{
+		return sampleRate;
+	}
+
+	// Fill in the sizes and close the file
+	public void close () throws IOException	{
+		try	{
+			writeHeader();
+		}
+		finally	{
+			file.close();
+		}
+	}
+
+}
@@ -14,9 +14,12 @@
 package org.e2k;
 
 import java.awt.Color;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import javax.swing.JOptionPane;
 
-public class XPA extends MFSK {
+public class XPA extends MFSK implements BlockDecoder {
 	
 	private int baudRate=10;
 	private int state=0;
@@ -27,13 +30,14 @@ public class XPA extends MFSK {
 	private String previousCharacter;
 	private int groupCount=0;
 	private StringBuilder lineBuffer=new StringBuilder();
-	private CircularDataBuffer energyBuffer=new CircularDataBuffer();
+	private CircularDataBuffer energyBuffer;
 	private long syncFoundPoint;
 	private int correctionFactor;
 	
 	public XPA (Rivet tapp,int baud)	{
 		baudRate=baud;
 		theApp=tapp;
+		energyBuffer=new CircularDataBuffer(theApp);
 	}
 	
 	public void setBaudRate(int baudRate) {
@@ -59,6 +63,34 @@ public class XPA extends MFSK {
 		return state;
 	}
 	
+	public void writeState (DataOutputStream out) throws IOException	{
+		writeFSKState(out);
+		out.writeInt(state);
+		out.writeDouble(samplesPerSymbol);
+		out.writeLong(sampleCount);
+		out.writeLong(symbolCounter);
+		Checkpoint.writeString(out,previousCharacter);
+		out.writeInt(groupCount);
+		Checkpoint.writeString(out,lineBuffer.toString());
+		energyBuffer.writeState(out);
+		out.writeLong(syncFoundPoint);
+		out.writeInt(correctionFactor);
+	}
+	
+	public void readState (DataInputStream in) throws IOException	{
+		readFSKState(in);
+		state=in.readInt();
+		samplesPerSymbol=in.readDouble();
+		sampleCount=in.readLong();
+		symbolCounter=in.readLong();
+		previousCharacter=Checkpoint.readString(in);
+		groupCount=in.readInt();
+		Checkpoint.readString(in,lineBuffer);
+		energyBuffer.readState(in);
+		syncFoundPoint=in.readLong();
+		correctionFactor=in.readInt();
+	}
+	
 	// The main decode routine
 	public boolean decode (CircularDataBuffer circBuf,WaveData waveData)	{
 		// Just starting
@@ -66,19 +98,19 @@ public class XPA extends MFSK {
 			// Check the sample rate
 			if (waveData.getSampleRate()>11025)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"WAV files containing\nXPA recordings must have\nbeen recorded at a sample rate\nof 11.025 KHz or less.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("WAV files containing\nXPA recordings must have\nbeen recorded at a sample rate\nof 11.025 KHz or less.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			// Check this is a mono recording
 			if (waveData.getChannels()!=1)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"Rivet can only process\nmono WAV files.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("Rivet can only process\nmono WAV files.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			// Check this is a 16 bit WAV file
 			if (waveData.getSampleSizeInBits()!=16)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"Rivet can only process\n16 bit WAV files.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("Rivet can only process\n16 bit WAV files.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			samplesPerSymbol=samplesPerSymbol(baudRate,waveData.getSampleRate());
@@ -171,6 +203,33 @@ public class XPA extends MFSK {
 		return true;
 	}
 	
+	// Count samples which were only added to the circular buffer
+	public void skipSamples (int count)	{
+		sampleCount=sampleCount+count;
+		symbolCounter=symbolCounter+count;
+	}
+	
+	// Return how many of the coming samples decode() will do nothing with apart from counting them
+	public long idleSamples()	{
+		// The start tone hunt is only run every 100 samples once the buffer is full
+		if (state==1)	{
+			if (sampleCount<0) return 0-sampleCount;
+			long r=sampleCount%100;
+			if (r==0) return 0;
+			else return 100-r;
+		}
+		// As is the sync hunt
+		else if (state==2)	{
+			if ((sampleCount>0)&&((sampleCount%100)>0)) return 100-(sampleCount%100);
+			else return 0;
+		}
+		// Characters are only decoded at the start of each symbol
+		else if (state==4) return Math.max(0,(long)samplesPerSymbol-symbolCounter);
+		// Decoding is complete or has failed
+		else if ((state==5)||(state<0)) return Long.MAX_VALUE;
+		else return 0;
+	}
+	
 	// Hunt for an XPA start tone
 	private String startToneHunt (CircularDataBuffer circBuf,WaveData waveData)	{
 		String line;
@@ -14,9 +14,12 @@
 package org.e2k;
 
 import java.awt.Color;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import javax.swing.JOptionPane;
 
-public class XPA2 extends MFSK {
+public class XPA2 extends MFSK implements ModeDecoder {
 	
 	private final double BAUDRATE=7.8125;
 	private int state=0;
@@ -27,13 +30,14 @@ public class XPA2 extends MFSK {
 	private long syncFoundPoint;
 	private String previousCharacter;
 	private int groupCount=0;
-	private CircularDataBuffer energyBuffer=new CircularDataBuffer();
+	private CircularDataBuffer energyBuffer;
 	private int correctionFactor;
 	private final int PIVOT=5000;
 	private int characterCount;	
 	
 	public XPA2 (Rivet tapp)	{
 		theApp=tapp;
+		energyBuffer=new CircularDataBuffer(theApp);
 	}
 	
 
@@ -53,6 +57,34 @@ public class XPA2 extends MFSK {
 		return state;
 	}
 	
+	public void writeState (DataOutputStream out) throws IOException	{
+		writeFSKState(out);
+		out.writeInt(state);
+		out.writeDouble(samplesPerSymbol);
+		out.writeLong(sampleCount);
+		out.writeLong(symbolCounter);
+		out.writeLong(syncFoundPoint);
+		Checkpoint.writeString(out,previousCharacter);
+		out.writeInt(groupCount);
+		energyBuffer.writeState(out);
+		out.writeInt(correctionFactor);
+		out.writeInt(characterCount);
+	}
+	
+	public void readState (DataInputStream in) throws IOException	{
+		readFSKState(in);
+		state=in.readInt();
+		samplesPerSymbol=in.readDouble();
+		sampleCount=in.readLong();
+		symbolCounter=in.readLong();
+		syncFoundPoint=in.readLong();
+		previousCharacter=Checkpoint.readString(in);
+		groupCount=in.readInt();
+		energyBuffer.readState(in);
+		correctionFactor=in.readInt();
+		characterCount=in.readInt();
+	}
+	
 	// The main decode function
 	public boolean decode (CircularDataBuffer circBuf,WaveData waveData)	{
 		// Just starting
@@ -60,19 +92,19 @@ public class XPA2 extends MFSK {
 			// Check the sample rate
 			if (waveData.getSampleRate()>11025.0)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"WAV files containing\nXPA2 recordings must have\nbeen recorded at a sample rate\nof 11.025 KHz or less.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("WAV files containing\nXPA2 recordings must have\nbeen recorded at a sample rate\nof 11.025 KHz or less.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			// Check this is a mono recording
 			if (waveData.getChannels()!=1)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"Rivet can only process\nmono WAV files.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("Rivet can only process\nmono WAV files.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			// Check this is a 16 bit WAV file
 			if (waveData.getSampleSizeInBits()!=16)	{
 				state=-1;
-				JOptionPane.showMessageDialog(null,"Rivet can only process\n16 bit WAV files.","Rivet", JOptionPane.INFORMATION_MESSAGE);
+				theApp.showMessage("Rivet can only process\n16 bit WAV files.",JOptionPane.INFORMATION_MESSAGE);
 				return false;
 			}
 			samplesPerSymbol=samplesPerSymbol(BAUDRATE,waveData.getSampleRate());
@@ -0,0 +1,98 @@
+package test.org.e2k;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+import org.e2k.Rivet;
+import org.e2k.TextOutput;
+import org.e2k.WaveData;
+
+// Made up signals and decoding sessions shared by the decoder tests
+final class DecodeHelper {
+
+	public static final int RATE=8000;
+	// Decoding is always done in blocks of this size so the time stamps only depend on the samples
+	public static final int BLOCK=4096;
+
+	private DecodeHelper()	{
+	}
+
+	// Random two tone FSK starting at 1000 Hz with a little noise
+	public static int[] fsk (int length,int baud,int shift,Random random)	{
+		return tones(length,RATE,baud,new int[]{1000,1000+shift},300.0,random);
+	}
+
+	// Random symbols from a set of tones with noise of the given level
+	public static int[] tones (int length,int rate,int baud,int freqs[],double noise,Random random)	{
+		int samples[]=new int[length];
+		double phase=0.0;
+		double freq=freqs[0];
+		int a;
+		for (a=0;a<length;a++)	{
+			if ((a%(rate/baud))==0) freq=freqs[random.nextInt(freqs.length)];
+			phase=phase+((2.0*Math.PI*freq)/rate);
+			samples[a]=(int)Math.round((8000.0*Math.sin(phase))+(random.nextGaussian()*noise));
+		}
+		return samples;
+	}
+
+	// Each tone in turn for one symbol with noise of the given level
+	public static int[] sequence (int rate,int baud,int freqs[],double noise,Random random)	{
+		int perSymbol=rate/baud;
+		int samples[]=new int[freqs.length*perSymbol];
+		double phase=0.0;
+		int a;
+		for (a=0;a<samples.length;a++)	{
+			phase=phase+((2.0*Math.PI*freqs[a/perSymbol])/rate);
+			samples[a]=(int)Math.round((8000.0*Math.sin(phase))+(random.nextGaussian()*noise));
+		}
+		return samples;
+	}
+
+	// 16 bit mono from a file
+	public static WaveData waveData (int rate)	{
+		WaveData waveData=new WaveData();
+		waveData.setSampleRate(rate);
+		waveData.setChannels(1);
+		waveData.setSampleSizeInBits(16);
+		waveData.setBytesPerFrame(2);
+		waveData.setFromFile(true);
+		return waveData;
+	}
+
+	public static TextOutput textOutput (OutputStream text)	{
+		return new TextOutput(new PrintStream(text,true),false);
+	}
+
+	// A session with a known start so the time stamps are the same every run
+	public static Rivet session (int system,TextOutput output)	{
+		Rivet session=new Rivet(output);
+		session.setSystem(system);
+		session.setRecordingStart(0);
+		return session;
+	}
+
+	// Pass samples to a session a block at a time
+	public static void decodeBlocks (Rivet session,int samples[],int off,int len)	{
+		int end=off+len;
+		while (off<end)	{
+			int count=Math.min(BLOCK,end-off);
+			session.decodeBlock(samples,off,count);
+			off=off+count;
+		}
+	}
+
+	// Decode samples in a session of their own and return the text
+	public static String decodeAlone (int system,int samples[],WaveData waveData)	{
+		ByteArrayOutputStream text=new ByteArrayOutputStream();
+		TextOutput output=textOutput(text);
+		Rivet session=session(system,output);
+		session.startSource(waveData);
+		decodeBlocks(session,samples,0,samples.length);
+		session.endSource();
+		output.flush();
+		return text.toString();
+	}
+
+}
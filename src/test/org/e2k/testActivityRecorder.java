@@ -0,0 +1,92 @@
+package test.org.e2k;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+import org.e2k.ActivityRecorder;
+import org.e2k.Rivet;
+import org.e2k.WavFileReader;
+
+public class testActivityRecorder extends TestCase {
+
+	private static final int RATE=8000;
+	private static final int BLOCK=800;
+
+	// Only the carrier and the stretch the decoder had a signal for are archived
+	public void testArchive() throws IOException	{
+		File directory=Files.createTempDirectory("archive").toFile();
+		try	{
+			ActivityRecorder recorder=new ActivityRecorder(new Rivet(null),directory,RATE,3600.0,1.0);
+			Random random=new Random(1);
+			int samples[]=new int[RATE*30];
+			int a;
+			for (a=0;a<samples.length;a++)	{
+				samples[a]=(int)(random.nextGaussian()*100.0);
+				// A carrier from 5 to 7 seconds
+				if ((a>=RATE*5)&&(a<RATE*7)) samples[a]=samples[a]+(int)(8000.0*Math.sin(2.0*Math.PI*1000.0*a/RATE));
+			}
+			int pos=0;
+			for (;pos<RATE*20;pos=pos+BLOCK) recorder.add(samples,pos,BLOCK);
+			// The decoder has a signal from 20 to 22 seconds which the detector doesn't see
+			recorder.setSignal(true,"XPA");
+			for (;pos<RATE*22;pos=pos+BLOCK) recorder.add(samples,pos,BLOCK);
+			recorder.setSignal(false,"XPA");
+			for (;pos<RATE*30;pos=pos+BLOCK) recorder.add(samples,pos,BLOCK);
+			recorder.close();
+			assertEquals(1,recorder.getSegmentCount());
+			assertEquals(2,recorder.getStretchCount());
+			assertEquals(0,recorder.getDroppedSamples());
+			File wavFile=null,indexFile=null;
+			for (File file : directory.listFiles())	{
+				if (file.getName().endsWith(".wav")) wavFile=file;
+				else if (file.getName().endsWith(".idx")) indexFile=file;
+			}
+			assertNotNull(wavFile);
+			assertNotNull(indexFile);
+			List<String[]> lines=new ArrayList<String[]>();
+			BufferedReader in=new BufferedReader(new FileReader(indexFile));
+			try	{
+				String line;
+				while ((line=in.readLine())!=null) lines.add(line.split("\t"));
+			}
+			finally	{
+				in.close();
+			}
+			assertEquals(2,lines.size());
+			assertEquals("0",lines.get(0)[0]);
+			assertEquals("Carrier",lines.get(0)[3]);
+			assertEquals("XPA",lines.get(1)[3]);
+			// The stretches follow each other in the segment
+			long first=Math.round(Double.parseDouble(lines.get(0)[2])*RATE);
+			long second=Math.round(Double.parseDouble(lines.get(1)[2])*RATE);
+			assertEquals(first,Long.parseLong(lines.get(1)[0]));
+			// The carrier with a little before it , the hang time after it and however long the detector takes to settle
+			if ((first<RATE*3)||(first>RATE*6)) fail("The carrier stretch is "+Long.toString(first)+" samples long");
+			// The signal with the second before it and the hang time after it
+			assertEquals(RATE*4,second);
+			WavFileReader reader=new WavFileReader(wavFile);
+			try	{
+				assertEquals(first+second,reader.getTotalSamples());
+				int data[]=new int[(int)(first+second)];
+				assertEquals(data.length,reader.read(data,0,data.length));
+				for (a=0;a<second;a++)	{
+					if (data[(int)first+a]!=samples[(RATE*19)+a]) fail("Sample "+Integer.toString(a)+" of the signal stretch is wrong");
+				}
+			}
+			finally	{
+				reader.close();
+			}
+		}
+		finally	{
+			for (File file : directory.listFiles()) file.delete();
+			directory.delete();
+		}
+	}
+
+}
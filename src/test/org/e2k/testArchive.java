@@ -0,0 +1,168 @@
+package test.org.e2k;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+import junit.framework.TestCase;
+import org.e2k.ArchiveReader;
+import org.e2k.ArchiveWriter;
+import org.e2k.RecordingSource;
+import org.e2k.WavFileReader;
+import org.e2k.WavFileWriter;
+
+public class testArchive extends TestCase {
+
+	private static final int RATE=8000;
+	private static final int BLOCK=1024;
+
+	// Band noise , a tone , silence and full scale square waves with a part block at the end
+	private int[] makeSamples()	{
+		Random random=new Random(5);
+		int samples[]=new int[(RATE*6)+123];
+		int a;
+		for (a=0;a<samples.length;a++)	{
+			double t=(double)a/RATE;
+			if (t<2.0) samples[a]=(int)(random.nextGaussian()*300.0);
+			else if (t<4.0) samples[a]=(int)(random.nextGaussian()*50.0)+(int)(12000.0*Math.sin(2.0*Math.PI*1200.0*t));
+			else if (t<5.0) samples[a]=0;
+			else if ((a&8)==0) samples[a]=Short.MAX_VALUE;
+			else samples[a]=Short.MIN_VALUE;
+		}
+		return samples;
+	}
+
+	private File makeArchive (int samples[]) throws IOException	{
+		File file=File.createTempFile("archive",".rva");
+		ArchiveWriter writer=new ArchiveWriter(file,RATE,1476273600000L,0.5,BLOCK);
+		try	{
+			// Written in odd sized pieces so they don't line up with the blocks
+			int off=0;
+			while (off<samples.length)	{
+				int len=Math.min(777,samples.length-off);
+				writer.write(samples,off,len);
+				off=off+len;
+			}
+		}
+		finally	{
+			writer.close();
+		}
+		return file;
+	}
+
+	// Everything written comes back exactly and the archive is smaller than 16 bit samples would be
+	public void testRoundTrip() throws IOException	{
+		int samples[]=makeSamples();
+		File file=makeArchive(samples);
+		try	{
+			if (file.length()>=samples.length*2L) fail("The archive is "+Long.toString(file.length())+" bytes");
+			RecordingSource reader=ArchiveReader.open(file);
+			try	{
+				assertTrue(reader instanceof ArchiveReader);
+				assertEquals(samples.length,reader.getTotalSamples());
+				assertEquals(1476273600000L,reader.getRecordingStart());
+				assertEquals(RATE,(int)reader.getWaveData().getSampleRate());
+				checkRead(reader,samples,0,samples.length);
+				assertEquals(-1,reader.read(new int[10],0,10));
+			}
+			finally	{
+				reader.close();
+			}
+		}
+		finally	{
+			file.delete();
+		}
+	}
+
+	// Seeking anywhere gives the same samples as reading from the start
+	public void testSeek() throws IOException	{
+		int samples[]=makeSamples();
+		File file=makeArchive(samples);
+		try	{
+			ArchiveReader reader=new ArchiveReader(file);
+			try	{
+				Random random=new Random(9);
+				int a;
+				for (a=0;a<50;a++)	{
+					int start=random.nextInt(samples.length);
+					int end=Math.min(samples.length,start+1+random.nextInt(3000));
+					reader.setRange(start,end);
+					checkRead(reader,samples,start,end);
+				}
+				reader.setRange(0,samples.length);
+				assertEquals(RATE*2,reader.findFrame("2"));
+				reader.seek(samples.length-5);
+				checkRead(reader,samples,samples.length-5,samples.length);
+			}
+			finally	{
+				reader.close();
+			}
+		}
+		finally	{
+			file.delete();
+		}
+	}
+
+	// An archive which was never closed has its index and length worked out from the blocks
+	public void testRebuildIndex() throws IOException	{
+		int samples[]=makeSamples();
+		File file=makeArchive(samples);
+		try	{
+			RandomAccessFile out=new RandomAccessFile(file,"rw");
+			try	{
+				out.seek(32);
+				out.writeLong(0);
+			}
+			finally	{
+				out.close();
+			}
+			ArchiveReader reader=new ArchiveReader(file);
+			try	{
+				assertEquals(samples.length,reader.getTotalSamples());
+				reader.seek(RATE*3);
+				checkRead(reader,samples,RATE*3,samples.length);
+			}
+			finally	{
+				reader.close();
+			}
+		}
+		finally	{
+			file.delete();
+		}
+	}
+
+	// A WAV file is still opened as one
+	public void testOpenWav() throws IOException	{
+		File file=File.createTempFile("archive",".wav");
+		try	{
+			WavFileWriter writer=new WavFileWriter(file,RATE);
+			writer.write(new int[100],0,100);
+			writer.close();
+			RecordingSource reader=ArchiveReader.open(file);
+			try	{
+				assertTrue(reader instanceof WavFileReader);
+			}
+			finally	{
+				reader.close();
+			}
+		}
+		finally	{
+			file.delete();
+		}
+	}
+
+	private void checkRead (RecordingSource reader,int samples[],int start,int end) throws IOException	{
+		int buffer[]=new int[500];
+		int pos=start;
+		int count;
+		while ((count=reader.read(buffer,0,buffer.length))>0)	{
+			int a;
+			for (a=0;a<count;a++)	{
+				if (buffer[a]!=samples[pos+a]) fail("Sample "+Integer.toString(pos+a)+" is "+Integer.toString(buffer[a])+" not "+Integer.toString(samples[pos+a]));
+			}
+			pos=pos+count;
+		}
+		assertEquals(end,pos);
+	}
+
+}
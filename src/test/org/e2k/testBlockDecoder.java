@@ -0,0 +1,160 @@
+package test.org.e2k;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import junit.framework.TestCase;
+import org.e2k.BlockDecoder;
+import org.e2k.CCIR493;
+import org.e2k.CROWD36;
+import org.e2k.CircularDataBuffer;
+import org.e2k.FSK2001000;
+import org.e2k.FSK200500;
+import org.e2k.GW;
+import org.e2k.ModeDecoder;
+import org.e2k.Rivet;
+import org.e2k.SampleDecoderAdapter;
+import org.e2k.TextOutput;
+import org.e2k.WaveData;
+import org.e2k.XPA;
+
+public class testBlockDecoder extends TestCase {
+
+	private static final int RATE=DecodeHelper.RATE;
+
+	// Each block decoder is run once through the block loop and once with decode() called for every sample
+	// and must end up with the same output and the same state
+	public void testFSK200500() throws IOException	{
+		compare(6,DecodeHelper.tones(RATE*2,RATE,200,new int[]{1000,1500},200.0,new Random(1)));
+	}
+
+	public void testFSK2001000() throws IOException	{
+		compare(8,DecodeHelper.tones(RATE*2,RATE,200,new int[]{1000,2000},200.0,new Random(2)));
+	}
+
+	public void testCCIR493() throws IOException	{
+		compare(7,DecodeHelper.tones(RATE*2,RATE,100,new int[]{1615,1785},200.0,new Random(3)));
+	}
+
+	public void testGW() throws IOException	{
+		compare(9,DecodeHelper.tones(RATE*2,RATE,100,new int[]{1500,1700},200.0,new Random(4)));
+	}
+
+	// Start tones , a sync high and then groups of random digits between two message starts
+	public void testXPA() throws IOException	{
+		final int DIGITS[]={760,800,840,880,920,960,1000,1040,1080,1120};
+		Random random=new Random(5);
+		int freqs[]=new int[60];
+		int a;
+		for (a=0;a<freqs.length;a++)	{
+			if (a<4) freqs[a]=520;
+			else if (a<8) freqs[a]=1280;
+			else if (a<10) freqs[a]=600;
+			else if (a<14) freqs[a]=1120;
+			else if ((a==14)||(a==39)) freqs[a]=1160;
+			// A space after every five digits
+			else if (((a-15)%6)==5) freqs[a]=680;
+			else freqs[a]=DIGITS[random.nextInt(DIGITS.length)];
+		}
+		compare(1,DecodeHelper.sequence(RATE,10,freqs,200.0,random));
+	}
+
+	// Alternating sync tones and then random characters
+	public void testCROWD36() throws IOException	{
+		final int TONES[]={1410,1450,1490,1530,1570,1610,1650,1690,1730,1770,1810,1850,1890,1930,1970,2010,2050,2090,2130,2170,2210,2250,2290,2330,2370,2410,2450,2490,2530,2570,2610,2650,2690,2730};
+		Random random=new Random(6);
+		int freqs[]=new int[80];
+		int a;
+		for (a=0;a<freqs.length;a++)	{
+			if (a<20) freqs[a]=((a%2)==0)?TONES[24]:TONES[4];
+			else freqs[a]=TONES[random.nextInt(TONES.length)];
+		}
+		compare(0,DecodeHelper.sequence(RATE,40,freqs,200.0,random));
+	}
+
+	// A new decoder for a mode
+	private ModeDecoder create (int system,Rivet app)	{
+		if (system==0) return new CROWD36(app,40);
+		else if (system==1) return new XPA(app,10);
+		else if (system==6) return new FSK200500(app,200);
+		else if (system==8) return new FSK2001000(app,200);
+		else if (system==7) return new CCIR493(app);
+		else return new GW(app);
+	}
+
+	private void compare (int system,int samples[]) throws IOException	{
+		ByteArrayOutputStream blockText=new ByteArrayOutputStream();
+		ByteArrayOutputStream sampleText=new ByteArrayOutputStream();
+		TextOutput blockOutput=DecodeHelper.textOutput(blockText);
+		TextOutput sampleOutput=DecodeHelper.textOutput(sampleText);
+		Rivet blockApp=session(system,blockOutput);
+		Rivet sampleApp=session(system,sampleOutput);
+		final ModeDecoder blockDecoder=create(system,blockApp);
+		final ModeDecoder sampleDecoder=create(system,sampleApp);
+		assertTrue(blockDecoder instanceof BlockDecoder);
+		SampleDecoderAdapter blocks=new SampleDecoderAdapter(blockDecoder);
+		// Hiding that it is a BlockDecoder makes the adapter call decode() for every sample
+		SampleDecoderAdapter perSample=new SampleDecoderAdapter(new ModeDecoder()	{
+			public boolean decode (CircularDataBuffer circBuf,WaveData waveData)	{
+				return sampleDecoder.decode(circBuf,waveData);
+			}
+			public void setState (int state)	{
+				sampleDecoder.setState(state);
+			}
+			public int getState ()	{
+				return sampleDecoder.getState();
+			}
+			public void writeState (DataOutputStream out) throws IOException	{
+				sampleDecoder.writeState(out);
+			}
+			public void readState (DataInputStream in) throws IOException	{
+				sampleDecoder.readState(in);
+			}
+		});
+		CircularDataBuffer blockBuffer=new CircularDataBuffer();
+		CircularDataBuffer sampleBuffer=new CircularDataBuffer();
+		WaveData waveData=DecodeHelper.waveData(RATE);
+		// Blocks of odd sizes so symbol boundaries land anywhere in them
+		Random random=new Random(7);
+		int off=0;
+		while (off<samples.length)	{
+			int len=Math.min(samples.length-off,1+random.nextInt(3000));
+			assertEquals(perSample.decode(sampleBuffer,waveData,samples,off,len),blocks.decode(blockBuffer,waveData,samples,off,len));
+			off=off+len;
+			assertEquals(sampleDecoder.getState(),blockDecoder.getState());
+		}
+		if (sampleDecoder.getState()<2) fail("The "+blockDecoder.getClass().getSimpleName()+" decoder never found a signal");
+		assertTrue(Arrays.equals(state(sampleDecoder),state(blockDecoder)));
+		assertTrue(Arrays.equals(state(sampleBuffer),state(blockBuffer)));
+		blockOutput.flush();
+		sampleOutput.flush();
+		assertEquals(sampleText.toString(),blockText.toString());
+	}
+
+	// The decoders write through a session whose clock is fixed so the time stamps are the same each run
+	private Rivet session (int system,TextOutput output)	{
+		Rivet session=DecodeHelper.session(system,output);
+		session.startSource(DecodeHelper.waveData(RATE));
+		return session;
+	}
+
+	private byte[] state (ModeDecoder decoder) throws IOException	{
+		ByteArrayOutputStream bytes=new ByteArrayOutputStream();
+		DataOutputStream out=new DataOutputStream(bytes);
+		decoder.writeState(out);
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	private byte[] state (CircularDataBuffer buffer) throws IOException	{
+		ByteArrayOutputStream bytes=new ByteArrayOutputStream();
+		DataOutputStream out=new DataOutputStream(bytes);
+		buffer.writeState(out);
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+}
@@ -0,0 +1,136 @@
+package test.org.e2k;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import junit.framework.TestCase;
+import org.e2k.ChannelDecoder;
+import org.e2k.Rivet;
+import org.e2k.TextOutput;
+import org.e2k.WavFileReader;
+
+public class testChannelDecoder extends TestCase {
+
+	private static final int RATE=DecodeHelper.RATE;
+	// FSK200/500 and FSK200/1000 are run on both channels
+	private static final int SYSTEMS[]={6,8};
+
+	// Each channel of a stereo file decodes to the same text it does on its own and every line says which channel it came from
+	// The left channel is FSK200/500 and the right FSK200/1000 so swapped or mixed channels give different text
+	public void testStereo() throws Exception	{
+		int channelSamples[][]={DecodeHelper.fsk(RATE*3,200,500,new Random(1)),DecodeHelper.fsk(RATE*3,200,1000,new Random(2))};
+		File file=makeStereoWav(channelSamples[0],channelSamples[1]);
+		try	{
+			WavFileReader reader=new WavFileReader(file);
+			try	{
+				assertEquals(2,reader.getChannels());
+				Rivet sessions[][]=new Rivet[2][SYSTEMS.length];
+				ByteArrayOutputStream texts[][]=new ByteArrayOutputStream[2][SYSTEMS.length];
+				TextOutput outputs[][]=new TextOutput[2][SYSTEMS.length];
+				int a,c;
+				for (c=0;c<2;c++)	{
+					for (a=0;a<SYSTEMS.length;a++)	{
+						texts[c][a]=new ByteArrayOutputStream();
+						outputs[c][a]=DecodeHelper.textOutput(texts[c][a]);
+						outputs[c][a].setTag(ChannelDecoder.channelName(c,2));
+						sessions[c][a]=DecodeHelper.session(SYSTEMS[a],outputs[c][a]);
+					}
+				}
+				assertEquals(4,new ChannelDecoder(sessions).decodeSource(reader));
+				for (c=0;c<2;c++)	{
+					for (a=0;a<SYSTEMS.length;a++)	{
+						outputs[c][a].flush();
+						String alone=DecodeHelper.decodeAlone(SYSTEMS[a],channelSamples[c],reader.getWaveData());
+						assertEquals(ChannelDecoder.channelName(c,2)+" "+Rivet.MODENAMES[SYSTEMS[a]],alone,untag(texts[c][a].toString(),ChannelDecoder.channelName(c,2)));
+					}
+				}
+				// Make sure each channel was decoded by the mode which matches it
+				if (texts[0][0].size()==0) fail("Nothing was decoded on the left");
+				if (texts[1][1].size()==0) fail("Nothing was decoded on the right");
+			}
+			finally	{
+				reader.close();
+			}
+		}
+		finally	{
+			file.delete();
+		}
+	}
+
+	// A file without the channels the sessions were set up for is turned away
+	public void testWrongChannels() throws Exception	{
+		int samples[]=DecodeHelper.fsk(RATE,200,500,new Random(3));
+		File file=makeStereoWav(samples,samples);
+		try	{
+			WavFileReader reader=new WavFileReader(file);
+			try	{
+				Rivet sessions[][]={{DecodeHelper.session(6,DecodeHelper.textOutput(new ByteArrayOutputStream()))}};
+				new ChannelDecoder(sessions).decodeSource(reader);
+				fail("A stereo file was decoded as one channel");
+			}
+			catch (IOException e)	{}
+			finally	{
+				reader.close();
+			}
+		}
+		finally	{
+			file.delete();
+		}
+	}
+
+	public void testChannelName()	{
+		assertEquals("Left",ChannelDecoder.channelName(0,2));
+		assertEquals("Right",ChannelDecoder.channelName(1,2));
+		assertEquals("Channel 3",ChannelDecoder.channelName(2,4));
+	}
+
+	// Check every line starts with the tag and return the text without it
+	private String untag (String text,String tag)	{
+		String prefix="["+tag+"] ";
+		StringBuilder sb=new StringBuilder();
+		for (String line : text.split("(?<=\n)"))	{
+			if (line.length()==0) continue;
+			if (line.startsWith(prefix)==false) fail("The line "+line.trim()+" isn't labelled "+tag);
+			sb.append(line.substring(prefix.length()));
+		}
+		return sb.toString();
+	}
+
+	// A 16 bit stereo WAV file with the left and right channels given
+	private File makeStereoWav (int left[],int right[]) throws IOException	{
+		int dataSize=left.length*4;
+		ByteBuffer buffer=ByteBuffer.allocate(44+dataSize).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.put("RIFF".getBytes("US-ASCII"));
+		buffer.putInt(buffer.capacity()-8);
+		buffer.put("WAVE".getBytes("US-ASCII"));
+		buffer.put("fmt ".getBytes("US-ASCII"));
+		buffer.putInt(16);
+		buffer.putShort((short)1);
+		buffer.putShort((short)2);
+		buffer.putInt(RATE);
+		buffer.putInt(RATE*4);
+		buffer.putShort((short)4);
+		buffer.putShort((short)16);
+		buffer.put("data".getBytes("US-ASCII"));
+		buffer.putInt(dataSize);
+		int a;
+		for (a=0;a<left.length;a++)	{
+			buffer.putShort((short)left[a]);
+			buffer.putShort((short)right[a]);
+		}
+		File file=File.createTempFile("channels",".wav");
+		FileOutputStream out=new FileOutputStream(file);
+		try	{
+			out.write(buffer.array());
+		}
+		finally	{
+			out.close();
+		}
+		return file;
+	}
+
+}
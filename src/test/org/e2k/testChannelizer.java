@@ -0,0 +1,113 @@
+package test.org.e2k;
+
+import java.util.Random;
+import junit.framework.TestCase;
+import org.e2k.Channelizer;
+
+public class testChannelizer extends TestCase {
+
+	private static final int AMPLITUDE=10000;
+	private static final int RATE=48000;
+
+	// Two tones in a wideband input must each come out of their own channel at the audio offset
+	// with nothing from the other one
+	public void testSeparation()	{
+		int in[]=new int[RATE*2];
+		int a;
+		for (a=0;a<in.length;a++)	{
+			in[a]=(int)Math.round(AMPLITUDE*(Math.sin(2.0*Math.PI*5300.0*a/RATE)+Math.sin(2.0*Math.PI*12000.0*a/RATE)));
+		}
+		Channelizer channelizer=new Channelizer(RATE);
+		channelizer.addChannel(5000.0,3000.0,2000.0);
+		channelizer.addChannel(12000.0,3000.0,2000.0);
+		channelizer.addChannel(20000.0,3000.0,2000.0);
+		assertEquals(8000,channelizer.getOutputRate());
+		int out[][]=channelize(channelizer,in,4096);
+		checkTone(out[0],2300.0,"5000 Hz");
+		checkTone(out[1],2000.0,"12000 Hz");
+		// Nothing at all in this one
+		double rms=rms(out[2],out[2].length/4,out[2].length);
+		if (rms>AMPLITUDE*0.001) fail("Empty channel has an RMS level of "+Double.toString(rms));
+	}
+
+	// The output mustn't depend on how the input is split up into blocks
+	public void testBlockSizes()	{
+		int in[]=new int[44100];
+		int a;
+		for (a=0;a<in.length;a++)	{
+			in[a]=(int)Math.round(AMPLITUDE*Math.sin(2.0*Math.PI*7000.0*a/44100));
+		}
+		Channelizer whole=new Channelizer(44100);
+		whole.addChannel(7000.0,2400.0,1500.0);
+		int expected[]=channelize(whole,in,in.length)[0];
+		Channelizer parts=new Channelizer(44100);
+		parts.addChannel(7000.0,2400.0,1500.0);
+		Random random=new Random(1);
+		int pos=0,count=0;
+		while (pos<in.length)	{
+			int len=Math.min(1+random.nextInt(999),in.length-pos);
+			parts.process(in,pos,len);
+			int out[]=parts.getOutput(0);
+			int b;
+			for (b=0;b<parts.getOutputCount(0);b++)	{
+				if (out[b]!=expected[count+b]) fail("Sample "+Integer.toString(count+b)+" differs when split into blocks !");
+			}
+			count=count+parts.getOutputCount(0);
+			pos=pos+len;
+		}
+		if (count!=expected.length) fail("Different number of samples out when split into blocks !");
+	}
+
+	private int[][] channelize (Channelizer channelizer,int in[],int blockSize)	{
+		int channels=channelizer.getChannelCount();
+		int out[][]=new int[channels][(in.length/(RATE/channelizer.getOutputRate()))+blockSize];
+		int counts[]=new int[channels];
+		int pos,c;
+		for (pos=0;pos<in.length;pos=pos+blockSize)	{
+			channelizer.process(in,pos,Math.min(blockSize,in.length-pos));
+			for (c=0;c<channels;c++)	{
+				System.arraycopy(channelizer.getOutput(c),0,out[c],counts[c],channelizer.getOutputCount(c));
+				counts[c]=counts[c]+channelizer.getOutputCount(c);
+			}
+		}
+		int result[][]=new int[channels][];
+		for (c=0;c<channels;c++)	{
+			result[c]=new int[counts[c]];
+			System.arraycopy(out[c],0,result[c],0,counts[c]);
+		}
+		return result;
+	}
+
+	// Fit a tone to the second half of the output and check the level and what is left over
+	private void checkTone (int out[],double freq,String name)	{
+		int start=out.length/2;
+		int n=out.length-start;
+		double c=0.0,s=0.0;
+		int a;
+		for (a=start;a<out.length;a++)	{
+			c=c+out[a]*Math.cos(2.0*Math.PI*freq*a/8000);
+			s=s+out[a]*Math.sin(2.0*Math.PI*freq*a/8000);
+		}
+		c=c*2.0/n;
+		s=s*2.0/n;
+		double level=Math.sqrt((c*c)+(s*s));
+		if (Math.abs(level-AMPLITUDE)>AMPLITUDE*0.01) fail(name+" channel tone level is "+Double.toString(level));
+		double residual=0.0;
+		for (a=start;a<out.length;a++)	{
+			double e=out[a]-((c*Math.cos(2.0*Math.PI*freq*a/8000))+(s*Math.sin(2.0*Math.PI*freq*a/8000)));
+			residual=residual+(e*e);
+		}
+		residual=Math.sqrt(residual/n);
+		if (residual>AMPLITUDE*0.003) fail(name+" channel tone distorted with an RMS error of "+Double.toString(residual));
+	}
+
+	private double rms (int samples[],int start,int end)	{
+		double sum=0.0;
+		int a;
+		for (a=start;a<end;a++)	{
+			sum=sum+((double)samples[a]*samples[a]);
+		}
+		return Math.sqrt(sum/(end-start));
+	}
+
+}
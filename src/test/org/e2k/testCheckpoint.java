@@ -0,0 +1,157 @@
+package test.org.e2k;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import junit.framework.TestCase;
+import org.e2k.Checkpoint;
+import org.e2k.Rivet;
+import org.e2k.TextOutput;
+import org.e2k.WavFileReader;
+import org.e2k.WavFileWriter;
+
+public class testCheckpoint extends TestCase {
+
+	private static final int RATE=DecodeHelper.RATE;
+
+	// A session restored part way through decodes the rest exactly as the one it was saved from
+	// Every mode which has a decoder is tried as each one saves its own state
+	public void testResume() throws IOException	{
+		final int SYSTEMS[]={0,1,2,3,5,6,7,8,9,10,11,12};
+		for (int system : SYSTEMS)	{
+			int samples[]=DecodeHelper.fsk(RATE*4,50,450,new Random(3));
+			ByteArrayOutputStream firstText=new ByteArrayOutputStream();
+			ByteArrayOutputStream secondText=new ByteArrayOutputStream();
+			TextOutput firstOutput=DecodeHelper.textOutput(firstText);
+			TextOutput secondOutput=DecodeHelper.textOutput(secondText);
+			Rivet first=session(system,firstOutput);
+			Rivet second=session(system,secondOutput);
+			DecodeHelper.decodeBlocks(first,samples,0,RATE*2);
+			// The second session has only been started so everything it knows comes from the checkpoint
+			second.readState(new DataInputStream(new ByteArrayInputStream(state(first))));
+			// Any part line is in the checkpoint so only whole lines have been written
+			int restored=firstText.size();
+			DecodeHelper.decodeBlocks(first,samples,RATE*2,RATE*2);
+			DecodeHelper.decodeBlocks(second,samples,RATE*2,RATE*2);
+			first.endSource();
+			second.endSource();
+			firstOutput.flush();
+			secondOutput.flush();
+			String after=new String(firstText.toByteArray(),restored,firstText.size()-restored);
+			assertEquals(Rivet.MODENAMES[system],after,secondText.toString());
+			assertTrue(Arrays.equals(state(first),state(second)));
+		}
+	}
+
+	// A run which is stopped and picked up again from its checkpoint file writes the same output file as one which wasn't
+	// The output written after the last checkpoint is cut off and written again once the input has been moved back
+	public void testSaveLoadRestore() throws IOException	{
+		final int SYSTEM=11;
+		File wav=File.createTempFile("checkpoint",".wav");
+		File checkpointFile=new File(wav.getPath()+".checkpoint");
+		File whole=File.createTempFile("whole",".txt");
+		File resumed=File.createTempFile("resumed",".txt");
+		try	{
+			int samples[]=DecodeHelper.fsk(RATE*6,50,450,new Random(4));
+			WavFileWriter writer=new WavFileWriter(wav,RATE);
+			writer.write(samples,0,samples.length);
+			writer.close();
+			// Without stopping
+			WavFileReader reader=new WavFileReader(wav);
+			FileOutputStream outputStream=new FileOutputStream(whole);
+			PrintStream stream=new PrintStream(outputStream,false,"UTF-8");
+			TextOutput output=new TextOutput(stream,false);
+			assertTrue(DecodeHelper.session(SYSTEM,output).decodeSource(reader,0,null));
+			output.flush();
+			stream.close();
+			reader.close();
+			// Stopped part way through with a checkpoint saved every second of audio
+			reader=new WavFileReader(wav);
+			outputStream=new FileOutputStream(resumed);
+			stream=new PrintStream(outputStream,false,"UTF-8");
+			output=new TextOutput(stream,false);
+			Checkpoint checkpoint=new Checkpoint(checkpointFile,reader,1.0);
+			checkpoint.setOutput(stream,outputStream);
+			Rivet session=DecodeHelper.session(SYSTEM,output);
+			session.startSource(reader.getWaveData(),0);
+			// Read in the same size blocks as decodeSource() so the time stamps match
+			int block[]=new int[DecodeHelper.BLOCK];
+			while (reader.getSamplesRead()<(RATE*3)+(RATE/2))	{
+				int count=reader.read(block,0,block.length);
+				session.decodeBlock(block,0,count);
+				checkpoint.update(session);
+			}
+			// Some output goes out after the last checkpoint
+			output.flush();
+			stream.close();
+			reader.close();
+			// Pick up from the checkpoint the way the batch decoder does
+			reader=new WavFileReader(wav);
+			checkpoint=new Checkpoint(checkpointFile,reader,1.0);
+			assertTrue(checkpoint.load());
+			assertTrue(checkpoint.getPosition()>0);
+			if (checkpoint.getOutputLength()>=resumed.length()) fail("Nothing was written after the last checkpoint");
+			RandomAccessFile cut=new RandomAccessFile(resumed,"rw");
+			try	{
+				cut.setLength(Math.min(cut.length(),checkpoint.getOutputLength()));
+			}
+			finally	{
+				cut.close();
+			}
+			outputStream=new FileOutputStream(resumed,true);
+			stream=new PrintStream(outputStream,false,"UTF-8");
+			checkpoint.setOutput(stream,outputStream);
+			output=new TextOutput(stream,false);
+			assertTrue(DecodeHelper.session(SYSTEM,output).decodeSource(reader,0,checkpoint));
+			output.flush();
+			stream.close();
+			reader.close();
+			// It isn't needed once the whole file has been decoded
+			assertFalse(checkpointFile.exists());
+			String expected=new String(Files.readAllBytes(whole.toPath()),"UTF-8");
+			if (expected.length()==0) fail("Nothing was decoded");
+			assertEquals(expected,new String(Files.readAllBytes(resumed.toPath()),"UTF-8"));
+		}
+		finally	{
+			wav.delete();
+			checkpointFile.delete();
+			whole.delete();
+			resumed.delete();
+		}
+	}
+
+	// A checkpoint from a different mode isn't used
+	public void testWrongMode() throws IOException	{
+		Rivet first=session(6,DecodeHelper.textOutput(new ByteArrayOutputStream()));
+		Rivet second=session(8,DecodeHelper.textOutput(new ByteArrayOutputStream()));
+		try	{
+			second.readState(new DataInputStream(new ByteArrayInputStream(state(first))));
+			fail("A FSK200/500 checkpoint was restored into FSK200/1000");
+		}
+		catch (IOException e)	{}
+	}
+
+	private Rivet session (int system,TextOutput output)	{
+		Rivet session=DecodeHelper.session(system,output);
+		session.startSource(DecodeHelper.waveData(RATE));
+		return session;
+	}
+
+	private byte[] state (Rivet session) throws IOException	{
+		ByteArrayOutputStream bytes=new ByteArrayOutputStream();
+		DataOutputStream out=new DataOutputStream(bytes);
+		session.writeState(out);
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+}
@@ -0,0 +1,103 @@
+package test.org.e2k;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+import org.e2k.DecodeService;
+
+public class testDecodeService extends TestCase {
+
+	// Each task only finishes once every task has started so they must all be running at once
+	private List<Future<Boolean>> submitTogether (DecodeService service,int count)	{
+		final CountDownLatch latch=new CountDownLatch(count);
+		List<Future<Boolean>> results=new ArrayList<Future<Boolean>>();
+		int a;
+		for (a=0;a<count;a++)	{
+			results.add(service.submit(new Callable<Boolean>(){public Boolean call() throws InterruptedException{
+				latch.countDown();
+				return latch.await(10,TimeUnit.SECONDS);
+			}}));
+		}
+		return results;
+	}
+
+	// Every stream gets a thread of its own when there are enough
+	public void testStreamsAtOnce() throws Exception	{
+		DecodeService service=new DecodeService(100,false);
+		try	{
+			assertFalse(service.isVirtual());
+			assertEquals(100,service.getThreadLimit());
+			for (Future<Boolean> result : submitTogether(service,100))	{
+				assertTrue(result.get());
+			}
+			assertEquals(100,service.getStartedCount());
+			assertEquals(0,service.getRunningCount());
+		}
+		finally	{
+			service.shutdownNow();
+		}
+	}
+
+	// Without virtual threads no more than the limit run at once
+	public void testBounded() throws Exception	{
+		DecodeService service=new DecodeService(3,false);
+		final AtomicInteger running=new AtomicInteger();
+		final AtomicInteger most=new AtomicInteger();
+		try	{
+			List<Future<Integer>> results=new ArrayList<Future<Integer>>();
+			int a;
+			for (a=0;a<12;a++)	{
+				results.add(service.submit(new Callable<Integer>(){public Integer call() throws InterruptedException{
+					int now=running.incrementAndGet();
+					while (true)	{
+						int old=most.get();
+						if ((now<=old)||(most.compareAndSet(old,now)==true)) break;
+					}
+					Thread.sleep(20);
+					running.decrementAndGet();
+					return now;
+				}}));
+			}
+			for (Future<Integer> result : results)	{
+				result.get();
+			}
+			if (most.get()>3) fail(Integer.toString(most.get())+" tasks ran at once");
+		}
+		finally	{
+			service.shutdownNow();
+		}
+	}
+
+	// Virtual threads are used when the JVM has them and hundreds of tasks can then block at once
+	public void testVirtualWhenAvailable() throws Exception	{
+		boolean available=true;
+		try	{
+			Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		}
+		catch (NoSuchMethodException e)	{
+			available=false;
+		}
+		DecodeService service=new DecodeService(1,true);
+		try	{
+			if (available==false)	{
+				assertFalse(service.isVirtual());
+				assertEquals(1,service.getThreadLimit());
+				return;
+			}
+			assertTrue(service.isVirtual());
+			for (Future<Boolean> result : submitTogether(service,500))	{
+				assertTrue(result.get());
+			}
+		}
+		finally	{
+			service.shutdownNow();
+		}
+	}
+
+}
@@ -0,0 +1,54 @@
+package test.org.e2k;
+
+import java.util.Random;
+import junit.framework.TestCase;
+import org.e2k.IdleDetector;
+
+public class testIdleDetector extends TestCase {
+
+	private static final int RATE=8000;
+
+	// Band noise goes idle once the hang time is over
+	public void testNoise()	{
+		IdleDetector detector=new IdleDetector(RATE,1.0);
+		int samples[]=noise(RATE*5,300.0,new Random(1));
+		int active=run(detector,samples,RATE*2,samples.length);
+		if (active>0) fail(Integer.toString(active)+" blocks of noise were taken as active");
+	}
+
+	// A tone in the noise is active even though it hardly changes the level
+	public void testTone()	{
+		IdleDetector detector=new IdleDetector(RATE,1.0);
+		int samples[]=noise(RATE*8,300.0,new Random(2));
+		int a;
+		for (a=RATE*4;a<RATE*8;a++)	{
+			samples[a]+=(int)Math.round(300.0*Math.sin(2.0*Math.PI*1700.0*a/RATE));
+		}
+		int block=detector.getBlockSize();
+		if (run(detector,samples,0,RATE*4)==(RATE*4)/block) fail("Noise never went idle");
+		int active=run(detector,samples,RATE*4+(RATE/2),RATE*8);
+		int blocks=(RATE*8-(RATE*4+(RATE/2)))/block;
+		if (active<blocks) fail("Only "+Integer.toString(active)+" of "+Integer.toString(blocks)+" blocks with a tone were active");
+	}
+
+	// Returns the number of active blocks between start and end (all the blocks before start are still looked at)
+	private int run (IdleDetector detector,int samples[],int start,int end)	{
+		int block=detector.getBlockSize();
+		int pos,active=0;
+		for (pos=0;pos+block<=end;pos=pos+block)	{
+			boolean a=detector.isActive(samples,pos);
+			if ((pos>=start)&&(a==true)) active++;
+		}
+		return active;
+	}
+
+	private int[] noise (int length,double level,Random random)	{
+		int samples[]=new int[length];
+		int a;
+		for (a=0;a<length;a++)	{
+			samples[a]=(int)Math.round(random.nextGaussian()*level);
+		}
+		return samples;
+	}
+
+}
@@ -0,0 +1,56 @@
+package test.org.e2k;
+
+import junit.framework.TestCase;
+import org.e2k.LevelMeter;
+
+public class testLevelMeter extends TestCase {
+
+	// A steady tone must settle at its RMS level whatever size the blocks are
+	public void testRMS()	{
+		final int BLOCKS[]={1,37,512,4096};
+		for (int blockSize : BLOCKS)	{
+			LevelMeter meter=new LevelMeter(8000.0,10);
+			int samples[]=tone(10000,8000*3);
+			int pos;
+			for (pos=0;pos<samples.length;pos=pos+blockSize)	{
+				meter.process(samples,pos,Math.min(blockSize,samples.length-pos));
+			}
+			double rms=meter.getLevel().getRMS();
+			if (Math.abs(rms-(10000/Math.sqrt(2.0)))>100.0) fail("RMS level is "+Double.toString(rms)+" with blocks of "+Integer.toString(blockSize));
+			if (Math.abs(meter.getLevel().getPeak()-10000)>1) fail("Peak level is "+Integer.toString(meter.getLevel().getPeak()));
+		}
+	}
+
+	// Snapshots come out at the set rate and count the clipped samples
+	public void testSnapshots()	{
+		LevelMeter meter=new LevelMeter(8000.0,10);
+		int samples[]=tone(40000,8000);
+		int a,snapshots=0;
+		for (a=0;a<samples.length;a++)	{
+			if (samples[a]>32767) samples[a]=32767;
+			else if (samples[a]<-32768) samples[a]=-32768;
+		}
+		int clipped=0;
+		for (a=0;a<samples.length;a++)	{
+			if (Math.abs(samples[a])>=LevelMeter.CLIP_LEVEL) clipped++;
+		}
+		for (a=0;a<samples.length;a=a+100)	{
+			if (meter.process(samples,a,100)==true) snapshots++;
+		}
+		assertEquals(10,snapshots);
+		assertEquals(clipped,meter.getLevel().getClipCount());
+		assertTrue(meter.getLevel().isAbove(-10.0));
+		meter.reset();
+		assertFalse(meter.getLevel().isAbove(-100.0));
+	}
+
+	private int[] tone (int amplitude,int length)	{
+		int samples[]=new int[length];
+		int a;
+		for (a=0;a<length;a++)	{
+			samples[a]=(int)Math.round(amplitude*Math.sin(2.0*Math.PI*1000.0*a/8000.0));
+		}
+		return samples;
+	}
+
+}
@@ -0,0 +1,136 @@
+package test.org.e2k;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+import org.e2k.MultiModeDecoder;
+import org.e2k.Rivet;
+import org.e2k.TextOutput;
+import org.e2k.WaveData;
+
+public class testMultiModeDecoder extends TestCase {
+
+	private static final int RATE=DecodeHelper.RATE;
+	// The modes read in blocks of the helper's size so feeding whole blocks gives them the same blocks every run
+	// and the same time stamps as a session fed the same blocks
+	private static final int BLOCK=DecodeHelper.BLOCK;
+	// More than the ring each mode has for live input
+	private static final int FLOOD=3<<17;
+
+	// Every mode decoding the shared input gives the same text as decoding it on its own
+	public void testMatchesSingleMode() throws Exception	{
+		checkMatches(false);
+	}
+
+	// The same with live input as long as no mode falls behind
+	public void testLiveMatchesSingleMode() throws Exception	{
+		checkMatches(true);
+	}
+
+	// A mode which can't decode the input gives up and doesn't hold the input back
+	public void testRejected() throws Exception	{
+		Rivet sessions[]={session(6,new ByteArrayOutputStream()),session(8,new ByteArrayOutputStream())};
+		MultiModeDecoder decoder=new MultiModeDecoder(sessions);
+		// Neither mode takes stereo input
+		WaveData waveData=DecodeHelper.waveData(RATE);
+		waveData.setChannels(2);
+		decoder.start(waveData);
+		int samples[]=new int[FLOOD];
+		decoder.feed(samples,0,samples.length);
+		assertEquals(0,decoder.finish());
+		assertFalse(decoder.isRunning());
+	}
+
+	// Only the modes which took the input are counted as having decoded it
+	public void testSomeRejected() throws Exception	{
+		Rivet sessions[]={session(6,new ByteArrayOutputStream()),session(4,new ByteArrayOutputStream())};
+		MultiModeDecoder decoder=new MultiModeDecoder(sessions);
+		// The experimental mode has no decoder so it turns everything away
+		decoder.start(DecodeHelper.waveData(RATE));
+		int samples[]=DecodeHelper.fsk(RATE,200,500,new Random(3));
+		decoder.feed(samples,0,samples.length);
+		assertEquals(1,decoder.finish());
+	}
+
+	// With live input a mode which is held up drops samples rather than stopping the input
+	public void testLiveDrops() throws Exception	{
+		final CountDownLatch writing=new CountDownLatch(1);
+		final CountDownLatch release=new CountDownLatch(1);
+		// The first text the mode writes holds it up until it is released
+		OutputStream stalled=new OutputStream()	{
+			public void write (int b) throws IOException	{
+				writing.countDown();
+				try	{
+					release.await();
+				}
+				catch (InterruptedException e)	{
+					throw new IOException(e);
+				}
+			}
+		};
+		Rivet sessions[]={session(6,stalled)};
+		MultiModeDecoder decoder=new MultiModeDecoder(sessions);
+		decoder.setLiveInput(true);
+		decoder.start(DecodeHelper.waveData(RATE));
+		int samples[]=DecodeHelper.fsk(RATE*20,200,500,new Random(1));
+		int off=0;
+		while ((off<samples.length)&&(writing.getCount()>0))	{
+			int len=Math.min(BLOCK,samples.length-off);
+			decoder.feed(samples,off,len);
+			off=off+len;
+			Thread.sleep(1);
+		}
+		try	{
+			if (writing.await(60,TimeUnit.SECONDS)==false) fail("The mode never wrote anything");
+			assertEquals(0,decoder.getDroppedSamples(0));
+			int flood[]=new int[FLOOD];
+			decoder.feed(flood,0,flood.length);
+		}
+		finally	{
+			release.countDown();
+		}
+		assertEquals(1,decoder.finish());
+		if (decoder.getDroppedSamples(0)<=0) fail("The held up mode didn't drop any samples");
+		if (decoder.getDroppedSamples(0)>FLOOD) fail("More samples were dropped than were fed");
+	}
+
+	private void checkMatches (boolean live) throws Exception	{
+		int systems[]={6,8,7};
+		int samples[]=DecodeHelper.fsk(RATE*2,200,500,new Random(5));
+		ByteArrayOutputStream texts[]=new ByteArrayOutputStream[systems.length];
+		TextOutput outputs[]=new TextOutput[systems.length];
+		Rivet sessions[]=new Rivet[systems.length];
+		int a;
+		for (a=0;a<systems.length;a++)	{
+			texts[a]=new ByteArrayOutputStream();
+			outputs[a]=DecodeHelper.textOutput(texts[a]);
+			sessions[a]=DecodeHelper.session(systems[a],outputs[a]);
+		}
+		MultiModeDecoder decoder=new MultiModeDecoder(sessions);
+		decoder.setLiveInput(live);
+		decoder.start(DecodeHelper.waveData(RATE));
+		int off=0;
+		while (off<samples.length)	{
+			int len=Math.min(BLOCK,samples.length-off);
+			decoder.feed(samples,off,len);
+			off=off+len;
+		}
+		assertEquals(systems.length,decoder.finish());
+		for (a=0;a<systems.length;a++)	{
+			outputs[a].flush();
+			assertEquals(0,decoder.getDroppedSamples(a));
+			assertEquals(DecodeHelper.decodeAlone(systems[a],samples,DecodeHelper.waveData(RATE)),texts[a].toString());
+		}
+		if (texts[0].size()==0) fail("Nothing was decoded");
+	}
+
+	// A session whose text goes straight to a stream
+	private Rivet session (int system,OutputStream text)	{
+		return DecodeHelper.session(system,DecodeHelper.textOutput(text));
+	}
+
+}
@@ -0,0 +1,200 @@
+package test.org.e2k;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+import org.e2k.NetworkPCMSource;
+import org.e2k.PCMConverter;
+import org.e2k.RawPCMSource;
+
+public class testNetworkPCMSource extends TestCase {
+
+	private static final int RATE=8000;
+	private static final int FRAMES=100;
+
+	// A stream sent in pieces which split frames comes out whole
+	public void testTCP() throws Exception	{
+		final int port=freePort();
+		int samples[]=makeSamples(RATE);
+		final byte data[]=s16le(samples,0,samples.length);
+		NetworkPCMSource source=new NetworkPCMSource(NetworkPCMSource.TCP,port,RATE,RawPCMSource.parseFormat("s16le",1),false);
+		source.open();
+		ExecutorService sender=Executors.newSingleThreadExecutor();
+		try	{
+			Future<Void> sent=sender.submit(new Callable<Void>(){public Void call() throws IOException{
+				send(port,data,0,data.length);
+				return null;
+			}});
+			checkRead(source,samples);
+			sent.get(10,TimeUnit.SECONDS);
+			assertEquals(1,source.getConnections());
+			assertEquals(data.length,source.getBytesReceived());
+			assertEquals(samples.length,source.getSamplesRead());
+		}
+		finally	{
+			sender.shutdownNow();
+			source.close();
+		}
+		assertEquals(-1,source.read(new int[10],0,10));
+	}
+
+	// A sender which goes away part way through a frame doesn't throw the next sender's frames out of line
+	public void testReconnect() throws Exception	{
+		final int port=freePort();
+		int samples[]=makeSamples(RATE);
+		final int half=samples.length/2;
+		final byte first[]=s16le(samples,0,half);
+		final byte second[]=s16le(samples,half,samples.length-half);
+		NetworkPCMSource source=new NetworkPCMSource(NetworkPCMSource.TCP,port,RATE,RawPCMSource.parseFormat("s16le",1),false);
+		source.open();
+		ExecutorService sender=Executors.newSingleThreadExecutor();
+		try	{
+			Future<Void> sent=sender.submit(new Callable<Void>(){public Void call() throws IOException{
+				// The first sender ends with one byte of a frame it never finishes
+				byte cut[]=new byte[first.length+1];
+				System.arraycopy(first,0,cut,0,first.length);
+				cut[first.length]=0x55;
+				send(port,cut,0,cut.length);
+				send(port,second,0,second.length);
+				return null;
+			}});
+			checkRead(source,samples);
+			sent.get(10,TimeUnit.SECONDS);
+			assertEquals(2,source.getConnections());
+			assertEquals(first.length+1+second.length,source.getBytesReceived());
+			assertEquals(samples.length,source.getSamplesRead());
+		}
+		finally	{
+			sender.shutdownNow();
+			source.close();
+		}
+	}
+
+	// Lost UDP packets are replaced with silence and late ones are dropped
+	public void testUDP() throws Exception	{
+		int port=freePort();
+		int samples[]=makeSamples(FRAMES*7);
+		NetworkPCMSource source=new NetworkPCMSource(NetworkPCMSource.UDP,port,RATE,RawPCMSource.parseFormat("s16le",1),true);
+		source.open();
+		DatagramSocket socket=new DatagramSocket();
+		try	{
+			// Packet 3 never arrives and packet 2 turns up again after packet 5
+			int sequence[]={0,1,2,4,5,2,6};
+			int a;
+			for (a=0;a<sequence.length;a++)	{
+				byte payload[]=s16le(samples,sequence[a]*FRAMES,FRAMES);
+				byte packet[]=new byte[payload.length+4];
+				packet[0]=(byte)(sequence[a]>>24);
+				packet[1]=(byte)(sequence[a]>>16);
+				packet[2]=(byte)(sequence[a]>>8);
+				packet[3]=(byte)sequence[a];
+				System.arraycopy(payload,0,packet,4,payload.length);
+				socket.send(new DatagramPacket(packet,packet.length,InetAddress.getLoopbackAddress(),port));
+			}
+			// Everything comes out in order with packet 3 as silence
+			// Packet 6 is read after the late packet so that has been counted by the time everything is read
+			int expected[]=samples.clone();
+			for (a=FRAMES*3;a<FRAMES*4;a++)	{
+				expected[a]=0;
+			}
+			checkRead(source,expected);
+			assertEquals(sequence.length,source.getPacketsReceived());
+			assertEquals(1,source.getPacketsLost());
+			assertEquals(1,source.getPacketsLate());
+		}
+		finally	{
+			socket.close();
+			source.close();
+		}
+	}
+
+	// Closing the source lets a read which is waiting for a packet return
+	public void testCloseWhileWaiting() throws Exception	{
+		final NetworkPCMSource source=new NetworkPCMSource(NetworkPCMSource.UDP,freePort(),RATE,new PCMConverter(PCMConverter.SIGNED_16,false,1),false);
+		source.open();
+		ExecutorService reader=Executors.newSingleThreadExecutor();
+		try	{
+			Future<Integer> result=reader.submit(new Callable<Integer>(){public Integer call() throws IOException{
+				return source.read(new int[10],0,10);
+			}});
+			Thread.sleep(200);
+			source.close();
+			assertEquals(-1,(long)result.get(10,TimeUnit.SECONDS));
+		}
+		finally	{
+			reader.shutdownNow();
+		}
+	}
+
+	private static void send (int port,byte data[],int off,int len) throws IOException	{
+		Socket socket=new Socket(InetAddress.getLoopbackAddress(),port);
+		try	{
+			OutputStream out=socket.getOutputStream();
+			// Odd sized writes so frames are split between reads
+			while (len>0)	{
+				int count=Math.min(len,333);
+				out.write(data,off,count);
+				out.flush();
+				off=off+count;
+				len=len-count;
+			}
+		}
+		finally	{
+			socket.close();
+		}
+	}
+
+	private static int freePort() throws IOException	{
+		ServerSocket socket=new ServerSocket(0);
+		try	{
+			return socket.getLocalPort();
+		}
+		finally	{
+			socket.close();
+		}
+	}
+
+	private static byte[] s16le (int samples[],int off,int len)	{
+		byte data[]=new byte[len*2];
+		int a;
+		for (a=0;a<len;a++)	{
+			data[a*2]=(byte)samples[off+a];
+			data[(a*2)+1]=(byte)(samples[off+a]>>8);
+		}
+		return data;
+	}
+
+	private void checkRead (NetworkPCMSource source,int samples[]) throws IOException	{
+		int buffer[]=new int[700];
+		int pos=0;
+		while (pos<samples.length)	{
+			int count=source.read(buffer,0,Math.min(buffer.length,samples.length-pos));
+			if (count<0) fail("The source ended after "+Integer.toString(pos)+" samples");
+			int a;
+			for (a=0;a<count;a++)	{
+				if (buffer[a]!=samples[pos+a]) fail("Sample "+Integer.toString(pos+a)+" is "+Integer.toString(buffer[a])+" not "+Integer.toString(samples[pos+a]));
+			}
+			pos=pos+count;
+		}
+	}
+
+	private int[] makeSamples (int length)	{
+		int samples[]=new int[length];
+		int a;
+		for (a=0;a<length;a++)	{
+			samples[a]=(int)Math.round(12000.0*Math.sin((2.0*Math.PI*1000.0*a)/RATE))+((a%7)-3);
+		}
+		return samples;
+	}
+
+}
@@ -0,0 +1,131 @@
+package test.org.e2k;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+import org.e2k.DecodeService;
+import org.e2k.NetworkPCMSource;
+import org.e2k.RawPCMSource;
+import org.e2k.Rivet;
+import org.e2k.TextOutput;
+
+public class testNetworkStreams extends TestCase {
+
+	private static final int RATE=DecodeHelper.RATE;
+	private static final int STREAMS=8;
+	private static final int BLOCK=DecodeHelper.BLOCK;
+	// Every stream is FSK200/500
+	private static final int SYSTEM=6;
+
+	// Every stream is decoded by a task of its own and they all run at once
+	// Each stream stops half way until every task has read its first half so a service which
+	// couldn't run them all at once would never finish
+	public void testStreamsAtOnce() throws Exception	{
+		final CountDownLatch halfRead=new CountDownLatch(STREAMS);
+		final List<int[]> inputs=new ArrayList<int[]>();
+		List<String> alone=new ArrayList<String>();
+		List<NetworkPCMSource> sources=new ArrayList<NetworkPCMSource>();
+		List<Socket> senders=new ArrayList<Socket>();
+		DecodeService service=new DecodeService(STREAMS,true);
+		int a;
+		try	{
+			List<Future<String>> results=new ArrayList<Future<String>>();
+			for (a=0;a<STREAMS;a++)	{
+				inputs.add(DecodeHelper.fsk(RATE*2,200,500,new Random(a+1)));
+				int port=freePort();
+				final NetworkPCMSource source=new NetworkPCMSource(NetworkPCMSource.TCP,port,RATE,RawPCMSource.parseFormat("s16le",1),false);
+				source.open();
+				sources.add(source);
+				alone.add(DecodeHelper.decodeAlone(SYSTEM,inputs.get(a),source.getWaveData()));
+				final int length=inputs.get(a).length;
+				results.add(service.submit(new Callable<String>(){public String call() throws IOException{return decodeStream(source,length,halfRead);}}));
+				senders.add(new Socket(InetAddress.getLoopbackAddress(),port));
+			}
+			for (a=0;a<STREAMS;a++)	{
+				send(senders.get(a),inputs.get(a),0,inputs.get(a).length/2);
+			}
+			if (halfRead.await(120,TimeUnit.SECONDS)==false) fail("The streams weren't all being decoded at once");
+			for (a=0;a<STREAMS;a++)	{
+				send(senders.get(a),inputs.get(a),inputs.get(a).length/2,inputs.get(a).length-(inputs.get(a).length/2));
+				senders.get(a).close();
+			}
+			for (a=0;a<STREAMS;a++)	{
+				assertEquals(alone.get(a),results.get(a).get(120,TimeUnit.SECONDS));
+			}
+			assertEquals(STREAMS,service.getStartedCount());
+		}
+		finally	{
+			service.shutdownNow();
+			for (Socket sender : senders)	{
+				sender.close();
+			}
+			for (NetworkPCMSource source : sources)	{
+				source.close();
+			}
+		}
+		if (alone.get(0).length()==0) fail("Nothing was decoded");
+	}
+
+	// Read a stream in whole blocks so the session is given the same blocks as the one decoding alone
+	private String decodeStream (NetworkPCMSource source,int length,CountDownLatch halfRead) throws IOException	{
+		ByteArrayOutputStream text=new ByteArrayOutputStream();
+		TextOutput output=DecodeHelper.textOutput(text);
+		Rivet session=DecodeHelper.session(SYSTEM,output);
+		session.startSource(source.getWaveData());
+		int samples[]=new int[BLOCK];
+		int filled=0;
+		int total=0;
+		boolean counted=false;
+		while (total<length)	{
+			int count=source.read(samples,filled,Math.min(BLOCK-filled,length-total));
+			if (count<0) break;
+			filled=filled+count;
+			total=total+count;
+			if ((counted==false)&&(total>=length/2))	{
+				halfRead.countDown();
+				counted=true;
+			}
+			if ((filled==BLOCK)||(total==length))	{
+				session.decodeBlock(samples,0,filled);
+				filled=0;
+			}
+		}
+		session.endSource();
+		output.flush();
+		return text.toString();
+	}
+
+	private static void send (Socket socket,int samples[],int off,int len) throws IOException	{
+		byte data[]=new byte[len*2];
+		int a;
+		for (a=0;a<len;a++)	{
+			data[a*2]=(byte)samples[off+a];
+			data[(a*2)+1]=(byte)(samples[off+a]>>8);
+		}
+		OutputStream out=socket.getOutputStream();
+		out.write(data);
+		out.flush();
+	}
+
+	private static int freePort() throws IOException	{
+		ServerSocket socket=new ServerSocket(0);
+		try	{
+			return socket.getLocalPort();
+		}
+		finally	{
+			socket.close();
+		}
+	}
+
+}
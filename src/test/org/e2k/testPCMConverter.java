@@ -0,0 +1,52 @@
+package test.org.e2k;
+
+import junit.framework.TestCase;
+import org.e2k.PCMConverter;
+
+public class testPCMConverter extends TestCase {
+
+	// The same samples in each format should all come out the same
+	public void testFormats()	{
+		int expected[]={0,1,-1,12345,-12345,32767,-32768};
+		check(PCMConverter.SIGNED_16,false,new byte[]{0,0,1,0,-1,-1,0x39,0x30,(byte)0xC7,(byte)0xCF,(byte)0xFF,0x7F,0,(byte)0x80},expected);
+		check(PCMConverter.SIGNED_16,true,new byte[]{0,0,0,1,-1,-1,0x30,0x39,(byte)0xCF,(byte)0xC7,0x7F,(byte)0xFF,(byte)0x80,0},expected);
+		check(PCMConverter.SIGNED_24,false,new byte[]{5,0,0,5,1,0,5,-1,-1,5,0x39,0x30,5,(byte)0xC7,(byte)0xCF,5,(byte)0xFF,0x7F,5,0,(byte)0x80},expected);
+		check(PCMConverter.SIGNED_32,true,new byte[]{0,0,5,5,0,1,5,5,-1,-1,5,5,0x30,0x39,5,5,(byte)0xCF,(byte)0xC7,5,5,0x7F,(byte)0xFF,5,5,(byte)0x80,0,5,5},expected);
+		byte floats[]=new byte[expected.length*4];
+		int a;
+		for (a=0;a<expected.length;a++)	{
+			int bits=Float.floatToIntBits(expected[a]/32768.0f);
+			floats[a*4]=(byte)bits;
+			floats[(a*4)+1]=(byte)(bits>>8);
+			floats[(a*4)+2]=(byte)(bits>>16);
+			floats[(a*4)+3]=(byte)(bits>>24);
+		}
+		check(PCMConverter.FLOAT_32,false,floats,expected);
+	}
+
+	// Check stereo is mixed down or a single channel picked out
+	public void testChannels()	{
+		byte data[]={0x10,0,0x30,0,(byte)0xF0,(byte)0xFF,(byte)0xD0,(byte)0xFF};
+		PCMConverter converter=new PCMConverter(PCMConverter.SIGNED_16,false,2);
+		int out[]=new int[2];
+		converter.convert(data,0,2,out,0);
+		if ((out[0]!=0x20)||(out[1]!=-0x20)) fail("Stereo mixed down wrongly !");
+		converter.setChannel(1);
+		converter.convert(data,0,2,out,0);
+		if ((out[0]!=0x30)||(out[1]!=-0x30)) fail("Wrong channel picked out !");
+		int split[][]=new int[2][3];
+		converter.deinterleave(data,0,2,split,1);
+		if ((split[0][1]!=0x10)||(split[0][2]!=-0x10)||(split[1][1]!=0x30)||(split[1][2]!=-0x30)) fail("Channels split wrongly !");
+	}
+
+	private void check (int encoding,boolean bigEndian,byte data[],int expected[])	{
+		PCMConverter converter=new PCMConverter(encoding,bigEndian,1);
+		int out[]=new int[expected.length+1];
+		converter.convert(data,0,expected.length,out,1);
+		int a;
+		for (a=0;a<expected.length;a++)	{
+			if (out[a+1]!=expected[a]) fail(converter.getDescription()+" sample "+Integer.toString(a)+" converted to "+Integer.toString(out[a+1]));
+		}
+	}
+
+}
@@ -0,0 +1,45 @@
+package test.org.e2k;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import junit.framework.TestCase;
+
+public class testParallelDecode extends TestCase {
+
+	private static final int FILES=6;
+
+	// Sessions decoding different inputs at the same time share nothing so each gives the same text
+	// it does when it is the only one running
+	public void testSessionsAtOnce() throws Exception	{
+		final int systems[]={6,8,7};
+		final List<int[]> inputs=new ArrayList<int[]>();
+		List<String> alone=new ArrayList<String>();
+		int a;
+		for (a=0;a<FILES;a++)	{
+			inputs.add(DecodeHelper.fsk(DecodeHelper.RATE*2,200,500,new Random(a+1)));
+			alone.add(DecodeHelper.decodeAlone(systems[a%systems.length],inputs.get(a),DecodeHelper.waveData(DecodeHelper.RATE)));
+		}
+		ExecutorService pool=Executors.newFixedThreadPool(FILES);
+		try	{
+			List<Future<String>> results=new ArrayList<Future<String>>();
+			for (a=0;a<FILES;a++)	{
+				final int index=a;
+				results.add(pool.submit(new Callable<String>(){public String call(){return DecodeHelper.decodeAlone(systems[index%systems.length],inputs.get(index),DecodeHelper.waveData(DecodeHelper.RATE));}}));
+			}
+			for (a=0;a<FILES;a++)	{
+				assertEquals(alone.get(a),results.get(a).get());
+			}
+		}
+		finally	{
+			pool.shutdownNow();
+		}
+		// Make sure there was something to compare
+		if (alone.get(0).length()==0) fail("Nothing was decoded");
+	}
+
+}
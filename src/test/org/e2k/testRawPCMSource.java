@@ -0,0 +1,129 @@
+package test.org.e2k;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import junit.framework.TestCase;
+import org.e2k.PCMConverter;
+import org.e2k.RawPCMSource;
+
+public class testRawPCMSource extends TestCase {
+
+	private static final int RATE=8000;
+
+	// Format names are turned into the matching converter
+	public void testParseFormat()	{
+		checkFormat("s16le",1,PCMConverter.SIGNED_16,false,2);
+		checkFormat("S24BE",2,PCMConverter.SIGNED_24,true,6);
+		checkFormat("s32",1,PCMConverter.SIGNED_32,false,4);
+		checkFormat("f32le",1,PCMConverter.FLOAT_32,false,4);
+		checkFormat("f64be",1,PCMConverter.FLOAT_64,true,8);
+		checkFormat("u8",1,PCMConverter.UNSIGNED_8,false,1);
+		assertNull(RawPCMSource.parseFormat("s12le",1));
+		assertNull(RawPCMSource.parseFormat("s16le",0));
+	}
+
+	// Samples written to a file as s16le come back as they were
+	public void testFile() throws IOException	{
+		int samples[]=makeSamples(RATE+123);
+		byte data[]=new byte[samples.length*2];
+		int a;
+		for (a=0;a<samples.length;a++)	{
+			data[a*2]=(byte)samples[a];
+			data[(a*2)+1]=(byte)(samples[a]>>8);
+		}
+		File file=File.createTempFile("raw",".pcm");
+		FileOutputStream out=new FileOutputStream(file);
+		try	{
+			out.write(data);
+		}
+		finally	{
+			out.close();
+		}
+		try	{
+			RawPCMSource source=RawPCMSource.open(file.getPath(),RATE,RawPCMSource.parseFormat("s16le",1));
+			try	{
+				assertEquals(RATE,(int)source.getWaveData().getSampleRate());
+				assertEquals(1,source.getWaveData().getChannels());
+				assertEquals(16,source.getWaveData().getSampleSizeInBits());
+				assertEquals(-1,source.getTotalSamples());
+				checkRead(source,samples,700);
+				assertEquals(samples.length,source.getSamplesRead());
+			}
+			finally	{
+				source.close();
+			}
+		}
+		finally	{
+			file.delete();
+		}
+	}
+
+	// A stream which hands over a byte at a time still gives whole frames and a part frame at the end is dropped
+	public void testPartFrames() throws IOException	{
+		int samples[]=makeSamples(500);
+		// Big endian 24 bit stereo with the same sample in both channels and two bytes of a frame left at the end
+		byte data[]=new byte[(samples.length*6)+2];
+		int a;
+		for (a=0;a<samples.length;a++)	{
+			int value=samples[a]<<8;
+			int c;
+			for (c=0;c<2;c++)	{
+				data[(a*6)+(c*3)]=(byte)(value>>16);
+				data[(a*6)+(c*3)+1]=(byte)(value>>8);
+				data[(a*6)+(c*3)+2]=(byte)value;
+			}
+		}
+		InputStream trickle=new ByteArrayInputStream(data)	{
+			public synchronized int read (byte b[],int off,int len)	{
+				return super.read(b,off,Math.min(len,1));
+			}
+		};
+		RawPCMSource source=new RawPCMSource(trickle,true,RATE,RawPCMSource.parseFormat("s24be",2));
+		try	{
+			checkRead(source,samples,64);
+			// Once the end has been reached it stays there
+			assertEquals(-1,source.read(new int[10],0,10));
+		}
+		finally	{
+			source.close();
+		}
+	}
+
+	private void checkFormat (String format,int channels,int encoding,boolean bigEndian,int frameSize)	{
+		PCMConverter converter=RawPCMSource.parseFormat(format,channels);
+		assertNotNull(converter);
+		assertEquals(encoding,converter.getEncoding());
+		assertEquals(bigEndian,converter.isBigEndian());
+		assertEquals(channels,converter.getChannels());
+		assertEquals(frameSize,converter.getFrameSize());
+	}
+
+	private void checkRead (RawPCMSource source,int samples[],int size) throws IOException	{
+		int buffer[]=new int[size];
+		int pos=0;
+		int count;
+		while ((count=source.read(buffer,0,buffer.length))>0)	{
+			int a;
+			for (a=0;a<count;a++)	{
+				if (buffer[a]!=samples[pos+a]) fail("Sample "+Integer.toString(pos+a)+" is "+Integer.toString(buffer[a])+" not "+Integer.toString(samples[pos+a]));
+			}
+			pos=pos+count;
+		}
+		assertEquals(samples.length,pos);
+	}
+
+	private int[] makeSamples (int length)	{
+		int samples[]=new int[length];
+		int a;
+		for (a=0;a<length;a++)	{
+			samples[a]=(int)Math.round(12000.0*Math.sin((2.0*Math.PI*1000.0*a)/RATE))+((a%7)-3);
+		}
+		samples[1]=Short.MAX_VALUE;
+		samples[2]=Short.MIN_VALUE;
+		return samples;
+	}
+
+}
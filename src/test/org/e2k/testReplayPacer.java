@@ -0,0 +1,35 @@
+package test.org.e2k;
+
+import junit.framework.TestCase;
+import org.e2k.ReplayPacer;
+
+public class testReplayPacer extends TestCase {
+
+	// Samples mustn't be let through before they are due and the pacing mustn't drift
+	public void testSpeeds() throws InterruptedException	{
+		final double SPEEDS[]={1.0,4.0};
+		for (double speed : SPEEDS)	{
+			ReplayPacer pacer=new ReplayPacer(8000.0,speed);
+			long start=System.nanoTime();
+			int a;
+			// Half a second of audio
+			for (a=0;a<4000;a=a+pacer.getBlockSize())	{
+				pacer.pace(Math.min(pacer.getBlockSize(),4000-a));
+			}
+			double seconds=(System.nanoTime()-start)/1.0e9;
+			double due=0.5/speed;
+			if (seconds<due-(pacer.getBlockSize()/(8000.0*speed))) fail("Replay at "+Double.toString(speed)+"x took "+Double.toString(seconds)+" s");
+			if (seconds>due+0.25) fail("Replay at "+Double.toString(speed)+"x drifted to "+Double.toString(seconds)+" s");
+		}
+	}
+
+	// Maximum speed never waits
+	public void testMaxSpeed() throws InterruptedException	{
+		ReplayPacer pacer=new ReplayPacer(8000.0,0.0);
+		assertTrue(pacer.isMaxSpeed());
+		long start=System.nanoTime();
+		pacer.pace(8000*3600);
+		if ((System.nanoTime()-start)>100000000L) fail("Maximum speed replay waited");
+	}
+
+}
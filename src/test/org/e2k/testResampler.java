@@ -0,0 +1,130 @@
+package test.org.e2k;
+
+import java.util.Random;
+import junit.framework.TestCase;
+import org.e2k.Resampler;
+
+public class testResampler extends TestCase {
+
+	private static final int AMPLITUDE=10000;
+
+	// Check a tone in the pass band comes out at the right level with nothing else added
+	public void testPassBand()	{
+		final int RATES[]={11025,22050,44100,48000,96000};
+		for (int rate : RATES)	{
+			int out[]=resample(tone(1000.0,rate,rate*2),rate,8000,4096);
+			checkTone(out,1000.0,8000,rate);
+		}
+		checkTone(resample(tone(1500.0,44100,88200),44100,11025,4096),1500.0,11025,44100);
+	}
+
+	// Check a tone above the new Nyquist frequency is removed and doesn't alias back in
+	public void testStopBand()	{
+		int out[]=resample(tone(5000.0,48000,96000),48000,8000,4096);
+		double rms=rms(out,out.length/4,out.length);
+		if (rms>AMPLITUDE*0.001) fail("Tone above 4 KHz leaks through at an RMS level of "+Double.toString(rms));
+	}
+
+	// The output mustn't depend on how the input is split up into blocks
+	public void testBlockSizes()	{
+		int in[]=tone(700.0,11025,30000);
+		int whole[]=resample(in,11025,8000,in.length);
+		Resampler resampler=new Resampler(11025,8000);
+		int parts[]=new int[resampler.getMaxOutput(in.length)];
+		int out[]=new int[resampler.getMaxOutput(1000)];
+		Random random=new Random(1);
+		int pos=0,count=0;
+		while (pos<in.length)	{
+			int len=Math.min(1+random.nextInt(999),in.length-pos);
+			int n=resampler.process(in,pos,len,out,0);
+			System.arraycopy(out,0,parts,count,n);
+			count=count+n;
+			pos=pos+len;
+		}
+		if (count!=whole.length) fail("Different number of samples out when split into blocks !");
+		int a;
+		for (a=0;a<count;a++)	{
+			if (parts[a]!=whole[a]) fail("Sample "+Integer.toString(a)+" differs when split into blocks !");
+		}
+	}
+
+	// The benchmark : resampling must run far faster than real time
+	public void testSpeed()	{
+		final int RATES[]={11025,22050,44100,48000,96000};
+		for (int rate : RATES)	{
+			int in[]=tone(1234.0,rate,rate*10);
+			Resampler resampler=new Resampler(rate,8000);
+			int out[]=new int[resampler.getMaxOutput(4096)];
+			// Warm up first
+			int pass,a;
+			long start=0;
+			for (pass=0;pass<2;pass++)	{
+				if (pass==1) start=System.nanoTime();
+				for (a=0;a<in.length;a=a+4096)	{
+					resampler.process(in,a,Math.min(4096,in.length-a),out,0);
+				}
+			}
+			double seconds=(System.nanoTime()-start)/1.0e9;
+			double factor=10.0/seconds;
+			System.out.println("Resampling "+Integer.toString(rate)+" Hz to 8000 Hz runs at "+String.format("%.0f",factor)+" times real time ("+Integer.toString(resampler.getTapsPerPhase())+" taps)");
+			if (factor<10.0) fail("Resampling from "+Integer.toString(rate)+" Hz is too slow !");
+		}
+	}
+
+	private int[] tone (double freq,int rate,int length)	{
+		int samples[]=new int[length];
+		int a;
+		for (a=0;a<length;a++)	{
+			samples[a]=(int)Math.round(AMPLITUDE*Math.sin(2.0*Math.PI*freq*a/rate));
+		}
+		return samples;
+	}
+
+	private int[] resample (int in[],int inputRate,int outputRate,int blockSize)	{
+		Resampler resampler=new Resampler(inputRate,outputRate);
+		int out[]=new int[resampler.getMaxOutput(in.length)];
+		int block[]=new int[resampler.getMaxOutput(blockSize)];
+		int pos,count=0;
+		for (pos=0;pos<in.length;pos=pos+blockSize)	{
+			int n=resampler.process(in,pos,Math.min(blockSize,in.length-pos),block,0);
+			System.arraycopy(block,0,out,count,n);
+			count=count+n;
+		}
+		int result[]=new int[count];
+		System.arraycopy(out,0,result,0,count);
+		return result;
+	}
+
+	// Fit a tone to the second half of the output and check the level and what is left over
+	private void checkTone (int out[],double freq,int rate,int inputRate)	{
+		int start=out.length/2;
+		int n=out.length-start;
+		double c=0.0,s=0.0;
+		int a;
+		for (a=start;a<out.length;a++)	{
+			c=c+out[a]*Math.cos(2.0*Math.PI*freq*a/rate);
+			s=s+out[a]*Math.sin(2.0*Math.PI*freq*a/rate);
+		}
+		c=c*2.0/n;
+		s=s*2.0/n;
+		double level=Math.sqrt((c*c)+(s*s));
+		if (Math.abs(level-AMPLITUDE)>AMPLITUDE*0.01) fail(Integer.toString(inputRate)+" Hz tone level is "+Double.toString(level));
+		double residual=0.0;
+		for (a=start;a<out.length;a++)	{
+			double e=out[a]-((c*Math.cos(2.0*Math.PI*freq*a/rate))+(s*Math.sin(2.0*Math.PI*freq*a/rate)));
+			residual=residual+(e*e);
+		}
+		residual=Math.sqrt(residual/n);
+		if (residual>AMPLITUDE*0.002) fail(Integer.toString(inputRate)+" Hz tone distorted with an RMS error of "+Double.toString(residual));
+	}
+
+	private double rms (int samples[],int start,int end)	{
+		double sum=0.0;
+		int a;
+		for (a=start;a<end;a++)	{
+			sum=sum+((double)samples[a]*samples[a]);
+		}
+		return Math.sqrt(sum/(end-start));
+	}
+
+}
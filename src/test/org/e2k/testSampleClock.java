@@ -0,0 +1,53 @@
+package test.org.e2k;
+
+import junit.framework.TestCase;
+import org.e2k.SampleClock;
+
+public class testSampleClock extends TestCase {
+
+	// 2016-10-12 12:34:56 UTC
+	private static final long START=1476275696000L;
+
+	// The time follows the samples not the computer's clock
+	public void testAdvance()	{
+		SampleClock clock=new SampleClock();
+		clock.start(8000.0,START,16000);
+		assertEquals(START+2000,clock.getTimeMillis());
+		clock.advance(8000*60);
+		assertEquals((START/1000)+62,clock.getTimeSeconds());
+		clock.stop();
+		if (Math.abs(clock.getTimeMillis()-System.currentTimeMillis())>1000) fail("A stopped clock doesn't give the time now");
+	}
+
+	// Time stamps within the same second are the same
+	public void testTimeStamp()	{
+		SampleClock clock=new SampleClock();
+		clock.setUTC(true);
+		clock.start(8000.0,START,0);
+		String first=clock.getTimeStamp();
+		clock.advance(3000);
+		assertEquals(first,clock.getTimeStamp());
+		clock.advance(5000);
+		if (first.equals(clock.getTimeStamp())) fail("The time stamp didn't change after a second");
+	}
+
+	public void testFileNames()	{
+		assertEquals(START,SampleClock.parseFileName("SDRSharp_20161012_123456Z_7800000Hz_AF.wav"));
+		assertEquals(START,SampleClock.parseFileName("/data/HDSDR_20161012_123456Z_7800kHz_AF.wav"));
+		assertEquals(START,SampleClock.parseFileName("2016-10-12T12-34-56Z.wav"));
+		assertEquals(-1,SampleClock.parseFileName("recording_7800000.wav"));
+		// Not a real date
+		assertEquals(-1,SampleClock.parseFileName("gqrx_20161399_123456_7800000.wav"));
+	}
+
+	public void testParseTime()	{
+		assertEquals(START,SampleClock.parseTime("2016-10-12 12:34:56Z"));
+		assertEquals(START,SampleClock.parseTime("2016-10-12T12:34:56Z"));
+		try	{
+			SampleClock.parseTime("yesterday");
+			fail("A bad time was accepted");
+		}
+		catch (NumberFormatException e)	{}
+	}
+
+}
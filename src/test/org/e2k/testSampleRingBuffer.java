@@ -0,0 +1,121 @@
+package test.org.e2k;
+
+import junit.framework.TestCase;
+import org.e2k.EventSignal;
+import org.e2k.SampleRingBuffer;
+
+public class testSampleRingBuffer extends TestCase {
+	
+	// Check blocks written across the end of the ring come back out in order
+	public void testWrapAround()	{
+		SampleRingBuffer ring=new SampleRingBuffer(16);
+		int in[]=new int[10];
+		int out[]=new int[10];
+		int a,b,next=0,expected=0;
+		for (a=0;a<20;a++)	{
+			for (b=0;b<in.length;b++)	{
+				in[b]=next;
+				next++;
+			}
+			if (ring.write(in,0,in.length)!=in.length) fail("Unable to write a block to an empty ring !");
+			if (ring.getDepth()!=in.length) fail("Wrong depth reported !");
+			if (ring.read(out,0,out.length)!=out.length) fail("Unable to read a block back !");
+			for (b=0;b<out.length;b++)	{
+				if (out[b]!=expected) fail("Sample "+Integer.toString(expected)+" read back as "+Integer.toString(out[b]));
+				expected++;
+			}
+		}
+		if (ring.isEmpty()==false) fail("Ring should be empty !");
+	}
+	
+	// Check a live source counts the samples it has to drop when the ring is full
+	public void testOverrun()	{
+		SampleRingBuffer ring=new SampleRingBuffer(16);
+		int in[]=new int[12];
+		ring.offer(in,0,in.length);
+		if (ring.getOverrunCount()!=0) fail("Overrun counted when there was space !");
+		if (ring.offer(in,0,in.length)!=4) fail("Wrong number of samples written to a nearly full ring !");
+		if (ring.getOverrunCount()!=1) fail("Overrun not counted !");
+		if (ring.getOverrunSamples()!=8) fail("Wrong number of lost samples counted !");
+		if (ring.getMaxDepth()!=16) fail("Wrong max depth !");
+	}
+
+	// Check cleared samples are skipped by the consumer and only new ones come out
+	public void testClear()	{
+		SampleRingBuffer ring=new SampleRingBuffer(16);
+		int in[]=new int[10];
+		int out[]=new int[16];
+		int a;
+		for (a=0;a<in.length;a++) in[a]=a;
+		ring.write(in,0,in.length);
+		long ticket=ring.getDataSignal().ticket();
+		ring.clear();
+		if (ring.getDataSignal().ticket()==ticket) fail("Clearing didn't wake the consumer !");
+		if (ring.isEmpty()==false) fail("Ring should be empty after clearing !");
+		// Until the consumer catches up the cleared samples still hold their space
+		for (a=0;a<in.length;a++) in[a]=100+a;
+		if (ring.write(in,0,in.length)!=6) fail("Cleared samples were overwritten before the consumer skipped them !");
+		if (ring.read(out,0,out.length)!=6) fail("Wrong number of samples read after clearing !");
+		for (a=0;a<6;a++)	{
+			if (out[a]!=100+a) fail("Cleared sample read back as "+Integer.toString(out[a]));
+		}
+		if (ring.write(in,6,4)!=4) fail("Space not freed after the consumer skipped the cleared samples !");
+	}
+
+	// Check a producer and consumer which sleep on the signals pass every sample across in order
+	public void testHandoff() throws InterruptedException	{
+		final SampleRingBuffer ring=new SampleRingBuffer(64);
+		final int total=100000;
+		Thread producer=new Thread()	{
+			public void run()	{
+				int block[]=new int[48];
+				int next=0;
+				try	{
+					while (next<total)	{
+						int count=Math.min(block.length,total-next);
+						int a;
+						for (a=0;a<count;a++) block[a]=next+a;
+						int done=0;
+						while (done<count)	{
+							long ticket=ring.getSpaceSignal().ticket();
+							int written=ring.write(block,done,count-done);
+							done=done+written;
+							if (written==0) ring.getSpaceSignal().await(ticket,0);
+						}
+						next=next+count;
+					}
+				}
+				catch (InterruptedException e)	{}
+			}
+		};
+		producer.start();
+		EventSignal dataSignal=ring.getDataSignal();
+		int out[]=new int[40];
+		int expected=0;
+		while (expected<total)	{
+			long ticket=dataSignal.ticket();
+			int count=ring.read(out,0,out.length);
+			if (count==0)	{
+				if (dataSignal.await(ticket,5000)==false) fail("Nothing was signalled after "+Integer.toString(expected)+" samples !");
+				continue;
+			}
+			int a;
+			for (a=0;a<count;a++)	{
+				if (out[a]!=expected) fail("Sample "+Integer.toString(expected)+" read back as "+Integer.toString(out[a]));
+				expected++;
+			}
+		}
+		producer.join(5000);
+		if (producer.isAlive()) fail("The producer is still waiting !");
+	}
+	
+	// A wait which nothing signals times out
+	public void testTimeout() throws InterruptedException	{
+		EventSignal signal=new EventSignal();
+		long ticket=signal.ticket();
+		if (signal.await(ticket,10)==true) fail("Signalled when nothing happened !");
+		signal.signal();
+		if (signal.await(ticket,0)==false) fail("A signal before waiting was missed !");
+	}
+
+}
@@ -0,0 +1,57 @@
+package test.org.e2k;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import junit.framework.TestCase;
+import org.e2k.Rivet;
+import org.e2k.SnippetRecorder;
+import org.e2k.WavFileReader;
+
+public class testSnippetRecorder extends TestCase {
+
+	private static final int RATE=8000;
+	private static final int BLOCK=800;
+
+	// A snippet runs from the history before the signal to a little after it is lost
+	public void testSnippet() throws IOException	{
+		File directory=Files.createTempDirectory("snippets").toFile();
+		try	{
+			SnippetRecorder recorder=new SnippetRecorder(new Rivet(null),directory,RATE,1.0,0.5,60.0);
+			int samples[]=new int[RATE*5];
+			int a;
+			for (a=0;a<samples.length;a++)	{
+				samples[a]=a%30000;
+			}
+			int pos=0;
+			for (;pos<RATE*2;pos=pos+BLOCK) recorder.add(samples,pos,BLOCK);
+			recorder.setSignal(true,"FSK200/500");
+			for (;pos<RATE*3;pos=pos+BLOCK) recorder.add(samples,pos,BLOCK);
+			recorder.setSignal(false,"FSK200/500");
+			for (;pos<RATE*5;pos=pos+BLOCK) recorder.add(samples,pos,BLOCK);
+			recorder.close();
+			assertEquals(1,recorder.getSavedCount());
+			File files[]=directory.listFiles();
+			assertEquals(1,files.length);
+			if (!files[0].getName().endsWith("FSK200-500.wav")) fail("Bad snippet name "+files[0].getName());
+			WavFileReader reader=new WavFileReader(files[0]);
+			try	{
+				// 1 second before , 1 second of signal and half a second after
+				assertEquals(RATE*5/2,reader.getTotalSamples());
+				int data[]=new int[RATE*5/2];
+				assertEquals(data.length,reader.read(data,0,data.length));
+				for (a=0;a<data.length;a++)	{
+					if (data[a]!=samples[RATE+a]) fail("Sample "+Integer.toString(a)+" of the snippet is wrong");
+				}
+			}
+			finally	{
+				reader.close();
+			}
+		}
+		finally	{
+			for (File file : directory.listFiles()) file.delete();
+			directory.delete();
+		}
+	}
+
+}
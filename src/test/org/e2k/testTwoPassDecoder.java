@@ -0,0 +1,67 @@
+package test.org.e2k;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+import org.e2k.Rivet;
+import org.e2k.TextOutput;
+import org.e2k.TwoPassDecoder;
+import org.e2k.WavFileReader;
+import org.e2k.WavFileWriter;
+
+public class testTwoPassDecoder extends TestCase {
+
+	private static final int RATE=8000;
+
+	// Tones at 10 , 14 and 30 seconds in band noise
+	private File makeFile() throws IOException	{
+		File file=File.createTempFile("twopass",".wav");
+		WavFileWriter writer=new WavFileWriter(file,RATE);
+		try	{
+			Random random=new Random(2);
+			int samples[]=new int[RATE*40];
+			int a;
+			for (a=0;a<samples.length;a++)	{
+				samples[a]=(int)(random.nextGaussian()*100.0);
+				double t=(double)a/RATE;
+				if (((t>=10.0)&&(t<12.0))||((t>=14.0)&&(t<15.0))||((t>=30.0)&&(t<31.0))) samples[a]=samples[a]+(int)(8000.0*Math.sin(2.0*Math.PI*1500.0*t));
+			}
+			writer.write(samples,0,samples.length);
+		}
+		finally	{
+			writer.close();
+		}
+		return file;
+	}
+
+	// Stretches closer together than the lead in are joined and the windows start that far early
+	public void testFindWindows() throws IOException	{
+		File file=makeFile();
+		try	{
+			TwoPassDecoder decoder=new TwoPassDecoder(new TwoPassDecoder.SessionFactory(){public Rivet createSession(TextOutput output,int system){return new Rivet(output);}},new int[]{6},1);
+			decoder.setHangSeconds(1.0);
+			WavFileReader reader=new WavFileReader(file);
+			List<TwoPassDecoder.Window> windows;
+			try	{
+				windows=decoder.findWindows(reader,RATE*3,RATE);
+			}
+			finally	{
+				reader.close();
+			}
+			assertEquals(2,windows.size());
+			checkNear(7.0,windows.get(0).getStart());
+			if ((windows.get(0).getEnd()<RATE*17)||(windows.get(0).getEnd()>RATE*19)) fail("The first window ends at "+Long.toString(windows.get(0).getEnd()));
+			checkNear(27.0,windows.get(1).getStart());
+		}
+		finally	{
+			file.delete();
+		}
+	}
+
+	private void checkNear (double seconds,long sample)	{
+		if (Math.abs(sample-(seconds*RATE))>RATE/10) fail("Sample "+Long.toString(sample)+" isn't at "+Double.toString(seconds)+" seconds");
+	}
+
+}
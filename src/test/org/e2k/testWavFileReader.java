@@ -0,0 +1,236 @@
+package test.org.e2k;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import junit.framework.TestCase;
+import org.e2k.WavFileReader;
+
+public class testWavFileReader extends TestCase {
+
+	private static final int RATE=8000;
+	private static final int WAVE_FORMAT_PCM=1;
+	private static final int WAVE_FORMAT_IEEE_FLOAT=3;
+
+	// Every format is written from these 16 bit values and should read back as them
+	private int[] makeSamples (int length)	{
+		int samples[]=new int[length];
+		int a;
+		for (a=0;a<length;a++)	{
+			samples[a]=(int)Math.round(12000.0*Math.sin((2.0*Math.PI*1000.0*a)/RATE))+((a%7)-3);
+		}
+		samples[1]=Short.MAX_VALUE;
+		samples[2]=Short.MIN_VALUE;
+		return samples;
+	}
+
+	// Build a WAV file with a chunk the reader has to skip (with an odd length so it is padded) before the data
+	// Each sample is put in every channel of its frame
+	private File makeWav (boolean rifx,int formatTag,boolean extensible,int bits,int channels,int samples[]) throws IOException	{
+		ByteOrder order=ByteOrder.LITTLE_ENDIAN;
+		if (rifx==true) order=ByteOrder.BIG_ENDIAN;
+		int bytes=bits/8;
+		int fmtSize=16;
+		if (extensible==true) fmtSize=40;
+		int dataSize=samples.length*channels*bytes;
+		ByteBuffer buffer=ByteBuffer.allocate(12+8+fmtSize+8+3+1+8+dataSize).order(order);
+		buffer.put((rifx==true)?"RIFX".getBytes("US-ASCII"):"RIFF".getBytes("US-ASCII"));
+		buffer.putInt(buffer.capacity()-8);
+		buffer.put("WAVE".getBytes("US-ASCII"));
+		buffer.put("fmt ".getBytes("US-ASCII"));
+		buffer.putInt(fmtSize);
+		if (extensible==true) buffer.putShort((short)0xFFFE);
+		else buffer.putShort((short)formatTag);
+		buffer.putShort((short)channels);
+		buffer.putInt(RATE);
+		buffer.putInt(RATE*channels*bytes);
+		buffer.putShort((short)(channels*bytes));
+		buffer.putShort((short)bits);
+		if (extensible==true)	{
+			buffer.putShort((short)22);
+			buffer.putShort((short)bits);
+			buffer.putInt(0);
+			// The sub format GUID starts with the real format tag
+			buffer.putShort((short)formatTag);
+			buffer.put(new byte[14]);
+		}
+		buffer.put("junk".getBytes("US-ASCII"));
+		buffer.putInt(3);
+		buffer.put(new byte[]{1,2,3,0});
+		buffer.put("data".getBytes("US-ASCII"));
+		buffer.putInt(dataSize);
+		for (int sample : samples)	{
+			int c;
+			for (c=0;c<channels;c++)	{
+				if (formatTag==WAVE_FORMAT_IEEE_FLOAT)	{
+					if (bits==32) buffer.putFloat(sample/32768.0f);
+					else buffer.putDouble(sample/32768.0);
+				}
+				else if (bits==16) buffer.putShort((short)sample);
+				else if (bits==24)	{
+					int value=sample<<8;
+					if (rifx==true) buffer.put(new byte[]{(byte)(value>>16),(byte)(value>>8),(byte)value});
+					else buffer.put(new byte[]{(byte)value,(byte)(value>>8),(byte)(value>>16)});
+				}
+				else buffer.putInt(sample<<16);
+			}
+		}
+		File file=File.createTempFile("reader",".wav");
+		FileOutputStream out=new FileOutputStream(file);
+		try	{
+			out.write(buffer.array());
+		}
+		finally	{
+			out.close();
+		}
+		return file;
+	}
+
+	// Plain 16 bit little endian PCM
+	public void testPCM() throws IOException	{
+		checkFormat(false,WAVE_FORMAT_PCM,false,16,1);
+		checkFormat(false,WAVE_FORMAT_PCM,false,24,1);
+		checkFormat(false,WAVE_FORMAT_PCM,false,32,1);
+	}
+
+	// RIFX files are big endian throughout
+	public void testRIFX() throws IOException	{
+		checkFormat(true,WAVE_FORMAT_PCM,false,16,1);
+		checkFormat(true,WAVE_FORMAT_PCM,false,24,1);
+	}
+
+	// WAVE_FORMAT_EXTENSIBLE takes its format from the sub format GUID
+	public void testExtensible() throws IOException	{
+		checkFormat(false,WAVE_FORMAT_PCM,true,24,2);
+		checkFormat(false,WAVE_FORMAT_IEEE_FLOAT,true,32,1);
+	}
+
+	// 32 and 64 bit float
+	public void testFloat() throws IOException	{
+		checkFormat(false,WAVE_FORMAT_IEEE_FLOAT,false,32,1);
+		checkFormat(false,WAVE_FORMAT_IEEE_FLOAT,false,64,2);
+	}
+
+	// Only the range asked for is read and a seek goes straight to a frame
+	public void testRangeAndSeek() throws IOException	{
+		int samples[]=makeSamples(RATE*3);
+		File file=makeWav(false,WAVE_FORMAT_PCM,false,16,1,samples);
+		try	{
+			WavFileReader reader=new WavFileReader(file);
+			try	{
+				assertEquals(RATE,reader.findFrame("1"));
+				reader.setRange(reader.findFrame("1"),reader.findFrame("2"));
+				assertEquals(RATE*2,reader.getEndFrame());
+				checkRead(reader,samples,RATE,RATE*2);
+				assertEquals(-1,reader.read(new int[10],0,10));
+				reader.seek(RATE+100);
+				checkRead(reader,samples,RATE+100,RATE*2);
+				// A range past the end of the file stops at the end
+				reader.setRange(samples.length-50,samples.length+1000);
+				checkRead(reader,samples,samples.length-50,samples.length);
+				reader.seek(0);
+				assertEquals(0,reader.getSamplesRead());
+			}
+			finally	{
+				reader.close();
+			}
+		}
+		finally	{
+			file.delete();
+		}
+	}
+
+	// Anything which isn't a WAV file is turned away
+	public void testNotWav() throws IOException	{
+		File file=File.createTempFile("reader",".wav");
+		FileOutputStream out=new FileOutputStream(file);
+		try	{
+			out.write("This is not a WAV file at all".getBytes("US-ASCII"));
+		}
+		finally	{
+			out.close();
+		}
+		try	{
+			new WavFileReader(file).close();
+			fail("A text file was opened as a WAV file");
+		}
+		catch (IOException e)	{}
+		finally	{
+			file.delete();
+		}
+	}
+
+	// A fmt chunk too short to hold the sample size is turned away
+	public void testShortFormat() throws IOException	{
+		ByteBuffer buffer=ByteBuffer.allocate(12+8+14+8+4).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.put("RIFF".getBytes("US-ASCII"));
+		buffer.putInt(buffer.capacity()-8);
+		buffer.put("WAVE".getBytes("US-ASCII"));
+		buffer.put("fmt ".getBytes("US-ASCII"));
+		buffer.putInt(14);
+		buffer.putShort((short)WAVE_FORMAT_PCM);
+		buffer.putShort((short)1);
+		buffer.putInt(RATE);
+		buffer.putInt(RATE*2);
+		buffer.putShort((short)2);
+		buffer.put("data".getBytes("US-ASCII"));
+		buffer.putInt(4);
+		buffer.put(new byte[4]);
+		File file=File.createTempFile("reader",".wav");
+		FileOutputStream out=new FileOutputStream(file);
+		try	{
+			out.write(buffer.array());
+		}
+		finally	{
+			out.close();
+		}
+		try	{
+			new WavFileReader(file).close();
+			fail("A WAV file with a short fmt chunk was opened");
+		}
+		catch (IOException e)	{
+			assertEquals("Bad WAV fmt chunk",e.getMessage());
+		}
+		finally	{
+			file.delete();
+		}
+	}
+
+	private void checkFormat (boolean rifx,int formatTag,boolean extensible,int bits,int channels) throws IOException	{
+		int samples[]=makeSamples(RATE+333);
+		File file=makeWav(rifx,formatTag,extensible,bits,channels,samples);
+		try	{
+			WavFileReader reader=new WavFileReader(file);
+			try	{
+				assertEquals(samples.length,reader.getTotalSamples());
+				assertEquals(channels,reader.getChannels());
+				assertEquals(RATE,(int)reader.getWaveData().getSampleRate());
+				// Every channel holds the same samples so mixing them down leaves them as they are
+				checkRead(reader,samples,0,samples.length);
+			}
+			finally	{
+				reader.close();
+			}
+		}
+		finally	{
+			file.delete();
+		}
+	}
+
+	private void checkRead (WavFileReader reader,int samples[],int start,int end) throws IOException	{
+		int buffer[]=new int[700];
+		int pos=start;
+		int count;
+		while ((count=reader.read(buffer,0,buffer.length))>0)	{
+			int a;
+			for (a=0;a<count;a++)	{
+				if (buffer[a]!=samples[pos+a]) fail(reader.getFormatDescription()+" sample "+Integer.toString(pos+a)+" is "+Integer.toString(buffer[a])+" not "+Integer.toString(samples[pos+a]));
+			}
+			pos=pos+count;
+		}
+		assertEquals(end,pos);
+	}
+
+}